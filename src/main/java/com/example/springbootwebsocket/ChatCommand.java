@@ -0,0 +1,36 @@
+package com.example.springbootwebsocket;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * A message received from a client over the WebSocket, e.g. a join, a chat message or a
+ * private message request. Commands are immutable and never persisted; the handler derives
+ * the {@link ChatEvent} it stores and broadcasts from a validated command.
+ *
+ * @param type      The message type; a missing type is treated as CHAT
+ * @param name      The name the sender joins or writes with
+ * @param message   The message text
+ * @param recipient The addressee of a PRIVATE or PRIVATE_HISTORY command
+ * @param size      The length in bytes of the file an UPLOAD command announces; the file name is the message
+ * @param token     The token of the name, sent along with a JOIN once the server issued it
+ * @param typing    Whether a TYPING command starts or stops typing; a missing value starts it
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record ChatCommand(ChatMessage.MessageType type, String name, String message, String recipient, long size,
+        String token, Boolean typing) {
+
+    /**
+     * Returns the message type, CHAT if the client sent none
+     */
+    public ChatMessage.MessageType effectiveType() {
+        return type != null ? type : ChatMessage.MessageType.CHAT;
+    }
+
+    /**
+     * Returns true for commands whose content is typed by a user, including those without a type
+     */
+    public boolean isConversational() {
+        ChatMessage.MessageType effective = effectiveType();
+        return effective == ChatMessage.MessageType.CHAT || effective == ChatMessage.MessageType.PRIVATE;
+    }
+}
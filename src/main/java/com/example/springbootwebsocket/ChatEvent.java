@@ -0,0 +1,92 @@
+package com.example.springbootwebsocket;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import java.time.Instant;
+
+/**
+ * A chat message frame sent to clients over the WebSocket: chat messages, join and leave
+ * notifications, errors and user counts.
+ *
+ * Events are immutable and independent of the {@link ChatMessage} entity, which only the
+ * service layer maps them to and from when they are persisted. Fields holding their default
+ * value are left out of the frame, so an unsaved event has no {@code id}, only a user count
+ * carries a {@code count}, and an error frame without a timestamp has none.
+ *
+ * @param id        The id of the stored message, null if it is not persisted
+ * @param type      The message type
+ * @param name      The sender name, "System" for server messages
+ * @param message   The message text, or the file name of a shared file
+ * @param blobId    The content hash of a shared file, downloaded from /api/chat/files/{blobId}
+ * @param timestamp The ISO-8601 creation time
+ * @param count     The number of connected users of a USER_COUNT frame
+ */
+@JsonInclude(JsonInclude.Include.NON_DEFAULT)
+@JsonPropertyOrder({ "id", "type", "name", "message", "blobId", "timestamp", "count" })
+public record ChatEvent(Long id, ChatMessage.MessageType type, String name, String message, String blobId,
+        String timestamp, int count) {
+
+    // Sender name of the messages the server creates itself
+    public static final String SYSTEM_NAME = "System";
+
+    /**
+     * Create an event stamped with the current time
+     *
+     * @param type    The message type
+     * @param name    The sender name
+     * @param message The message text
+     * @return A new, not yet persisted event
+     */
+    public static ChatEvent of(ChatMessage.MessageType type, String name, String message) {
+        return new ChatEvent(null, type, name, message, null, Instant.now().toString(), 0);
+    }
+
+    /**
+     * Create a chat message sharing a file
+     *
+     * @param name     The sender name
+     * @param fileName The name of the file
+     * @param blobId   The content hash the file is stored under
+     * @return A new, not yet persisted event
+     */
+    public static ChatEvent file(String name, String fileName, String blobId) {
+        return new ChatEvent(null, ChatMessage.MessageType.CHAT, name, fileName, blobId, Instant.now().toString(), 0);
+    }
+
+    /**
+     * Create a join notification
+     */
+    public static ChatEvent join(String name, String message) {
+        return of(ChatMessage.MessageType.JOIN, name, message);
+    }
+
+    /**
+     * Create a leave notification
+     */
+    public static ChatEvent leave(String name, String message) {
+        return of(ChatMessage.MessageType.LEAVE, name, message);
+    }
+
+    /**
+     * Create an error frame; it has no timestamp, so the same frame can be sent again and again
+     */
+    public static ChatEvent error(String message) {
+        return new ChatEvent(null, ChatMessage.MessageType.ERROR, SYSTEM_NAME, message, null, null, 0);
+    }
+
+    /**
+     * Create a user count frame
+     */
+    public static ChatEvent userCount(int count) {
+        return new ChatEvent(null, ChatMessage.MessageType.USER_COUNT, SYSTEM_NAME, null, null,
+                Instant.now().toString(), count);
+    }
+
+    /**
+     * Returns this event with the id it was stored under
+     */
+    public ChatEvent withId(Long id) {
+        return new ChatEvent(id, type, name, message, blobId, timestamp, count);
+    }
+}
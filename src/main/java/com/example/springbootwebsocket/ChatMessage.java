@@ -12,7 +12,10 @@ import jakarta.persistence.Id;
 import jakarta.persistence.Table;
 
 /**
- * Represents a chat message in the WebSocket communication
+ * A chat message as stored in the chat_messages table
+ *
+ * The WebSocket frames are {@link ChatCommand} (received) and {@link ChatEvent} (sent); this
+ * entity only exists on the persistence side and is mapped from events when they are saved.
  */
 @Entity
 @Table(name = "chat_messages")
@@ -32,6 +35,10 @@ public class ChatMessage {
     @Enumerated(EnumType.STRING)
     @Column(name = "message_type")
     private MessageType type;
+    
+    // Content hash of the file a CHAT message shares; the message is then the file name
+    @Column(name = "blob_id")
+    private String blobId;
 
     /**
      * The type of message
@@ -41,7 +48,16 @@ public class ChatMessage {
         JOIN,
         LEAVE,
         ERROR,
-        USER_COUNT
+        USER_COUNT,
+        PRESENCE_ROSTER,
+        PRESENCE_DELTA,
+        PRESENCE_SYNC,
+        TYPING,
+        TYPING_STATE,
+        PRIVATE,
+        PRIVATE_HISTORY,
+        UPLOAD,
+        IDENTITY
     }
 
     /**
@@ -100,28 +116,6 @@ public class ChatMessage {
         return new ChatMessage(name, message, MessageType.LEAVE);
     }
 
-    /**
-     * Create an error message
-     *
-     * @param errorMessage Error description
-     * @return A new ChatMessage instance
-     */
-    public static ChatMessage createErrorMessage(String errorMessage) {
-        return new ChatMessage("System", errorMessage, MessageType.ERROR);
-    }
-    
-    /**
-     * Create a user count message
-     * 
-     * @param count Number of active users
-     * @return A new ChatMessage instance
-     */
-    public static ChatMessage createUserCountMessage(int count) {
-        ChatMessage message = new ChatMessage("System", "", MessageType.USER_COUNT);
-        message.count = count;
-        return message;
-    }
-
     // Getters and setters
     public Long getId() {
         return id;
@@ -170,4 +164,12 @@ public class ChatMessage {
     public void setCount(int count) {
         this.count = count;
     }
+
+    public String getBlobId() {
+        return blobId;
+    }
+
+    public void setBlobId(String blobId) {
+        this.blobId = blobId;
+    }
 }
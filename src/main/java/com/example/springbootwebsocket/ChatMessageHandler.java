@@ -3,40 +3,122 @@ package com.example.springbootwebsocket;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.lang.NonNull;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PongMessage;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
-import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.springbootwebsocket.config.LocaleHandshakeInterceptor;
+import com.example.springbootwebsocket.logging.LazyPayload;
+import com.example.springbootwebsocket.logging.LogSampler;
+import com.example.springbootwebsocket.repository.BlobStore;
 import com.example.springbootwebsocket.service.ChatMessageService;
+import com.example.springbootwebsocket.service.ChatStatistics;
+import com.example.springbootwebsocket.service.HeartbeatMonitor;
+import com.example.springbootwebsocket.service.NameClaimService;
+import com.example.springbootwebsocket.service.StripedFanout;
+import com.example.springbootwebsocket.service.PresenceRoster;
+import com.example.springbootwebsocket.service.PrivateMessageService;
+import com.example.springbootwebsocket.service.TypingCoalescer;
+import com.example.springbootwebsocket.security.DuplicateMessageFilter;
 import com.example.springbootwebsocket.security.MessageValidator;
 
 import java.io.IOException;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 
 /**
  * Handles WebSocket communication for the chat application
+ *
+ * Text frames carry the JSON commands; binary frames carry the chunks of a file announced by
+ * an UPLOAD command. Messages are received in parts as they arrive, so a file chunk is written
+ * to disk without first being buffered whole. The parts of a text message are joined before it
+ * is parsed, and a text message longer than {@code websocket.max-text-message-size} is refused.
  */
 @Component
-public class ChatMessageHandler extends TextWebSocketHandler {
+public class ChatMessageHandler extends AbstractWebSocketHandler {
 
     private static final Logger logger = LoggerFactory.getLogger(ChatMessageHandler.class);
-    private final Map<String, WebSocketSession> sessions = new ConcurrentHashMap<>();
-    private final Map<String, String> sessionNames = new ConcurrentHashMap<>();
+
+    // Session attribute holding the file the session is uploading
+    private static final String UPLOAD_ATTRIBUTE = "chat.upload";
+
+    // Session attribute holding the parts of a text message received so far
+    private static final String TEXT_PARTS_ATTRIBUTE = "chat.textParts";
+
+    // Longest file name kept, in characters
+    private static final int MAX_FILE_NAME_LENGTH = 255;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
     private final ChatMessageService chatMessageService;
     private final MessageValidator messageValidator;
-    private final MessageUtils messageUtils;
+    private final ErrorFrameCache errorFrameCache;
+    private final PresenceRoster presenceRoster;
+    private final TypingCoalescer typingCoalescer;
+    private final HeartbeatMonitor heartbeatMonitor;
+    private final StripedFanout sessions;
+    private final PrivateMessageService privateMessageService;
+    private final ChatStatistics chatStatistics;
+    private final DuplicateMessageFilter duplicateMessageFilter;
+    private final BlobStore blobStore;
+    private final NameClaimService nameClaimService;
+    private final int maxTextMessageSize;
+    private volatile RosterFrame rosterFrame = new RosterFrame(-1, null);
+
+    // Per-connection and per-message events are sampled so a connection storm or a chatty room cannot flood the log
+    private final LogSampler connectionLogSampler = LogSampler.perSecond(10);
+    private final LogSampler messageLogSampler = LogSampler.perSecond(20);
+    private final LogSampler sendErrorLogSampler = LogSampler.perSecond(5);
+
+    /**
+     * Serialized roster frame together with the roster version it was built from
+     */
+    private record RosterFrame(long version, TextMessage message) {
+    }
+
+    /**
+     * A file a session announced and is sending the chunks of
+     */
+    private record PendingUpload(String sender, String fileName, BlobStore.Upload upload) {
+    }
 
     @Autowired
-    public ChatMessageHandler(MessageUtils messageUtils, ChatMessageService chatMessageService, MessageValidator messageValidator) {
+    public ChatMessageHandler(ErrorFrameCache errorFrameCache, ChatMessageService chatMessageService,
+            MessageValidator messageValidator, PresenceRoster presenceRoster, TypingCoalescer typingCoalescer,
+            HeartbeatMonitor heartbeatMonitor, StripedFanout sessions, PrivateMessageService privateMessageService,
+            ChatStatistics chatStatistics, DuplicateMessageFilter duplicateMessageFilter, BlobStore blobStore,
+            NameClaimService nameClaimService,
+            @Value("${websocket.max-text-message-size:8192}") int maxTextMessageSize) {
         this.chatMessageService = chatMessageService;
         this.messageValidator = messageValidator;
-        this.messageUtils = messageUtils;
+        this.errorFrameCache = errorFrameCache;
+        this.presenceRoster = presenceRoster;
+        this.typingCoalescer = typingCoalescer;
+        this.heartbeatMonitor = heartbeatMonitor;
+        this.sessions = sessions;
+        this.privateMessageService = privateMessageService;
+        this.chatStatistics = chatStatistics;
+        this.duplicateMessageFilter = duplicateMessageFilter;
+        this.blobStore = blobStore;
+        this.nameClaimService = nameClaimService;
+        this.maxTextMessageSize = maxTextMessageSize;
+    }
+
+    /**
+     * Receive messages in parts, so file chunks are streamed to disk as they arrive
+     */
+    @Override
+    public boolean supportsPartialMessages() {
+        return true;
     }
 
     /**
@@ -44,19 +126,25 @@ public class ChatMessageHandler extends TextWebSocketHandler {
      */
     @Override
     public void afterConnectionEstablished(@NonNull WebSocketSession session) {
-        sessions.put(session.getId(), session);
-        logger.info("New WebSocket connection established: {}", session.getId());
-        logger.info("Total active connections: {}", sessions.size());
+        // All sends go through the decorated session, which is safe to use from several threads
+        WebSocketSession outbound = sessions.add(session);
+        heartbeatMonitor.register(outbound, sessions.senderOf(session.getId()));
+        if (logger.isInfoEnabled() && connectionLogSampler.shouldLog()) {
+            logger.info("New WebSocket connection established: {} ({} active, {} connection events suppressed)",
+                    session.getId(), sessions.size(), connectionLogSampler.takeSuppressed());
+        }
         
         // Send individual user count message to the new session
         try {
             int userCount = sessions.size();
-            ChatMessage countMessage = ChatMessage.createUserCountMessage(userCount);
-            String serializedMessage = new ObjectMapper().writeValueAsString(countMessage);
-            session.sendMessage(new TextMessage(serializedMessage));
+            String serializedMessage = objectMapper.writeValueAsString(ChatEvent.userCount(userCount));
+            outbound.sendMessage(new TextMessage(serializedMessage));
         } catch (Exception e) {
             logger.error("Error sending user count to new session: {}", e.getMessage(), e);
         }
+        
+        // Send the presence roster once; the client keeps it current from deltas
+        sendRoster(outbound);
     }
 
     /**
@@ -64,158 +152,528 @@ public class ChatMessageHandler extends TextWebSocketHandler {
      */
     @Override
     public void afterConnectionClosed(@NonNull WebSocketSession session, @NonNull CloseStatus status) {
-        logger.info("WebSocket connection closed: {} with status: {}", session.getId(), status);
-        
         try {
-            // Remove session from active sessions
-            sessions.remove(session.getId());
+            heartbeatMonitor.unregister(session.getId());
+            abortUpload(session);
             
-            // Get username associated with this session
-            String username = sessionNames.get(session.getId());
-            sessionNames.remove(session.getId());
+            // Remove session from active sessions; an evicted session was already handled
+            if (sessions.remove(session.getId()) == null) {
+                return;
+            }
             
             // Only broadcast leave message if username was registered
-            if (username != null) {
-                // Create a leave message directly without using MessageUtils
-                String leaveMessage = username + " has left the chat";
-                ChatMessage chatLeaveMessage = ChatMessage.createLeaveMessage(username, leaveMessage);
-                
-                // Save the leave message to the database
-                chatMessageService.saveMessage(chatLeaveMessage);
-                
-                // Broadcast the leave message
-                broadcastMessage(chatLeaveMessage);
+            PresenceRoster.Registration registration = presenceRoster.unregister(session.getId());
+            if (registration != null) {
+                // The session is already forgotten everywhere, so a failing announcement cannot leak it
+                try {
+                    announceDeparture(registration);
+                } catch (Exception e) {
+                    logger.error("Error announcing departure of {}: {}", registration.name(), e.getMessage(), e);
+                }
+            }
+            
+            if (logger.isInfoEnabled() && connectionLogSampler.shouldLog()) {
+                logger.info("WebSocket connection closed: {} with status: {} ({} active, {} connection events suppressed)",
+                        session.getId(), status, sessions.size(), connectionLogSampler.takeSuppressed());
             }
             
             // Update user count
-            logger.info("Total active connections: {}", sessions.size());
             broadcastUserCount();
         } catch (Exception e) {
             logger.error("Error handling connection closure: {}", e.getMessage(), e);
         }
     }
 
+    /**
+     * Announces that a registered session is gone: leave message, presence delta and end of typing
+     */
+    private void announceDeparture(PresenceRoster.Registration registration) throws IOException {
+        String username = registration.name();
+        typingCoalescer.record(username, false);
+        
+        // Create a leave message directly without using MessageUtils
+        String leaveMessage = username + " has left the chat";
+        
+        // Save the leave message to the database and broadcast it
+        broadcastMessage(persist(ChatEvent.leave(username, leaveMessage)));
+        broadcastPresenceChange(registration);
+    }
+
+    /**
+     * Records the pong answering a heartbeat ping
+     */
+    @Override
+    protected void handlePongMessage(@NonNull WebSocketSession session, @NonNull PongMessage message) {
+        heartbeatMonitor.pongReceived(session.getId());
+    }
+
+    /**
+     * Sends the heartbeat pings that are due and evicts the sessions that stopped answering them
+     */
+    @Scheduled(fixedRateString = "${chat.heartbeat.tick-ms:1000}")
+    public void checkHeartbeats() {
+        List<WebSocketSession> dead = heartbeatMonitor.tick();
+        if (!dead.isEmpty()) {
+            evictDeadSessions(dead);
+        }
+    }
+
+    /**
+     * Removes sessions whose peer is gone, e.g. half-open TCP connections.
+     * They stop receiving broadcasts at once; the departures are announced together, followed by a
+     * single user count update, and the sockets are closed off the scheduler thread since writing
+     * the close frame to a dead peer can block.
+     */
+    void evictDeadSessions(List<WebSocketSession> dead) {
+        List<WebSocketSession> evicted = new ArrayList<>();
+        List<PresenceRoster.Registration> departures = new ArrayList<>();
+        for (WebSocketSession session : dead) {
+            if (sessions.remove(session.getId()) == null) {
+                continue;
+            }
+            evicted.add(session);
+            PresenceRoster.Registration registration = presenceRoster.unregister(session.getId());
+            if (registration != null) {
+                departures.add(registration);
+            }
+        }
+        if (evicted.isEmpty()) {
+            return;
+        }
+        logger.info("Evicted {} WebSocket sessions that stopped answering pings ({} active)", evicted.size(),
+                sessions.size());
+        
+        for (PresenceRoster.Registration registration : departures) {
+            try {
+                announceDeparture(registration);
+            } catch (Exception e) {
+                logger.error("Error announcing departure of {}: {}", registration.name(), e.getMessage(), e);
+            }
+        }
+        broadcastUserCount();
+        
+        Thread.ofVirtual().name("evicted-session-close").start(() -> {
+            for (WebSocketSession session : evicted) {
+                try {
+                    session.close(CloseStatus.SESSION_NOT_RELIABLE);
+                } catch (IOException e) {
+                    logger.debug("Error closing evicted session {}: {}", session.getId(), e.getMessage());
+                }
+            }
+        });
+    }
+
     /**
      * Handles incoming text messages
      */
     @Override
     protected void handleTextMessage(@NonNull WebSocketSession session, @NonNull TextMessage message) {
+        FlightEvents.Handle flightEvent = new FlightEvents.Handle();
+        flightEvent.begin();
+        flightEvent.sessionId = session.getId();
         try {
-            String payload = message.getPayload();
-            logger.debug("Received message from session {}: {}", session.getId(), payload);
+            // A client may fragment even a short text message, so its parts are joined first
+            String payload = joinTextParts(session, message);
+            if (payload == null) {
+                return;
+            }
+            flightEvent.payloadSize = payload.length();
+            if (logger.isDebugEnabled() && messageLogSampler.shouldLog()) {
+                logger.debug("Received message from session {}: {} ({} messages suppressed)", session.getId(),
+                        LazyPayload.of(payload), messageLogSampler.takeSuppressed());
+            }
+            
+            ChatCommand command = objectMapper.readValue(payload, ChatCommand.class);
+            flightEvent.messageType = nameOf(command.type());
             
-            ChatMessage chatMessage = objectMapper.readValue(payload, ChatMessage.class);
+            // A client that detected a gap in the delta versions asks for the full roster again
+            if (command.type() == ChatMessage.MessageType.PRESENCE_SYNC) {
+                sendRoster(outbound(session));
+                return;
+            }
+            if (command.type() == ChatMessage.MessageType.PRIVATE_HISTORY) {
+                sendPrivateHistory(session, command.recipient());
+                return;
+            }
+            // Typing events are ephemeral: not sanitized, not persisted and not broadcast one by one
+            if (command.type() == ChatMessage.MessageType.TYPING) {
+                recordTyping(session, !Boolean.FALSE.equals(command.typing()));
+                return;
+            }
+            // Typing state is only ever sent by the server
+            if (command.type() == ChatMessage.MessageType.TYPING_STATE) {
+                sendError(session, ErrorFrameCache.ERROR_PROCESSING);
+                return;
+            }
+            if (command.type() == ChatMessage.MessageType.UPLOAD) {
+                beginUpload(session, command);
+                return;
+            }
             
             // Validate and sanitize the message content to prevent XSS attacks
-            if (chatMessage.getMessage() != null) {
+            String text = command.message();
+            if (text != null) {
                 // Check for empty messages - silently ignore them
-                if (chatMessage.getType() == ChatMessage.MessageType.CHAT && 
-                    chatMessage.getMessage().trim().isEmpty()) {
+                if (command.isConversational() && text.trim().isEmpty()) {
                     // Just return without sending any error message
                     return;
                 }
                 
-                String sanitizedMessage = messageValidator.validateAndSanitize(chatMessage.getMessage());
-                if (sanitizedMessage == null) {
+                // Repeats of a recent message are dropped before they are sanitized, persisted or broadcast
+                if (isRepeat(session, command)) {
+                    sendError(session, ErrorFrameCache.ERROR_DUPLICATE);
+                    return;
+                }
+                
+                FlightEvents.Sanitize sanitizeEvent = new FlightEvents.Sanitize();
+                sanitizeEvent.begin();
+                sanitizeEvent.sessionId = session.getId();
+                sanitizeEvent.messageType = flightEvent.messageType;
+                sanitizeEvent.payloadSize = text.length();
+                text = messageValidator.validateAndSanitize(text);
+                sanitizeEvent.commit();
+                if (text == null) {
                     // Message failed validation, send error message back to sender
-                    String errorMessage = messageUtils.getMessage("chat.message.error.xss");
-                    ChatMessage errorChatMessage = ChatMessage.createErrorMessage(errorMessage);
-                    String errorPayload = objectMapper.writeValueAsString(errorChatMessage);
-                    session.sendMessage(new TextMessage(errorPayload));
+                    sendError(session, ErrorFrameCache.ERROR_XSS);
                     return;
                 }
                 
                 // Check if the message would be empty after sanitization
-                if (chatMessage.getType() == ChatMessage.MessageType.CHAT && 
-                    sanitizedMessage.trim().isEmpty()) {
+                if (command.isConversational() && text.trim().isEmpty()) {
                     // Message would be empty after sanitization
-                    String errorMessage = messageUtils.getMessage("chat.message.error.empty.after.sanitization");
-                    ChatMessage errorChatMessage = ChatMessage.createErrorMessage(errorMessage);
-                    String errorPayload = objectMapper.writeValueAsString(errorChatMessage);
-                    session.sendMessage(new TextMessage(errorPayload));
+                    sendError(session, ErrorFrameCache.ERROR_EMPTY_AFTER_SANITIZATION);
                     return;
                 }
-                
-                // Set the sanitized message
-                chatMessage.setMessage(sanitizedMessage);
             }
             
             // Sanitize the username as well
-            if (chatMessage.getName() != null) {
-                String sanitizedName = messageValidator.sanitize(chatMessage.getName());
-                chatMessage.setName(sanitizedName);
+            String name = command.name() != null ? messageValidator.sanitize(command.name()) : null;
+            
+            // Private messages go to the sessions of sender and recipient only
+            if (command.type() == ChatMessage.MessageType.PRIVATE) {
+                sendPrivateMessage(session, command.recipient(), text);
+                return;
+            }
+            
+            // A claimed name is only used by the client holding its token
+            if (!presenceRoster.isRegistered(session.getId()) && !claimName(session, name, command.token())) {
+                sendError(session, ErrorFrameCache.ERROR_NAME_TAKEN);
+                return;
             }
             
             // Register username if not registered
-            if (!sessionNames.containsKey(session.getId())) {
-                sessionNames.put(session.getId(), chatMessage.getName());
+            PresenceRoster.Registration registration = presenceRoster.register(session.getId(), name);
+            if (registration != null) {
+                // A JOIN is stored as sent; any other first message is replaced by a welcome message
+                ChatEvent join = command.type() == ChatMessage.MessageType.JOIN
+                        ? ChatEvent.join(name, text)
+                        : ChatEvent.join(name, name + " has joined the chat");
+                broadcastMessage(persist(join));
                 
-                // Only create a join message if the incoming message is not already a JOIN message
-                if (chatMessage.getType() != ChatMessage.MessageType.JOIN) {
-                    // Send welcome message to the new user
-                    String joinMessage = chatMessage.getName() + " has joined the chat";
-                    ChatMessage chatJoinMessage = ChatMessage.createJoinMessage(chatMessage.getName(), joinMessage);
-                    
-                    // Save the join message to the database
-                    chatMessageService.saveMessage(chatJoinMessage);
-                    
-                    broadcastMessage(chatJoinMessage);
-                } else {
-                    // If it's already a JOIN message, just save it and broadcast it
-                    chatMessageService.saveMessage(chatMessage);
-                    broadcastMessage(chatMessage);
-                }
+                broadcastPresenceChange(registration);
                 
                 // Send updated user count to all clients
                 broadcastUserCount();
                 return; // Return early to avoid broadcasting the original message again
             }
             
-            // Broadcast the original message
-            if (chatMessage.getType() == null) {
-                chatMessage.setType(ChatMessage.MessageType.CHAT);
-            }
+            // Like private messages, the sender is who the session registered as, not the name in the payload
+            ChatEvent event = ChatEvent.of(command.effectiveType(), presenceRoster.getName(session.getId()), text);
             
             // Only persist actual chat messages, not system messages like USER_COUNT
-            if (chatMessage.getType() == ChatMessage.MessageType.CHAT) {
+            if (event.type() == ChatMessage.MessageType.CHAT) {
+                // Sending a message ends typing without waiting for the client's stop event
+                recordTyping(session, false);
+                
                 // Save the chat message to the database
-                chatMessageService.saveMessage(chatMessage);
+                event = persist(event);
             }
             
-            broadcastMessage(chatMessage);
+            broadcastMessage(event);
             
         } catch (Exception e) {
             logger.error("Error handling message: {}", e.getMessage(), e);
             try {
-                String errorMessage = "Error processing message";
-                ChatMessage errorChatMessage = ChatMessage.createErrorMessage(errorMessage);
-                String errorPayload = objectMapper.writeValueAsString(errorChatMessage);
-                session.sendMessage(new TextMessage(errorPayload));
+                sendError(session, ErrorFrameCache.ERROR_PROCESSING);
             } catch (IOException ex) {
                 logger.error("Error sending error message: {}", ex.getMessage(), ex);
             }
+        } finally {
+            flightEvent.commit();
         }
     }
 
     /**
-     * Broadcasts a message to all connected clients
+     * Starts receiving the file an UPLOAD command announces; a file the session was still sending is discarded
      */
-    private void broadcastMessage(ChatMessage message) throws IOException {
-        String serializedMessage = objectMapper.writeValueAsString(message);
-        TextMessage textMessage = new TextMessage(serializedMessage);
+    private void beginUpload(WebSocketSession session, ChatCommand command) throws IOException {
+        abortUpload(session);
+        String sender = presenceRoster.getName(session.getId());
+        if (sender == null) {
+            sendError(session, ErrorFrameCache.ERROR_PROCESSING);
+            return;
+        }
+        if (command.size() < 1 || command.size() > blobStore.getMaxSize()) {
+            sendError(session, ErrorFrameCache.ERROR_FILE_TOO_LARGE);
+            return;
+        }
+        session.getAttributes().put(UPLOAD_ATTRIBUTE,
+                new PendingUpload(sender, fileName(command.message()), blobStore.begin(command.size())));
+    }
+
+    /**
+     * Writes a chunk of the file being uploaded. When its last byte has arrived the file is stored
+     * and shared as a chat message carrying its blob id.
+     */
+    @Override
+    protected void handleBinaryMessage(@NonNull WebSocketSession session, @NonNull BinaryMessage message) {
+        PendingUpload pending = (PendingUpload) session.getAttributes().get(UPLOAD_ATTRIBUTE);
+        try {
+            if (pending == null) {
+                sendError(session, ErrorFrameCache.ERROR_FILE_UPLOAD);
+                return;
+            }
+            pending.upload().write(message.getPayload());
+            if (pending.upload().isComplete()) {
+                session.getAttributes().remove(UPLOAD_ATTRIBUTE);
+                String blobId = pending.upload().finish();
+                broadcastMessage(persist(ChatEvent.file(pending.sender(), pending.fileName(), blobId)));
+            }
+        } catch (Exception e) {
+            logger.warn("Upload from session {} failed: {}", session.getId(), e.getMessage());
+            abortUpload(session);
+            try {
+                sendError(session, ErrorFrameCache.ERROR_FILE_UPLOAD);
+            } catch (IOException ex) {
+                logger.error("Error sending error message: {}", ex.getMessage(), ex);
+            }
+        }
+    }
+
+    /**
+     * Adds a part of a text message to those the session sent before it
+     *
+     * @return The whole message once its last part has arrived, otherwise null. The session is
+     *         closed when the message grows longer than the maximum text message size.
+     */
+    private String joinTextParts(WebSocketSession session, TextMessage part) throws IOException {
+        StringBuilder parts = (StringBuilder) session.getAttributes().get(TEXT_PARTS_ATTRIBUTE);
+        if (parts == null && part.isLast()) {
+            return part.getPayload();
+        }
+        if (parts == null) {
+            parts = new StringBuilder();
+            session.getAttributes().put(TEXT_PARTS_ATTRIBUTE, parts);
+        }
+        if (parts.length() + part.getPayload().length() > maxTextMessageSize) {
+            session.getAttributes().remove(TEXT_PARTS_ATTRIBUTE);
+            session.close(CloseStatus.TOO_BIG_TO_PROCESS);
+            return null;
+        }
+        parts.append(part.getPayload());
+        if (!part.isLast()) {
+            return null;
+        }
+        session.getAttributes().remove(TEXT_PARTS_ATTRIBUTE);
+        return parts.toString();
+    }
+
+    /**
+     * Discards the unfinished upload of a session, if any
+     */
+    private void abortUpload(WebSocketSession session) {
+        PendingUpload pending = (PendingUpload) session.getAttributes().remove(UPLOAD_ATTRIBUTE);
+        if (pending != null) {
+            pending.upload().abort();
+        }
+    }
+
+    /**
+     * Returns the displayable name of an uploaded file: its last path element, shortened and sanitized
+     */
+    private String fileName(String requested) {
+        String name = requested != null ? requested.strip() : "";
+        name = name.substring(Math.max(name.lastIndexOf('/'), name.lastIndexOf('\\')) + 1);
+        if (name.length() > MAX_FILE_NAME_LENGTH) {
+            name = name.substring(name.length() - MAX_FILE_NAME_LENGTH);
+        }
+        name = messageValidator.sanitize(name);
+        return name.isBlank() ? "file" : name;
+    }
+
+    /**
+     * Saves a message and counts it in the statistics
+     *
+     * @return The saved message, carrying its id
+     */
+    private ChatEvent persist(ChatEvent event) {
+        FlightEvents.Persist flightEvent = new FlightEvents.Persist();
+        flightEvent.begin();
+        flightEvent.messageType = nameOf(event.type());
+        flightEvent.payloadSize = event.message() != null ? event.message().length() : 0;
+        ChatEvent saved = chatMessageService.saveMessage(event);
+        flightEvent.commit();
+        chatStatistics.record(saved.type(), saved.name());
+        return saved;
+    }
+
+    /**
+     * Checks that the session may use a name, and hands the token of a name claimed just now to
+     * the session. Private messages and conversations follow the name, so they only reach the
+     * client that holds its token.
+     */
+    private boolean claimName(WebSocketSession session, String name, String token) throws IOException {
+        if (name == null) {
+            return true;
+        }
+        NameClaimService.Claim claim = nameClaimService.claim(name, token);
+        if (claim.issuedToken() != null) {
+            outbound(session).sendMessage(
+                    new TextMessage(objectMapper.writeValueAsString(new IdentityMessage(name, claim.issuedToken()))));
+        }
+        return claim.granted();
+    }
+
+    /**
+     * Returns true if a registered user sends the same text to the same audience again within the
+     * duplicate window. The sender is the name the session registered with, so changing the name in
+     * the payload does not get a repeat through.
+     */
+    private boolean isRepeat(WebSocketSession session, ChatCommand command) {
+        if (!command.isConversational()) {
+            return false;
+        }
+        String sender = presenceRoster.getName(session.getId());
+        return sender != null && duplicateMessageFilter.isRepeat(sender,
+                command.type() == ChatMessage.MessageType.PRIVATE ? command.recipient() : null, command.message());
+    }
+
+    /**
+     * Stores a private message and delivers it to every session of the recipient and of the sender,
+     * so the sender's other tabs see it too. The sender is the name the session registered with,
+     * never the name in the payload. The sessions are found through the roster's name index, so
+     * delivery only touches the participants' sessions.
+     */
+    private void sendPrivateMessage(WebSocketSession session, String requestedRecipient, String text) throws IOException {
+        if (text == null) {
+            return;
+        }
+        String sender = presenceRoster.getName(session.getId());
+        if (sender == null) {
+            sendError(session, ErrorFrameCache.ERROR_PROCESSING);
+            return;
+        }
+        String recipient = requestedRecipient != null ? messageValidator.sanitize(requestedRecipient) : "";
+        List<String> recipientSessions = presenceRoster.getSessionIds(recipient);
+        if (recipientSessions.isEmpty()) {
+            sendError(session, ErrorFrameCache.ERROR_RECIPIENT_OFFLINE);
+            return;
+        }
         
-        for (WebSocketSession session : sessions.values()) {
-            if (session.isOpen()) {
+        PrivateEvent privateMessage = privateMessageService.saveMessage(PrivateEvent.of(sender, recipient, text));
+        chatStatistics.record(ChatMessage.MessageType.PRIVATE, sender);
+        TextMessage frame = new TextMessage(objectMapper.writeValueAsString(privateMessage));
+        sendTo(recipientSessions, frame);
+        if (!recipient.equals(sender)) {
+            sendTo(presenceRoster.getSessionIds(sender), frame);
+        }
+    }
+
+    /**
+     * Sends the recent private conversation between the session's user and another user
+     */
+    private void sendPrivateHistory(WebSocketSession session, String recipient) throws IOException {
+        String name = presenceRoster.getName(session.getId());
+        if (name == null || recipient == null) {
+            return;
+        }
+        String sanitizedRecipient = messageValidator.sanitize(recipient);
+        PrivateHistoryMessage history = PrivateHistoryMessage.create(sanitizedRecipient,
+                privateMessageService.getConversation(name, sanitizedRecipient));
+        outbound(session).sendMessage(new TextMessage(objectMapper.writeValueAsString(history)));
+    }
+
+    /**
+     * Sends a frame to the given sessions; a session that cannot take it, e.g. a slow one over its
+     * send limits, does not keep the frame from the others
+     */
+    private void sendTo(List<String> sessionIds, TextMessage frame) {
+        for (String sessionId : sessionIds) {
+            WebSocketSession session = sessions.get(sessionId);
+            if (session != null && session.isOpen()) {
                 try {
-                    session.sendMessage(textMessage);
-                } catch (IOException e) {
-                    logger.error("Error sending message to session {}: {}", 
-                            session.getId(), e.getMessage(), e);
+                    session.sendMessage(frame);
+                } catch (IOException | SessionLimitExceededException e) {
+                    if (sendErrorLogSampler.shouldLog()) {
+                        logger.error("Error sending message to session {}: {} ({} send errors suppressed)",
+                                sessionId, e.getMessage(), sendErrorLogSampler.takeSuppressed(), e);
+                    }
                 }
             }
         }
     }
 
+    /**
+     * Sends the pre-rendered error frame for a message code in the session's locale
+     */
+    private void sendError(WebSocketSession session, String code) throws IOException {
+        Locale locale = (Locale) session.getAttributes().get(LocaleHandshakeInterceptor.LOCALE_ATTRIBUTE);
+        outbound(session).sendMessage(errorFrameCache.getFrame(locale, code));
+    }
+
+    /**
+     * Broadcasts a message to all connected clients
+     */
+    private void broadcastMessage(Object message) throws IOException {
+        FlightEvents.Broadcast flightEvent = new FlightEvents.Broadcast();
+        flightEvent.begin();
+        String serializedMessage = objectMapper.writeValueAsString(message);
+        broadcast(new TextMessage(serializedMessage));
+        flightEvent.end();
+        // The fields are only filled in for a broadcast slow enough to be recorded
+        if (flightEvent.shouldCommit()) {
+            flightEvent.messageType = nameOf(typeOf(message));
+            flightEvent.payloadSize = serializedMessage.length();
+            flightEvent.recipients = sessions.size();
+            flightEvent.commit();
+        }
+    }
+
+    /**
+     * Returns the type of a message being broadcast, or null for a frame without one
+     */
+    private static ChatMessage.MessageType typeOf(Object message) {
+        if (message instanceof ChatEvent event) {
+            return event.type();
+        }
+        if (message instanceof PresenceMessage presence) {
+            return presence.getType();
+        }
+        if (message instanceof TypingMessage typing) {
+            return typing.getType();
+        }
+        return null;
+    }
+
+    private static String nameOf(ChatMessage.MessageType type) {
+        return type != null ? type.name() : null;
+    }
+
+    /**
+     * Sends an already serialized frame to all connected clients
+     */
+    private void broadcast(TextMessage textMessage) {
+        sessions.broadcast(textMessage);
+    }
+
+    /**
+     * Returns the decorated session to send to, or the session itself if it is no longer connected
+     */
+    private WebSocketSession outbound(WebSocketSession session) {
+        WebSocketSession outbound = sessions.get(session.getId());
+        return outbound != null ? outbound : session;
+    }
+
     /**
      * Handles WebSocket transport errors
      */
@@ -232,21 +690,105 @@ public class ChatMessageHandler extends TextWebSocketHandler {
     }
 
     /**
-     * Returns the current number of active sessions
+     * Broadcasts the roster delta of a registration change, if it produced one
+     */
+    private void broadcastPresenceChange(PresenceRoster.Registration registration) {
+        if (registration == null || registration.delta() == null) {
+            return;
+        }
+        try {
+            broadcastMessage(registration.delta());
+        } catch (Exception e) {
+            logger.error("Error broadcasting presence change: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Sends the full presence roster to a single session.
+     * The serialized frame is reused until the roster version changes.
+     */
+    private void sendRoster(WebSocketSession session) {
+        try {
+            RosterFrame frame = rosterFrame;
+            if (frame.version() != presenceRoster.getVersion()) {
+                PresenceMessage roster = presenceRoster.getRoster();
+                frame = new RosterFrame(roster.getVersion(), new TextMessage(objectMapper.writeValueAsString(roster)));
+                rosterFrame = frame;
+            }
+            session.sendMessage(frame.message());
+        } catch (Exception e) {
+            logger.error("Error sending presence roster to session {}: {}", session.getId(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Records a typing event under the name the session registered with.
+     * Events from sessions that have not joined yet are ignored.
+     */
+    private void recordTyping(WebSocketSession session, boolean typing) {
+        String name = presenceRoster.getName(session.getId());
+        if (name != null) {
+            typingCoalescer.record(name, typing);
+        }
+    }
+
+    /**
+     * Broadcasts the typing changes collected since the last tick as a single frame
      */
+    @Scheduled(fixedRateString = "${chat.typing.interval-ms:300}")
+    public void flushTypingStates() {
+        TypingMessage frame = typingCoalescer.drain();
+        if (frame == null) {
+            return;
+        }
+        try {
+            broadcastMessage(frame);
+        } catch (Exception e) {
+            logger.error("Error broadcasting typing states: {}", e.getMessage(), e);
+        }
+    }
+
     /**
      * Broadcasts the current user count to all connected clients
      */
     private void broadcastUserCount() {
         try {
             int userCount = sessions.size();
-            ChatMessage countMessage = ChatMessage.createUserCountMessage(userCount);
-            broadcastMessage(countMessage);
+            broadcastMessage(ChatEvent.userCount(userCount));
         } catch (Exception e) {
             logger.error("Error broadcasting user count: {}", e.getMessage(), e);
         }
     }
 
+    /**
+     * Returns a snapshot of the active sessions
+     */
+    List<WebSocketSession> getSessionSnapshot() {
+        return sessions.snapshot();
+    }
+
+    /**
+     * Detaches a session that is about to be closed for a server shutdown.
+     * Its user did not leave the chat and will reconnect, so no leave message is persisted or
+     * broadcast; the session just stops receiving broadcasts.
+     *
+     * @return false if the session was already gone
+     */
+    boolean detachForShutdown(WebSocketSession session) {
+        if (sessions.remove(session.getId()) == null) {
+            return false;
+        }
+        heartbeatMonitor.unregister(session.getId());
+        PresenceRoster.Registration registration = presenceRoster.unregister(session.getId());
+        if (registration != null) {
+            typingCoalescer.record(registration.name(), false);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the current number of active sessions
+     */
     public int getActiveSessionCount() {
         return sessions.size();
     }
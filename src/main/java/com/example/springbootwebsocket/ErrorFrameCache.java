@@ -0,0 +1,124 @@
+package com.example.springbootwebsocket;
+
+import com.example.springbootwebsocket.config.ReloadableMessageSource;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.MessageSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.TextMessage;
+
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serialized error frames for every supported locale and error message code.
+ *
+ * The frames are rendered once, so an error reply costs a map lookup instead of a message
+ * source lookup (with its file timestamp check) and a serialization. They carry no timestamp,
+ * which the client then leaves out. The cache is only rebuilt when the message bundles were
+ * reloaded; a scheduled check does the lookup that lets the message source notice a change.
+ */
+@Component
+public class ErrorFrameCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ErrorFrameCache.class);
+
+    public static final String ERROR_PROCESSING = "chat.message.error.processing";
+    public static final String ERROR_XSS = "chat.message.error.xss";
+    public static final String ERROR_EMPTY_AFTER_SANITIZATION = "chat.message.error.empty.after.sanitization";
+    public static final String ERROR_RECIPIENT_OFFLINE = "chat.message.error.recipient.offline";
+    public static final String ERROR_DUPLICATE = "chat.message.error.duplicate";
+    public static final String ERROR_FILE_TOO_LARGE = "chat.file.error.too.large";
+    public static final String ERROR_FILE_UPLOAD = "chat.file.error.upload";
+    public static final String ERROR_NAME_TAKEN = "chat.name.error.taken";
+
+    private static final List<String> ERROR_CODES = List.of(ERROR_PROCESSING, ERROR_XSS, ERROR_EMPTY_AFTER_SANITIZATION,
+            ERROR_RECIPIENT_OFFLINE, ERROR_DUPLICATE, ERROR_FILE_TOO_LARGE, ERROR_FILE_UPLOAD,
+            ERROR_NAME_TAKEN);
+
+    private final MessageSource messageSource;
+    private final ObjectMapper objectMapper;
+    private final List<Locale> supportedLocales;
+    private final Map<FrameKey, TextMessage> frames = new ConcurrentHashMap<>();
+    private volatile long generation;
+
+    private record FrameKey(Locale locale, String code) {
+    }
+
+    @Autowired
+    public ErrorFrameCache(MessageSource messageSource, ObjectMapper objectMapper,
+            @Value("${chat.i18n.locales:en,ca}") List<Locale> supportedLocales) {
+        this.messageSource = messageSource;
+        this.objectMapper = objectMapper;
+        this.supportedLocales = List.copyOf(supportedLocales);
+        renderAll();
+        this.generation = currentGeneration();
+    }
+
+    /**
+     * Returns the supported locales; the first one is the default
+     */
+    public List<Locale> getSupportedLocales() {
+        return supportedLocales;
+    }
+
+    /**
+     * Get the serialized error frame for a message code
+     *
+     * @param locale The session's locale, one of the supported locales
+     * @param code   The error message code
+     * @return The frame, ready to send
+     */
+    public TextMessage getFrame(Locale locale, String code) {
+        FrameKey key = new FrameKey(locale != null ? locale : supportedLocales.get(0), code);
+        TextMessage frame = frames.get(key);
+        return frame != null ? frame : frames.computeIfAbsent(key, this::render);
+    }
+
+    /**
+     * Rebuilds the frames if the message bundles were reloaded since they were rendered
+     */
+    @Scheduled(fixedDelayString = "${chat.i18n.reload-check-ms:10000}")
+    public void checkForReload() {
+        // A lookup lets the message source compare the bundle timestamps
+        for (Locale locale : supportedLocales) {
+            messageSource.getMessage(ERROR_PROCESSING, null, ERROR_PROCESSING, locale);
+        }
+        long current = currentGeneration();
+        if (current != generation) {
+            generation = current;
+            frames.clear();
+            renderAll();
+            logger.info("Message bundles reloaded, re-rendered {} error frames", frames.size());
+        }
+    }
+
+    private void renderAll() {
+        for (Locale locale : supportedLocales) {
+            for (String code : ERROR_CODES) {
+                getFrame(locale, code);
+            }
+        }
+    }
+
+    private TextMessage render(FrameKey key) {
+        String text = messageSource.getMessage(key.code(), null, key.code(), key.locale());
+        try {
+            return new TextMessage(objectMapper.writeValueAsString(ChatEvent.error(text)));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long currentGeneration() {
+        return messageSource instanceof ReloadableMessageSource reloadable ? reloadable.getGeneration() : 0;
+    }
+}
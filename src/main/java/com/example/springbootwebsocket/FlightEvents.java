@@ -0,0 +1,86 @@
+package com.example.springbootwebsocket;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+import java.util.List;
+
+/**
+ * Java Flight Recorder events for the phases of handling a chat message.
+ *
+ * A slow message can be attributed to its phase: sanitizing its text, storing it, or sending it
+ * to the room. The phases nest inside the handle event of the same thread. Each event type has a
+ * threshold, so only slow phases are recorded by default; a recording may lower it, e.g. to 0 ms
+ * to see every message. The events cost next to nothing while no recording is running.
+ */
+public final class FlightEvents {
+
+    public static final String HANDLE = "chat.Handle";
+    public static final String SANITIZE = "chat.Sanitize";
+    public static final String PERSIST = "chat.Persist";
+    public static final String BROADCAST = "chat.Broadcast";
+
+    /**
+     * The names of all chat event types
+     */
+    public static final List<String> NAMES = List.of(HANDLE, SANITIZE, PERSIST, BROADCAST);
+
+    private FlightEvents() {
+    }
+
+    /**
+     * The fields all phases share
+     */
+    @Category({"Chat"})
+    @StackTrace(false)
+    abstract static class Phase extends Event {
+
+        @Label("Session Id")
+        @Description("The WebSocket session the phase runs for, if any")
+        String sessionId;
+
+        @Label("Message Type")
+        String messageType;
+
+        @Label("Payload Size")
+        @DataAmount
+        int payloadSize;
+    }
+
+    @Name(HANDLE)
+    @Label("Handle Message")
+    @Description("A text frame received from a WebSocket session, from parsing to the last send")
+    @Threshold("20 ms")
+    static final class Handle extends Phase {
+    }
+
+    @Name(SANITIZE)
+    @Label("Sanitize Message")
+    @Description("Validation and sanitization of a message text")
+    @Threshold("5 ms")
+    static final class Sanitize extends Phase {
+    }
+
+    @Name(PERSIST)
+    @Label("Persist Message")
+    @Description("Storing a message in the message store")
+    @Threshold("10 ms")
+    static final class Persist extends Phase {
+    }
+
+    @Name(BROADCAST)
+    @Label("Broadcast Message")
+    @Description("Serializing a message and sending it to every connected session")
+    @Threshold("10 ms")
+    static final class Broadcast extends Phase {
+
+        @Label("Recipients")
+        int recipients;
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.springbootwebsocket;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * The token issued to the session that claimed a name, sent to that session only. The client
+ * keeps it and sends it along whenever it joins with the name again.
+ *
+ * @param name  The claimed name
+ * @param token The token
+ */
+@JsonPropertyOrder({ "type", "name", "token" })
+public record IdentityMessage(String name, String token) {
+
+    public ChatMessage.MessageType getType() {
+        return ChatMessage.MessageType.IDENTITY;
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.springbootwebsocket;
+
+import java.time.Instant;
+
+import org.springframework.data.domain.Persistable;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+
+/**
+ * A user name bound to the client that first used it, as stored in the name_claims table.
+ * Only the hash of the client's token is kept. The claim is held while a session uses the name
+ * and expires a grace period after its last session is gone.
+ */
+@Entity
+@Table(name = "name_claims")
+public class NameClaim implements Persistable<String> {
+
+    @Id
+    private String name;
+
+    @Column(name = "token_hash")
+    private String tokenHash;
+
+    @Column(name = "claimed_at")
+    private String claimedAt;
+
+    // Null while held; otherwise the end of the grace period in epoch milliseconds
+    @Column(name = "expires_at")
+    private Long expiresAt;
+
+    // A claim is always inserted, never merged, so a concurrent claim of the same name fails
+    @Transient
+    private boolean isNew;
+
+    /**
+     * Default constructor for JPA
+     */
+    protected NameClaim() {
+    }
+
+    private NameClaim(String name, String tokenHash) {
+        this.name = name;
+        this.tokenHash = tokenHash;
+        this.claimedAt = Instant.now().toString();
+        this.isNew = true;
+    }
+
+    /**
+     * Create a new claim
+     *
+     * @param name      The claimed name
+     * @param tokenHash The hex SHA-256 hash of the client's token
+     * @return A new NameClaim instance
+     */
+    public static NameClaim create(String name, String tokenHash) {
+        return new NameClaim(name, tokenHash);
+    }
+
+    @Override
+    public String getId() {
+        return name;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getTokenHash() {
+        return tokenHash;
+    }
+
+    public String getClaimedAt() {
+        return claimedAt;
+    }
+
+    public Long getExpiresAt() {
+        return expiresAt;
+    }
+
+    /**
+     * Returns true if the grace period of the claim has ended
+     *
+     * @param now The current time in epoch milliseconds
+     */
+    public boolean isExpired(long now) {
+        return expiresAt != null && expiresAt <= now;
+    }
+}
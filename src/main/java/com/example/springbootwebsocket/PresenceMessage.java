@@ -0,0 +1,83 @@
+package com.example.springbootwebsocket;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Represents an ephemeral presence frame sent over the WebSocket.
+ * Presence frames are never persisted: a client receives the full roster once on connect
+ * and then only compact deltas, each carrying the roster version it produces.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PresenceMessage {
+
+    private final ChatMessage.MessageType type;
+
+    private final long version;
+
+    private final Operation op;
+
+    private final String name;
+
+    private final List<String> users;
+
+    /**
+     * The change described by a delta frame
+     */
+    public enum Operation {
+        ADD,
+        REMOVE
+    }
+
+    private PresenceMessage(ChatMessage.MessageType type, long version, Operation op, String name, List<String> users) {
+        this.type = type;
+        this.version = version;
+        this.op = op;
+        this.name = name;
+        this.users = users;
+    }
+
+    /**
+     * Create a full roster frame
+     *
+     * @param version The roster version the user list corresponds to
+     * @param users   The names of all online users
+     * @return A new PresenceMessage instance
+     */
+    public static PresenceMessage createRoster(long version, List<String> users) {
+        return new PresenceMessage(ChatMessage.MessageType.PRESENCE_ROSTER, version, null, null, users);
+    }
+
+    /**
+     * Create a delta frame for a single user joining or leaving the roster
+     *
+     * @param version The roster version after applying this change
+     * @param op      Whether the user was added or removed
+     * @param name    The user name
+     * @return A new PresenceMessage instance
+     */
+    public static PresenceMessage createDelta(long version, Operation op, String name) {
+        return new PresenceMessage(ChatMessage.MessageType.PRESENCE_DELTA, version, op, name, null);
+    }
+
+    public ChatMessage.MessageType getType() {
+        return type;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Operation getOp() {
+        return op;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<String> getUsers() {
+        return users;
+    }
+}
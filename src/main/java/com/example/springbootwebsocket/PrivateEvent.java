@@ -0,0 +1,47 @@
+package com.example.springbootwebsocket;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import java.time.Instant;
+
+/**
+ * A private message frame sent over the WebSocket to the sessions of its sender and recipient,
+ * alone or as part of a PRIVATE_HISTORY frame.
+ *
+ * Like {@link ChatEvent}, events are immutable and independent of the {@link PrivateMessage}
+ * entity, which only the service layer maps them to and from. Fields holding their default value
+ * are left out of the frame, so an unsaved event has no {@code id}.
+ *
+ * @param id        The id of the stored message, null if it is not persisted
+ * @param type      Always PRIVATE
+ * @param name      The sender's registered name
+ * @param recipient The recipient's name
+ * @param message   The sanitized message text
+ * @param timestamp The ISO-8601 creation time
+ */
+@JsonInclude(JsonInclude.Include.NON_DEFAULT)
+@JsonPropertyOrder({ "id", "type", "name", "recipient", "message", "timestamp" })
+public record PrivateEvent(Long id, ChatMessage.MessageType type, String name, String recipient, String message,
+        String timestamp) {
+
+    /**
+     * Create a private message stamped with the current time
+     *
+     * @param sender    The sender's registered name
+     * @param recipient The recipient's name
+     * @param message   The (sanitized) message text
+     * @return A new, not yet persisted event
+     */
+    public static PrivateEvent of(String sender, String recipient, String message) {
+        return new PrivateEvent(null, ChatMessage.MessageType.PRIVATE, sender, recipient, message,
+                Instant.now().toString());
+    }
+
+    /**
+     * Returns this event with the id it was stored under
+     */
+    public PrivateEvent withId(Long id) {
+        return new PrivateEvent(id, type, name, recipient, message, timestamp);
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.springbootwebsocket;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * Represents the recent history of a private conversation, sent over the WebSocket to one
+ * of its two participants on request.
+ */
+@JsonPropertyOrder({ "type", "recipient", "messages" })
+public class PrivateHistoryMessage {
+
+    private final String recipient;
+
+    private final List<PrivateEvent> messages;
+
+    private PrivateHistoryMessage(String recipient, List<PrivateEvent> messages) {
+        this.recipient = recipient;
+        this.messages = messages;
+    }
+
+    /**
+     * Create a private history frame
+     *
+     * @param recipient The other participant of the conversation
+     * @param messages  The messages, oldest first
+     * @return A new PrivateHistoryMessage instance
+     */
+    public static PrivateHistoryMessage create(String recipient, List<PrivateEvent> messages) {
+        return new PrivateHistoryMessage(recipient, messages);
+    }
+
+    public ChatMessage.MessageType getType() {
+        return ChatMessage.MessageType.PRIVATE_HISTORY;
+    }
+
+    public String getRecipient() {
+        return recipient;
+    }
+
+    public List<PrivateEvent> getMessages() {
+        return messages;
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.springbootwebsocket;
+
+import java.time.Instant;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * Represents a private message between two users.
+ * Private messages are stored apart from the public history and are only ever sent to the
+ * sessions of their sender and recipient. Clients receive them as {@link PrivateEvent} frames.
+ */
+@Entity
+@Table(name = "private_messages")
+public class PrivateMessage {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "sender")
+    private String name;
+
+    private String recipient;
+
+    @Column(name = "conversation_key")
+    private String conversationKey;
+
+    private String message;
+
+    private String timestamp;
+
+    /**
+     * Default constructor for JPA
+     */
+    protected PrivateMessage() {
+    }
+
+    private PrivateMessage(String name, String recipient, String message, String timestamp) {
+        this.name = name;
+        this.recipient = recipient;
+        this.conversationKey = conversationKey(name, recipient);
+        this.message = message;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * Create a private message
+     *
+     * @param sender    The sender's registered name
+     * @param recipient The recipient's name
+     * @param message   The (sanitized) message content
+     * @return A new PrivateMessage instance
+     */
+    public static PrivateMessage create(String sender, String recipient, String message) {
+        return create(sender, recipient, message, Instant.now().toString());
+    }
+
+    /**
+     * Create a private message with the given creation time
+     *
+     * @param sender    The sender's registered name
+     * @param recipient The recipient's name
+     * @param message   The (sanitized) message content
+     * @param timestamp The ISO-8601 creation time
+     * @return A new PrivateMessage instance
+     */
+    public static PrivateMessage create(String sender, String recipient, String message, String timestamp) {
+        return new PrivateMessage(sender, recipient, message, timestamp);
+    }
+
+    /**
+     * Returns the key shared by both directions of the conversation between two users.
+     * The names are ordered and the first one is length-prefixed, so no two pairs share a key
+     * whatever characters the names contain.
+     *
+     * @param first  One user name
+     * @param second The other user name
+     * @return The conversation key
+     */
+    public static String conversationKey(String first, String second) {
+        if (first.compareTo(second) > 0) {
+            return conversationKey(second, first);
+        }
+        return first.length() + ":" + first + second;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    /**
+     * Returns the sender's name
+     */
+    public String getName() {
+        return name;
+    }
+
+    public String getRecipient() {
+        return recipient;
+    }
+
+    public String getConversationKey() {
+        return conversationKey;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public String getTimestamp() {
+        return timestamp;
+    }
+}
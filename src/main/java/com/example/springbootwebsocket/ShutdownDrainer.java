@@ -0,0 +1,221 @@
+package com.example.springbootwebsocket;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.random.RandomGenerator;
+
+/**
+ * Drains the WebSocket sessions when the application shuts down.
+ *
+ * Dropping every socket at once makes all clients reconnect at the same moment, each with a
+ * JOIN insert and a history fetch. Instead, new handshakes are refused, pending typing states
+ * are flushed, and the sessions are closed in waves with {@link #RESTART_CLOSE_CODE} and a
+ * randomized {@code retry-after=<milliseconds>} reason that chat.js waits for before it
+ * reconnects. The drain is bounded by {@code chat.shutdown.drain-timeout-ms}; sessions still
+ * open at the deadline are closed together.
+ *
+ * Runs in the default (last started, first stopped) lifecycle phase, so it is done before the
+ * web server's graceful shutdown starts waiting for the remaining requests.
+ */
+@Component
+public class ShutdownDrainer implements SmartLifecycle, HandshakeInterceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShutdownDrainer.class);
+
+    // Application close code (4000-4999) telling the client the server is restarting
+    public static final int RESTART_CLOSE_CODE = 4000;
+
+    private final ChatMessageHandler chatMessageHandler;
+    private final Duration drainTimeout;
+    private final int waves;
+    private final Duration waveInterval;
+    private final Duration reconnectSpread;
+    private final RandomGenerator random;
+    private volatile boolean running;
+    private volatile boolean draining;
+
+    @Autowired
+    public ShutdownDrainer(ChatMessageHandler chatMessageHandler,
+            @Value("${chat.shutdown.drain-timeout-ms:10000}") long drainTimeoutMillis,
+            @Value("${chat.shutdown.waves:10}") int waves,
+            @Value("${chat.shutdown.wave-interval-ms:500}") long waveIntervalMillis,
+            @Value("${chat.shutdown.reconnect-spread-ms:10000}") long reconnectSpreadMillis) {
+        this(chatMessageHandler, Duration.ofMillis(drainTimeoutMillis), waves, Duration.ofMillis(waveIntervalMillis),
+                Duration.ofMillis(reconnectSpreadMillis), RandomGenerator.getDefault());
+    }
+
+    ShutdownDrainer(ChatMessageHandler chatMessageHandler, Duration drainTimeout, int waves, Duration waveInterval,
+            Duration reconnectSpread, RandomGenerator random) {
+        this.chatMessageHandler = chatMessageHandler;
+        this.drainTimeout = drainTimeout;
+        this.waves = Math.max(1, waves);
+        this.waveInterval = waveInterval;
+        this.reconnectSpread = reconnectSpread;
+        this.random = random;
+    }
+
+    @Override
+    public void start() {
+        draining = false;
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        draining = true;
+        try {
+            drain();
+        } finally {
+            running = false;
+        }
+    }
+
+    @Override
+    public void stop(@NonNull Runnable callback) {
+        draining = true;
+        Thread.ofVirtual().name("websocket-drain").start(() -> {
+            try {
+                drain();
+            } catch (RuntimeException e) {
+                logger.error("Error draining WebSocket sessions: {}", e.getMessage(), e);
+            } finally {
+                running = false;
+                callback.run();
+            }
+        });
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Refuses new WebSocket sessions while draining
+     */
+    @Override
+    public boolean beforeHandshake(@NonNull ServerHttpRequest request, @NonNull ServerHttpResponse response,
+            @NonNull WebSocketHandler wsHandler, @NonNull Map<String, Object> attributes) {
+        if (!draining) {
+            return true;
+        }
+        response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, reconnectSpread.toSeconds())));
+        return false;
+    }
+
+    @Override
+    public void afterHandshake(@NonNull ServerHttpRequest request, @NonNull ServerHttpResponse response,
+            @NonNull WebSocketHandler wsHandler, Exception exception) {
+    }
+
+    /**
+     * Returns true once the shutdown drain has started
+     */
+    public boolean isDraining() {
+        return draining;
+    }
+
+    /**
+     * Closes all sessions in waves, returning when they are closed or the drain timeout has passed
+     */
+    void drain() {
+        long deadline = System.nanoTime() + drainTimeout.toNanos();
+
+        // Whatever is still coalesced reaches the clients before their sockets close
+        chatMessageHandler.flushTypingStates();
+
+        List<WebSocketSession> sessions = chatMessageHandler.getSessionSnapshot();
+        if (sessions.isEmpty()) {
+            return;
+        }
+        Collections.shuffle(sessions, random);
+        int waveSize = (sessions.size() + waves - 1) / waves;
+        logger.info("Draining {} WebSocket sessions in waves of {}", sessions.size(), waveSize);
+
+        // Writing a close frame to a slow peer blocks, so every close gets its own virtual thread
+        ExecutorService closer = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            int next = 0;
+            while (next < sessions.size()) {
+                if (next > 0 && (!pauseBetweenWaves(deadline) || System.nanoTime() - deadline >= 0)) {
+                    waveSize = sessions.size() - next;
+                }
+                int end = Math.min(sessions.size(), next + waveSize);
+                for (WebSocketSession session : sessions.subList(next, end)) {
+                    if (chatMessageHandler.detachForShutdown(session)) {
+                        CloseStatus status = new CloseStatus(RESTART_CLOSE_CODE,
+                                "retry-after=" + random.nextLong(reconnectSpread.toMillis() + 1));
+                        closer.execute(() -> close(session, status));
+                    }
+                }
+                next = end;
+            }
+        } finally {
+            closer.shutdown();
+            awaitCloses(closer, deadline);
+        }
+    }
+
+    /**
+     * Waits for the next wave
+     *
+     * @return false if the deadline has passed, in which case all remaining sessions go at once
+     */
+    private boolean pauseBetweenWaves(long deadline) {
+        long pause = Math.min(waveInterval.toNanos(), deadline - System.nanoTime());
+        if (pause <= 0) {
+            return false;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(pause);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void awaitCloses(ExecutorService closer, long deadline) {
+        try {
+            if (!closer.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                logger.warn("Drain timeout of {} ms reached with WebSocket sessions still closing",
+                        drainTimeout.toMillis());
+                closer.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            closer.shutdownNow();
+        }
+    }
+
+    private static void close(WebSocketSession session, CloseStatus status) {
+        try {
+            session.close(status);
+        } catch (IOException e) {
+            logger.debug("Error closing session {} for shutdown: {}", session.getId(), e.getMessage());
+        }
+    }
+}
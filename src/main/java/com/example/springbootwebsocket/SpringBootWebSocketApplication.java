@@ -2,12 +2,14 @@ package com.example.springbootwebsocket;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Main application class for Spring Boot WebSocket Chat demo
  * This application demonstrates real-time communication using WebSockets
  */
 @SpringBootApplication
+@EnableScheduling
 public class SpringBootWebSocketApplication {
 
 	public static void main(String[] args) {
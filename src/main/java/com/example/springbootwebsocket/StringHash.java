@@ -0,0 +1,34 @@
+package com.example.springbootwebsocket;
+
+/**
+ * 64-bit string hash shared by the probabilistic structures, e.g. the HyperLogLog sketches of the
+ * statistics and the Bloom filters of the duplicate filter.
+ */
+public final class StringHash {
+
+    /**
+     * The FNV-1a offset basis, the usual start value
+     */
+    public static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    private StringHash() {
+    }
+
+    /**
+     * 64-bit FNV-1a from the given offset, with a final avalanche, so every bit of the hash
+     * depends on the whole value. Different offsets give independent hashes of the same value.
+     */
+    public static long fnv1a(String value, long offset) {
+        long hash = offset;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.springbootwebsocket;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * Represents an ephemeral typing state frame sent over the WebSocket.
+ * Typing frames are never persisted: the server collects the typing changes of all users
+ * and broadcasts them together, at most once per tick.
+ */
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+@JsonPropertyOrder({ "type", "typing", "stopped" })
+public class TypingMessage {
+
+    private final List<String> typing;
+
+    private final List<String> stopped;
+
+    private TypingMessage(List<String> typing, List<String> stopped) {
+        this.typing = typing;
+        this.stopped = stopped;
+    }
+
+    /**
+     * Create a typing state frame
+     *
+     * @param typing  The users who started typing
+     * @param stopped The users who stopped typing
+     * @return A new TypingMessage instance
+     */
+    public static TypingMessage createState(List<String> typing, List<String> stopped) {
+        return new TypingMessage(typing, stopped);
+    }
+
+    public ChatMessage.MessageType getType() {
+        return ChatMessage.MessageType.TYPING_STATE;
+    }
+
+    public List<String> getTyping() {
+        return typing;
+    }
+
+    public List<String> getStopped() {
+        return stopped;
+    }
+}
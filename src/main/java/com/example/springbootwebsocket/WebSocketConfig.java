@@ -12,6 +12,8 @@ import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry
 import org.springframework.web.socket.server.standard.ServletServerContainerFactoryBean;
 import org.springframework.beans.factory.annotation.Value;
 
+import com.example.springbootwebsocket.config.LocaleHandshakeInterceptor;
+
 /**
  * Configuration class for WebSocket endpoints and settings
  */
@@ -22,6 +24,8 @@ import org.springframework.beans.factory.annotation.Value;
 public class WebSocketConfig implements WebSocketConfigurer {
 
     private final ChatMessageHandler chatMessageHandler;
+    private final LocaleHandshakeInterceptor localeHandshakeInterceptor;
+    private final ShutdownDrainer shutdownDrainer;
     
     @Value("${websocket.endpoint:/chat}")
     private String endpoint;
@@ -38,8 +42,11 @@ public class WebSocketConfig implements WebSocketConfigurer {
     @Value("${websocket.max-session-idle-timeout:600000}")
     private Long maxSessionIdleTimeout;
 
-    public WebSocketConfig(ChatMessageHandler chatMessageHandler) {
+    public WebSocketConfig(ChatMessageHandler chatMessageHandler, LocaleHandshakeInterceptor localeHandshakeInterceptor,
+            ShutdownDrainer shutdownDrainer) {
         this.chatMessageHandler = chatMessageHandler;
+        this.localeHandshakeInterceptor = localeHandshakeInterceptor;
+        this.shutdownDrainer = shutdownDrainer;
     }
 
     /**
@@ -48,6 +55,8 @@ public class WebSocketConfig implements WebSocketConfigurer {
     @Override
     public void registerWebSocketHandlers(@NonNull WebSocketHandlerRegistry registry) {
         registry.addHandler(chatMessageHandler, endpoint)
+                .addInterceptors(shutdownDrainer, // Refuses new sessions while shutting down
+                        localeHandshakeInterceptor) // Captures the client's locale for the session
                 .setAllowedOrigins(allowedOrigins); // For development - restrict in production
     }
     
@@ -0,0 +1,73 @@
+package com.example.springbootwebsocket.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+
+/**
+ * Separate connection pools for the write path and the history reads
+ *
+ * With a single pool, a flood of history fetches (e.g. every client reconnecting after a
+ * restart) could hold all connections while message inserts queued behind them. Each path now
+ * has its own Hikari pool with its own size and connection timeout, so a read flood only waits
+ * on the read pool. Read-only transactions get their connection from the read pool and all
+ * others from the write pool; the choice is made when the first statement runs, after the
+ * transaction has marked the connection read-only.
+ *
+ * Both pools are built from the spring.datasource properties. Their metrics, such as the
+ * connection wait time (hikaricp.connections.acquire) and timeouts (hikaricp.connections.timeout),
+ * are tagged with the pool name, chat-write or chat-read.
+ */
+@Configuration(proxyBeanMethods = false)
+public class DataSourceConfig {
+
+    public static final String WRITE_POOL_NAME = "chat-write";
+    public static final String READ_POOL_NAME = "chat-read";
+
+    @Bean(destroyMethod = "close")
+    public HikariDataSource writeDataSource(DataSourceProperties properties,
+            @Value("${chat.datasource.write.maximum-pool-size:4}") int maximumPoolSize,
+            @Value("${chat.datasource.write.connection-timeout-ms:2000}") long connectionTimeout) {
+        return createPool(properties, WRITE_POOL_NAME, maximumPoolSize, connectionTimeout, false);
+    }
+
+    @Bean(destroyMethod = "close")
+    public HikariDataSource readDataSource(DataSourceProperties properties,
+            @Value("${chat.datasource.read.maximum-pool-size:6}") int maximumPoolSize,
+            @Value("${chat.datasource.read.connection-timeout-ms:5000}") long connectionTimeout) {
+        return createPool(properties, READ_POOL_NAME, maximumPoolSize, connectionTimeout, true);
+    }
+
+    /**
+     * The data source used by JPA, Flyway and JdbcTemplate, routing by transaction type
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("writeDataSource") DataSource writeDataSource,
+            @Qualifier("readDataSource") DataSource readDataSource) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(writeDataSource);
+        dataSource.setReadOnlyDataSource(readDataSource);
+        // Known defaults, so no connection is taken at startup to look them up
+        dataSource.setDefaultAutoCommit(true);
+        dataSource.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        return dataSource;
+    }
+
+    private static HikariDataSource createPool(DataSourceProperties properties, String poolName,
+            int maximumPoolSize, long connectionTimeout, boolean readOnly) {
+        HikariDataSource pool = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        pool.setPoolName(poolName);
+        pool.setMaximumPoolSize(maximumPoolSize);
+        pool.setConnectionTimeout(connectionTimeout);
+        pool.setReadOnly(readOnly);
+        return pool;
+    }
+}
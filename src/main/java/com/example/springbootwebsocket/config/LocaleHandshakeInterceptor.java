@@ -0,0 +1,93 @@
+package com.example.springbootwebsocket.config;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Captures the client's locale when a WebSocket connects.
+ *
+ * Messages on a WebSocket are handled on container threads where {@code LocaleContextHolder}
+ * does not hold the client's locale, so the locale is resolved once from the handshake request,
+ * the {@code lang} cookie first and then Accept-Language, and kept as a session attribute.
+ */
+@Component
+public class LocaleHandshakeInterceptor implements HandshakeInterceptor {
+
+    // Session attribute holding the resolved locale
+    public static final String LOCALE_ATTRIBUTE = "chat.locale";
+
+    private final List<Locale> supportedLocales;
+
+    public LocaleHandshakeInterceptor(@Value("${chat.i18n.locales:en,ca}") List<Locale> supportedLocales) {
+        this.supportedLocales = List.copyOf(supportedLocales);
+    }
+
+    @Override
+    public boolean beforeHandshake(@NonNull ServerHttpRequest request, @NonNull ServerHttpResponse response,
+            @NonNull WebSocketHandler wsHandler, @NonNull Map<String, Object> attributes) {
+        attributes.put(LOCALE_ATTRIBUTE, resolveLocale(request));
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(@NonNull ServerHttpRequest request, @NonNull ServerHttpResponse response,
+            @NonNull WebSocketHandler wsHandler, Exception exception) {
+    }
+
+    /**
+     * Resolves the supported locale that best matches the handshake request
+     *
+     * @param request The handshake request
+     * @return One of the supported locales, the first one if nothing matches
+     */
+    Locale resolveLocale(ServerHttpRequest request) {
+        if (request instanceof ServletServerHttpRequest servletRequest) {
+            Locale cookieLocale = cookieLocale(servletRequest.getServletRequest());
+            if (cookieLocale != null) {
+                Locale supported = Locale.lookup(List.of(new Locale.LanguageRange(cookieLocale.toLanguageTag())),
+                        supportedLocales);
+                if (supported != null) {
+                    return supported;
+                }
+            }
+        }
+        List<Locale.LanguageRange> ranges;
+        try {
+            ranges = request.getHeaders().getAcceptLanguage();
+        } catch (IllegalArgumentException malformedHeader) {
+            ranges = List.of();
+        }
+        Locale supported = Locale.lookup(ranges, supportedLocales);
+        return supported != null ? supported : supportedLocales.get(0);
+    }
+
+    private static Locale cookieLocale(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return null;
+        }
+        for (Cookie cookie : cookies) {
+            if (MessageConfig.LOCALE_COOKIE_NAME.equals(cookie.getName()) && StringUtils.hasText(cookie.getValue())) {
+                try {
+                    return StringUtils.parseLocale(cookie.getValue());
+                } catch (IllegalArgumentException invalidLocale) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -5,7 +5,7 @@ import java.util.Locale;
 import org.springframework.context.MessageSource;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.context.support.ReloadableResourceBundleMessageSource;
+import org.springframework.core.env.Environment;
 import org.springframework.web.servlet.LocaleResolver;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
@@ -21,12 +21,17 @@ import org.springframework.web.servlet.i18n.LocaleChangeInterceptor;
 @Configuration
 public class MessageConfig implements WebMvcConfigurer {
 
+    // Cookie that holds the user's language, shared by HTTP requests and the WebSocket handshake
+    public static final String LOCALE_COOKIE_NAME = "lang";
+
+    // The message source is created before @Value placeholders can be resolved, so it reads the environment
     @Bean
-    public MessageSource messageSource() {
-        ReloadableResourceBundleMessageSource messageSource = new ReloadableResourceBundleMessageSource();
+    public MessageSource messageSource(Environment environment) {
+        int cacheSeconds = environment.getProperty("chat.i18n.cache-seconds", Integer.class, 10);
+        ReloadableMessageSource messageSource = new ReloadableMessageSource();
         messageSource.setBasenames("classpath:messages");
         messageSource.setDefaultEncoding("UTF-8");
-        messageSource.setCacheSeconds(10); // Refresh cache every 10 seconds for development
+        messageSource.setCacheSeconds(cacheSeconds); // -1 caches forever, e.g. for bundles inside the jar
         messageSource.setFallbackToSystemLocale(false); // Don't use system locale as fallback
         messageSource.setUseCodeAsDefaultMessage(true); // Use message code as default if not found
         return messageSource;
@@ -34,7 +39,7 @@ public class MessageConfig implements WebMvcConfigurer {
     
     @Bean
     public LocaleResolver localeResolver() {
-        CookieLocaleResolver localeResolver = new CookieLocaleResolver();
+        CookieLocaleResolver localeResolver = new CookieLocaleResolver(LOCALE_COOKIE_NAME);
         localeResolver.setDefaultLocale(Locale.ENGLISH); // Default to English
         return localeResolver;
     }
@@ -0,0 +1,46 @@
+package com.example.springbootwebsocket.config;
+
+import com.example.springbootwebsocket.repository.ChatMessageRepository;
+import com.example.springbootwebsocket.repository.JpaMessageStore;
+import com.example.springbootwebsocket.repository.MessageStore;
+import com.example.springbootwebsocket.repository.SegmentLogMessageStore;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+
+/**
+ * Selects the message store with {@code chat.store.type}
+ *
+ * The choice is made in a factory method rather than with bean conditions, so it is read when
+ * the context starts: an image built with Spring AOT evaluates conditions at build time, and a
+ * store type set only on the container would otherwise be ignored. For the same reason the store
+ * is opened here and closed through {@link MessageStore#close()} rather than with lifecycle
+ * annotations, which AOT only looks for on the declared {@link MessageStore} type.
+ */
+@Configuration(proxyBeanMethods = false)
+public class MessageStoreConfig {
+
+    @Bean
+    public MessageStore messageStore(@Value("${chat.store.type:jpa}") String type,
+            ObjectProvider<ChatMessageRepository> chatMessageRepository,
+            @Value("${chat.store.segment-log.dir:./data/segment-log}") String directory,
+            @Value("${chat.store.segment-log.segment-size:67108864}") int segmentSize,
+            @Value("${chat.store.segment-log.index-interval:4096}") int indexInterval,
+            @Value("${chat.store.segment-log.fsync-policy:INTERVAL}") SegmentLogMessageStore.FsyncPolicy fsyncPolicy)
+            throws IOException {
+        return switch (type) {
+            case "jpa" -> new JpaMessageStore(chatMessageRepository.getObject());
+            case "segment-log" -> {
+                SegmentLogMessageStore store = new SegmentLogMessageStore(directory, segmentSize, indexInterval,
+                        fsyncPolicy);
+                store.open();
+                yield store;
+            }
+            default -> throw new IllegalArgumentException("Unknown chat.store.type '" + type
+                    + "', expected jpa or segment-log");
+        };
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.springbootwebsocket.config;
+
+import org.springframework.context.support.ReloadableResourceBundleMessageSource;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Message source that counts how often its bundles were (re)loaded.
+ *
+ * Callers that cache rendered messages compare the generation instead of asking the
+ * message source on every use. The file timestamps are still only checked on a lookup,
+ * so such a caller has to look up a message now and then for a reload to be noticed.
+ */
+public class ReloadableMessageSource extends ReloadableResourceBundleMessageSource {
+
+    private final AtomicLong generation = new AtomicLong();
+
+    @Override
+    protected PropertiesHolder refreshProperties(String filename, PropertiesHolder propHolder) {
+        PropertiesHolder refreshed = super.refreshProperties(filename, propHolder);
+        // The same holder comes back when the file timestamp did not change, and a missing file yields
+        // a new empty holder each time without a timestamp
+        if (refreshed != propHolder
+                && (propHolder == null || refreshed.getFileTimestamp() != propHolder.getFileTimestamp())) {
+            generation.incrementAndGet();
+        }
+        return refreshed;
+    }
+
+    @Override
+    public void clearCache() {
+        super.clearCache();
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Returns a number that changes whenever a bundle was loaded or reloaded
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+}
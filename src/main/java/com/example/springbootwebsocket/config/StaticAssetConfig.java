@@ -0,0 +1,63 @@
+package com.example.springbootwebsocket.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.ResourceUrlProvider;
+import org.springframework.web.util.UrlPathHelper;
+
+import java.time.Duration;
+import java.util.regex.Pattern;
+
+/**
+ * Cache headers for the static assets.
+ *
+ * The resource chain (see spring.web.resources.chain) serves every asset under a path with the
+ * MD5 of its content, e.g. /js/chat-0123456789abcdef0123456789abcdef.js, and picks the Brotli or
+ * gzip variant produced by the build when the client accepts it. A hashed path that matches the
+ * current content never changes, so it is cached for a year and marked immutable. Plain paths,
+ * and hashed paths of an older or newer build, which may reach a node during a rolling deploy,
+ * must be revalidated instead.
+ */
+@Configuration(proxyBeanMethods = false)
+public class StaticAssetConfig implements WebMvcConfigurer {
+
+    private static final CacheControl HASHED_ASSET_CACHE_CONTROL =
+            CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable();
+
+    private static final String[] ASSET_PATHS = {"/css/**", "/js/**", "/i18n/**"};
+
+    private static final Pattern CONTENT_HASH = Pattern.compile("-[0-9a-f]{32}(?=\\.[^./]+$)");
+
+    // The provider is created by the MVC configuration that this configurer contributes to
+    private final ObjectProvider<ResourceUrlProvider> resourceUrlProvider;
+
+    public StaticAssetConfig(ObjectProvider<ResourceUrlProvider> resourceUrlProvider) {
+        this.resourceUrlProvider = resourceUrlProvider;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new HandlerInterceptor() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                response.setHeader(HttpHeaders.CACHE_CONTROL, isCurrentHashedPath(request)
+                        ? HASHED_ASSET_CACHE_CONTROL.getHeaderValue()
+                        : CacheControl.noCache().getHeaderValue());
+                return true;
+            }
+        }).addPathPatterns(ASSET_PATHS);
+    }
+
+    private boolean isCurrentHashedPath(HttpServletRequest request) {
+        String path = UrlPathHelper.defaultInstance.getLookupPathForRequest(request);
+        String plainPath = CONTENT_HASH.matcher(path).replaceFirst("");
+        return !plainPath.equals(path) && path.equals(resourceUrlProvider.getObject().getForLookupPath(plainPath));
+    }
+}
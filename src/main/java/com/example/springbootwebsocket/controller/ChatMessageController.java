@@ -1,28 +1,51 @@
 package com.example.springbootwebsocket.controller;
 
 import com.example.springbootwebsocket.ChatMessage;
+import com.example.springbootwebsocket.repository.HistoryWatermark;
+import com.example.springbootwebsocket.service.ChatHistoryCache;
 import com.example.springbootwebsocket.service.ChatMessageService;
+import com.example.springbootwebsocket.service.ChatSearchService;
+import com.example.springbootwebsocket.service.ChatStatistics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
-import java.util.List;
+import java.util.function.Supplier;
 
 /**
  * REST controller for chat message history
+ *
+ * History responses carry a strong ETag derived from the in-memory watermark of their filter.
+ * Clients must revalidate on every use, and an unchanged history is answered with
+ * {@code 304 Not Modified} without running the history query.
  */
 @RestController
 @RequestMapping("/api/chat")
 public class ChatMessageController {
 
     private static final Logger logger = LoggerFactory.getLogger(ChatMessageController.class);
+    
+    // Browsers may keep history responses but must revalidate them with If-None-Match
+    private static final CacheControl HISTORY_CACHE_CONTROL = CacheControl.noCache().cachePrivate();
+    
     private final ChatMessageService chatMessageService;
+    private final ChatSearchService chatSearchService;
+    private final ChatHistoryCache chatHistoryCache;
+    private final ChatStatistics chatStatistics;
 
     @Autowired
-    public ChatMessageController(ChatMessageService chatMessageService) {
+    public ChatMessageController(ChatMessageService chatMessageService, ChatSearchService chatSearchService,
+            ChatHistoryCache chatHistoryCache, ChatStatistics chatStatistics) {
         this.chatMessageService = chatMessageService;
+        this.chatSearchService = chatSearchService;
+        this.chatHistoryCache = chatHistoryCache;
+        this.chatStatistics = chatStatistics;
     }
 
     /**
@@ -31,9 +54,9 @@ public class ChatMessageController {
      * @return List of all chat messages
      */
     @GetMapping("/messages")
-    public ResponseEntity<List<ChatMessage>> getAllMessages() {
+    public ResponseEntity<byte[]> getAllMessages(WebRequest request) {
         logger.debug("REST request to get all chat messages");
-        return ResponseEntity.ok(chatMessageService.getAllMessages());
+        return conditionalHistory(request, ChatHistoryCache.Filter.all(), chatMessageService::getAllMessages);
     }
 
     /**
@@ -42,9 +65,10 @@ public class ChatMessageController {
      * @return List of regular chat messages
      */
     @GetMapping("/messages/chat")
-    public ResponseEntity<List<ChatMessage>> getChatMessages() {
+    public ResponseEntity<byte[]> getChatMessages(WebRequest request) {
         logger.debug("REST request to get regular chat messages");
-        return ResponseEntity.ok(chatMessageService.getChatMessages());
+        return conditionalHistory(request, ChatHistoryCache.Filter.byType(ChatMessage.MessageType.CHAT),
+                chatMessageService::getChatMessages);
     }
 
     /**
@@ -54,9 +78,10 @@ public class ChatMessageController {
      * @return List of messages of the specified type
      */
     @GetMapping("/messages/type/{type}")
-    public ResponseEntity<List<ChatMessage>> getMessagesByType(@PathVariable ChatMessage.MessageType type) {
+    public ResponseEntity<byte[]> getMessagesByType(@PathVariable ChatMessage.MessageType type, WebRequest request) {
         logger.debug("REST request to get messages by type: {}", type);
-        return ResponseEntity.ok(chatMessageService.getMessagesByType(type));
+        return conditionalHistory(request, ChatHistoryCache.Filter.byType(type),
+                () -> chatMessageService.getMessagesByType(type));
     }
 
     /**
@@ -66,8 +91,61 @@ public class ChatMessageController {
      * @return List of messages from the specified sender
      */
     @GetMapping("/messages/sender/{name}")
-    public ResponseEntity<List<ChatMessage>> getMessagesBySender(@PathVariable String name) {
+    public ResponseEntity<byte[]> getMessagesBySender(@PathVariable String name, WebRequest request) {
         logger.debug("REST request to get messages by sender: {}", name);
-        return ResponseEntity.ok(chatMessageService.getMessagesBySender(name));
+        return conditionalHistory(request, ChatHistoryCache.Filter.bySender(name),
+                () -> chatMessageService.getMessagesBySender(name));
+    }
+
+    /**
+     * Search chat messages by keyword
+     *
+     * @param query The search query
+     * @param page  The zero-based page number
+     * @param size  The page size
+     * @return A page of matching messages with highlighted fragments
+     */
+    @GetMapping("/search")
+    public ResponseEntity<ChatSearchService.SearchPage> search(@RequestParam("q") String query,
+            @RequestParam(defaultValue = "0") int page, @RequestParam(defaultValue = "20") int size) {
+        logger.debug("REST request to search messages: {}", query);
+        if (query.isBlank()) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(chatSearchService.search(query, page, size));
+    }
+
+    /**
+     * Get the rolling chat statistics, maintained in memory without querying the database
+     *
+     * @return Messages per minute, per-type counts and active senders of the statistics window
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<ChatStatistics.Snapshot> getStatistics() {
+        logger.debug("REST request to get chat statistics");
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                .body(chatStatistics.snapshot());
+    }
+
+    /**
+     * Answers a history request from the watermark of its filter.
+     * Returns 304 when the client's ETag still matches, otherwise the cached or freshly loaded body.
+     */
+    private ResponseEntity<byte[]> conditionalHistory(WebRequest request, ChatHistoryCache.Filter filter,
+            Supplier<?> loader) {
+        HistoryWatermark watermark = chatHistoryCache.getWatermark(filter);
+        String etag = watermark.etag();
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .cacheControl(HISTORY_CACHE_CONTROL)
+                    .build();
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(HISTORY_CACHE_CONTROL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(chatHistoryCache.getBody(filter, watermark, loader));
     }
 }
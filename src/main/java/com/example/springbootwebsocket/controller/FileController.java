@@ -0,0 +1,151 @@
+package com.example.springbootwebsocket.controller;
+
+import com.example.springbootwebsocket.repository.BlobStore;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * REST controller for downloading shared files
+ *
+ * Files are addressed by their content hash, so the hash is a strong ETag and a download may be
+ * cached for good. A single byte range is honored, e.g. to resume a download or to seek in a
+ * video. The body is handed to Tomcat's sendfile support, which copies it from the file to the
+ * socket inside the kernel; where that is not available (e.g. over TLS) the file is transferred
+ * from its channel.
+ */
+@RestController
+@RequestMapping("/api/chat/files")
+public class FileController {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileController.class);
+
+    // Request attributes of Tomcat's sendfile support
+    static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final CacheControl FILE_CACHE_CONTROL = CacheControl.maxAge(Duration.ofDays(365)).cachePrivate()
+            .immutable();
+
+    // Shown in the page; anything else, including SVG and HTML, is only offered as a download
+    private static final Set<MediaType> INLINE_TYPES = Set.of(MediaType.IMAGE_PNG, MediaType.IMAGE_JPEG,
+            MediaType.IMAGE_GIF, MediaType.parseMediaType("image/webp"));
+
+    private final BlobStore blobStore;
+
+    public FileController(BlobStore blobStore) {
+        this.blobStore = blobStore;
+    }
+
+    /**
+     * Download a shared file
+     *
+     * @param blobId The content hash of the file
+     * @param name   The file name to offer, which also determines the content type
+     */
+    @GetMapping("/{blobId}")
+    public void download(@PathVariable String blobId, @RequestParam(defaultValue = "file") String name,
+            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Path file = blobStore.find(blobId);
+        if (file == null) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        long length = Files.size(file);
+        String etag = "\"" + blobId + "\"";
+        MediaType contentType = MediaTypeFactory.getMediaType(name).orElse(MediaType.APPLICATION_OCTET_STREAM);
+
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, FILE_CACHE_CONTROL.getHeaderValue());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (etag.equals(request.getHeader(HttpHeaders.IF_NONE_MATCH))) {
+            response.setStatus(HttpStatus.NOT_MODIFIED.value());
+            return;
+        }
+
+        long start = 0;
+        long end = length - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(range);
+            } catch (IllegalArgumentException e) {
+                ranges = List.of();
+            }
+            // Several ranges would need a multipart body; the whole file is sent instead
+            if (ranges.size() == 1) {
+                HttpRange requested = ranges.get(0);
+                try {
+                    start = requested.getRangeStart(length);
+                    end = requested.getRangeEnd(length);
+                } catch (IllegalArgumentException e) {
+                    start = length;
+                }
+                if (start >= length || start > end) {
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                    response.sendError(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                    return;
+                }
+                response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+
+        response.setContentType(contentType.toString());
+        ContentDisposition.Builder disposition =
+                INLINE_TYPES.contains(contentType) ? ContentDisposition.inline() : ContentDisposition.attachment();
+        // Names outside ASCII are sent encoded as well
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, (StandardCharsets.US_ASCII.newEncoder().canEncode(name)
+                ? disposition.filename(name) : disposition.filename(name, StandardCharsets.UTF_8)).build().toString());
+        response.setHeader("X-Content-Type-Options", "nosniff");
+        response.setContentLengthLong(end - start + 1);
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (position <= end) {
+                position += channel.transferTo(position, end + 1 - position, out);
+            }
+        } catch (IOException e) {
+            // Usually the client went away in the middle of the download
+            logger.debug("Download of {} ended early: {}", blobId, e.getMessage());
+        }
+    }
+}
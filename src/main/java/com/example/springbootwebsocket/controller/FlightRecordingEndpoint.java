@@ -0,0 +1,172 @@
+package com.example.springbootwebsocket.controller;
+
+import com.example.springbootwebsocket.FlightEvents;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.boot.actuate.endpoint.web.annotation.WebEndpoint;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpStatus;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Actuator endpoint for an in-process Java Flight Recorder recording
+ *
+ * {@code POST /actuator/flightrecording/start} starts a recording with the JDK's default settings
+ * plus the chat events (see {@link FlightEvents}), {@code POST /actuator/flightrecording/stop}
+ * stops it, and {@code GET /actuator/flightrecording} downloads the {@code .jfr} file of the
+ * stopped recording, which JDK Mission Control or {@code jfr print} can open. A recording is
+ * bounded in time and size, so one that is never stopped ends on its own. Only one recording runs
+ * at a time, and its file is kept until the next one starts.
+ *
+ * The events that capture the process environment, the system properties, the JVM arguments and
+ * the command lines of other processes are left out, since they may carry credentials. The
+ * endpoint is not exposed by default; expose it on a management port that only operators reach.
+ */
+@Component
+@WebEndpoint(id = "flightrecording")
+public class FlightRecordingEndpoint {
+
+    private static final Logger logger = LoggerFactory.getLogger(FlightRecordingEndpoint.class);
+
+    // Events of the default settings that may carry secrets, e.g. a datasource password
+    static final List<String> SENSITIVE_EVENTS = List.of("jdk.InitialEnvironmentVariable",
+            "jdk.InitialSystemProperty", "jdk.JVMInformation", "jdk.SystemProcess");
+
+    private final Duration defaultDuration;
+    private final Duration maxDuration;
+    private final long maxSize;
+
+    private Recording recording;
+    private Path file;
+
+    /**
+     * The recording that was started
+     */
+    public record RecordingStatus(String name, String state, long durationSeconds, long maxSizeBytes) {
+    }
+
+    public FlightRecordingEndpoint(@Value("${chat.flight-recording.default-duration-seconds:60}") int defaultDuration,
+            @Value("${chat.flight-recording.max-duration-seconds:300}") int maxDuration,
+            @Value("${chat.flight-recording.max-size:104857600}") long maxSize) {
+        this.maxDuration = Duration.ofSeconds(maxDuration);
+        this.defaultDuration = Duration.ofSeconds(Math.min(defaultDuration, maxDuration));
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Start or stop a recording
+     *
+     * @param action          {@code start} or {@code stop}
+     * @param durationSeconds How long to record at most; capped at the configured maximum
+     * @param thresholdMs     Overrides the thresholds of the chat events, e.g. 0 to record every message
+     * @return The recording; 409 when starting while one is running, 404 when stopping without one,
+     *         400 for any other action
+     */
+    @WriteOperation
+    public WebEndpointResponse<RecordingStatus> control(@Selector String action, @Nullable Integer durationSeconds,
+            @Nullable Integer thresholdMs) throws IOException, ParseException {
+        return switch (action) {
+            case "start" -> start(durationSeconds, thresholdMs);
+            case "stop" -> stop();
+            default -> new WebEndpointResponse<>(WebEndpointResponse.STATUS_BAD_REQUEST);
+        };
+    }
+
+    synchronized WebEndpointResponse<RecordingStatus> start(Integer durationSeconds, Integer thresholdMs)
+            throws IOException, ParseException {
+        if (recording != null && recording.getState() == RecordingState.RUNNING) {
+            return new WebEndpointResponse<>(status(), HttpStatus.CONFLICT.value());
+        }
+        discard();
+
+        Duration duration = durationSeconds != null && durationSeconds > 0
+                ? Duration.ofSeconds(Math.min(durationSeconds, maxDuration.toSeconds())) : defaultDuration;
+        Recording started = new Recording(Configuration.getConfiguration("default"));
+        for (String name : FlightEvents.NAMES) {
+            if (thresholdMs != null) {
+                started.enable(name).withThreshold(Duration.ofMillis(Math.max(0, thresholdMs)));
+            } else {
+                started.enable(name);
+            }
+        }
+        for (String name : SENSITIVE_EVENTS) {
+            started.disable(name);
+        }
+        file = Files.createTempFile("chat-", ".jfr");
+        started.setName("chat-" + started.getId());
+        started.setDuration(duration);
+        started.setMaxSize(maxSize);
+        started.setToDisk(true);
+        started.setDestination(file);
+        started.start();
+        recording = started;
+        logger.info("Started flight recording {} for at most {}", started.getName(), duration);
+        return new WebEndpointResponse<>(status());
+    }
+
+    synchronized WebEndpointResponse<RecordingStatus> stop() {
+        if (recording == null) {
+            return new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND);
+        }
+        if (recording.getState() == RecordingState.RUNNING) {
+            // Writes the recording to its destination
+            recording.stop();
+            logger.info("Stopped flight recording {}", recording.getName());
+        }
+        return new WebEndpointResponse<>(status());
+    }
+
+    /**
+     * Download the file of the last recording
+     *
+     * @return The {@code .jfr} file; 404 if no recording was started, 409 while it is still running
+     */
+    @ReadOperation(produces = "application/octet-stream")
+    public synchronized WebEndpointResponse<Resource> download() {
+        if (recording == null) {
+            return new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND);
+        }
+        if (recording.getState() == RecordingState.RUNNING) {
+            return new WebEndpointResponse<>(HttpStatus.CONFLICT.value());
+        }
+        return new WebEndpointResponse<>(new FileSystemResource(file));
+    }
+
+    private RecordingStatus status() {
+        return new RecordingStatus(recording.getName(), recording.getState().name(),
+                recording.getDuration().toSeconds(), recording.getMaxSize());
+    }
+
+    /**
+     * Closes the last recording and deletes its file
+     */
+    @PreDestroy
+    public synchronized void discard() throws IOException {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+        if (file != null) {
+            Files.deleteIfExists(file);
+            file = null;
+        }
+    }
+}
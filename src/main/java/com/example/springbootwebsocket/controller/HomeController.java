@@ -1,19 +1,76 @@
 package com.example.springbootwebsocket.controller;
 
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.servlet.resource.ResourceUrlProvider;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Controller to serve the main HTML page
+ *
+ * The page references its scripts, styles and translations by their plain paths; they are
+ * replaced with the content-hashed paths of the resource chain, which are cached by browsers
+ * for good. The page itself is revalidated on every load, so a new build is picked up at once.
  */
 @Controller
 public class HomeController {
-    
+
+    // Relative asset paths in src, href and data attributes
+    private static final Pattern ASSET_REFERENCE = Pattern.compile("((?:src|href|data-[\\w-]+)=\")((?:css|js|i18n)/[^\"]+)\"");
+
+    private final ResourceUrlProvider resourceUrlProvider;
+
+    private volatile ResponseEntity<String> page;
+
+    public HomeController(ResourceUrlProvider resourceUrlProvider) {
+        this.resourceUrlProvider = resourceUrlProvider;
+    }
+
     /**
      * Return the index page
      */
-    @GetMapping("/")
-    public String home() {
-        return "forward:/index.html";
+    @GetMapping({"/", "/index.html"})
+    public ResponseEntity<String> home() {
+        ResponseEntity<String> current = page;
+        if (current == null) {
+            // Rendered once the resource chain is initialized; a race only renders it twice
+            String html = render();
+            current = ResponseEntity.ok()
+                    .contentType(new MediaType(MediaType.TEXT_HTML, StandardCharsets.UTF_8))
+                    .cacheControl(CacheControl.noCache())
+                    .eTag(DigestUtils.md5DigestAsHex(html.getBytes(StandardCharsets.UTF_8)))
+                    .body(html);
+            page = current;
+        }
+        return current;
+    }
+
+    private String render() {
+        String html;
+        try {
+            html = new ClassPathResource("static/index.html").getContentAsString(StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read the index page", e);
+        }
+        Matcher matcher = ASSET_REFERENCE.matcher(html);
+        StringBuilder rendered = new StringBuilder(html.length() + 256);
+        while (matcher.find()) {
+            String hashed = resourceUrlProvider.getForLookupPath("/" + matcher.group(2));
+            // Unknown assets keep their path
+            String path = hashed != null ? hashed.substring(1) : matcher.group(2);
+            matcher.appendReplacement(rendered, Matcher.quoteReplacement(matcher.group(1) + path + "\""));
+        }
+        matcher.appendTail(rendered);
+        return rendered.toString();
     }
 }
@@ -0,0 +1,48 @@
+package com.example.springbootwebsocket.logging;
+
+/**
+ * Log argument that formats a message payload only when the log statement is actually written.
+ *
+ * SLF4J checks the level before calling {@link #toString()}, so a disabled statement never
+ * copies or scans the payload. When written, the payload is abbreviated and line breaks are
+ * escaped so a client cannot forge extra log lines.
+ *
+ * @param payload   The raw payload
+ * @param maxLength The number of characters to keep
+ */
+public record LazyPayload(CharSequence payload, int maxLength) {
+
+    // Characters kept from a payload by default
+    public static final int DEFAULT_MAX_LENGTH = 200;
+
+    /**
+     * Wrap a payload with the default length limit
+     *
+     * @param payload The raw payload
+     * @return The lazy log argument
+     */
+    public static LazyPayload of(CharSequence payload) {
+        return new LazyPayload(payload, DEFAULT_MAX_LENGTH);
+    }
+
+    @Override
+    public String toString() {
+        if (payload == null) {
+            return "null";
+        }
+        int length = Math.min(payload.length(), maxLength);
+        StringBuilder builder = new StringBuilder(length + 32);
+        for (int i = 0; i < length; i++) {
+            char c = payload.charAt(i);
+            switch (c) {
+                case '\n' -> builder.append("\\n");
+                case '\r' -> builder.append("\\r");
+                default -> builder.append(c);
+            }
+        }
+        if (payload.length() > maxLength) {
+            builder.append("... (").append(payload.length()).append(" chars)");
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.springbootwebsocket.logging;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Rate limiter for high-frequency log statements.
+ *
+ * Lets at most {@code limit} events through per time window and counts the rest, so the next
+ * logged event can report how many were suppressed. The window reset is approximate under
+ * contention, which is fine for logging.
+ */
+public class LogSampler {
+
+    private final int limit;
+    private final long windowNanos;
+    private final LongSupplier nanoClock;
+    private final AtomicLong windowStart;
+    private final AtomicInteger permits = new AtomicInteger();
+    private final LongAdder suppressed = new LongAdder();
+
+    public LogSampler(int limit, Duration window) {
+        this(limit, window, System::nanoTime);
+    }
+
+    LogSampler(int limit, Duration window, LongSupplier nanoClock) {
+        this.limit = limit;
+        this.windowNanos = window.toNanos();
+        this.nanoClock = nanoClock;
+        this.windowStart = new AtomicLong(nanoClock.getAsLong());
+    }
+
+    /**
+     * Create a sampler that lets {@code limit} events through per second
+     *
+     * @param limit The number of events per second
+     * @return The sampler
+     */
+    public static LogSampler perSecond(int limit) {
+        return new LogSampler(limit, Duration.ofSeconds(1));
+    }
+
+    /**
+     * Check whether the current event should be logged
+     *
+     * @return true if the event is within the limit of the current window
+     */
+    public boolean shouldLog() {
+        long now = nanoClock.getAsLong();
+        long start = windowStart.get();
+        if (now - start >= windowNanos && windowStart.compareAndSet(start, now)) {
+            permits.set(0);
+        }
+        if (permits.incrementAndGet() <= limit) {
+            return true;
+        }
+        suppressed.increment();
+        return false;
+    }
+
+    /**
+     * Get and reset the number of events suppressed since the last call
+     *
+     * @return The number of suppressed events
+     */
+    public long takeSuppressed() {
+        return suppressed.sumThenReset();
+    }
+}
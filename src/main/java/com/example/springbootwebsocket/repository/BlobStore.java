@@ -0,0 +1,194 @@
+package com.example.springbootwebsocket.repository;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed store for the files users share.
+ *
+ * An upload is streamed chunk by chunk into a temporary file through a {@link FileChannel},
+ * hashing the bytes as they pass, so no file is ever held in memory. When the last byte has
+ * arrived the file is moved to a path derived from its SHA-256 hash, which is also its id. A
+ * file that is already stored is not stored twice: the new copy is deleted and the id of the
+ * existing one is returned. Stored files are never modified, so a download can be cached for good.
+ */
+@Repository
+public class BlobStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(BlobStore.class);
+
+    private static final Pattern BLOB_ID = Pattern.compile("[0-9a-f]{64}");
+    private static final String UPLOADS = "uploads";
+
+    private final Path directory;
+    private final long maxSize;
+
+    public BlobStore(@Value("${chat.files.dir:./data/files}") String directory,
+            @Value("${chat.files.max-size:26214400}") long maxSize) {
+        this.directory = Path.of(directory);
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Deletes uploads left unfinished by a previous run; the directories are only created by the first upload
+     */
+    @PostConstruct
+    public void open() throws IOException {
+        Path uploads = directory.resolve(UPLOADS);
+        if (!Files.isDirectory(uploads)) {
+            return;
+        }
+        try (Stream<Path> leftovers = Files.list(uploads)) {
+            for (Path leftover : leftovers.toList()) {
+                Files.deleteIfExists(leftover);
+            }
+        }
+    }
+
+    /**
+     * Start an upload
+     *
+     * @param size The length of the file in bytes
+     * @return The upload to write the file's chunks to
+     * @throws IllegalArgumentException If the file is empty or larger than the configured maximum
+     */
+    public Upload begin(long size) throws IOException {
+        if (size < 1 || size > maxSize) {
+            throw new IllegalArgumentException("File size " + size + " outside 1.." + maxSize);
+        }
+        Path uploads = Files.createDirectories(directory.resolve(UPLOADS));
+        Path file = Files.createTempFile(uploads, "upload-", ".part");
+        try {
+            return new Upload(file, FileChannel.open(file, StandardOpenOption.WRITE), size);
+        } catch (IOException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the stored file of a blob id, or null if there is none
+     */
+    public Path find(String blobId) {
+        if (blobId == null || !BLOB_ID.matcher(blobId).matches()) {
+            return null;
+        }
+        Path file = pathOf(blobId);
+        return Files.isRegularFile(file) ? file : null;
+    }
+
+    /**
+     * Returns the largest file accepted, in bytes
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    // Two levels of fan-out keep the directories small
+    private Path pathOf(String blobId) {
+        return directory.resolve(blobId.substring(0, 2)).resolve(blobId);
+    }
+
+    /**
+     * A file being uploaded. Chunks are written by one thread at a time, in order.
+     */
+    public final class Upload {
+
+        private final Path file;
+        private final FileChannel channel;
+        private final long size;
+        private final MessageDigest digest;
+        private long written;
+
+        private Upload(Path file, FileChannel channel, long size) {
+            this.file = file;
+            this.channel = channel;
+            this.size = size;
+            try {
+                this.digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not available", e);
+            }
+        }
+
+        /**
+         * Append a chunk
+         *
+         * @throws IllegalStateException If the chunk goes past the announced size
+         */
+        public void write(ByteBuffer chunk) throws IOException {
+            if (written + chunk.remaining() > size) {
+                throw new IllegalStateException("Upload exceeds its announced size of " + size + " bytes");
+            }
+            digest.update(chunk.duplicate());
+            while (chunk.hasRemaining()) {
+                written += channel.write(chunk);
+            }
+        }
+
+        /**
+         * Returns true once all announced bytes were written
+         */
+        public boolean isComplete() {
+            return written == size;
+        }
+
+        /**
+         * Store the completed file under its content hash
+         *
+         * @return The blob id
+         */
+        public String finish() throws IOException {
+            if (!isComplete()) {
+                throw new IllegalStateException("Upload has " + written + " of " + size + " bytes");
+            }
+            channel.close();
+            String blobId = HexFormat.of().formatHex(digest.digest());
+            Path target = pathOf(blobId);
+            try {
+                if (Files.exists(target)) {
+                    Files.delete(file);
+                } else {
+                    Files.createDirectories(target.getParent());
+                    Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+                }
+            } catch (FileAlreadyExistsException e) {
+                // The same content finished concurrently
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                Files.deleteIfExists(file);
+                throw e;
+            }
+            return blobId;
+        }
+
+        /**
+         * Discard an unfinished upload
+         */
+        public void abort() {
+            try {
+                channel.close();
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                logger.warn("Could not delete unfinished upload {}: {}", file, e.getMessage());
+            }
+        }
+    }
+}
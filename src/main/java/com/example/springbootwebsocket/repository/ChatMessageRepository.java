@@ -1,37 +1,140 @@
 package com.example.springbootwebsocket.repository;
 
 import com.example.springbootwebsocket.ChatMessage;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 
 /**
- * Repository for handling ChatMessage entity persistence
+ * Repository for handling ChatMessage entity persistence.
+ * History reads return {@link ChatMessageView} projections, so no entities end up in the persistence context.
  */
 @Repository
 public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long> {
     
+    // Constructor expression shared by the history reads
+    String VIEW_SELECT = "select new com.example.springbootwebsocket.repository.ChatMessageView("
+            + "m.id, m.name, m.message, m.timestamp, m.type, m.blobId) ";
+    
+    // Rows per JDBC round trip for the history reads
+    String HISTORY_FETCH_SIZE = "500";
+    
     /**
      * Find all chat messages ordered by timestamp (newest first)
      * 
-     * @return List of chat messages
+     * @return List of chat message views
      */
-    List<ChatMessage> findAllByOrderByTimestampDesc();
+    @Query(VIEW_SELECT + "from ChatMessage m order by m.timestamp desc")
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = HISTORY_FETCH_SIZE)})
+    List<ChatMessageView> findAllByOrderByTimestampDesc();
     
     /**
      * Find chat messages by type
+     * The type is repeated in the ORDER BY so H2 reads (message_type, timestamp) in index order instead of sorting.
      * 
      * @param type The message type to filter by
      * @return List of chat messages of the specified type
      */
-    List<ChatMessage> findByTypeOrderByTimestampDesc(ChatMessage.MessageType type);
+    @Query(VIEW_SELECT + "from ChatMessage m where m.type = :type order by m.type desc, m.timestamp desc")
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = HISTORY_FETCH_SIZE)})
+    List<ChatMessageView> findByTypeOrderByTimestampDesc(@Param("type") ChatMessage.MessageType type);
     
     /**
      * Find chat messages by sender name
+     * The name is repeated in the ORDER BY so H2 reads (name, timestamp) in index order instead of sorting.
      * 
      * @param name The sender name to filter by
      * @return List of chat messages from the specified sender
      */
-    List<ChatMessage> findByNameOrderByTimestampDesc(String name);
+    @Query(VIEW_SELECT + "from ChatMessage m where m.name = :name order by m.name desc, m.timestamp desc")
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = HISTORY_FETCH_SIZE)})
+    List<ChatMessageView> findByNameOrderByTimestampDesc(@Param("name") String name);
+    
+    /**
+     * Find chat messages stored after a given id, in id order
+     * 
+     * @param id       The id to start after
+     * @param pageable The maximum number of messages to return
+     * @return List of chat messages in ascending id order
+     */
+    @Query(VIEW_SELECT + "from ChatMessage m where m.id > :id order by m.id asc")
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = HISTORY_FETCH_SIZE)})
+    List<ChatMessageView> findByIdGreaterThanOrderByIdAsc(@Param("id") Long id, Pageable pageable);
+    
+    /**
+     * Find the most recent chat messages, newest first
+     * 
+     * @param pageable The maximum number of messages to return
+     * @return List of chat messages in descending id order
+     */
+    @Query(VIEW_SELECT + "from ChatMessage m order by m.id desc")
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = HISTORY_FETCH_SIZE)})
+    List<ChatMessageView> findAllByOrderByIdDesc(Pageable pageable);
+    
+    /**
+     * Find chat messages within an id range, in id order
+     * 
+     * @param fromId The first id to include
+     * @param toId   The last id to include
+     * @return List of chat messages in ascending id order
+     */
+    @Query(VIEW_SELECT + "from ChatMessage m where m.id between :fromId and :toId order by m.id asc")
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = HISTORY_FETCH_SIZE)})
+    List<ChatMessageView> findByIdBetweenOrderByIdAsc(@Param("fromId") Long fromId, @Param("toId") Long toId);
+    
+    /**
+     * Find the highest message id
+     * 
+     * @return The highest id, or 0 if there are no messages
+     */
+    @Query("select coalesce(max(m.id), 0) from ChatMessage m")
+    long findMaxId();
+    
+    /**
+     * Find the watermark of all chat messages
+     * 
+     * @return The highest id and row count
+     */
+    @Query("select new com.example.springbootwebsocket.repository.HistoryWatermark(coalesce(max(m.id), 0), count(m)) "
+            + "from ChatMessage m")
+    HistoryWatermark findWatermark();
+    
+    /**
+     * Find the watermark of chat messages of a type
+     * 
+     * @param type The message type to filter by
+     * @return The highest id and row count
+     */
+    @Query("select new com.example.springbootwebsocket.repository.HistoryWatermark(coalesce(max(m.id), 0), count(m)) "
+            + "from ChatMessage m where m.type = :type")
+    HistoryWatermark findWatermarkByType(@Param("type") ChatMessage.MessageType type);
+    
+    /**
+     * Find the watermark of chat messages from a sender
+     * 
+     * @param name The sender name to filter by
+     * @return The highest id and row count
+     */
+    @Query("select new com.example.springbootwebsocket.repository.HistoryWatermark(coalesce(max(m.id), 0), count(m)) "
+            + "from ChatMessage m where m.name = :name")
+    HistoryWatermark findWatermarkByName(@Param("name") String name);
 }
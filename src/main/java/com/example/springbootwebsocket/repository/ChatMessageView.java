@@ -0,0 +1,31 @@
+package com.example.springbootwebsocket.repository;
+
+import com.example.springbootwebsocket.ChatMessage;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Read-only projection of a stored chat message, as returned by the history reads.
+ * Unlike a {@link ChatMessage} entity it is never attached to a persistence context,
+ * so loading it needs no dirty-checking snapshot.
+ *
+ * @param id        The message id
+ * @param name      The sender name
+ * @param message   The message content
+ * @param timestamp The message timestamp
+ * @param type      The message type
+ * @param blobId    The content hash of the file a message shares, null for a plain message
+ */
+public record ChatMessageView(Long id, String name, String message, String timestamp, ChatMessage.MessageType type,
+        @JsonInclude(JsonInclude.Include.NON_NULL) String blobId) {
+
+    /**
+     * Create a view of a message
+     *
+     * @param chatMessage The message
+     * @return The view
+     */
+    public static ChatMessageView of(ChatMessage chatMessage) {
+        return new ChatMessageView(chatMessage.getId(), chatMessage.getName(), chatMessage.getMessage(),
+                chatMessage.getTimestamp(), chatMessage.getType(), chatMessage.getBlobId());
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.springbootwebsocket.repository;
+
+/**
+ * High-water mark of a set of chat messages: the highest id and the number of rows.
+ * Messages are append-only, so the pair changes whenever the set changes.
+ *
+ * @param maxId The highest message id, or 0 if there are no messages
+ * @param count The number of messages
+ */
+public record HistoryWatermark(long maxId, long count) {
+
+    /**
+     * An empty set of messages
+     */
+    public static final HistoryWatermark EMPTY = new HistoryWatermark(0, 0);
+
+    /**
+     * Returns the watermark after one more message with the given id was stored
+     *
+     * @param id The id of the stored message
+     * @return The advanced watermark
+     */
+    public HistoryWatermark advance(long id) {
+        return new HistoryWatermark(Math.max(maxId, id), count + 1);
+    }
+
+    /**
+     * Returns the strong entity tag for this watermark
+     *
+     * @return The quoted ETag value
+     */
+    public String etag() {
+        return "\"" + maxId + "-" + count + "\"";
+    }
+}
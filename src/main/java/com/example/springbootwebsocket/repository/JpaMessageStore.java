@@ -0,0 +1,78 @@
+package com.example.springbootwebsocket.repository;
+
+import com.example.springbootwebsocket.ChatMessage;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Message store backed by the {@code chat_messages} table through {@link ChatMessageRepository}.
+ * Reads run in read-only transactions, so Hibernate skips flushing and the connection is marked read-only.
+ * Created by {@link com.example.springbootwebsocket.config.MessageStoreConfig}.
+ */
+@Transactional(readOnly = true)
+public class JpaMessageStore implements MessageStore {
+
+    private final ChatMessageRepository chatMessageRepository;
+
+    public JpaMessageStore(ChatMessageRepository chatMessageRepository) {
+        this.chatMessageRepository = chatMessageRepository;
+    }
+
+    @Override
+    @Transactional
+    public ChatMessage save(ChatMessage chatMessage) {
+        return chatMessageRepository.save(chatMessage);
+    }
+
+    @Override
+    public List<ChatMessageView> findAllNewestFirst() {
+        return chatMessageRepository.findAllByOrderByTimestampDesc();
+    }
+
+    @Override
+    public List<ChatMessageView> findByTypeNewestFirst(ChatMessage.MessageType type) {
+        return chatMessageRepository.findByTypeOrderByTimestampDesc(type);
+    }
+
+    @Override
+    public List<ChatMessageView> findBySenderNewestFirst(String name) {
+        return chatMessageRepository.findByNameOrderByTimestampDesc(name);
+    }
+
+    @Override
+    public List<ChatMessageView> findNewest(int limit) {
+        return chatMessageRepository.findAllByOrderByIdDesc(PageRequest.of(0, limit));
+    }
+
+    @Override
+    public List<ChatMessageView> findByIdRange(long fromId, long toId) {
+        return chatMessageRepository.findByIdBetweenOrderByIdAsc(fromId, toId);
+    }
+
+    @Override
+    public List<ChatMessageView> findAfter(long afterId, int limit) {
+        return chatMessageRepository.findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, limit));
+    }
+
+    @Override
+    public long findMaxId() {
+        return chatMessageRepository.findMaxId();
+    }
+
+    @Override
+    public HistoryWatermark findWatermark() {
+        return chatMessageRepository.findWatermark();
+    }
+
+    @Override
+    public HistoryWatermark findWatermarkByType(ChatMessage.MessageType type) {
+        return chatMessageRepository.findWatermarkByType(type);
+    }
+
+    @Override
+    public HistoryWatermark findWatermarkBySender(String name) {
+        return chatMessageRepository.findWatermarkByName(name);
+    }
+}
@@ -0,0 +1,259 @@
+package com.example.springbootwebsocket.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * One memory-mapped file of the segment log, holding consecutive message ids starting at its base id.
+ *
+ * Record layout: {@code [int length][int crc32c][long id][payload]}, where the length covers the payload
+ * and the checksum covers id and payload. Unused space is zero-filled, so a zero length marks the end.
+ * Readers only look at bytes below {@link #size()}, which is published after a record is fully written.
+ */
+final class LogSegment implements Closeable {
+
+    static final int HEADER_SIZE = 16;
+
+    static final String SUFFIX = ".log";
+
+    private static final int ZERO_FILL_CHUNK = 64 * 1024;
+
+    private final Path path;
+    private final long baseId;
+    private final int indexInterval;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    // Sparse offset index: id and position of one record every indexInterval bytes, guarded by this
+    private long[] indexIds = new long[16];
+    private int[] indexPositions = new int[16];
+    private int indexSize;
+
+    private volatile int size;
+    private volatile long lastId;
+    private int forcedSize;
+
+    private LogSegment(Path path, long baseId, int capacity, int indexInterval) throws IOException {
+        this.path = path;
+        this.baseId = baseId;
+        this.indexInterval = indexInterval;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        // Mapping past the end grows the file; the new space reads as zeros
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        this.lastId = baseId - 1;
+    }
+
+    /**
+     * Create an empty segment whose first record will have the given id
+     */
+    static LogSegment create(Path directory, long baseId, int capacity, int indexInterval) throws IOException {
+        Path path = directory.resolve(fileName(baseId));
+        if (Files.exists(path)) {
+            throw new IOException("Segment already exists: " + path);
+        }
+        return new LogSegment(path, baseId, capacity, indexInterval);
+    }
+
+    /**
+     * Map an existing segment file. Call {@link #recover()} before reading or appending.
+     */
+    static LogSegment open(Path path, int capacity, int indexInterval) throws IOException {
+        long fileSize = Files.size(path);
+        int mappedSize = (int) Math.min(Integer.MAX_VALUE, Math.max(fileSize, capacity));
+        return new LogSegment(path, parseBaseId(path), mappedSize, indexInterval);
+    }
+
+    static String fileName(long baseId) {
+        return String.format("%020d%s", baseId, SUFFIX);
+    }
+
+    static long parseBaseId(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    /**
+     * Scan the segment from the start, keeping the longest run of intact records with consecutive ids.
+     * Anything after it (a torn or partially flushed write) is zero-filled so it cannot reappear later.
+     *
+     * @return true if the segment ended cleanly, false if a damaged tail was dropped
+     */
+    synchronized boolean recover() {
+        int position = 0;
+        long expectedId = baseId;
+        boolean clean = true;
+        while (position + HEADER_SIZE <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length == 0) {
+                break;
+            }
+            if (length < 0 || length > buffer.capacity() - position - HEADER_SIZE
+                    || buffer.getLong(position + 8) != expectedId
+                    || buffer.getInt(position + 4) != checksum(position, length)) {
+                clean = false;
+                break;
+            }
+            indexRecord(expectedId, position);
+            position += HEADER_SIZE + length;
+            expectedId++;
+        }
+        if (!clean) {
+            zeroFill(position);
+        }
+        size = position;
+        forcedSize = position;
+        lastId = expectedId - 1;
+        return clean;
+    }
+
+    private void zeroFill(int from) {
+        byte[] zeros = new byte[ZERO_FILL_CHUNK];
+        for (int position = from; position < buffer.capacity(); position += zeros.length) {
+            buffer.put(position, zeros, 0, Math.min(zeros.length, buffer.capacity() - position));
+        }
+        buffer.force();
+    }
+
+    /**
+     * Append a record if it fits. Only the single log writer may call this.
+     *
+     * @param id      The record id, one above {@link #lastId()}
+     * @param payload The encoded message
+     * @return false if the segment is full
+     */
+    boolean append(long id, byte[] payload) {
+        int position = size;
+        if (HEADER_SIZE + payload.length > buffer.capacity() - position) {
+            return false;
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(ByteBuffer.allocate(Long.BYTES).putLong(0, id));
+        crc.update(payload);
+        buffer.put(position + HEADER_SIZE, payload);
+        buffer.putLong(position + 8, id);
+        buffer.putInt(position + 4, (int) crc.getValue());
+        // The length goes last, so a record is never visible with a zero length half-way
+        buffer.putInt(position, payload.length);
+        synchronized (this) {
+            indexRecord(id, position);
+        }
+        size = position + HEADER_SIZE + payload.length;
+        lastId = id;
+        return true;
+    }
+
+    private void indexRecord(long id, int position) {
+        if (indexSize > 0 && position - indexPositions[indexSize - 1] < indexInterval) {
+            return;
+        }
+        if (indexSize == indexIds.length) {
+            indexIds = Arrays.copyOf(indexIds, indexSize * 2);
+            indexPositions = Arrays.copyOf(indexPositions, indexSize * 2);
+        }
+        indexIds[indexSize] = id;
+        indexPositions[indexSize] = position;
+        indexSize++;
+    }
+
+    private int checksum(int position, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(position + 8, Long.BYTES + length));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Find the position of a record
+     *
+     * @param id The record id
+     * @return The record position, or -1 if the id is not in this segment
+     */
+    int positionOf(long id) {
+        int end = size;
+        if (id < baseId || id > lastId) {
+            return -1;
+        }
+        int position;
+        synchronized (this) {
+            int low = 0;
+            int high = indexSize - 1;
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (indexIds[mid] <= id) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            position = indexPositions[low];
+        }
+        // At most indexInterval bytes to walk from the nearest index entry
+        while (position < end && idAt(position) < id) {
+            position = nextPosition(position);
+        }
+        return position < end ? position : -1;
+    }
+
+    long idAt(int position) {
+        return buffer.getLong(position + 8);
+    }
+
+    int nextPosition(int position) {
+        return position + HEADER_SIZE + buffer.getInt(position);
+    }
+
+    /**
+     * A read-only view of a record's payload, sharing the mapped memory
+     */
+    ByteBuffer payloadAt(int position) {
+        return buffer.slice(position + HEADER_SIZE, buffer.getInt(position)).asReadOnlyBuffer();
+    }
+
+    /**
+     * Flush the records written since the last call to disk
+     */
+    synchronized void force() {
+        int end = size;
+        if (end > forcedSize) {
+            buffer.force(forcedSize, end - forcedSize);
+            forcedSize = end;
+        }
+    }
+
+    long baseId() {
+        return baseId;
+    }
+
+    long lastId() {
+        return lastId;
+    }
+
+    /**
+     * The end of the last complete record
+     */
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return lastId < baseId;
+    }
+
+    Path path() {
+        return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.springbootwebsocket.repository;
+
+import com.example.springbootwebsocket.ChatMessage;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Storage SPI for chat messages.
+ *
+ * Messages are append-only and get increasing ids in the order they are saved.
+ * The implementation is selected with {@code chat.store.type}: {@code jpa} (default)
+ * stores messages in the {@code chat_messages} table, {@code segment-log} in a
+ * memory-mapped append-only log on disk. The property is read at startup, also in an
+ * AOT-processed build (see {@link com.example.springbootwebsocket.config.MessageStoreConfig}).
+ * Reads return read-only {@link ChatMessageView} projections.
+ */
+public interface MessageStore {
+
+    /**
+     * Append a message and assign its id
+     *
+     * @param chatMessage The message to store
+     * @return The stored message with its generated id
+     */
+    ChatMessage save(ChatMessage chatMessage);
+
+    /**
+     * Find all messages, newest first
+     *
+     * @return List of all messages
+     */
+    List<ChatMessageView> findAllNewestFirst();
+
+    /**
+     * Find messages of a type, newest first
+     *
+     * @param type The message type to filter by
+     * @return List of messages of the specified type
+     */
+    List<ChatMessageView> findByTypeNewestFirst(ChatMessage.MessageType type);
+
+    /**
+     * Find messages from a sender, newest first
+     *
+     * @param name The sender name to filter by
+     * @return List of messages from the specified sender
+     */
+    List<ChatMessageView> findBySenderNewestFirst(String name);
+
+    /**
+     * Find the most recent messages, newest first
+     *
+     * @param limit The maximum number of messages to return
+     * @return List of at most {@code limit} messages
+     */
+    List<ChatMessageView> findNewest(int limit);
+
+    /**
+     * Find messages within an id range, in id order
+     *
+     * @param fromId The first id to include
+     * @param toId   The last id to include
+     * @return List of messages in ascending id order
+     */
+    List<ChatMessageView> findByIdRange(long fromId, long toId);
+
+    /**
+     * Find messages stored after a given id, in id order
+     *
+     * @param afterId The id to start after
+     * @param limit   The maximum number of messages to return
+     * @return List of messages in ascending id order
+     */
+    List<ChatMessageView> findAfter(long afterId, int limit);
+
+    /**
+     * Find the highest message id
+     *
+     * @return The highest id, or 0 if there are no messages
+     */
+    long findMaxId();
+
+    /**
+     * Find the watermark of all messages
+     *
+     * @return The highest id and message count
+     */
+    HistoryWatermark findWatermark();
+
+    /**
+     * Find the watermark of the messages of a type
+     *
+     * @param type The message type to filter by
+     * @return The highest id and message count
+     */
+    HistoryWatermark findWatermarkByType(ChatMessage.MessageType type);
+
+    /**
+     * Find the watermark of the messages from a sender
+     *
+     * @param name The sender name to filter by
+     * @return The highest id and message count
+     */
+    HistoryWatermark findWatermarkBySender(String name);
+
+    /**
+     * Release the resources of the store; called when the application shuts down
+     */
+    default void close() throws IOException {
+    }
+}
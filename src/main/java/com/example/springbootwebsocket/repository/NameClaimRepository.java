@@ -0,0 +1,71 @@
+package com.example.springbootwebsocket.repository;
+
+import com.example.springbootwebsocket.NameClaim;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Repository for the names bound to a client token
+ */
+@Repository
+public interface NameClaimRepository extends JpaRepository<NameClaim, String> {
+
+    /**
+     * Find the names whose claims are held by a session
+     *
+     * @return The names without an expiry time
+     */
+    @Query("select c.name from NameClaim c where c.expiresAt is null")
+    List<String> findHeldNames();
+
+    /**
+     * Find the names whose grace period has ended
+     *
+     * @param now The current time in epoch milliseconds
+     * @return The names of the expired claims
+     */
+    @Query("select c.name from NameClaim c where c.expiresAt <= :now")
+    List<String> findExpiredNames(@Param("now") long now);
+
+    /**
+     * Hold the claims of names a session uses, so they do not expire
+     *
+     * @param names The claimed names
+     * @return The number of claims updated
+     */
+    @Modifying
+    @Transactional
+    @Query("update NameClaim c set c.expiresAt = null where c.name in :names")
+    int hold(@Param("names") Collection<String> names);
+
+    /**
+     * Start the grace period of held claims whose names no session uses any more
+     *
+     * @param names     The claimed names
+     * @param expiresAt The end of the grace period in epoch milliseconds
+     * @return The number of claims updated
+     */
+    @Modifying
+    @Transactional
+    @Query("update NameClaim c set c.expiresAt = :expiresAt where c.name in :names and c.expiresAt is null")
+    int release(@Param("names") Collection<String> names, @Param("expiresAt") long expiresAt);
+
+    /**
+     * Delete claims whose grace period has ended
+     *
+     * @param names The claimed names
+     * @param now   The current time in epoch milliseconds
+     * @return The number of claims deleted; a claim held again meanwhile is kept
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from NameClaim c where c.name in :names and c.expiresAt <= :now")
+    int deleteExpired(@Param("names") Collection<String> names, @Param("now") long now);
+}
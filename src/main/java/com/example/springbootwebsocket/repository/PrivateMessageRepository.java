@@ -0,0 +1,35 @@
+package com.example.springbootwebsocket.repository;
+
+import com.example.springbootwebsocket.PrivateMessage;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Repository for private messages.
+ * Private messages are independent of {@code chat.store.type} and always live in the {@code private_messages} table.
+ */
+@Repository
+public interface PrivateMessageRepository extends JpaRepository<PrivateMessage, Long> {
+
+    /**
+     * Find the latest messages of a conversation, newest first
+     * The key is repeated in the ORDER BY so H2 reads (conversation_key, id) backwards in index order instead of sorting.
+     *
+     * @param conversationKey The conversation key
+     * @param pageable        The maximum number of messages to return
+     * @return Views of the private messages in descending id order
+     */
+    @Query("select new com.example.springbootwebsocket.repository.PrivateMessageView("
+            + "m.id, m.name, m.recipient, m.message, m.timestamp) "
+            + "from PrivateMessage m where m.conversationKey = :key order by m.conversationKey desc, m.id desc")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    List<PrivateMessageView> findConversationNewestFirst(@Param("key") String conversationKey, Pageable pageable);
+}
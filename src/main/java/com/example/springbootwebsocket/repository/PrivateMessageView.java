@@ -0,0 +1,16 @@
+package com.example.springbootwebsocket.repository;
+
+import com.example.springbootwebsocket.PrivateMessage;
+
+/**
+ * Read-only projection of a stored private message, as returned by the conversation reads.
+ * Unlike a {@link PrivateMessage} entity it is never attached to a persistence context.
+ *
+ * @param id        The message id
+ * @param name      The sender's name
+ * @param recipient The recipient's name
+ * @param message   The message content
+ * @param timestamp The ISO-8601 creation time
+ */
+public record PrivateMessageView(Long id, String name, String recipient, String message, String timestamp) {
+}
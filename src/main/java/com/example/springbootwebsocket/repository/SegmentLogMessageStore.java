@@ -0,0 +1,383 @@
+package com.example.springbootwebsocket.repository;
+
+import com.example.springbootwebsocket.ChatMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Message store backed by an append-only log of memory-mapped segment files.
+ *
+ * Messages get consecutive ids and are appended to the newest segment; a new segment is rolled
+ * when it is full. Reads walk the mapped segments directly, using each segment's sparse offset
+ * index to find the first requested id. On startup the segments are scanned and any torn or
+ * partially flushed tail is discarded, so the log always reopens as an intact prefix.
+ * Filtering by type or sender scans the whole log, which is fine for the ordered chat log this
+ * store is meant for; use the JPA store when those queries matter. Created by
+ * {@link com.example.springbootwebsocket.config.MessageStoreConfig}.
+ */
+public class SegmentLogMessageStore implements MessageStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(SegmentLogMessageStore.class);
+
+    /**
+     * When appended records are forced to disk
+     */
+    public enum FsyncPolicy {
+        /** After every append, before {@link #save} returns */
+        ALWAYS,
+        /** Every {@code chat.store.segment-log.fsync-interval-ms} */
+        INTERVAL,
+        /** Left to the operating system, except when a segment is rolled or the store is closed */
+        NEVER
+    }
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int indexInterval;
+    private final FsyncPolicy fsyncPolicy;
+    private final Object writeLock = new Object();
+
+    // Replaced as a whole when a segment is rolled, so readers can walk a stable snapshot
+    private volatile List<LogSegment> segments = List.of();
+    private volatile long lastId;
+
+    public SegmentLogMessageStore(String directory, int segmentSize, int indexInterval, FsyncPolicy fsyncPolicy) {
+        if (segmentSize <= LogSegment.HEADER_SIZE) {
+            throw new IllegalArgumentException("Segment size must be larger than " + LogSegment.HEADER_SIZE);
+        }
+        this.directory = Path.of(directory);
+        this.segmentSize = segmentSize;
+        this.indexInterval = indexInterval;
+        this.fsyncPolicy = fsyncPolicy;
+    }
+
+    /**
+     * Maps the existing segments and recovers the end of the log; called before the store is used
+     */
+    public void open() throws IOException {
+        Files.createDirectories(directory);
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(path -> path.getFileName().toString().endsWith(LogSegment.SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+
+        List<LogSegment> recovered = new ArrayList<>();
+        long expectedId = 1;
+        for (int i = 0; i < files.size(); i++) {
+            LogSegment segment = LogSegment.open(files.get(i), segmentSize, indexInterval);
+            if (!recovered.isEmpty() && segment.baseId() != expectedId) {
+                // A gap means everything from here on is unreachable
+                segment.close();
+                quarantine(files.subList(i, files.size()));
+                break;
+            }
+            boolean clean = segment.recover();
+            recovered.add(segment);
+            expectedId = segment.lastId() + 1;
+            if (!clean) {
+                logger.warn("Segment {} had a damaged tail; log recovered up to message id {}",
+                        segment.path().getFileName(), segment.lastId());
+                quarantine(files.subList(i + 1, files.size()));
+                break;
+            }
+        }
+        if (recovered.isEmpty()) {
+            recovered.add(LogSegment.create(directory, 1, segmentSize, indexInterval));
+        }
+
+        segments = List.copyOf(recovered);
+        lastId = recovered.get(recovered.size() - 1).lastId();
+        logger.info("Segment log opened at {}: {} segments, last message id {}", directory, recovered.size(), lastId);
+    }
+
+    private void quarantine(List<Path> files) throws IOException {
+        for (Path file : files) {
+            Path target = file.resolveSibling(file.getFileName() + ".corrupt");
+            logger.warn("Moving unrecoverable segment {} aside to {}", file.getFileName(), target.getFileName());
+            Files.move(file, target);
+        }
+    }
+
+    @Override
+    public ChatMessage save(ChatMessage chatMessage) {
+        byte[] payload = encode(chatMessage);
+        if (LogSegment.HEADER_SIZE + payload.length > segmentSize) {
+            throw new IllegalArgumentException("Message of " + payload.length + " bytes does not fit in a segment");
+        }
+        long id;
+        synchronized (writeLock) {
+            id = lastId + 1;
+            LogSegment active = segments.get(segments.size() - 1);
+            if (!active.append(id, payload)) {
+                active = roll(active, id);
+                active.append(id, payload);
+            }
+            if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+                active.force();
+            }
+            lastId = id;
+        }
+        chatMessage.setId(id);
+        return chatMessage;
+    }
+
+    private LogSegment roll(LogSegment full, long baseId) {
+        try {
+            if (fsyncPolicy != FsyncPolicy.NEVER) {
+                full.force();
+            }
+            LogSegment segment = LogSegment.create(directory, baseId, segmentSize, indexInterval);
+            List<LogSegment> rolled = new ArrayList<>(segments);
+            rolled.add(segment);
+            segments = List.copyOf(rolled);
+            logger.debug("Rolled segment log at message id {}", baseId);
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error rolling segment log", e);
+        }
+    }
+
+    /**
+     * Forces the active segment to disk when the fsync policy is {@link FsyncPolicy#INTERVAL}
+     */
+    @Scheduled(fixedDelayString = "${chat.store.segment-log.fsync-interval-ms:1000}")
+    public void scheduledSync() {
+        if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+            sync();
+        }
+    }
+
+    /**
+     * Forces all appended records to disk
+     */
+    public void sync() {
+        List<LogSegment> current = segments;
+        if (!current.isEmpty()) {
+            current.get(current.size() - 1).force();
+        }
+    }
+
+    /**
+     * Forces and unmaps the segments on shutdown
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            for (LogSegment segment : segments) {
+                segment.close();
+            }
+            segments = List.of();
+        }
+    }
+
+    @Override
+    public List<ChatMessageView> findAllNewestFirst() {
+        return newestFirst(scan(firstId(), Long.MAX_VALUE, payload -> true));
+    }
+
+    @Override
+    public List<ChatMessageView> findByTypeNewestFirst(ChatMessage.MessageType type) {
+        String typeName = type.name();
+        return newestFirst(scan(firstId(), Long.MAX_VALUE, payload -> typeName.equals(readType(payload))));
+    }
+
+    @Override
+    public List<ChatMessageView> findBySenderNewestFirst(String name) {
+        return newestFirst(scan(firstId(), Long.MAX_VALUE, payload -> name.equals(readName(payload))));
+    }
+
+    @Override
+    public List<ChatMessageView> findNewest(int limit) {
+        long last = lastId;
+        long from = Math.max(firstId(), last - limit + 1);
+        return newestFirst(scan(from, last, payload -> true));
+    }
+
+    @Override
+    public List<ChatMessageView> findByIdRange(long fromId, long toId) {
+        return scan(Math.max(fromId, firstId()), toId, payload -> true);
+    }
+
+    @Override
+    public List<ChatMessageView> findAfter(long afterId, int limit) {
+        long from = Math.max(afterId + 1, firstId());
+        return scan(from, from + limit - 1, payload -> true);
+    }
+
+    @Override
+    public long findMaxId() {
+        return lastId;
+    }
+
+    @Override
+    public HistoryWatermark findWatermark() {
+        long last = lastId;
+        long first = firstId();
+        return last < first ? HistoryWatermark.EMPTY : new HistoryWatermark(last, last - first + 1);
+    }
+
+    @Override
+    public HistoryWatermark findWatermarkByType(ChatMessage.MessageType type) {
+        String typeName = type.name();
+        return watermark(payload -> typeName.equals(readType(payload)));
+    }
+
+    @Override
+    public HistoryWatermark findWatermarkBySender(String name) {
+        return watermark(payload -> name.equals(readName(payload)));
+    }
+
+    private HistoryWatermark watermark(Predicate<ByteBuffer> filter) {
+        List<ChatMessageView> matches = scan(firstId(), Long.MAX_VALUE, filter);
+        return matches.isEmpty()
+                ? HistoryWatermark.EMPTY
+                : new HistoryWatermark(matches.get(matches.size() - 1).id(), matches.size());
+    }
+
+    private long firstId() {
+        List<LogSegment> current = segments;
+        return current.isEmpty() ? 1 : current.get(0).baseId();
+    }
+
+    /**
+     * Decodes the records with ids in {@code [fromId, toId]} whose payload passes the filter, in id order
+     */
+    private List<ChatMessageView> scan(long fromId, long toId, Predicate<ByteBuffer> filter) {
+        List<ChatMessageView> result = new ArrayList<>();
+        List<LogSegment> current = segments;
+        for (int i = segmentIndexOf(current, fromId); i < current.size(); i++) {
+            LogSegment segment = current.get(i);
+            int end = segment.size();
+            int position = segment.positionOf(Math.max(fromId, segment.baseId()));
+            if (position < 0) {
+                continue;
+            }
+            while (position < end) {
+                long id = segment.idAt(position);
+                if (id > toId) {
+                    return result;
+                }
+                ByteBuffer payload = segment.payloadAt(position);
+                if (filter.test(payload.duplicate())) {
+                    result.add(decode(id, payload));
+                }
+                position = segment.nextPosition(position);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Index of the segment holding the given id: the last one whose base id is not above it
+     */
+    private static int segmentIndexOf(List<LogSegment> current, long id) {
+        int low = 0;
+        int high = current.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (current.get(mid).baseId() <= id) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private static List<ChatMessageView> newestFirst(List<ChatMessageView> messages) {
+        Collections.reverse(messages);
+        return messages;
+    }
+
+    // Payload layout: [int count][type][name][timestamp][message][blobId], each string as [int length][UTF-8],
+    // -1 for null; records written before files could be shared end after the message
+
+    static byte[] encode(ChatMessage chatMessage) {
+        byte[] type = chatMessage.getType() != null ? chatMessage.getType().name().getBytes(StandardCharsets.UTF_8) : null;
+        byte[] name = utf8(chatMessage.getName());
+        byte[] timestamp = utf8(chatMessage.getTimestamp());
+        byte[] message = utf8(chatMessage.getMessage());
+        byte[] blobId = utf8(chatMessage.getBlobId());
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES * 6 + length(type) + length(name)
+                + length(timestamp) + length(message) + length(blobId));
+        buffer.putInt(chatMessage.getCount());
+        putString(buffer, type);
+        putString(buffer, name);
+        putString(buffer, timestamp);
+        putString(buffer, message);
+        putString(buffer, blobId);
+        return buffer.array();
+    }
+
+    static ChatMessageView decode(long id, ByteBuffer payload) {
+        ByteBuffer buffer = payload.duplicate();
+        buffer.position(Integer.BYTES);
+        String type = getString(buffer);
+        String name = getString(buffer);
+        String timestamp = getString(buffer);
+        String message = getString(buffer);
+        String blobId = buffer.hasRemaining() ? getString(buffer) : null;
+        return new ChatMessageView(id, name, message, timestamp, type != null ? ChatMessage.MessageType.valueOf(type) : null,
+                blobId);
+    }
+
+    private static String readType(ByteBuffer payload) {
+        payload.position(Integer.BYTES);
+        return getString(payload);
+    }
+
+    private static String readName(ByteBuffer payload) {
+        payload.position(Integer.BYTES);
+        skipString(payload);
+        return getString(payload);
+    }
+
+    private static byte[] utf8(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static int length(byte[] value) {
+        return value != null ? value.length : 0;
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] value) {
+        if (value == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(value.length);
+            buffer.put(value);
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = StandardCharsets.UTF_8.decode(buffer.slice(buffer.position(), length)).toString();
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private static void skipString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length > 0) {
+            buffer.position(buffer.position() + length);
+        }
+    }
+}
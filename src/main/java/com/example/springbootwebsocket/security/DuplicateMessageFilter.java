@@ -0,0 +1,149 @@
+package com.example.springbootwebsocket.security;
+
+import com.example.springbootwebsocket.StringHash;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+
+/**
+ * Detects messages a sender repeats within a short window, e.g. from a bot or a stuck client.
+ *
+ * Each message is reduced to a hash of its sender, recipient and normalized text (trimmed,
+ * whitespace collapsed, lower case) and looked up in two Bloom filters: the one of the current
+ * window and the one of the previous window. When a window ends the older filter is cleared and
+ * becomes the current one, so a repeat is recognized for between one and two windows after the
+ * first copy. The filters have a fixed size, so the memory does not grow with the number of
+ * senders. Their size is derived from the expected messages per window and the acceptable
+ * false positive rate, the chance that a message that was not sent before is taken for a repeat.
+ */
+@Component
+public class DuplicateMessageFilter {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final long windowMillis;
+    private final LongSupplier clock;
+    private final int bitCount;
+    private final int hashCount;
+    private AtomicLongArray current;
+    private AtomicLongArray previous;
+    private long currentWindow;
+
+    @Autowired
+    public DuplicateMessageFilter(@Value("${chat.duplicates.window-ms:30000}") long windowMillis,
+            @Value("${chat.duplicates.expected-messages:100000}") int expectedMessages,
+            @Value("${chat.duplicates.false-positive-rate:0.0001}") double falsePositiveRate) {
+        this(Duration.ofMillis(windowMillis), expectedMessages, falsePositiveRate, System::currentTimeMillis);
+    }
+
+    DuplicateMessageFilter(Duration window, int expectedMessages, double falsePositiveRate, LongSupplier clock) {
+        if (expectedMessages < 1 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Invalid duplicate filter sizing");
+        }
+        this.windowMillis = Math.max(1, window.toMillis());
+        this.clock = clock;
+        // Optimal Bloom filter for n elements at rate p: m = -n ln p / (ln 2)^2 bits and k = m / n ln 2 hashes
+        double bits = -expectedMessages * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        this.bitCount = (int) Math.min(Integer.MAX_VALUE - 63, Math.max(64, Math.ceil(bits)));
+        this.hashCount = Math.max(1, (int) Math.round(bitCount / (double) expectedMessages * Math.log(2)));
+        this.current = new AtomicLongArray((bitCount + 63) / 64);
+        this.previous = new AtomicLongArray((bitCount + 63) / 64);
+        this.currentWindow = Math.floorDiv(clock.getAsLong(), windowMillis);
+    }
+
+    /**
+     * Checks whether a message repeats one sent recently, and remembers it if not
+     *
+     * @param sender    The registered name of the sender
+     * @param recipient The recipient of a private message, or null for the room
+     * @param text      The message text as received
+     * @return true if the same sender sent the same text to the same recipient within the window
+     */
+    public boolean isRepeat(String sender, String recipient, String text) {
+        String normalized = WHITESPACE.matcher(text.strip()).replaceAll(" ").toLowerCase(Locale.ROOT);
+        String key = sender + '\u0000' + (recipient != null ? recipient : "") + '\u0000' + normalized;
+        long hash1 = StringHash.fnv1a(key, StringHash.FNV_OFFSET_BASIS);
+        long hash2 = StringHash.fnv1a(key, 0x84222325cbf29ce4L) | 1;
+
+        AtomicLongArray[] filters = filters();
+        if (contains(filters[0], hash1, hash2) || contains(filters[1], hash1, hash2)) {
+            return true;
+        }
+        add(filters[0], hash1, hash2);
+        return false;
+    }
+
+    /**
+     * Returns the current and the previous filter, rotating them when a window has ended
+     */
+    private synchronized AtomicLongArray[] filters() {
+        long window = Math.floorDiv(clock.getAsLong(), windowMillis);
+        if (window > currentWindow) {
+            AtomicLongArray recycled = previous;
+            clear(recycled);
+            if (window == currentWindow + 1) {
+                previous = current;
+            } else {
+                // More than a window without messages: nothing is recent any more
+                clear(current);
+                previous = current;
+            }
+            current = recycled;
+            currentWindow = window;
+        }
+        return new AtomicLongArray[] {current, previous};
+    }
+
+    private boolean contains(AtomicLongArray filter, long hash1, long hash2) {
+        for (int i = 0; i < hashCount; i++) {
+            int bit = bit(hash1, hash2, i);
+            if ((filter.get(bit >>> 6) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void add(AtomicLongArray filter, long hash1, long hash2) {
+        for (int i = 0; i < hashCount; i++) {
+            int bit = bit(hash1, hash2, i);
+            long mask = 1L << bit;
+            if ((filter.get(bit >>> 6) & mask) == 0) {
+                filter.getAndAccumulate(bit >>> 6, mask, (word, set) -> word | set);
+            }
+        }
+    }
+
+    /**
+     * The i-th bit position from two hashes, so the key is only hashed twice however many bits it sets
+     */
+    private int bit(long hash1, long hash2, int i) {
+        return (int) Long.remainderUnsigned(hash1 + i * hash2, bitCount);
+    }
+
+    private static void clear(AtomicLongArray filter) {
+        for (int i = 0; i < filter.length(); i++) {
+            filter.set(i, 0);
+        }
+    }
+
+    /**
+     * Returns the number of bits of each of the two filters
+     */
+    public int getBitCount() {
+        return bitCount;
+    }
+
+    /**
+     * Returns the number of bits set per message
+     */
+    public int getHashCount() {
+        return hashCount;
+    }
+}
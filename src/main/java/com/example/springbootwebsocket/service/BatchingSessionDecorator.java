@@ -0,0 +1,234 @@
+package com.example.springbootwebsocket.service;
+
+import com.example.springbootwebsocket.logging.LogSampler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Packs the text frames of a busy session into JSON array frames.
+ *
+ * Every frame costs a write to the socket plus a frame header, which dominates when a burst
+ * sends hundreds of small messages per second to each session. While the session's outbound
+ * rate stays below the threshold, every frame is sent as it comes, so a quiet room sees no extra
+ * latency. Once the rate goes over it, a frame waits up to the batch window for the frames that
+ * follow it, and they are sent together as {@code [frame,frame,...]}. A batch of one is sent as
+ * the frame itself. Batching stops again after a rate interval below the threshold.
+ *
+ * Frames other than text, e.g. heartbeat pings, are never held back. Pending frames are sent
+ * before the session is closed. The timer only marks the end of a window; the batch is then sent
+ * on the session's own sender thread, so a peer that stops reading cannot hold up the batches
+ * of sessions on other threads.
+ */
+final class BatchingSessionDecorator extends WebSocketSessionDecorator {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchingSessionDecorator.class);
+
+    // The outbound rate is counted over intervals of this length
+    static final long RATE_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    // A batch this large is sent right away instead of at the end of its window
+    static final int MAX_BATCH = 256;
+
+    private static final LogSampler sendErrorLogSampler = LogSampler.perSecond(5);
+
+    private final ScheduledExecutorService timer;
+    private final Executor sender;
+    private final long windowNanos;
+    private final int intervalThreshold;
+    private final LongSupplier nanoClock;
+
+    // Guards the fields below; frames are sent outside of it
+    private final Object lock = new Object();
+    private List<String> pending = new ArrayList<>();
+    private boolean scheduled;
+    private boolean flushing;
+    private boolean batching;
+    private long intervalStart;
+    private int intervalFrames;
+
+    /**
+     * @param delegate The thread-safe session to send to
+     * @param timer    Signals the end of a batch window; shared by all sessions, so it never sends
+     * @param sender   Sends the batches whose window has ended
+     * @param windowMs How long a frame waits for others to join its batch
+     * @param minRate  The outbound rate in frames per second from which frames are batched
+     */
+    BatchingSessionDecorator(WebSocketSession delegate, ScheduledExecutorService timer, Executor sender, int windowMs,
+            int minRate) {
+        this(delegate, timer, sender, windowMs, minRate, System::nanoTime);
+    }
+
+    BatchingSessionDecorator(WebSocketSession delegate, ScheduledExecutorService timer, Executor sender, int windowMs,
+            int minRate, LongSupplier nanoClock) {
+        super(delegate);
+        this.timer = timer;
+        this.sender = sender;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+        this.intervalThreshold = (int) Math.max(1, minRate * RATE_INTERVAL_NANOS / TimeUnit.SECONDS.toNanos(1));
+        this.nanoClock = nanoClock;
+        this.intervalStart = nanoClock.getAsLong();
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+        if (!(message instanceof TextMessage text) || !text.isLast()) {
+            super.sendMessage(message);
+            return;
+        }
+        boolean direct = false;
+        boolean flushNow = false;
+        synchronized (lock) {
+            countFrame();
+            // Frames already waiting go first, so a frame never overtakes them
+            if (!batching && pending.isEmpty() && !flushing) {
+                direct = true;
+            } else {
+                pending.add(text.getPayload());
+                if (pending.size() >= MAX_BATCH) {
+                    flushNow = true;
+                } else if (!scheduled && !flushing) {
+                    scheduled = true;
+                    try {
+                        timer.schedule(this::flushOnSender, windowNanos, TimeUnit.NANOSECONDS);
+                    } catch (RejectedExecutionException e) {
+                        // Shutting down; nothing waits for the window any more
+                        scheduled = false;
+                        flushNow = true;
+                    }
+                }
+            }
+        }
+        if (direct) {
+            super.sendMessage(message);
+        } else if (flushNow) {
+            flush();
+        }
+    }
+
+    /**
+     * Counts a frame towards the outbound rate and switches batching on or off
+     */
+    private void countFrame() {
+        long now = nanoClock.getAsLong();
+        long elapsed = now - intervalStart;
+        if (elapsed >= RATE_INTERVAL_NANOS) {
+            // Only a busy interval that just ended keeps batching on
+            batching = intervalFrames >= intervalThreshold && elapsed < 2 * RATE_INTERVAL_NANOS;
+            intervalStart = now;
+            intervalFrames = 0;
+        }
+        if (++intervalFrames >= intervalThreshold) {
+            batching = true;
+        }
+    }
+
+    /**
+     * Hands the batch whose window ended to the sender thread
+     */
+    private void flushOnSender() {
+        try {
+            sender.execute(this::flush);
+        } catch (RejectedExecutionException e) {
+            // Shutting down; send what is left from here
+            flush();
+        }
+    }
+
+    /**
+     * Sends the pending frames, including those that arrive while doing so.
+     * Only one thread sends batches at a time; others return right away.
+     */
+    void flush() {
+        synchronized (lock) {
+            scheduled = false;
+            if (flushing || pending.isEmpty()) {
+                return;
+            }
+            flushing = true;
+        }
+        try {
+            while (true) {
+                List<String> batch;
+                synchronized (lock) {
+                    if (pending.isEmpty()) {
+                        flushing = false;
+                        return;
+                    }
+                    batch = pending;
+                    pending = new ArrayList<>();
+                }
+                send(batch);
+            }
+        } catch (RuntimeException e) {
+            synchronized (lock) {
+                flushing = false;
+            }
+            throw e;
+        }
+    }
+
+    private void send(List<String> batch) {
+        if (!isOpen()) {
+            return;
+        }
+        try {
+            super.sendMessage(new TextMessage(batch.size() == 1 ? batch.get(0) : toArray(batch)));
+        } catch (IOException | SessionLimitExceededException e) {
+            if (sendErrorLogSampler.shouldLog()) {
+                logger.error("Error sending batch of {} messages to session {}: {} ({} send errors suppressed)",
+                        batch.size(), getId(), e.getMessage(), sendErrorLogSampler.takeSuppressed(), e);
+            }
+        }
+    }
+
+    private static String toArray(List<String> frames) {
+        int length = frames.size() + 1;
+        for (String frame : frames) {
+            length += frame.length();
+        }
+        StringBuilder array = new StringBuilder(length).append('[');
+        for (int i = 0; i < frames.size(); i++) {
+            if (i > 0) {
+                array.append(',');
+            }
+            array.append(frames.get(i));
+        }
+        return array.append(']').toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        super.close();
+    }
+
+    @Override
+    public void close(CloseStatus status) throws IOException {
+        flush();
+        super.close(status);
+    }
+
+    /**
+     * Returns true while frames are being batched
+     */
+    boolean isBatching() {
+        synchronized (lock) {
+            return batching;
+        }
+    }
+}
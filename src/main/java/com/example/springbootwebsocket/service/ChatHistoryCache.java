@@ -0,0 +1,155 @@
+package com.example.springbootwebsocket.service;
+
+import com.example.springbootwebsocket.ChatMessage;
+import com.example.springbootwebsocket.repository.HistoryWatermark;
+import com.example.springbootwebsocket.repository.MessageStore;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * In-memory watermarks and pre-serialized response bodies for the history endpoints.
+ *
+ * A filter's watermark is loaded from the message store once and then advanced on every save,
+ * so an unchanged history can be validated without running the history query. Serialized
+ * bodies are kept per filter and dropped as soon as a matching message is saved.
+ */
+@Service
+public class ChatHistoryCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatHistoryCache.class);
+
+    // Bounds the number of tracked filters, since every sender name is a filter of its own
+    static final int MAX_TRACKED_FILTERS = 10_000;
+
+    private final MessageStore messageStore;
+    private final ObjectMapper objectMapper;
+    private final Map<Filter, HistoryWatermark> watermarks = new ConcurrentHashMap<>();
+    private final Map<Filter, CachedBody> bodies = new ConcurrentHashMap<>();
+
+    /**
+     * A history query: all messages, messages of one type or messages of one sender
+     *
+     * @param type   The message type, or null
+     * @param sender The sender name, or null
+     */
+    public record Filter(ChatMessage.MessageType type, String sender) {
+
+        private static final Filter ALL = new Filter(null, null);
+
+        public static Filter all() {
+            return ALL;
+        }
+
+        public static Filter byType(ChatMessage.MessageType type) {
+            return new Filter(type, null);
+        }
+
+        public static Filter bySender(String sender) {
+            return new Filter(null, sender);
+        }
+    }
+
+    /**
+     * Serialized body together with the watermark it was built for
+     */
+    private record CachedBody(HistoryWatermark watermark, byte[] json) {
+    }
+
+    public ChatHistoryCache(MessageStore messageStore, ObjectMapper objectMapper) {
+        this.messageStore = messageStore;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Get the current watermark of a filter
+     *
+     * @param filter The history filter
+     * @return The watermark, loaded from the message store only the first time the filter is seen
+     */
+    public HistoryWatermark getWatermark(Filter filter) {
+        HistoryWatermark watermark = watermarks.get(filter);
+        if (watermark != null) {
+            return watermark;
+        }
+        if (watermarks.size() >= MAX_TRACKED_FILTERS) {
+            return loadWatermark(filter);
+        }
+        // Loading under the map lock means a concurrent save waits for it and then advances it
+        return watermarks.computeIfAbsent(filter, this::loadWatermark);
+    }
+
+    private HistoryWatermark loadWatermark(Filter filter) {
+        logger.debug("Loading history watermark for {}", filter);
+        if (filter.type() != null) {
+            return messageStore.findWatermarkByType(filter.type());
+        }
+        if (filter.sender() != null) {
+            return messageStore.findWatermarkBySender(filter.sender());
+        }
+        return messageStore.findWatermark();
+    }
+
+    /**
+     * Get the serialized body of a filter for the given watermark
+     *
+     * @param filter    The history filter
+     * @param watermark The watermark the body must correspond to
+     * @param loader    Loads the history when there is no cached body for the watermark
+     * @return The JSON body
+     */
+    public byte[] getBody(Filter filter, HistoryWatermark watermark, Supplier<?> loader) {
+        CachedBody cached = bodies.get(filter);
+        if (cached != null && cached.watermark().equals(watermark)) {
+            return cached.json();
+        }
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(loader.get());
+            if (bodies.size() < MAX_TRACKED_FILTERS || bodies.containsKey(filter)) {
+                bodies.put(filter, new CachedBody(watermark, json));
+            }
+            return json;
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException("Error serializing chat history", e);
+        }
+    }
+
+    /**
+     * Advances the watermarks of every filter the saved message belongs to
+     *
+     * @param chatMessage The persisted message, with its generated id
+     */
+    public void recordSaved(ChatMessage chatMessage) {
+        if (chatMessage.getId() == null) {
+            return;
+        }
+        advance(Filter.all(), chatMessage.getId());
+        if (chatMessage.getType() != null) {
+            advance(Filter.byType(chatMessage.getType()), chatMessage.getId());
+        }
+        if (chatMessage.getName() != null) {
+            advance(Filter.bySender(chatMessage.getName()), chatMessage.getId());
+        }
+    }
+
+    private void advance(Filter filter, long id) {
+        // Untracked filters are loaded with the new message included when first requested
+        watermarks.computeIfPresent(filter, (key, watermark) -> watermark.advance(id));
+        bodies.remove(filter);
+    }
+
+    /**
+     * Forget all watermarks and bodies, forcing them to be loaded again
+     */
+    public void clear() {
+        watermarks.clear();
+        bodies.clear();
+    }
+}
@@ -1,7 +1,9 @@
 package com.example.springbootwebsocket.service;
 
+import com.example.springbootwebsocket.ChatEvent;
 import com.example.springbootwebsocket.ChatMessage;
-import com.example.springbootwebsocket.repository.ChatMessageRepository;
+import com.example.springbootwebsocket.repository.ChatMessageView;
+import com.example.springbootwebsocket.repository.MessageStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -11,27 +13,46 @@ import java.util.List;
 
 /**
  * Service for handling chat message operations
+ *
+ * Callers hand over and get back immutable {@link ChatEvent}s; the {@link ChatMessage} entity is
+ * only created here, when an event is persisted.
  */
 @Service
 public class ChatMessageService {
 
     private static final Logger logger = LoggerFactory.getLogger(ChatMessageService.class);
-    private final ChatMessageRepository chatMessageRepository;
+    private final MessageStore messageStore;
+    private final ChatSearchService chatSearchService;
+    private final ChatHistoryCache chatHistoryCache;
 
     @Autowired
-    public ChatMessageService(ChatMessageRepository chatMessageRepository) {
-        this.chatMessageRepository = chatMessageRepository;
+    public ChatMessageService(MessageStore messageStore, ChatSearchService chatSearchService,
+            ChatHistoryCache chatHistoryCache) {
+        this.messageStore = messageStore;
+        this.chatSearchService = chatSearchService;
+        this.chatHistoryCache = chatHistoryCache;
     }
 
     /**
-     * Save a chat message to the database
+     * Save a chat message to the message store
      *
-     * @param chatMessage The message to save
+     * @param event The message to save
      * @return The saved message with its generated ID
      */
-    public ChatMessage saveMessage(ChatMessage chatMessage) {
-        logger.debug("Saving chat message: {}", chatMessage.getMessage());
-        return chatMessageRepository.save(chatMessage);
+    public ChatEvent saveMessage(ChatEvent event) {
+        logger.debug("Saving chat message: {}", event.message());
+        ChatMessage savedMessage = messageStore.save(toEntity(event));
+        chatSearchService.index(savedMessage);
+        chatHistoryCache.recordSaved(savedMessage);
+        return event.withId(savedMessage.getId());
+    }
+
+    private static ChatMessage toEntity(ChatEvent event) {
+        ChatMessage chatMessage = new ChatMessage(event.name(), event.message(), event.type());
+        chatMessage.setTimestamp(event.timestamp());
+        chatMessage.setCount(event.count());
+        chatMessage.setBlobId(event.blobId());
+        return chatMessage;
     }
 
     /**
@@ -39,9 +60,9 @@ public class ChatMessageService {
      *
      * @return List of all chat messages
      */
-    public List<ChatMessage> getAllMessages() {
+    public List<ChatMessageView> getAllMessages() {
         logger.debug("Retrieving all chat messages");
-        return chatMessageRepository.findAllByOrderByTimestampDesc();
+        return messageStore.findAllNewestFirst();
     }
 
     /**
@@ -50,9 +71,9 @@ public class ChatMessageService {
      * @param type The message type to filter by
      * @return List of chat messages of the specified type
      */
-    public List<ChatMessage> getMessagesByType(ChatMessage.MessageType type) {
+    public List<ChatMessageView> getMessagesByType(ChatMessage.MessageType type) {
         logger.debug("Retrieving chat messages by type: {}", type);
-        return chatMessageRepository.findByTypeOrderByTimestampDesc(type);
+        return messageStore.findByTypeNewestFirst(type);
     }
 
     /**
@@ -61,9 +82,9 @@ public class ChatMessageService {
      * @param name The sender name to filter by
      * @return List of chat messages from the specified sender
      */
-    public List<ChatMessage> getMessagesBySender(String name) {
+    public List<ChatMessageView> getMessagesBySender(String name) {
         logger.debug("Retrieving chat messages by sender: {}", name);
-        return chatMessageRepository.findByNameOrderByTimestampDesc(name);
+        return messageStore.findBySenderNewestFirst(name);
     }
 
     /**
@@ -71,8 +92,8 @@ public class ChatMessageService {
      *
      * @return List of regular chat messages
      */
-    public List<ChatMessage> getChatMessages() {
+    public List<ChatMessageView> getChatMessages() {
         logger.debug("Retrieving regular chat messages");
-        return chatMessageRepository.findByTypeOrderByTimestampDesc(ChatMessage.MessageType.CHAT);
+        return messageStore.findByTypeNewestFirst(ChatMessage.MessageType.CHAT);
     }
 }
@@ -0,0 +1,332 @@
+package com.example.springbootwebsocket.service;
+
+import com.example.springbootwebsocket.ChatMessage;
+import com.example.springbootwebsocket.repository.ChatMessageView;
+import com.example.springbootwebsocket.repository.MessageStore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.simple.SimpleQueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.highlight.Highlighter;
+import org.apache.lucene.search.highlight.InvalidTokenOffsetsException;
+import org.apache.lucene.search.highlight.QueryScorer;
+import org.apache.lucene.search.highlight.SimpleHTMLEncoder;
+import org.apache.lucene.search.highlight.SimpleHTMLFormatter;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Full-text search over chat history backed by an embedded Lucene index.
+ *
+ * The index is kept in sync from {@link ChatMessageService#saveMessage} and committed
+ * periodically. Each commit records the highest message id it covers, so on startup only
+ * messages stored after the last commit are indexed again. A message that could not be indexed
+ * is retried on every commit, and until it is indexed the recorded id stays below it.
+ */
+@Service
+public class ChatSearchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatSearchService.class);
+
+    // Commit user data key holding the message id up to which the index is complete
+    static final String MAX_ID_KEY = "maxId";
+
+    private static final String FIELD_ID = "id";
+    private static final String FIELD_NAME = "name";
+    private static final String FIELD_MESSAGE = "message";
+    private static final String FIELD_TIMESTAMP = "timestamp";
+
+    // Upper bound for the page size a client may request
+    static final int MAX_PAGE_SIZE = 100;
+
+    private final MessageStore messageStore;
+    private final String indexDirectory;
+    private final int rebuildBatchSize;
+    private final Analyzer analyzer;
+    private final AtomicLong maxIndexedId = new AtomicLong();
+
+    // Messages whose indexing failed, by id
+    private final ConcurrentSkipListMap<Long, ChatMessageView> failedMessages = new ConcurrentSkipListMap<>();
+
+    private Directory directory;
+    private IndexWriter indexWriter;
+    private SearcherManager searcherManager;
+
+    /**
+     * A single search result
+     *
+     * @param id        The message id
+     * @param name      The sender name
+     * @param message   The stored message content
+     * @param timestamp The message timestamp
+     * @param highlight HTML-escaped message fragment with matches wrapped in {@code <mark>} tags
+     */
+    public record SearchHit(long id, String name, String message, String timestamp, String highlight) {
+    }
+
+    /**
+     * A page of search results
+     *
+     * @param query   The query that was executed
+     * @param page    The zero-based page number
+     * @param size    The page size
+     * @param total   The total number of matching messages
+     * @param results The hits on this page, best match first
+     */
+    public record SearchPage(String query, int page, int size, long total, List<SearchHit> results) {
+    }
+
+    @Autowired
+    public ChatSearchService(MessageStore messageStore,
+            @Value("${chat.search.index-dir:}") String indexDirectory,
+            @Value("${chat.search.rebuild-batch-size:500}") int rebuildBatchSize) {
+        this(messageStore, indexDirectory, rebuildBatchSize, new StandardAnalyzer());
+    }
+
+    ChatSearchService(MessageStore messageStore, String indexDirectory, int rebuildBatchSize, Analyzer analyzer) {
+        this.messageStore = messageStore;
+        this.indexDirectory = indexDirectory;
+        this.rebuildBatchSize = rebuildBatchSize;
+        this.analyzer = analyzer;
+    }
+
+    /**
+     * Opens the index and indexes the messages stored since its last commit
+     */
+    @PostConstruct
+    public void open() throws IOException {
+        directory = indexDirectory == null || indexDirectory.isBlank()
+                ? new ByteBuffersDirectory()
+                : FSDirectory.open(Path.of(indexDirectory));
+        indexWriter = new IndexWriter(directory, new IndexWriterConfig(analyzer)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+        searcherManager = new SearcherManager(indexWriter, null);
+
+        long committedMaxId = readCommittedMaxId();
+        long storedMaxId = messageStore.findMaxId();
+        if (committedMaxId > storedMaxId) {
+            // The message store was reset underneath the index, so its ids can no longer be trusted
+            logger.warn("Search index covers message id {} but the message store ends at {}; rebuilding the index",
+                    committedMaxId, storedMaxId);
+            indexWriter.deleteAll();
+            committedMaxId = 0;
+        }
+        maxIndexedId.set(committedMaxId);
+        catchUp(committedMaxId);
+        commit();
+    }
+
+    /**
+     * Indexes all chat messages with an id above the given one, in id order
+     */
+    private void catchUp(long afterId) throws IOException {
+        int indexed = 0;
+        long lastId = afterId;
+        List<ChatMessageView> batch;
+        do {
+            // Walks the ids in order; other message types are skipped here rather than filtered by the store
+            batch = messageStore.findAfter(lastId, rebuildBatchSize);
+            for (ChatMessageView message : batch) {
+                if (message.type() == ChatMessage.MessageType.CHAT) {
+                    addDocument(message);
+                    indexed++;
+                }
+                lastId = message.id();
+            }
+        } while (batch.size() == rebuildBatchSize);
+        maxIndexedId.accumulateAndGet(messageStore.findMaxId(), Math::max);
+        logger.info("Search index caught up: {} messages indexed after id {}", indexed, afterId);
+    }
+
+    private long readCommittedMaxId() {
+        Iterable<Map.Entry<String, String>> commitData = indexWriter.getLiveCommitData();
+        if (commitData != null) {
+            for (Map.Entry<String, String> entry : commitData) {
+                if (MAX_ID_KEY.equals(entry.getKey())) {
+                    return Long.parseLong(entry.getValue());
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Adds a saved message to the index. Only regular chat messages are searchable.
+     *
+     * @param chatMessage The persisted message, with its generated id
+     */
+    public void index(ChatMessage chatMessage) {
+        if (chatMessage.getType() != ChatMessage.MessageType.CHAT || chatMessage.getId() == null) {
+            return;
+        }
+        ChatMessageView message = ChatMessageView.of(chatMessage);
+        try {
+            addDocument(message);
+        } catch (IOException e) {
+            // The message is still stored; it is retried on the next commit, or on startup after a crash
+            failedMessages.put(message.id(), message);
+            logger.error("Error indexing message {}: {}", message.id(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Indexes the messages whose indexing failed before, lowest id first
+     */
+    private void retryFailedMessages() {
+        for (ChatMessageView message : failedMessages.values()) {
+            try {
+                addDocument(message);
+                failedMessages.remove(message.id());
+            } catch (IOException e) {
+                logger.warn("Error indexing message {} again: {}", message.id(), e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private void addDocument(ChatMessageView chatMessage) throws IOException {
+        Document document = new Document();
+        document.add(new StringField(FIELD_ID, String.valueOf(chatMessage.id()), Field.Store.YES));
+        document.add(new StoredField(FIELD_NAME, nullToEmpty(chatMessage.name())));
+        document.add(new TextField(FIELD_MESSAGE, nullToEmpty(chatMessage.message()), Field.Store.YES));
+        document.add(new StoredField(FIELD_TIMESTAMP, nullToEmpty(chatMessage.timestamp())));
+        // Update by id, so a message seen both live and during catch-up is indexed once
+        indexWriter.updateDocument(new Term(FIELD_ID, String.valueOf(chatMessage.id())), document);
+        maxIndexedId.accumulateAndGet(chatMessage.id(), Math::max);
+    }
+
+    /**
+     * Searches chat messages by keyword.
+     * Supports the simple query syntax: {@code "phrases"}, {@code prefix*}, {@code -exclusions} and {@code a | b}.
+     *
+     * @param queryText The user query; all terms must match by default
+     * @param page      The zero-based page number
+     * @param size      The page size, capped at {@value #MAX_PAGE_SIZE}
+     * @return The requested page of results; empty past the last result
+     */
+    public SearchPage search(String queryText, int page, int size) {
+        int pageNumber = Math.max(page, 0);
+        int pageSize = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        logger.debug("Searching chat messages for '{}' (page {}, size {})", queryText, pageNumber, pageSize);
+
+        SimpleQueryParser parser = new SimpleQueryParser(analyzer, FIELD_MESSAGE);
+        parser.setDefaultOperator(BooleanClause.Occur.MUST);
+        Query query = parser.parse(queryText);
+        if (query == null) {
+            // Nothing searchable left after analysis (e.g. only punctuation)
+            return new SearchPage(queryText, pageNumber, pageSize, 0, List.of());
+        }
+
+        try {
+            searcherManager.maybeRefresh();
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                // Computed in long, since page times size may exceed an int
+                long offset = (long) pageNumber * pageSize;
+                int maxDoc = searcher.getIndexReader().maxDoc();
+                if (offset >= maxDoc) {
+                    // No page starts this far; only the total is looked up
+                    return new SearchPage(queryText, pageNumber, pageSize, searcher.count(query), List.of());
+                }
+                TopDocs topDocs = searcher.search(query, (int) Math.min(offset + pageSize, maxDoc));
+                Highlighter highlighter = new Highlighter(new SimpleHTMLFormatter("<mark>", "</mark>"),
+                        new SimpleHTMLEncoder(), new QueryScorer(query, FIELD_MESSAGE));
+
+                List<SearchHit> hits = new ArrayList<>();
+                ScoreDoc[] scoreDocs = topDocs.scoreDocs;
+                for (int i = (int) offset; i < scoreDocs.length; i++) {
+                    Document document = searcher.storedFields().document(scoreDocs[i].doc);
+                    String message = document.get(FIELD_MESSAGE);
+                    hits.add(new SearchHit(Long.parseLong(document.get(FIELD_ID)), document.get(FIELD_NAME),
+                            message, document.get(FIELD_TIMESTAMP), highlight(highlighter, message)));
+                }
+                return new SearchPage(queryText, pageNumber, pageSize, topDocs.totalHits.value, hits);
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error searching chat messages", e);
+        }
+    }
+
+    private String highlight(Highlighter highlighter, String message) throws IOException {
+        try {
+            String fragment = highlighter.getBestFragment(analyzer, FIELD_MESSAGE, message);
+            return fragment != null ? fragment : new SimpleHTMLEncoder().encodeText(message);
+        } catch (InvalidTokenOffsetsException e) {
+            return new SimpleHTMLEncoder().encodeText(message);
+        }
+    }
+
+    /**
+     * Retries the messages that failed to index, then commits pending index changes together with
+     * the highest message id below which every chat message is indexed
+     */
+    @Scheduled(fixedDelayString = "${chat.search.commit-interval-ms:5000}")
+    public synchronized void commit() {
+        if (indexWriter == null || !indexWriter.isOpen()) {
+            return;
+        }
+        retryFailedMessages();
+        try {
+            long maxId = maxIndexedId.get();
+            Map.Entry<Long, ChatMessageView> firstFailed = failedMessages.firstEntry();
+            if (firstFailed != null) {
+                // A restart indexes the failed message and all after it again
+                maxId = Math.min(maxId, firstFailed.getKey() - 1);
+            }
+            if (indexWriter.hasUncommittedChanges() || readCommittedMaxId() != maxId) {
+                indexWriter.setLiveCommitData(Map.of(MAX_ID_KEY, String.valueOf(maxId)).entrySet());
+                indexWriter.commit();
+            }
+        } catch (IOException e) {
+            logger.error("Error committing search index: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Commits and closes the index on shutdown
+     */
+    @PreDestroy
+    public void close() throws IOException {
+        commit();
+        searcherManager.close();
+        indexWriter.close();
+        directory.close();
+    }
+
+    private static String nullToEmpty(String value) {
+        return value != null ? value : "";
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.springbootwebsocket.service;
+
+import com.example.springbootwebsocket.ChatMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Rolling chat statistics, maintained as messages pass through the handler.
+ *
+ * The window is a ring of one-minute buckets, each with a counter per message type and a
+ * HyperLogLog sketch of the senders. Recording a message touches only the current bucket, and
+ * a bucket is reset when the ring comes around to it again, so reading the statistics never
+ * queries the database and costs the same however many messages were sent. Counts are exact
+ * except for a message recorded at the very moment its bucket is recycled, which may be lost;
+ * the number of active senders is an estimate.
+ */
+@Service
+public class ChatStatistics {
+
+    // 1024 registers per bucket, a standard error of about 3%
+    private static final int SENDER_PRECISION = 10;
+
+    private static final long BUCKET_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final ChatMessage.MessageType[] TYPES = ChatMessage.MessageType.values();
+
+    private final Bucket[] buckets;
+    private final LongSupplier clock;
+
+    /**
+     * The counters of one minute
+     */
+    private static final class Bucket {
+
+        private volatile long minute = Long.MIN_VALUE;
+        private final LongAdder[] counts = new LongAdder[TYPES.length];
+        private final HyperLogLog senders = new HyperLogLog(SENDER_PRECISION);
+
+        private Bucket() {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = new LongAdder();
+            }
+        }
+    }
+
+    /**
+     * The statistics of the window, oldest minute first
+     *
+     * @param windowMinutes     The length of the window
+     * @param messagesPerMinute The chat and private messages of each minute; the last one is the current minute
+     * @param messagesByType    The number of messages of each type recorded in the window
+     * @param activeSenders     The estimated number of users who sent a chat or private message in the window
+     */
+    public record Snapshot(int windowMinutes, List<Long> messagesPerMinute,
+            Map<ChatMessage.MessageType, Long> messagesByType, long activeSenders) {
+    }
+
+    @Autowired
+    public ChatStatistics(@Value("${chat.stats.window-minutes:60}") int windowMinutes) {
+        this(windowMinutes, System::currentTimeMillis);
+    }
+
+    ChatStatistics(int windowMinutes, LongSupplier clock) {
+        if (windowMinutes < 1) {
+            throw new IllegalArgumentException("The statistics window must be at least one minute");
+        }
+        this.buckets = new Bucket[windowMinutes];
+        for (int i = 0; i < windowMinutes; i++) {
+            buckets[i] = new Bucket();
+        }
+        this.clock = clock;
+    }
+
+    /**
+     * Record a message
+     *
+     * @param type   The message type
+     * @param sender The name of the sender, counted as active for chat and private messages
+     */
+    public void record(ChatMessage.MessageType type, String sender) {
+        Bucket bucket = bucketFor(currentMinute());
+        bucket.counts[type.ordinal()].increment();
+        if (sender != null && isUserMessage(type)) {
+            bucket.senders.add(sender);
+        }
+    }
+
+    /**
+     * Returns the statistics of the current window
+     */
+    public Snapshot snapshot() {
+        long now = currentMinute();
+        List<Long> messagesPerMinute = new ArrayList<>(buckets.length);
+        long[] countsByType = new long[TYPES.length];
+        HyperLogLog senders = new HyperLogLog(SENDER_PRECISION);
+        for (long minute = now - buckets.length + 1; minute <= now; minute++) {
+            Bucket bucket = buckets[Math.floorMod(minute, buckets.length)];
+            long messages = 0;
+            if (bucket.minute == minute) {
+                for (ChatMessage.MessageType type : TYPES) {
+                    long count = bucket.counts[type.ordinal()].sum();
+                    countsByType[type.ordinal()] += count;
+                    if (isUserMessage(type)) {
+                        messages += count;
+                    }
+                }
+                senders.merge(bucket.senders);
+            }
+            messagesPerMinute.add(messages);
+        }
+
+        Map<ChatMessage.MessageType, Long> messagesByType = new EnumMap<>(ChatMessage.MessageType.class);
+        for (ChatMessage.MessageType type : TYPES) {
+            if (countsByType[type.ordinal()] > 0) {
+                messagesByType.put(type, countsByType[type.ordinal()]);
+            }
+        }
+        return new Snapshot(buckets.length, messagesPerMinute, messagesByType, senders.estimate());
+    }
+
+    /**
+     * Returns the bucket of a minute, resetting it if it still holds an older minute
+     */
+    private Bucket bucketFor(long minute) {
+        Bucket bucket = buckets[Math.floorMod(minute, buckets.length)];
+        if (bucket.minute < minute) {
+            synchronized (bucket) {
+                if (bucket.minute < minute) {
+                    for (LongAdder count : bucket.counts) {
+                        count.reset();
+                    }
+                    bucket.senders.clear();
+                    bucket.minute = minute;
+                }
+            }
+        }
+        return bucket;
+    }
+
+    private long currentMinute() {
+        return Math.floorDiv(clock.getAsLong(), BUCKET_MILLIS);
+    }
+
+    private static boolean isUserMessage(ChatMessage.MessageType type) {
+        return type == ChatMessage.MessageType.CHAT || type == ChatMessage.MessageType.PRIVATE;
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.springbootwebsocket.service;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Hashed timing wheel: a ring of slots, each holding the timeouts that fall on it.
+ *
+ * Scheduling and cancelling are O(1) and may happen on any thread. Advancing the wheel by one
+ * tick only looks at the timeouts of the current slot, so the cost of a tick depends on how
+ * many timeouts are due around now and not on how many are scheduled in total. Timeouts
+ * further away than one revolution wait in their slot for the remaining rounds. Cancelled
+ * timeouts are dropped lazily when their slot comes up. {@link #advance()} must only be
+ * called by one thread at a time.
+ *
+ * @param <T> The type of the scheduled items
+ */
+public class HashedTimingWheel<T> {
+
+    private final Queue<Timeout<T>>[] slots;
+    private volatile long tick;
+
+    /**
+     * A scheduled item
+     */
+    public static final class Timeout<T> {
+
+        private final T item;
+        private long remainingRounds;
+        private volatile boolean cancelled;
+
+        private Timeout(T item, long remainingRounds) {
+            this.item = item;
+            this.remainingRounds = remainingRounds;
+        }
+
+        public T item() {
+            return item;
+        }
+
+        /**
+         * Cancel the timeout; it is dropped when its slot comes up
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public HashedTimingWheel(int slotCount) {
+        if (slotCount < 1) {
+            throw new IllegalArgumentException("A timing wheel needs at least one slot");
+        }
+        this.slots = new Queue[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    /**
+     * Schedule an item to come due after a number of ticks
+     *
+     * @param item  The item
+     * @param ticks The delay in ticks, at least 1
+     * @return The timeout, which can be cancelled
+     */
+    public Timeout<T> schedule(T item, long ticks) {
+        long delay = Math.max(1, ticks);
+        long target = tick + delay;
+        Timeout<T> timeout = new Timeout<>(item, (delay - 1) / slots.length);
+        slots[(int) (target % slots.length)].add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Advance the wheel by one tick
+     *
+     * @return The items that came due, in the order they were scheduled
+     */
+    public List<T> advance() {
+        long current = tick + 1;
+        tick = current;
+        Queue<Timeout<T>> slot = slots[(int) (current % slots.length)];
+        List<T> due = new ArrayList<>();
+        for (Iterator<Timeout<T>> it = slot.iterator(); it.hasNext(); ) {
+            Timeout<T> timeout = it.next();
+            if (timeout.cancelled) {
+                it.remove();
+            } else if (timeout.remainingRounds > 0) {
+                timeout.remainingRounds--;
+            } else {
+                it.remove();
+                due.add(timeout.item);
+            }
+        }
+        return due;
+    }
+
+    /**
+     * Returns the number of ticks the wheel has advanced
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * Returns the number of slots in the wheel
+     */
+    public int getSlotCount() {
+        return slots.length;
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.springbootwebsocket.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.LongSupplier;
+
+/**
+ * Detects dead WebSocket peers with ping frames.
+ *
+ * Every session is pinged once per interval and is considered dead after missing the
+ * configured number of pongs in a row, e.g. a half-open TCP connection whose peer is gone.
+ * The per-session checks are driven by a {@link HashedTimingWheel}, so a tick only touches
+ * the sessions that are due, however many are connected. The pings are sent on each session's
+ * sender thread rather than the ticking one, so a peer whose socket blocks cannot delay the
+ * other sessions' pings or the scheduled jobs that share the ticking thread.
+ */
+@Service
+public class HeartbeatMonitor {
+
+    private static final Logger logger = LoggerFactory.getLogger(HeartbeatMonitor.class);
+
+    private final long tickNanos;
+    private final long intervalTicks;
+    private final int maxMissed;
+    private final LongSupplier nanoClock;
+    private final HashedTimingWheel<Heartbeat> wheel;
+    private final Map<String, HashedTimingWheel.Timeout<Heartbeat>> timeouts = new ConcurrentHashMap<>();
+    private long nextTickNanos;
+
+    /**
+     * Heartbeat state of a session
+     */
+    private static final class Heartbeat {
+
+        private final WebSocketSession session;
+        private final Executor sender;
+        private volatile boolean pongReceived = true;
+        private volatile boolean sendFailed;
+        private int missed;
+
+        private Heartbeat(WebSocketSession session, Executor sender) {
+            this.session = session;
+            this.sender = sender;
+        }
+    }
+
+    @Autowired
+    public HeartbeatMonitor(@Value("${chat.heartbeat.interval-ms:20000}") long intervalMillis,
+            @Value("${chat.heartbeat.max-missed:2}") int maxMissed,
+            @Value("${chat.heartbeat.tick-ms:1000}") long tickMillis) {
+        this(Duration.ofMillis(intervalMillis), maxMissed, Duration.ofMillis(tickMillis), System::nanoTime);
+    }
+
+    HeartbeatMonitor(Duration interval, int maxMissed, Duration tick, LongSupplier nanoClock) {
+        this.tickNanos = tick.toNanos();
+        this.intervalTicks = Math.max(1, interval.toNanos() / tickNanos);
+        this.maxMissed = maxMissed;
+        this.nanoClock = nanoClock;
+        // One revolution per interval, so a rescheduled session lands in a slot without extra rounds
+        this.wheel = new HashedTimingWheel<>((int) Math.min(intervalTicks, 1 << 16));
+        this.nextTickNanos = nanoClock.getAsLong() + tickNanos;
+    }
+
+    /**
+     * Start monitoring a session; its first ping is sent one interval from now
+     *
+     * @param session The WebSocket session, decorated for concurrent sends
+     * @param sender  Sends the pings to the session
+     */
+    public void register(WebSocketSession session, Executor sender) {
+        timeouts.put(session.getId(), wheel.schedule(new Heartbeat(session, sender), intervalTicks));
+    }
+
+    /**
+     * Stop monitoring a session
+     *
+     * @param sessionId The WebSocket session id
+     */
+    public void unregister(String sessionId) {
+        HashedTimingWheel.Timeout<Heartbeat> timeout = timeouts.remove(sessionId);
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    /**
+     * Record a pong from a session
+     *
+     * @param sessionId The WebSocket session id
+     */
+    public void pongReceived(String sessionId) {
+        HashedTimingWheel.Timeout<Heartbeat> timeout = timeouts.get(sessionId);
+        if (timeout != null) {
+            timeout.item().pongReceived = true;
+        }
+    }
+
+    /**
+     * Advance the wheel to the current time, pinging the sessions that are due
+     *
+     * @return The sessions that missed too many pongs; they are no longer monitored
+     */
+    public synchronized List<WebSocketSession> tick() {
+        List<WebSocketSession> dead = new ArrayList<>();
+        long now = nanoClock.getAsLong();
+        // Catch up on ticks a delayed scheduler missed
+        while (now - nextTickNanos >= 0) {
+            nextTickNanos += tickNanos;
+            for (Heartbeat heartbeat : wheel.advance()) {
+                if (check(heartbeat)) {
+                    // Not rescheduled if the session was unregistered in the meantime
+                    timeouts.computeIfPresent(heartbeat.session.getId(),
+                            (id, timeout) -> wheel.schedule(heartbeat, intervalTicks));
+                } else {
+                    timeouts.remove(heartbeat.session.getId());
+                    dead.add(heartbeat.session);
+                }
+            }
+        }
+        return dead;
+    }
+
+    /**
+     * Checks the pong of the last round and sends the next ping
+     *
+     * @return false if the session is dead
+     */
+    private boolean check(Heartbeat heartbeat) {
+        WebSocketSession session = heartbeat.session;
+        if (!session.isOpen() || heartbeat.sendFailed) {
+            return false;
+        }
+        if (heartbeat.pongReceived) {
+            heartbeat.missed = 0;
+        } else if (++heartbeat.missed >= maxMissed) {
+            logger.debug("Session {} missed {} pongs", session.getId(), heartbeat.missed);
+            return false;
+        }
+        heartbeat.pongReceived = false;
+        try {
+            heartbeat.sender.execute(() -> ping(heartbeat));
+        } catch (RejectedExecutionException e) {
+            // Shutting down; the session is closed anyway
+            return true;
+        }
+        // A failed send is seen here if the sender ran it already, otherwise on the next round
+        return !heartbeat.sendFailed;
+    }
+
+    private void ping(Heartbeat heartbeat) {
+        try {
+            heartbeat.session.sendMessage(new PingMessage());
+        } catch (IOException | SessionLimitExceededException e) {
+            // The decorated session gives up on a peer whose send buffer stays full
+            logger.debug("Ping to session {} failed: {}", heartbeat.session.getId(), e.getMessage());
+            heartbeat.sendFailed = true;
+        }
+    }
+
+    /**
+     * Returns the number of monitored sessions
+     */
+    public int getMonitoredSessionCount() {
+        return timeouts.size();
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.springbootwebsocket.service;
+
+import com.example.springbootwebsocket.NameClaim;
+import com.example.springbootwebsocket.repository.NameClaimRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Binds user names to the client that first used them, for as long as the name is in use.
+ *
+ * The first session to use a name is issued a random token, which the client keeps and presents
+ * whenever it joins again, from another tab or after a reconnect. A session that cannot present
+ * the token of a claimed name may not use it, so it receives neither that user's private messages
+ * nor their stored private conversations.
+ *
+ * A claim is held while any session of the presence roster uses its name. Once the last one is
+ * gone, the claim is kept for a grace period, so its owner can reconnect or come back after a
+ * restart; after that the name is free again for anyone and the claim is deleted. A client that
+ * lost its token therefore gets its name back after the grace period, at the risk that someone
+ * else takes it first.
+ */
+@Service
+public class NameClaimService {
+
+    private static final Logger logger = LoggerFactory.getLogger(NameClaimService.class);
+
+    private static final int TOKEN_BYTES = 32;
+
+    private final NameClaimRepository nameClaimRepository;
+    private final PresenceRoster presenceRoster;
+    private final long gracePeriodMillis;
+    private final LongSupplier clock;
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * Outcome of a claim
+     *
+     * @param granted     True if the session may use the name
+     * @param issuedToken The token for a name claimed just now, to hand to the client; null otherwise
+     */
+    public record Claim(boolean granted, String issuedToken) {
+    }
+
+    @Autowired
+    public NameClaimService(NameClaimRepository nameClaimRepository, PresenceRoster presenceRoster,
+            @Value("${chat.name-claims.grace-period-minutes:1440}") int gracePeriodMinutes) {
+        this(nameClaimRepository, presenceRoster, gracePeriodMinutes, System::currentTimeMillis);
+    }
+
+    NameClaimService(NameClaimRepository nameClaimRepository, PresenceRoster presenceRoster, int gracePeriodMinutes,
+            LongSupplier clock) {
+        this.nameClaimRepository = nameClaimRepository;
+        this.presenceRoster = presenceRoster;
+        this.gracePeriodMillis = TimeUnit.MINUTES.toMillis(gracePeriodMinutes);
+        this.clock = clock;
+    }
+
+    /**
+     * Claim a name for a session
+     *
+     * @param name  The (sanitized) user name
+     * @param token The token the client presents, or null if it has none for this name
+     * @return Whether the name may be used, and the new token if it was unclaimed or its claim expired
+     */
+    public Claim claim(String name, String token) {
+        Optional<NameClaim> existing = nameClaimRepository.findById(name);
+        if (existing.isPresent()) {
+            NameClaim claim = existing.get();
+            if (matches(claim, token)) {
+                if (claim.getExpiresAt() != null) {
+                    nameClaimRepository.hold(List.of(name));
+                }
+                return new Claim(true, null);
+            }
+            // A name no one used during its grace period is free again
+            if (!claim.isExpired(clock.getAsLong()) || !presenceRoster.getSessionIds(name).isEmpty()
+                    || nameClaimRepository.deleteExpired(List.of(name), clock.getAsLong()) == 0) {
+                return new Claim(false, null);
+            }
+        }
+
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String issued = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        try {
+            // Runs in its own transaction, so a failed insert leaves nothing to roll back here
+            nameClaimRepository.saveAndFlush(NameClaim.create(name, hash(issued)));
+            logger.debug("Name {} claimed", name);
+            return new Claim(true, issued);
+        } catch (DataIntegrityViolationException e) {
+            // Claimed concurrently by another session
+            return nameClaimRepository.findById(name)
+                    .map(claim -> new Claim(matches(claim, token), null))
+                    .orElse(new Claim(false, null));
+        }
+    }
+
+    /**
+     * Starts the grace period of the claims whose names no session uses any more, and deletes the
+     * claims whose grace period has ended. Claims held before a restart are released by the first
+     * run, since the roster starts empty.
+     */
+    @Scheduled(fixedDelayString = "${chat.name-claims.release-check-ms:60000}")
+    public void releaseUnusedClaims() {
+        long now = clock.getAsLong();
+        List<String> unused = withoutSessions(nameClaimRepository.findHeldNames());
+        if (!unused.isEmpty()) {
+            nameClaimRepository.release(unused, now + gracePeriodMillis);
+        }
+
+        List<String> expired = nameClaimRepository.findExpiredNames(now);
+        List<String> free = withoutSessions(expired);
+        if (free.size() < expired.size()) {
+            // Used again by a session that joined while the claim was being released
+            List<String> inUse = new ArrayList<>(expired);
+            inUse.removeAll(free);
+            nameClaimRepository.hold(inUse);
+        }
+        if (!free.isEmpty()) {
+            int deleted = nameClaimRepository.deleteExpired(free, now);
+            logger.debug("Released {} names, deleted {} expired name claims", unused.size(), deleted);
+        }
+    }
+
+    private List<String> withoutSessions(List<String> names) {
+        return names.stream().filter(name -> presenceRoster.getSessionIds(name).isEmpty()).toList();
+    }
+
+    private static boolean matches(NameClaim claim, String token) {
+        return token != null && MessageDigest.isEqual(claim.getTokenHash().getBytes(StandardCharsets.US_ASCII),
+                hash(token).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
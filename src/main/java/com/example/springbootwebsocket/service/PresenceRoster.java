@@ -0,0 +1,188 @@
+package com.example.springbootwebsocket.service;
+
+import com.example.springbootwebsocket.PresenceMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Versioned roster of online users built on top of the session → name registry.
+ *
+ * Every change to the set of online names bumps the roster version and yields a delta
+ * frame, so clients only need the full roster once. A user with several tabs open is
+ * listed once and only leaves the roster when the last of their sessions is gone.
+ * Both maps share the same name instance and sessions are kept in small copy-on-write
+ * arrays, so an online user costs two map entries and a one-element array.
+ *
+ * A change to the set of names and its version bump happen under one lock, which the roster
+ * snapshot takes as well, so a roster of version v contains exactly the changes up to v. Clients
+ * drop deltas at or below the version of their roster, so an inconsistent snapshot would stay
+ * wrong until the user's next change.
+ */
+@Service
+public class PresenceRoster {
+
+    private static final Logger logger = LoggerFactory.getLogger(PresenceRoster.class);
+
+    private final Map<String, String> sessionNames = new ConcurrentHashMap<>();
+    private final Map<String, String[]> sessionsByName = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+    // Guards changes to the keys of sessionsByName together with the version
+    private final Object rosterLock = new Object();
+    private volatile PresenceMessage cachedRoster = PresenceMessage.createRoster(0, List.of());
+
+    /**
+     * Outcome of a registration change for a session
+     *
+     * @param name  The name associated with the session
+     * @param delta The roster delta to broadcast, or null if the set of online names did not change
+     */
+    public record Registration(String name, PresenceMessage delta) {
+    }
+
+    /**
+     * Atomically register a session under a name
+     *
+     * @param sessionId The WebSocket session id
+     * @param name      The (sanitized) user name
+     * @return The registration, or null if the session was already registered
+     */
+    public Registration register(String sessionId, String name) {
+        if (sessionNames.putIfAbsent(sessionId, name) != null) {
+            return null;
+        }
+
+        PresenceMessage[] delta = new PresenceMessage[1];
+        synchronized (rosterLock) {
+            sessionsByName.compute(name, (key, sessions) -> {
+                if (sessions == null) {
+                    delta[0] = PresenceMessage.createDelta(version.incrementAndGet(), PresenceMessage.Operation.ADD, key);
+                    return new String[] { sessionId };
+                }
+                String[] updated = Arrays.copyOf(sessions, sessions.length + 1);
+                updated[sessions.length] = sessionId;
+                return updated;
+            });
+        }
+
+        logger.debug("Registered session {} as {}", sessionId, name);
+        return new Registration(name, delta[0]);
+    }
+
+    /**
+     * Remove a session from the roster
+     *
+     * @param sessionId The WebSocket session id
+     * @return The registration that was removed, or null if the session was never registered
+     */
+    public Registration unregister(String sessionId) {
+        String name = sessionNames.remove(sessionId);
+        if (name == null) {
+            return null;
+        }
+
+        PresenceMessage[] delta = new PresenceMessage[1];
+        synchronized (rosterLock) {
+            sessionsByName.computeIfPresent(name, (key, sessions) -> {
+                int index = Arrays.asList(sessions).indexOf(sessionId);
+                if (index < 0) {
+                    return sessions;
+                }
+                if (sessions.length == 1) {
+                    delta[0] = PresenceMessage.createDelta(version.incrementAndGet(), PresenceMessage.Operation.REMOVE, key);
+                    return null;
+                }
+                String[] updated = new String[sessions.length - 1];
+                System.arraycopy(sessions, 0, updated, 0, index);
+                System.arraycopy(sessions, index + 1, updated, index, updated.length - index);
+                return updated;
+            });
+        }
+
+        logger.debug("Unregistered session {} ({})", sessionId, name);
+        return new Registration(name, delta[0]);
+    }
+
+    /**
+     * Get the name registered for a session
+     *
+     * @param sessionId The WebSocket session id
+     * @return The name, or null if the session has not registered yet
+     */
+    public String getName(String sessionId) {
+        return sessionNames.get(sessionId);
+    }
+
+    /**
+     * Get the sessions a user is connected with, one per open tab
+     *
+     * @param name The user name
+     * @return The session ids, empty if the user is not online
+     */
+    public List<String> getSessionIds(String name) {
+        String[] sessions = sessionsByName.get(name);
+        return sessions != null ? List.of(sessions) : List.of();
+    }
+
+    /**
+     * Check whether a session has registered a name
+     *
+     * @param sessionId The WebSocket session id
+     * @return true if the session is registered
+     */
+    public boolean isRegistered(String sessionId) {
+        return sessionNames.containsKey(sessionId);
+    }
+
+    /**
+     * Get the full roster frame for the current version.
+     * The names are collected under the roster lock, so no change is half applied to them.
+     *
+     * @return The roster frame, rebuilt only when the version has changed
+     */
+    public PresenceMessage getRoster() {
+        PresenceMessage roster = cachedRoster;
+        if (roster.getVersion() == version.get()) {
+            return roster;
+        }
+        synchronized (rosterLock) {
+            roster = cachedRoster;
+            long current = version.get();
+            if (roster.getVersion() != current) {
+                roster = PresenceMessage.createRoster(current, List.copyOf(new ArrayList<>(sessionsByName.keySet())));
+                cachedRoster = roster;
+            }
+            return roster;
+        }
+    }
+
+    /**
+     * Get the current roster version
+     *
+     * @return The version of the last roster change
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Returns the number of distinct online user names
+     */
+    public int getOnlineUserCount() {
+        return sessionsByName.size();
+    }
+
+    /**
+     * Returns the number of registered sessions
+     */
+    public int getRegisteredSessionCount() {
+        return sessionNames.size();
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.springbootwebsocket.service;
+
+import com.example.springbootwebsocket.ChatMessage;
+import com.example.springbootwebsocket.PrivateEvent;
+import com.example.springbootwebsocket.PrivateMessage;
+import com.example.springbootwebsocket.repository.PrivateMessageRepository;
+import com.example.springbootwebsocket.repository.PrivateMessageView;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Service for private messages between two users
+ */
+@Service
+public class PrivateMessageService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PrivateMessageService.class);
+
+    private final PrivateMessageRepository privateMessageRepository;
+    private final int historyLimit;
+
+    @Autowired
+    public PrivateMessageService(PrivateMessageRepository privateMessageRepository,
+            @Value("${chat.private.history-limit:100}") int historyLimit) {
+        this.privateMessageRepository = privateMessageRepository;
+        this.historyLimit = historyLimit;
+    }
+
+    /**
+     * Save a private message
+     *
+     * @param event The message to save
+     * @return The saved message with its generated ID
+     */
+    @Transactional
+    public PrivateEvent saveMessage(PrivateEvent event) {
+        logger.debug("Saving private message from {} to {}", event.name(), event.recipient());
+        PrivateMessage saved = privateMessageRepository.save(
+                PrivateMessage.create(event.name(), event.recipient(), event.message(), event.timestamp()));
+        return event.withId(saved.getId());
+    }
+
+    private static PrivateEvent toEvent(PrivateMessageView view) {
+        return new PrivateEvent(view.id(), ChatMessage.MessageType.PRIVATE, view.name(), view.recipient(),
+                view.message(), view.timestamp());
+    }
+
+    /**
+     * Get the latest messages between two users, in either direction.
+     * They are read as projections in a read-only transaction, so the read pool serves them.
+     *
+     * @param first  One user name
+     * @param second The other user name
+     * @return At most {@code chat.private.history-limit} messages, oldest first
+     */
+    @Transactional(readOnly = true)
+    public List<PrivateEvent> getConversation(String first, String second) {
+        logger.debug("Retrieving private conversation of {} and {}", first, second);
+        return privateMessageRepository.findConversationNewestFirst(
+                        PrivateMessage.conversationKey(first, second), PageRequest.of(0, historyLimit))
+                .reversed().stream()
+                .map(PrivateMessageService::toEvent)
+                .toList();
+    }
+}
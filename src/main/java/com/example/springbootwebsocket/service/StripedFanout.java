@@ -0,0 +1,266 @@
+package com.example.springbootwebsocket.service;
+
+import com.example.springbootwebsocket.logging.LogSampler;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The connected WebSocket sessions, partitioned into stripes for parallel broadcasts.
+ *
+ * Every session belongs to one stripe, and every stripe has its own sender thread. A broadcast
+ * to a large audience is split across the stripes and returns once the last recipient has been
+ * written to, so its latency is that of the largest stripe instead of the whole room. Small
+ * audiences are sent to directly on the calling thread; the threshold between the two adapts
+ * to whether the parallel broadcasts actually beat the serial cost they replace.
+ *
+ * Sessions are wrapped in a {@link ConcurrentWebSocketSessionDecorator}, so stripe threads,
+ * heartbeat pings and replies to a single session can write to it concurrently, and a peer
+ * that stops reading is closed once its buffer or send time limit is exceeded instead of
+ * blocking its stripe. With a batch window configured, sessions are further wrapped in a
+ * {@link BatchingSessionDecorator}, which packs the frames of a session that receives them
+ * faster than the batch rate into array frames; a session's batches are sent by its stripe thread.
+ */
+@Service
+public class StripedFanout {
+
+    private static final Logger logger = LoggerFactory.getLogger(StripedFanout.class);
+
+    static final int MIN_THRESHOLD = 32;
+    static final int MAX_THRESHOLD = 1 << 20;
+
+    // Every this many direct broadcasts above the minimum threshold, one goes parallel to re-measure
+    private static final int PROBE_INTERVAL = 128;
+
+    // Broadcasts made from a stripe thread, e.g. a leave message after a failed send, stay on it
+    private static final ThreadLocal<Boolean> ON_STRIPE = ThreadLocal.withInitial(() -> false);
+
+    private final Stripe[] stripes;
+    private final int sendTimeLimit;
+    private final int bufferSizeLimit;
+    private final int batchWindow;
+    private final int batchMinRate;
+    private final ScheduledExecutorService batchTimer;
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong directBroadcasts = new AtomicLong();
+    private volatile int threshold;
+
+    private final LogSampler sendErrorLogSampler = LogSampler.perSecond(5);
+
+    /**
+     * The sessions of one stripe and the thread that sends to them
+     */
+    private record Stripe(Map<String, WebSocketSession> sessions, ExecutorService sender) {
+    }
+
+    @Autowired
+    public StripedFanout(@Value("${chat.broadcast.stripes:0}") int stripes,
+            @Value("${chat.broadcast.parallel-threshold:256}") int threshold,
+            @Value("${chat.broadcast.send-time-limit-ms:10000}") int sendTimeLimit,
+            @Value("${chat.broadcast.buffer-size-limit:524288}") int bufferSizeLimit,
+            @Value("${chat.broadcast.batch.window-ms:5}") int batchWindow,
+            @Value("${chat.broadcast.batch.min-rate:200}") int batchMinRate) {
+        int stripeCount = stripes > 0 ? stripes : Runtime.getRuntime().availableProcessors();
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            String name = "broadcast-stripe-" + i;
+            this.stripes[i] = new Stripe(new ConcurrentHashMap<>(), Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(() -> {
+                    ON_STRIPE.set(true);
+                    runnable.run();
+                }, name);
+                thread.setDaemon(true);
+                return thread;
+            }));
+        }
+        this.threshold = Math.max(MIN_THRESHOLD, Math.min(MAX_THRESHOLD, threshold));
+        this.sendTimeLimit = sendTimeLimit;
+        this.bufferSizeLimit = bufferSizeLimit;
+        this.batchWindow = batchWindow;
+        this.batchMinRate = batchMinRate;
+        // Only ends batch windows; the batches themselves are sent by the stripe threads
+        this.batchTimer = batchWindow > 0 ? Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "broadcast-batch-timer");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    /**
+     * Adds a session to its stripe
+     *
+     * @param session The WebSocket session
+     * @return The thread-safe decorated session to use for all sends to it
+     */
+    public WebSocketSession add(WebSocketSession session) {
+        Stripe stripe = stripeOf(session.getId());
+        WebSocketSession decorated = new ConcurrentWebSocketSessionDecorator(session, sendTimeLimit, bufferSizeLimit);
+        if (batchTimer != null) {
+            decorated = new BatchingSessionDecorator(decorated, batchTimer, stripe.sender(), batchWindow, batchMinRate);
+        }
+        if (stripe.sessions().put(session.getId(), decorated) == null) {
+            size.incrementAndGet();
+        }
+        return decorated;
+    }
+
+    /**
+     * Returns the thread that sends the broadcasts of a session's stripe, for sends that should
+     * not run on the caller's thread
+     *
+     * @param sessionId The WebSocket session id
+     */
+    public Executor senderOf(String sessionId) {
+        return stripeOf(sessionId).sender();
+    }
+
+    /**
+     * Removes a session
+     *
+     * @param sessionId The WebSocket session id
+     * @return The decorated session, or null if it was not added or is already removed
+     */
+    public WebSocketSession remove(String sessionId) {
+        WebSocketSession removed = stripeOf(sessionId).sessions().remove(sessionId);
+        if (removed != null) {
+            size.decrementAndGet();
+        }
+        return removed;
+    }
+
+    /**
+     * Returns the decorated session, or null if it is not connected
+     */
+    public WebSocketSession get(String sessionId) {
+        return stripeOf(sessionId).sessions().get(sessionId);
+    }
+
+    /**
+     * Returns the number of connected sessions
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Returns a snapshot of the connected sessions
+     */
+    public List<WebSocketSession> snapshot() {
+        List<WebSocketSession> snapshot = new ArrayList<>(size.get());
+        for (Stripe stripe : stripes) {
+            snapshot.addAll(stripe.sessions().values());
+        }
+        return snapshot;
+    }
+
+    /**
+     * Sends a frame to every open session, returning once all of them have been written to
+     *
+     * @param message The serialized frame
+     */
+    public void broadcast(TextMessage message) {
+        int audience = size.get();
+        if (stripes.length == 1 || ON_STRIPE.get() || audience < MIN_THRESHOLD
+                || (audience < threshold && directBroadcasts.incrementAndGet() % PROBE_INTERVAL != 0)) {
+            for (Stripe stripe : stripes) {
+                send(stripe, message);
+            }
+            return;
+        }
+
+        long start = System.nanoTime();
+        AtomicLong busyNanos = new AtomicLong();
+        CompletableFuture<?>[] parts = new CompletableFuture<?>[stripes.length];
+        for (int i = 0; i < stripes.length; i++) {
+            Stripe stripe = stripes[i];
+            parts[i] = CompletableFuture.runAsync(() -> {
+                long stripeStart = System.nanoTime();
+                send(stripe, message);
+                busyNanos.addAndGet(System.nanoTime() - stripeStart);
+            }, stripe.sender());
+        }
+        CompletableFuture.allOf(parts).join();
+        adapt(audience, System.nanoTime() - start, busyNanos.get());
+    }
+
+    /**
+     * Moves the threshold by comparing a parallel broadcast with the serial time it replaced.
+     * The stripes' summed busy time is what a direct broadcast would have taken; when the hand-off
+     * to the stripes eats up the gain, the threshold goes above this audience, and while the
+     * parallel broadcasts finish in well under half of it, the threshold comes down.
+     */
+    void adapt(int audience, long elapsedNanos, long serialNanos) {
+        int current = threshold;
+        if (elapsedNanos >= serialNanos) {
+            threshold = Math.min(MAX_THRESHOLD, Math.max(current, audience) * 2);
+        } else if (elapsedNanos * 2 < serialNanos) {
+            threshold = Math.max(MIN_THRESHOLD, current - current / 8);
+        }
+    }
+
+    private void send(Stripe stripe, TextMessage message) {
+        for (WebSocketSession session : stripe.sessions().values()) {
+            if (session.isOpen()) {
+                try {
+                    session.sendMessage(message);
+                } catch (IOException | SessionLimitExceededException e) {
+                    if (sendErrorLogSampler.shouldLog()) {
+                        logger.error("Error sending message to session {}: {} ({} send errors suppressed)",
+                                session.getId(), e.getMessage(), sendErrorLogSampler.takeSuppressed(), e);
+                    }
+                }
+            }
+        }
+    }
+
+    private Stripe stripeOf(String sessionId) {
+        return stripes[Math.floorMod(sessionId.hashCode(), stripes.length)];
+    }
+
+    /**
+     * Returns the current audience size from which broadcasts go parallel
+     */
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Returns the number of stripes
+     */
+    public int getStripeCount() {
+        return stripes.length;
+    }
+
+    /**
+     * Stops the stripe and batch threads on shutdown
+     */
+    @PreDestroy
+    public void shutdown() {
+        for (Stripe stripe : stripes) {
+            stripe.sender().shutdown();
+        }
+        if (batchTimer != null) {
+            batchTimer.shutdown();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.springbootwebsocket.service;
+
+import com.example.springbootwebsocket.TypingMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Collects typing events between broadcast ticks.
+ *
+ * Only the latest state per user is kept, so however many typing events a user sends, they
+ * show up at most once per tick, and all users' changes are drained into a single frame.
+ * A user whose client stops refreshing the typing state is reported as stopped after the
+ * expiry, e.g. when the tab was closed mid-sentence.
+ */
+@Service
+public class TypingCoalescer {
+
+    private final long expiryNanos;
+    private final LongSupplier nanoClock;
+
+    // Users currently typing, with the time of their last typing event
+    private final Map<String, Long> lastTyped = new HashMap<>();
+    // Latest state per user since the last drain, in the order the users first changed
+    private final Map<String, Boolean> changes = new LinkedHashMap<>();
+
+    @Autowired
+    public TypingCoalescer(@Value("${chat.typing.expiry-ms:5000}") long expiryMillis) {
+        this(Duration.ofMillis(expiryMillis), System::nanoTime);
+    }
+
+    TypingCoalescer(Duration expiry, LongSupplier nanoClock) {
+        this.expiryNanos = expiry.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Record that a user started or stopped typing
+     *
+     * @param name   The registered user name
+     * @param typing Whether the user is typing
+     */
+    public synchronized void record(String name, boolean typing) {
+        if (typing) {
+            if (lastTyped.put(name, nanoClock.getAsLong()) == null) {
+                changes.put(name, Boolean.TRUE);
+            }
+        } else if (lastTyped.remove(name) != null) {
+            changes.put(name, Boolean.FALSE);
+        }
+    }
+
+    /**
+     * Take the typing changes since the last drain, including expired typing states
+     *
+     * @return The frame to broadcast, or null if nothing changed
+     */
+    public synchronized TypingMessage drain() {
+        long now = nanoClock.getAsLong();
+        for (Iterator<Map.Entry<String, Long>> it = lastTyped.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, Long> entry = it.next();
+            if (now - entry.getValue() >= expiryNanos) {
+                it.remove();
+                changes.put(entry.getKey(), Boolean.FALSE);
+            }
+        }
+        if (changes.isEmpty()) {
+            return null;
+        }
+
+        List<String> typing = new ArrayList<>();
+        List<String> stopped = new ArrayList<>();
+        changes.forEach((name, state) -> (state ? typing : stopped).add(name));
+        changes.clear();
+        return TypingMessage.createState(typing, stopped);
+    }
+
+    /**
+     * Returns the number of users currently typing
+     */
+    public synchronized int getTypingUserCount() {
+        return lastTyped.size();
+    }
+}
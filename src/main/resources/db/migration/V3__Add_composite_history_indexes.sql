@@ -0,0 +1,8 @@
+-- Replace single-column indexes with composite indexes matching the history queries.
+-- A lookup by type or sender followed by ORDER BY timestamp can then read rows in index order.
+CREATE INDEX idx_chat_messages_type_timestamp ON chat_messages(message_type, timestamp);
+CREATE INDEX idx_chat_messages_name_timestamp ON chat_messages(name, timestamp);
+
+-- The single-column indexes are prefixes of the composite ones
+DROP INDEX idx_chat_messages_message_type;
+DROP INDEX idx_chat_messages_name;
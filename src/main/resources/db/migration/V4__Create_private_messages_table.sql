@@ -0,0 +1,13 @@
+-- Private 1:1 messages, kept apart from the public history in chat_messages.
+-- conversation_key identifies the pair of users regardless of direction, so a conversation's
+-- latest messages are read backwards from the end of its (conversation_key, id) index range.
+CREATE TABLE IF NOT EXISTS private_messages (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    sender VARCHAR(255) NOT NULL,
+    recipient VARCHAR(255) NOT NULL,
+    conversation_key VARCHAR(511) NOT NULL,
+    message TEXT NOT NULL,
+    timestamp VARCHAR(255) NOT NULL
+);
+
+CREATE INDEX idx_private_messages_conversation_id ON private_messages(conversation_key, id);
@@ -0,0 +1,3 @@
+-- Content hash of the file a chat message shares; null for plain messages.
+-- The file itself is stored outside the database, under its hash (see BlobStore).
+ALTER TABLE chat_messages ADD COLUMN blob_id VARCHAR(64);
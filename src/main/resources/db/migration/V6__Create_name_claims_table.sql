@@ -0,0 +1,7 @@
+-- Names bound to the client that first used them. A session may only use a claimed name when it
+-- presents the claim's token; only the SHA-256 hash of the token is stored.
+CREATE TABLE IF NOT EXISTS name_claims (
+    name VARCHAR(255) PRIMARY KEY,
+    token_hash VARCHAR(64) NOT NULL,
+    claimed_at VARCHAR(255) NOT NULL
+);
@@ -0,0 +1,3 @@
+-- A conversation key is the length of the first name, a colon and both names. Two names of the
+-- full 255 characters make a key of 3 + 1 + 510 = 514 characters, which VARCHAR(511) could not hold.
+ALTER TABLE private_messages ALTER COLUMN conversation_key SET DATA TYPE VARCHAR(515);
@@ -0,0 +1,6 @@
+-- A claim is held while a session uses its name. Once the name's last session is gone, expires_at
+-- is set to the end of the grace period (epoch milliseconds); after it the name is free again and
+-- the claim is deleted. The index serves both the held (NULL) and the expired claims.
+ALTER TABLE name_claims ADD COLUMN expires_at BIGINT;
+
+CREATE INDEX idx_name_claims_expires_at ON name_claims(expires_at);
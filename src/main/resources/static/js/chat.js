@@ -5,22 +5,63 @@
 let ws;
 let messageInput;
 let sendButton;
+let fileButton;
+let fileInput;
 let connectButton;
 let nameInput;
 let connectionStatus;
 let errorMessage;
-let messageHistorySeparator = null;
-let newMessagesSeparator = null;
+// Virtualized message list; only the visible messages are in the DOM
+let messageList;
+// Ids of the messages shown, so a reconnect only appends the history that was missed
+const shownMessageIds = new Set();
+let historyLoaded = false;
+let historyRequest = null;
+
+// "/msg name text" or '/msg "first last" text' sends a private message
+const PRIVATE_COMMAND_PATTERN = /^\/msg\s+(?:"([^"]+)"|(\S+))\s+([\s\S]+)$/;
+// Users whose private conversation history was requested on this connection
+const privateHistoryRequested = new Set();
+// The token that proves a claimed name is ours is kept per name under this prefix
+const NAME_TOKEN_KEY_PREFIX = "chat.token.";
+
+// Reconnect with exponential backoff and full jitter: the delay before attempt n is drawn
+// uniformly from [0, min(max, base * 2^n)], so clients dropped together do not return together
+const RECONNECT_BASE_DELAY_MS = 1000;
+const RECONNECT_MAX_DELAY_MS = 30000;
+// Close reason with which the server asks clients to wait before reconnecting, e.g. "retry-after=5000"
+const RETRY_AFTER_PATTERN = /retry-after=(\d+)/;
+let reconnectAttempts = 0;
+let reconnectTimer = null;
+// Set when the user disconnects, so the close does not trigger a reconnect
+let disconnectRequested = false;
+
+// Presence roster state, kept current from versioned deltas
+let presenceVersion = 0;
+let presenceUsers = new Set();
+let presenceResyncPending = false;
+
+// Files are sent in chunks after an UPLOAD announcement; no more than this is queued in the socket at a time
+const FILE_CHUNK_SIZE = 64 * 1024;
+const FILE_BUFFERED_LIMIT = 1024 * 1024;
+
+// Typing indicator: users currently typing, and when this client last said it was typing (0 = not typing)
+const TYPING_THROTTLE_MS = 2000;
+let typingUsers = new Set();
+let typingSentAt = 0;
 
 // Initialize when DOM is loaded
 document.addEventListener("DOMContentLoaded", function() {
     // Get DOM elements
     messageInput = document.getElementById("message");
     sendButton = document.getElementById("sendButton");
+    fileButton = document.getElementById("fileButton");
+    fileInput = document.getElementById("fileInput");
     connectButton = document.getElementById("connectButton");
     nameInput = document.getElementById("name");
     connectionStatus = document.getElementById("connectionStatus");
     errorMessage = document.getElementById("errorMessage");
+    messageList = new VirtualList(document.getElementById("messages"), createMessageElement);
     
     // We don't initialize the user counter when the page loads
     // It will only be shown when the first USER_COUNT message is received
@@ -33,6 +74,13 @@ document.addEventListener("DOMContentLoaded", function() {
         }
     });
     
+    fileInput.addEventListener("change", function() {
+        if (fileInput.files.length > 0) {
+            sendFile(fileInput.files[0]);
+        }
+        fileInput.value = "";
+    });
+    
     // Add input event listener to enable/disable send button based on content
     messageInput.addEventListener("input", function() {
         if (messageInput.disabled) return;
@@ -43,6 +91,8 @@ document.addEventListener("DOMContentLoaded", function() {
         } else {
             sendButton.disabled = true;
         }
+        
+        notifyTyping(messageInput.value.trim().length > 0);
     });
 
     // Enable pressing Enter to connect
@@ -88,7 +138,7 @@ document.addEventListener("DOMContentLoaded", function() {
         }
         
         // Update connect/disconnect button text based on connection state
-        if (ws && ws.readyState === WebSocket.OPEN) {
+        if (reconnectTimer || (ws && (ws.readyState === WebSocket.OPEN || ws.readyState === WebSocket.CONNECTING))) {
             connectButton.textContent = t("ui.button.disconnect");
             connectButton.setAttribute("data-i18n", "ui.button.disconnect");
         } else {
@@ -96,6 +146,8 @@ document.addEventListener("DOMContentLoaded", function() {
             connectButton.setAttribute("data-i18n", "ui.button.connect");
         }
         
+        renderTypingIndicator();
+        
         // Update online users count with current language
         const onlineUsersElement = document.getElementById("onlineUsers");
         if (onlineUsersElement && onlineUsersElement.dataset.count) {
@@ -138,6 +190,9 @@ function updateConnectionStatus(status) {
         case "connecting":
             connectionStatus.textContent = t("ui.connection.connecting");
             break;
+        case "reconnecting":
+            connectionStatus.textContent = t("ui.connection.reconnecting");
+            break;
         default:
             connectionStatus.textContent = t("ui.connection.disconnected");
     }
@@ -184,11 +239,124 @@ function updateOnlineUsersText(count) {
     }
 }
 
+/**
+ * Replace the local roster with a full snapshot from the server
+ */
+function applyPresenceRoster(data) {
+    presenceUsers = new Set(data.users || []);
+    presenceVersion = data.version;
+    presenceResyncPending = false;
+    renderUserList();
+}
+
+/**
+ * Apply a single roster delta, asking for a resync if a version was missed
+ */
+function applyPresenceDelta(data) {
+    // Already reflected in the roster we hold
+    if (data.version <= presenceVersion) {
+        return;
+    }
+    
+    if (data.version !== presenceVersion + 1) {
+        requestPresenceResync();
+        return;
+    }
+    
+    if (data.op === "ADD") {
+        presenceUsers.add(data.name);
+    } else if (data.op === "REMOVE") {
+        presenceUsers.delete(data.name);
+    }
+    presenceVersion = data.version;
+    renderUserList();
+}
+
+/**
+ * Tell the server whether this user is typing
+ *
+ * Keystrokes are throttled to one typing event per interval; the server expires a typing state
+ * that is not refreshed, so a stop event is only sent when the input is cleared.
+ */
+function notifyTyping(typing) {
+    if (!ws || ws.readyState !== WebSocket.OPEN) return;
+    
+    const now = Date.now();
+    if (typing ? now - typingSentAt < TYPING_THROTTLE_MS : typingSentAt === 0) {
+        return;
+    }
+    typingSentAt = typing ? now : 0;
+    try {
+        ws.send(JSON.stringify({ type: "TYPING", typing: typing }));
+    } catch (error) {
+        console.error("Error sending typing state:", error);
+    }
+}
+
+/**
+ * Apply a batch of typing changes from the server
+ */
+function applyTypingState(data) {
+    (data.typing || []).forEach(name => typingUsers.add(name));
+    (data.stopped || []).forEach(name => typingUsers.delete(name));
+    renderTypingIndicator();
+}
+
+/**
+ * Show who else is typing
+ */
+function renderTypingIndicator() {
+    const typingIndicator = document.getElementById("typingIndicator");
+    if (!typingIndicator) return;
+    
+    const ownName = nameInput ? nameInput.value.trim() : "";
+    const names = [...typingUsers].filter(name => name !== ownName).sort();
+    if (names.length === 0) {
+        typingIndicator.textContent = "";
+    } else if (names.length === 1) {
+        typingIndicator.textContent = t("ui.typing.one", names[0]);
+    } else {
+        typingIndicator.textContent = t("ui.typing.many", names.join(", "));
+    }
+}
+
+/**
+ * Ask the server for the full roster after detecting a gap in the delta versions
+ */
+function requestPresenceResync() {
+    if (presenceResyncPending || !ws || ws.readyState !== WebSocket.OPEN) {
+        return;
+    }
+    presenceResyncPending = true;
+    try {
+        ws.send(JSON.stringify({ type: "PRESENCE_SYNC" }));
+    } catch (error) {
+        presenceResyncPending = false;
+        console.error("Error requesting presence roster:", error);
+    }
+}
+
+/**
+ * Render the names of the online users
+ */
+function renderUserList() {
+    const userListElement = document.getElementById("userList");
+    if (!userListElement) return;
+    
+    userListElement.textContent = Array.from(presenceUsers).sort().join(", ");
+}
+
 /**
  * Fetch chat message history from the server
+ *
+ * On a reconnect only the messages that are not shown yet are appended. A request that is still
+ * running is reused instead of starting another one.
  */
 function fetchMessageHistory() {
-    fetch('/api/chat/messages/chat')
+    if (historyRequest) return historyRequest;
+    
+    // Revalidate with the stored ETag; an unchanged history comes back as 304 from the browser cache
+    historyRequest = fetch('/api/chat/messages/chat', { cache: 'no-cache' })
         .then(response => {
             if (!response.ok) {
                 throw new Error(`HTTP error! Status: ${response.status}`);
@@ -196,54 +364,39 @@ function fetchMessageHistory() {
             return response.json();
         })
         .then(messages => {
-            // Display message history (newest messages first, so reverse to show oldest first)
-            const messagesContainer = document.getElementById("messages");
+            // Newest messages come first, so reverse to show oldest first; the list renders them in one frame
+            const missed = (messages || []).filter(message => !shownMessageIds.has(message.id)).reverse();
+            missed.forEach(message => shownMessageIds.add(message.id));
             
-            // Only show history and separators if there are messages
-            if (messages && messages.length > 0) {
-                // Add a history separator
-                const separator = document.createElement("div");
-                separator.className = "history-separator";
-                const separatorSpan = document.createElement("span");
-                const historyText = t("ui.message.history");
-                console.log("History separator text:", historyText, "Current locale:", window.i18n.currentLocale);
-                separatorSpan.textContent = historyText;
-                separator.appendChild(separatorSpan);
-                messagesContainer.appendChild(separator);
-                messageHistorySeparator = separator;
-                
-                // Display messages in chronological order (oldest first)
-                messages.reverse().forEach(message => {
-                    displayMessage(message);
-                });
-                
-                // Add a separator for new messages
-                const newMessagesSeparatorElement = document.createElement("div");
-                newMessagesSeparatorElement.className = "new-messages-separator";
-                const newMessagesSpan = document.createElement("span");
-                const newMessagesText = t("ui.new.messages");
-                console.log("New messages separator text:", newMessagesText, "Current locale:", window.i18n.currentLocale);
-                newMessagesSpan.textContent = newMessagesText;
-                newMessagesSeparatorElement.appendChild(newMessagesSpan);
-                messagesContainer.appendChild(newMessagesSeparatorElement);
-                newMessagesSeparator = newMessagesSeparatorElement;
+            if (historyLoaded) {
+                // Reconnect: only what was sent while this client was away
+                messageList.appendAll(missed);
+            } else if (missed.length > 0) {
+                // First load: show history and separators only if there are messages
+                messageList.appendAll([
+                    { separator: "history-separator", key: "ui.message.history" },
+                    ...missed,
+                    { separator: "new-messages-separator", key: "ui.new.messages" }
+                ]);
             }
-            
-            // Auto-scroll to bottom
-            messagesContainer.scrollTop = messagesContainer.scrollHeight;
+            historyLoaded = true;
         })
         .catch(error => {
             console.error("Error fetching message history:", error);
             showError("ui.error.history.failed");
+        })
+        .finally(() => {
+            historyRequest = null;
         });
+    return historyRequest;
 }
 
 /**
  * Connect or disconnect from the WebSocket server
  */
 function connect() {
-    // If already connected, disconnect
-    if (ws && ws.readyState === WebSocket.OPEN) {
+    // If connected, connecting or waiting to reconnect, disconnect
+    if (reconnectTimer || (ws && (ws.readyState === WebSocket.OPEN || ws.readyState === WebSocket.CONNECTING))) {
         disconnect();
         return;
     }
@@ -255,6 +408,15 @@ function connect() {
         return;
     }
     
+    disconnectRequested = false;
+    reconnectAttempts = 0;
+    openConnection(name);
+}
+
+/**
+ * Open a WebSocket connection for a user; used for the first connection and for reconnects
+ */
+function openConnection(name) {
     // Update UI to connecting state
     updateConnectionStatus("connecting");
     
@@ -263,23 +425,34 @@ function connect() {
     const wsUrl = `${wsProtocol}//${window.location.host}/ws/chat`;
     
     // Create WebSocket connection
+    let socket;
     try {
-        ws = new WebSocket(wsUrl);
+        socket = new WebSocket(wsUrl);
     } catch (error) {
         console.error("WebSocket connection error:", error);
-        updateConnectionStatus("disconnected");
+        resetUIAfterDisconnect();
         showError("ui.error.connection.failed", error.message);
         return;
     }
+    ws = socket;
+    
+    // Keep the disconnect button usable while connecting, so a pending reconnect can be cancelled
+    connectButton.textContent = t("ui.button.disconnect");
+    connectButton.setAttribute("data-i18n", "ui.button.disconnect");
+    connectButton.disabled = false;
+    nameInput.disabled = true;
     
     // WebSocket event handlers
     ws.onopen = function() {
         console.log("Connected to WebSocket server");
+        reconnectAttempts = 0;
+        privateHistoryRequested.clear();
         updateConnectionStatus("connected");
         
         // Enable message input but keep send button disabled until text is entered
         messageInput.disabled = false;
         sendButton.disabled = true;
+        fileButton.disabled = false;
         
         // Change connect button to disconnect
         connectButton.textContent = t("ui.button.disconnect");
@@ -289,15 +462,21 @@ function connect() {
         // Disable name input
         nameInput.disabled = true;
         
-        // Show online users counter
+        // Show online users counter and roster
         document.getElementById("onlineUsers").style.display = "block";
+        document.getElementById("userList").style.display = "block";
         
-        // Send initial message with user name to register in the session
+        // Send initial message with user name to register in the session; the token of a name
+        // claimed earlier proves it is ours
         const initialMessage = {
             name: name,
             message: "",
             type: "JOIN"
         };
+        const token = localStorage.getItem(NAME_TOKEN_KEY_PREFIX + name);
+        if (token) {
+            initialMessage.token = token;
+        }
         
         try {
             ws.send(JSON.stringify(initialMessage));
@@ -306,44 +485,33 @@ function connect() {
             showError("ui.error.send.failed", error.message);
         }
         
-        // Load message history
+        // Load message history, or what was missed while reconnecting
         fetchMessageHistory();
     };
     
     ws.onmessage = function(event) {
         try {
             const data = JSON.parse(event.data);
-            console.log("Received message:", data);
-            
-            // Handle user count updates
-            if (data.type === "USER_COUNT") {
-                // Use the count field directly
-                updateOnlineUsers(data.count);
-            } else if (data.type === "ERROR") {
-                // Display error message in the UI
-                showError(data.message);
-                // Also add it to the chat as a system message
-                displayMessage(data);
-            } else if (data.type === "CHAT" && (!data.message || data.message.trim() === "")) {
-                // Skip empty chat messages
-                console.log("Skipping empty message");
-                return;
-            } else {
-                // Display chat message
-                displayMessage(data);
-            }
+            // Under load the server packs several messages into one array frame
+            (Array.isArray(data) ? data : [data]).forEach(handleServerMessage);
         } catch (error) {
             console.error("Error processing message:", error);
             showError("chat.message.error.processing");
         }
     };
     
-    ws.onclose = function() {
-        console.log("Disconnected from WebSocket server");
-        updateConnectionStatus("disconnected");
+    ws.onclose = function(event) {
+        console.log("Disconnected from WebSocket server:", event.code, event.reason);
         
-        // Reset UI to disconnected state
-        resetUIAfterDisconnect();
+        // Ignore a socket that was already replaced
+        if (socket !== ws) return;
+        
+        if (disconnectRequested) {
+            // Reset UI to disconnected state
+            resetUIAfterDisconnect();
+        } else {
+            scheduleReconnect(name, parseRetryAfter(event.reason));
+        }
     };
     
     ws.onerror = function(error) {
@@ -352,11 +520,89 @@ function connect() {
     };
 }
 
+/**
+ * Handle one message from the server
+ */
+function handleServerMessage(data) {
+    console.log("Received message:", data);
+    
+    // Handle user count updates
+    if (data.type === "USER_COUNT") {
+        // Default fields are left out of server frames, so a count of zero arrives without one
+        updateOnlineUsers(data.count || 0);
+    } else if (data.type === "PRESENCE_ROSTER") {
+        applyPresenceRoster(data);
+    } else if (data.type === "PRESENCE_DELTA") {
+        applyPresenceDelta(data);
+    } else if (data.type === "TYPING_STATE") {
+        applyTypingState(data);
+    } else if (data.type === "IDENTITY") {
+        // Issued once, when the name is claimed; other tabs and later visits send it back
+        localStorage.setItem(NAME_TOKEN_KEY_PREFIX + data.name, data.token);
+    } else if (data.type === "PRIVATE_HISTORY") {
+        (data.messages || []).forEach(displayMessage);
+    } else if (data.type === "ERROR") {
+        // Display error message in the UI
+        showError(data.message);
+        // Also add it to the chat as a system message
+        displayMessage(data);
+    } else if (data.type === "CHAT" && (!data.message || data.message.trim() === "")) {
+        // Skip empty chat messages
+        console.log("Skipping empty message");
+        return;
+    } else {
+        // Display chat message
+        displayMessage(data);
+    }
+}
+
+/**
+ * Parse the retry-after hint (in milliseconds) from a close reason
+ *
+ * @return The hint, or 0 if the reason has none
+ */
+function parseRetryAfter(reason) {
+    const match = reason ? RETRY_AFTER_PATTERN.exec(reason) : null;
+    return match ? parseInt(match[1], 10) : 0;
+}
+
+/**
+ * Schedule the next reconnect attempt after a connection was lost
+ *
+ * The delay is the server's retry-after hint, if any, plus a full-jitter exponential backoff.
+ */
+function scheduleReconnect(name, retryAfterMs) {
+    const ceiling = Math.min(RECONNECT_MAX_DELAY_MS, RECONNECT_BASE_DELAY_MS * 2 ** reconnectAttempts);
+    const delay = retryAfterMs + Math.random() * ceiling;
+    reconnectAttempts++;
+    console.log(`Reconnecting in ${Math.round(delay)} ms (attempt ${reconnectAttempts})`);
+    
+    // Messages cannot be sent until the connection is back; the name stays as it was
+    messageInput.disabled = true;
+    sendButton.disabled = true;
+    fileButton.disabled = true;
+    resetPresence();
+    updateConnectionStatus("reconnecting");
+    
+    reconnectTimer = setTimeout(function() {
+        reconnectTimer = null;
+        openConnection(name);
+    }, delay);
+}
+
 /**
  * Disconnect from the WebSocket server
  */
 function disconnect() {
-    if (ws && ws.readyState === WebSocket.OPEN) {
+    disconnectRequested = true;
+    if (reconnectTimer) {
+        clearTimeout(reconnectTimer);
+        reconnectTimer = null;
+    }
+    
+    if (ws && ws.readyState === WebSocket.CONNECTING) {
+        ws.close();
+    } else if (ws && ws.readyState === WebSocket.OPEN) {
         // Send leave message before closing
         try {
             const leaveMessage = {
@@ -384,6 +630,7 @@ function resetUIAfterDisconnect() {
     // Disable message input and send button
     messageInput.disabled = true;
     sendButton.disabled = true;
+    fileButton.disabled = true;
     
     // Enable name input and reset connect button
     nameInput.disabled = false;
@@ -391,10 +638,29 @@ function resetUIAfterDisconnect() {
     connectButton.setAttribute("data-i18n", "ui.button.connect");
     connectButton.disabled = false;
     
+    resetPresence();
+    
     // Update connection status
     updateConnectionStatus("disconnected");
 }
 
+/**
+ * Forget the roster; a new connection starts from a fresh snapshot
+ */
+function resetPresence() {
+    typingUsers = new Set();
+    typingSentAt = 0;
+    renderTypingIndicator();
+    presenceVersion = 0;
+    presenceUsers = new Set();
+    presenceResyncPending = false;
+    const userListElement = document.getElementById("userList");
+    if (userListElement) {
+        userListElement.textContent = "";
+        userListElement.style.display = "none";
+    }
+}
+
 /**
  * Format ISO timestamp to readable time using Intl API
  */
@@ -429,11 +695,34 @@ function printMessage(data) {
 
 /**
  * Display a message object in the chat
+ *
+ * The message is queued and rendered with the next animation frame, together with any other
+ * messages that arrive before it.
  */
 function displayMessage(messageData) {
-    const messagesContainer = document.getElementById("messages");
-    if (!messagesContainer) return;
-    
+    if (!messageList) return;
+    if (messageData.id) {
+        // Skip a message that a history fetch already showed; private messages have ids of their own
+        const key = messageData.type === "PRIVATE" ? "private:" + messageData.id : messageData.id;
+        if (shownMessageIds.has(key)) return;
+        shownMessageIds.add(key);
+    }
+    messageList.append(messageData);
+}
+
+/**
+ * Create the element for a message or separator in the message list
+ */
+function createMessageElement(messageData) {
+    if (messageData.separator) {
+        const separator = document.createElement("div");
+        separator.className = messageData.separator;
+        const separatorSpan = document.createElement("span");
+        separatorSpan.textContent = t(messageData.key);
+        separator.appendChild(separatorSpan);
+        return separator;
+    }
+
     const messageElement = document.createElement("div");
     messageElement.className = "message";
     
@@ -448,6 +737,9 @@ function displayMessage(messageData) {
         case "CHAT":
             messageElement.classList.add("chat");
             break;
+        case "PRIVATE":
+            messageElement.classList.add("chat", "private");
+            break;
         default:
             messageElement.classList.add("system");
     }
@@ -459,7 +751,9 @@ function displayMessage(messageData) {
     // Add sender name
     const senderElement = document.createElement("span");
     senderElement.className = "sender";
-    senderElement.textContent = messageData.name || t("chat.message.system");
+    senderElement.textContent = messageData.type === "PRIVATE"
+        ? t("chat.message.private", messageData.name, messageData.recipient)
+        : messageData.name || t("chat.message.system");
     headerElement.appendChild(senderElement);
     
     // Add timestamp if available
@@ -485,15 +779,21 @@ function displayMessage(messageData) {
             contentElement.textContent = t("chat.message.leave", messageData.name);
             break;
         default:
-            contentElement.textContent = messageData.message;
+            if (messageData.blobId) {
+                // A shared file: the message is its name
+                const link = document.createElement("a");
+                link.href = "/api/chat/files/" + messageData.blobId + "?name=" + encodeURIComponent(messageData.message);
+                link.download = messageData.message;
+                link.textContent = messageData.message;
+                contentElement.appendChild(link);
+            } else {
+                contentElement.textContent = messageData.message;
+            }
             break;
     }
     
     messageElement.appendChild(contentElement);
-    messagesContainer.appendChild(messageElement);
-    
-    // Auto-scroll to bottom
-    messagesContainer.scrollTop = messagesContainer.scrollHeight;
+    return messageElement;
 }
 
 /**
@@ -514,15 +814,18 @@ function sendToGroupChat() {
     }
     
     // Create message object
-    const chatMessage = {
-        name: nameInput.value.trim(),
-        message: content,
-        type: "CHAT"
-    };
+    const chatMessage = createOutgoingMessage(content);
     
     // Send message
     try {
+        if (chatMessage.type === "PRIVATE" && !privateHistoryRequested.has(chatMessage.recipient)) {
+            // Show the earlier messages of the conversation before the new one
+            privateHistoryRequested.add(chatMessage.recipient);
+            ws.send(JSON.stringify({ type: "PRIVATE_HISTORY", recipient: chatMessage.recipient }));
+        }
         ws.send(JSON.stringify(chatMessage));
+        // The server ends typing when the message arrives
+        typingSentAt = 0;
         messageInput.value = ""; // Clear input field
         messageInput.focus();
         
@@ -534,27 +837,68 @@ function sendToGroupChat() {
     }
 }
 
-// Listen for language changes and update separators
-document.addEventListener('i18n:updated', function() {
-    // Update message history separator if it exists
-    if (messageHistorySeparator) {
-        const span = messageHistorySeparator.querySelector('span');
-        if (span) {
-            span.textContent = t("ui.message.history");
-        }
+/**
+ * Share a file: announce it, then send it in binary chunks, reading each from the file only when
+ * the socket has room for it, so large files are never held in memory. The server shares the file
+ * as a chat message once the last chunk has arrived.
+ */
+async function sendFile(file) {
+    if (!ws || ws.readyState !== WebSocket.OPEN) {
+        showError("ui.error.not.connected");
+        return;
     }
-    
-    // Update new messages separator if it exists
-    if (newMessagesSeparator) {
-        const span = newMessagesSeparator.querySelector('span');
-        if (span) {
-            span.textContent = t("ui.new.messages");
+    if (file.size === 0) {
+        return;
+    }
+    const socket = ws;
+    try {
+        socket.send(JSON.stringify({ type: "UPLOAD", message: file.name, size: file.size }));
+        for (let offset = 0; offset < file.size; offset += FILE_CHUNK_SIZE) {
+            while (socket.bufferedAmount > FILE_BUFFERED_LIMIT) {
+                await new Promise(resolve => setTimeout(resolve, 20));
+            }
+            // A reconnect starts a new session; the server discards the partial file of the old one
+            if (socket.readyState !== WebSocket.OPEN) {
+                return;
+            }
+            socket.send(file.slice(offset, offset + FILE_CHUNK_SIZE));
         }
+    } catch (error) {
+        console.error("Error sending file:", error);
+        showError("ui.error.send.failed", error.message);
+    }
+}
+
+/**
+ * Create the message to send for the text in the input: a private message for "/msg name text",
+ * a chat message otherwise
+ */
+function createOutgoingMessage(content) {
+    const privateCommand = PRIVATE_COMMAND_PATTERN.exec(content);
+    if (privateCommand) {
+        return {
+            recipient: privateCommand[1] || privateCommand[2],
+            message: privateCommand[3],
+            type: "PRIVATE"
+        };
+    }
+    return {
+        name: nameInput.value.trim(),
+        message: content,
+        type: "CHAT"
+    };
+}
+
+// Listen for language changes and render the visible messages and separators again
+document.addEventListener('i18n:updated', function() {
+    if (messageList) {
+        messageList.refresh();
     }
 });
 
 // Close WebSocket connection when window is closed
 window.addEventListener("beforeunload", function() {
+    disconnectRequested = true;
     if (ws && ws.readyState === WebSocket.OPEN) {
         ws.close();
     }
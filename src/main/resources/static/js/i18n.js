@@ -1,6 +1,10 @@
 /**
  * Modern Internationalization support using Intl API
  */
+
+// The script element carries the content-hashed URL of each locale's messages
+const I18N_SCRIPT = document.currentScript;
+
 class I18n {
   constructor() {
     this.messages = {};
@@ -41,8 +45,8 @@ class I18n {
         locale = 'en';
       }
       
-      // Load messages directly from JSON file
-      const response = await fetch(`/i18n/messages_${locale}.json`);
+      // Load messages directly from JSON file, through its hashed URL so the browser can keep it
+      const response = await fetch(this.messagesUrl(locale));
       
       if (!response.ok) {
         // Fallback to English if requested locale file not found
@@ -68,6 +72,8 @@ class I18n {
       
       // Store preferred language
       localStorage.setItem('preferred-language', locale);
+      // The server picks the language of its WebSocket frames from this cookie at handshake time
+      document.cookie = `lang=${locale}; path=/; max-age=31536000; SameSite=Lax`;
       
       console.log(`Loaded ${Object.keys(this.messages).length} translations for locale: ${locale}`);
       return true;
@@ -77,6 +83,14 @@ class I18n {
     }
   }
 
+  /**
+   * URL of a locale's messages: the hashed one the page was served with, or the plain path
+   */
+  messagesUrl(locale) {
+    const key = 'messages' + locale.charAt(0).toUpperCase() + locale.slice(1);
+    return (I18N_SCRIPT && I18N_SCRIPT.dataset[key]) || `/i18n/messages_${locale}.json`;
+  }
+
   /**
    * Get translated message with optional parameter substitution
    */
@@ -0,0 +1,199 @@
+/**
+ * Virtualized list for the chat messages
+ *
+ * Only the rows inside the viewport (plus a few above and below) are kept in the DOM. Rows are
+ * absolutely positioned inside a sizer element as tall as the whole list; heights are estimated
+ * until a row has been rendered and measured. Appended items are queued and flushed at most once
+ * per animation frame, together with a single scroll update.
+ */
+class VirtualList {
+    /**
+     * @param container  The scrollable element that holds the list
+     * @param renderItem Creates the DOM element for an item
+     * @param options    Optional estimatedHeight, overscan and requestFrame overrides
+     */
+    constructor(container, renderItem, options = {}) {
+        this.container = container;
+        this.renderItem = renderItem;
+        this.estimatedHeight = options.estimatedHeight || 60;
+        this.overscan = options.overscan !== undefined ? options.overscan : 8;
+        this.requestFrame = options.requestFrame || (callback => window.requestAnimationFrame(callback));
+
+        this.items = [];
+        this.heights = [];
+        // offsets[i] is the top of row i and offsets[items.length] the total height; valid up to validOffsets
+        this.offsets = [0];
+        this.validOffsets = 0;
+        this.pending = [];
+        this.rows = new Map();
+        this.frameRequested = false;
+
+        this.sizer = document.createElement("div");
+        this.sizer.className = "virtual-list-sizer";
+        container.appendChild(this.sizer);
+        container.addEventListener("scroll", () => this.scheduleFrame(), { passive: true });
+    }
+
+    /**
+     * Queue an item; it is rendered with the next animation frame
+     */
+    append(item) {
+        this.pending.push(item);
+        this.scheduleFrame();
+    }
+
+    /**
+     * Queue several items at once
+     */
+    appendAll(items) {
+        for (const item of items) {
+            this.pending.push(item);
+        }
+        this.scheduleFrame();
+    }
+
+    /**
+     * Render the visible rows again, e.g. after a language change
+     */
+    refresh() {
+        for (const row of this.rows.values()) {
+            row.remove();
+        }
+        this.rows.clear();
+        this.scheduleFrame();
+    }
+
+    /**
+     * Number of items in the list, including queued ones
+     */
+    size() {
+        return this.items.length + this.pending.length;
+    }
+
+    scheduleFrame() {
+        if (this.frameRequested) return;
+        this.frameRequested = true;
+        this.requestFrame(() => this.flush());
+    }
+
+    /**
+     * Apply queued items and render the visible rows; runs once per animation frame
+     */
+    flush() {
+        this.frameRequested = false;
+        const container = this.container;
+
+        // Read the scroll position before any writes, so a frame causes at most one extra layout
+        const stickToBottom = container.scrollTop + container.clientHeight >= container.scrollHeight - this.estimatedHeight;
+
+        const appended = this.pending.length > 0;
+        if (appended) {
+            this.validOffsets = Math.min(this.validOffsets, this.items.length);
+            for (const item of this.pending) {
+                this.items.push(item);
+                this.heights.push(this.estimatedHeight);
+            }
+            this.pending = [];
+            this.updateOffsets();
+        }
+
+        if (appended && stickToBottom) {
+            container.scrollTop = container.scrollHeight;
+        }
+
+        if (this.render() && stickToBottom) {
+            // Measured heights moved the bottom; follow it and render the rows that came into view
+            container.scrollTop = container.scrollHeight;
+            this.scheduleFrame();
+        }
+    }
+
+    /**
+     * Sync the rows in the DOM with the visible range
+     *
+     * @return true if newly measured rows changed the list height
+     */
+    render() {
+        const count = this.items.length;
+        if (count === 0) return false;
+
+        const top = Math.max(0, this.container.scrollTop - this.sizer.offsetTop);
+        const first = Math.max(0, this.indexAt(top) - this.overscan);
+        const last = Math.min(count - 1, this.indexAt(top + this.container.clientHeight) + this.overscan);
+
+        for (const [index, row] of this.rows) {
+            if (index < first || index > last) {
+                row.remove();
+                this.rows.delete(index);
+            }
+        }
+
+        const added = [];
+        const fragment = document.createDocumentFragment();
+        for (let i = first; i <= last; i++) {
+            if (!this.rows.has(i)) {
+                const row = document.createElement("div");
+                row.className = "virtual-row";
+                row.style.transform = `translateY(${this.offsets[i]}px)`;
+                row.appendChild(this.renderItem(this.items[i]));
+                fragment.appendChild(row);
+                this.rows.set(i, row);
+                added.push(i);
+            }
+        }
+        if (added.length === 0) return false;
+        this.sizer.appendChild(fragment);
+
+        // Measure the new rows in one pass (a single layout), then write the corrected positions
+        let changed = false;
+        for (const i of added) {
+            const height = this.rows.get(i).offsetHeight;
+            if (height > 0 && height !== this.heights[i]) {
+                this.heights[i] = height;
+                this.validOffsets = Math.min(this.validOffsets, i);
+                changed = true;
+            }
+        }
+        if (changed) {
+            this.updateOffsets();
+            for (const [index, row] of this.rows) {
+                row.style.transform = `translateY(${this.offsets[index]}px)`;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Recompute the row offsets from the first invalid one and resize the sizer
+     */
+    updateOffsets() {
+        const count = this.items.length;
+        for (let i = this.validOffsets; i < count; i++) {
+            this.offsets[i + 1] = this.offsets[i] + this.heights[i];
+        }
+        this.offsets.length = count + 1;
+        this.validOffsets = count;
+        this.sizer.style.height = `${this.offsets[count]}px`;
+    }
+
+    /**
+     * Index of the row at a vertical position within the list
+     */
+    indexAt(y) {
+        let low = 0;
+        let high = this.items.length - 1;
+        while (low < high) {
+            const mid = (low + high + 1) >>> 1;
+            if (this.offsets[mid] <= y) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+}
+
+if (typeof module !== "undefined" && module.exports) {
+    module.exports = VirtualList;
+}
@@ -0,0 +1,75 @@
+package com.example.springbootwebsocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatEventTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void testCreateErrorEvent() throws Exception {
+        ChatEvent event = ChatEvent.error("Error message");
+
+        assertEquals("System", event.name());
+        assertEquals("Error message", event.message());
+        assertEquals(ChatMessage.MessageType.ERROR, event.type());
+        assertNull(event.timestamp());
+        assertEquals("{\"type\":\"ERROR\",\"name\":\"System\",\"message\":\"Error message\"}",
+                objectMapper.writeValueAsString(event));
+    }
+
+    @Test
+    void testCreateUserCountEvent() throws Exception {
+        ChatEvent event = ChatEvent.userCount(5);
+
+        assertEquals("System", event.name());
+        assertEquals(5, event.count());
+        assertEquals(ChatMessage.MessageType.USER_COUNT, event.type());
+        String json = objectMapper.writeValueAsString(event);
+        assertTrue(json.startsWith("{\"type\":\"USER_COUNT\",\"name\":\"System\",\"timestamp\":\""), json);
+        assertTrue(json.endsWith("\",\"count\":5}"), json);
+    }
+
+    @Test
+    void testDefaultFieldsAreLeftOutOfTheFrame() throws Exception {
+        ChatEvent event = ChatEvent.of(ChatMessage.MessageType.CHAT, "TestUser", "Hello");
+        assertNull(event.id());
+        assertNotNull(event.timestamp());
+        assertEquals("{\"type\":\"CHAT\",\"name\":\"TestUser\",\"message\":\"Hello\",\"timestamp\":\"" + event.timestamp() + "\"}",
+                objectMapper.writeValueAsString(event));
+
+        ChatEvent saved = event.withId(42L);
+        assertEquals("{\"id\":42,\"type\":\"CHAT\",\"name\":\"TestUser\",\"message\":\"Hello\",\"timestamp\":\""
+                + event.timestamp() + "\"}", objectMapper.writeValueAsString(saved));
+    }
+
+    @Test
+    void testSharedFilesCarryTheirBlobId() throws Exception {
+        ChatEvent event = ChatEvent.file("TestUser", "notes.txt", "ab".repeat(32)).withId(7L);
+
+        assertEquals(ChatMessage.MessageType.CHAT, event.type());
+        assertEquals("{\"id\":7,\"type\":\"CHAT\",\"name\":\"TestUser\",\"message\":\"notes.txt\",\"blobId\":\""
+                + "ab".repeat(32) + "\",\"timestamp\":\"" + event.timestamp() + "\"}", objectMapper.writeValueAsString(event));
+
+        ChatCommand upload = objectMapper.readValue("{\"type\":\"UPLOAD\",\"message\":\"notes.txt\",\"size\":1234}",
+                ChatCommand.class);
+        assertEquals(new ChatCommand(ChatMessage.MessageType.UPLOAD, null, "notes.txt", null, 1234, null, null), upload);
+    }
+
+    @Test
+    void testCommandsIgnoreUnknownFields() throws Exception {
+        ChatCommand command = objectMapper.readValue(
+                "{\"id\":7,\"name\":\"TestUser\",\"message\":\"Hi\",\"timestamp\":\"x\",\"count\":0}", ChatCommand.class);
+
+        assertEquals(new ChatCommand(null, "TestUser", "Hi", null, 0, null, null), command);
+        assertEquals(ChatMessage.MessageType.CHAT, command.effectiveType());
+        assertTrue(command.isConversational());
+        assertTrue(new ChatCommand(ChatMessage.MessageType.PRIVATE, null, "Hi", "Bob", 0, null, null).isConversational());
+    }
+}
@@ -2,43 +2,82 @@ package com.example.springbootwebsocket;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.ArgumentCaptor;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
 
+import com.example.springbootwebsocket.config.LocaleHandshakeInterceptor;
+import com.example.springbootwebsocket.config.MessageConfig;
+import com.example.springbootwebsocket.repository.BlobStore;
 import com.example.springbootwebsocket.service.ChatMessageService;
+import com.example.springbootwebsocket.service.ChatStatistics;
+import com.example.springbootwebsocket.service.HeartbeatMonitor;
+import com.example.springbootwebsocket.service.NameClaimService;
+import com.example.springbootwebsocket.service.StripedFanout;
+import com.example.springbootwebsocket.service.PresenceRoster;
+import com.example.springbootwebsocket.service.PrivateMessageService;
+import com.example.springbootwebsocket.service.TypingCoalescer;
+import com.example.springbootwebsocket.security.DuplicateMessageFilter;
 import com.example.springbootwebsocket.security.MessageValidator;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 
 class ChatMessageHandlerTest {
 
     private ChatMessageHandler chatMessageHandler;
-    private MessageUtils messageUtils;
+    private ErrorFrameCache errorFrameCache;
+    private HeartbeatMonitor heartbeatMonitor;
+    private PrivateMessageService privateMessageService;
     private ChatMessageService chatMessageService;
+    private ChatStatistics chatStatistics;
     private MessageValidator messageValidator;
     private WebSocketSession session1;
     private WebSocketSession session2;
     private TextMessage textMessage;
+    private BlobStore blobStore;
+    private NameClaimService nameClaimService;
+    private PresenceRoster presenceRoster;
+
+    @TempDir
+    private Path fileDirectory;
 
     @BeforeEach
     void setUp() {
-        // Mock MessageUtils
-        messageUtils = mock(MessageUtils.class);
-        when(messageUtils.getMessage(eq("chat.message.join"), any()))
-            .thenReturn("TestUser has joined the chat");
-        when(messageUtils.getMessage(eq("chat.message.leave"), any()))
-            .thenReturn("TestUser has left the chat");
-        when(messageUtils.getMessage(eq("chat.message.error.processing")))
-            .thenReturn("Error processing message");
+        // Error frames rendered from the real message bundles
+        errorFrameCache = new ErrorFrameCache(new MessageConfig().messageSource(new StandardEnvironment()), new ObjectMapper(),
+                List.of(Locale.ENGLISH, Locale.forLanguageTag("ca")));
         
         // Mock ChatMessageService
         chatMessageService = mock(ChatMessageService.class);
-        when(chatMessageService.saveMessage(any(ChatMessage.class)))
+        when(chatMessageService.saveMessage(any(ChatEvent.class)))
             .thenAnswer(invocation -> invocation.getArgument(0));
         
         // Mock MessageValidator
@@ -48,8 +87,26 @@ class ChatMessageHandlerTest {
         when(messageValidator.sanitize(anyString()))
             .thenAnswer(invocation -> invocation.getArgument(0));
         
+        heartbeatMonitor = mock(HeartbeatMonitor.class);
+        privateMessageService = mock(PrivateMessageService.class);
+        when(privateMessageService.saveMessage(any(PrivateEvent.class)))
+            .thenAnswer(invocation -> invocation.getArgument(0));
+        
+        chatStatistics = new ChatStatistics(60);
+        
+        blobStore = new BlobStore(fileDirectory.toString(), 1024);
+        
+        presenceRoster = new PresenceRoster();
+        
+        // Every name is free unless a test claims it
+        nameClaimService = mock(NameClaimService.class);
+        when(nameClaimService.claim(anyString(), any())).thenReturn(new NameClaimService.Claim(true, null));
+        
         // Create the handler with mocked dependencies
-        chatMessageHandler = new ChatMessageHandler(messageUtils, chatMessageService, messageValidator);
+        chatMessageHandler = new ChatMessageHandler(errorFrameCache, chatMessageService, messageValidator, presenceRoster,
+                new TypingCoalescer(5000), heartbeatMonitor, new StripedFanout(2, 256, 10000, 524288, 0, 0),
+                privateMessageService, chatStatistics, new DuplicateMessageFilter(30000, 1000, 0.0001), blobStore,
+                nameClaimService, 8192);
         
         // Mock WebSocketSessions
         session1 = mock(WebSocketSession.class);
@@ -59,6 +116,9 @@ class ChatMessageHandlerTest {
         when(session2.getId()).thenReturn("session2");
         when(session1.isOpen()).thenReturn(true);
         when(session2.isOpen()).thenReturn(true);
+        when(session1.getAttributes()).thenReturn(new HashMap<>());
+        when(session2.getAttributes()).thenReturn(new HashMap<>(Map.of(LocaleHandshakeInterceptor.LOCALE_ATTRIBUTE,
+                Locale.forLanguageTag("ca"))));
         
         // Create a test message
         textMessage = new TextMessage("{\"name\":\"TestUser\",\"message\":\"Hello World!\",\"type\":\"CHAT\"}");
@@ -88,6 +148,68 @@ class ChatMessageHandlerTest {
         assertEquals(2, chatMessageHandler.getActiveSessionCount());
     }
 
+    @Test
+    void testPhasesAreRecordedAsFlightEvents() throws Exception {
+        chatMessageHandler.afterConnectionEstablished(session1);
+        Path file = fileDirectory.resolve("phases.jfr");
+        try (Recording recording = new Recording()) {
+            for (String name : FlightEvents.NAMES) {
+                recording.enable(name).withThreshold(Duration.ZERO);
+            }
+            recording.start();
+            chatMessageHandler.handleTextMessage(session1, textMessage);
+            recording.stop();
+            recording.dump(file);
+        }
+        
+        Map<String, List<RecordedEvent>> events = RecordingFile.readAllEvents(file).stream()
+            .collect(Collectors.groupingBy(event -> event.getEventType().getName()));
+        RecordedEvent handle = events.get(FlightEvents.HANDLE).get(0);
+        assertEquals("session1", handle.getString("sessionId"));
+        assertEquals("CHAT", handle.getString("messageType"));
+        assertEquals(textMessage.getPayload().length(), handle.getInt("payloadSize"));
+        assertEquals("Hello World!".length(), events.get(FlightEvents.SANITIZE).get(0).getInt("payloadSize"));
+        // The first message of a session is stored as its join message
+        assertEquals("JOIN", events.get(FlightEvents.PERSIST).get(0).getString("messageType"));
+        assertEquals(1, events.get(FlightEvents.BROADCAST).get(0).getInt("recipients"));
+    }
+
+    @Test
+    void testClaimedNameIsRefusedWithoutItsToken() throws Exception {
+        chatMessageHandler.afterConnectionEstablished(session1);
+        chatMessageHandler.afterConnectionEstablished(session2);
+        when(nameClaimService.claim("Alice", null)).thenReturn(new NameClaimService.Claim(true, "alice-token"));
+        when(nameClaimService.claim("Alice", "guess")).thenReturn(new NameClaimService.Claim(false, null));
+        chatMessageHandler.handleTextMessage(session1, new TextMessage("{\"name\":\"Alice\",\"type\":\"JOIN\",\"message\":\"\"}"));
+        clearInvocations(session1, session2);
+        
+        chatMessageHandler.handleTextMessage(session2,
+                new TextMessage("{\"name\":\"Alice\",\"type\":\"JOIN\",\"message\":\"\",\"token\":\"guess\"}"));
+        chatMessageHandler.handleTextMessage(session2, new TextMessage("{\"type\":\"PRIVATE_HISTORY\",\"recipient\":\"Bob\"}"));
+        
+        // Not registered as Alice, so nothing of hers reaches the second session
+        ArgumentCaptor<TextMessage> messageCaptor = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session2, times(1)).sendMessage(messageCaptor.capture());
+        assertTrue(messageCaptor.getValue().getPayload().contains("Aquest nom ja l'utilitza"), messageCaptor.getValue().getPayload());
+        verify(session1, never()).sendMessage(any());
+        verify(privateMessageService, never()).getConversation(any(), any());
+        assertEquals(List.of("session1"), presenceRoster.getSessionIds("Alice"));
+    }
+
+    @Test
+    void testTokenOfANewlyClaimedNameGoesToItsSessionOnly() throws Exception {
+        chatMessageHandler.afterConnectionEstablished(session1);
+        chatMessageHandler.afterConnectionEstablished(session2);
+        when(nameClaimService.claim("Alice", null)).thenReturn(new NameClaimService.Claim(true, "alice-token"));
+        
+        chatMessageHandler.handleTextMessage(session1, new TextMessage("{\"name\":\"Alice\",\"type\":\"JOIN\",\"message\":\"\"}"));
+        
+        verify(session1).sendMessage(new TextMessage("{\"type\":\"IDENTITY\",\"name\":\"Alice\",\"token\":\"alice-token\"}"));
+        ArgumentCaptor<TextMessage> messageCaptor = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session2, atLeastOnce()).sendMessage(messageCaptor.capture());
+        assertTrue(messageCaptor.getAllValues().stream().noneMatch(message -> message.getPayload().contains("alice-token")));
+    }
+
     @Test
     void testConnectionClosed() throws Exception {
         // Add sessions and register usernames
@@ -107,7 +229,7 @@ class ChatMessageHandlerTest {
         
         // Verify that the leave message was saved to the database
         verify(chatMessageService, atLeastOnce()).saveMessage(argThat(message -> 
-            message.getType() == ChatMessage.MessageType.LEAVE));
+            message.type() == ChatMessage.MessageType.LEAVE));
         
         // Session2 receives both the original message and the leave message
         boolean foundLeaveMessage = false;
@@ -142,7 +264,7 @@ class ChatMessageHandlerTest {
         when(session2.getId()).thenReturn("session2");
         when(session1.isOpen()).thenReturn(true);
         when(session2.isOpen()).thenReturn(true);
-        when(chatMessageService.saveMessage(any(ChatMessage.class)))
+        when(chatMessageService.saveMessage(any(ChatEvent.class)))
             .thenAnswer(invocation -> invocation.getArgument(0));
         
         // Now send an actual chat message after registration
@@ -153,7 +275,7 @@ class ChatMessageHandlerTest {
         
         // Verify that the chat message was saved to the database
         verify(chatMessageService, atLeastOnce()).saveMessage(argThat(message -> 
-            message.getType() == ChatMessage.MessageType.CHAT));
+            message.type() == ChatMessage.MessageType.CHAT));
         
         // Verify both sessions receive the message
         ArgumentCaptor<TextMessage> messageCaptor = ArgumentCaptor.forClass(TextMessage.class);
@@ -215,4 +337,423 @@ class ChatMessageHandlerTest {
         // Verify that the session was closed with SERVER_ERROR status
         verify(session1, times(1)).close(CloseStatus.SERVER_ERROR);
     }
+
+    @Test
+    void testPresenceRosterAndDeltas() throws Exception {
+        // A new connection receives the full roster once
+        chatMessageHandler.afterConnectionEstablished(session1);
+        ArgumentCaptor<TextMessage> messageCaptor = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session1, atLeastOnce()).sendMessage(messageCaptor.capture());
+        assertTrue(messageCaptor.getAllValues().stream()
+                .anyMatch(msg -> msg.getPayload().contains("\"type\":\"PRESENCE_ROSTER\"")));
+        
+        chatMessageHandler.afterConnectionEstablished(session2);
+        clearInvocations(session1, session2);
+        
+        // Registering a name broadcasts a versioned delta instead of a new roster
+        chatMessageHandler.handleTextMessage(session1, textMessage);
+        messageCaptor = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session2, atLeastOnce()).sendMessage(messageCaptor.capture());
+        assertTrue(messageCaptor.getAllValues().stream()
+                .anyMatch(msg -> msg.getPayload().contains("\"type\":\"PRESENCE_DELTA\"")
+                        && msg.getPayload().contains("\"version\":1")
+                        && msg.getPayload().contains("\"op\":\"ADD\"")));
+        assertTrue(messageCaptor.getAllValues().stream()
+                .noneMatch(msg -> msg.getPayload().contains("PRESENCE_ROSTER")));
+        
+        // A resync request is answered with the roster to the requesting session only
+        clearInvocations(session1, session2);
+        chatMessageHandler.handleTextMessage(session2, new TextMessage("{\"type\":\"PRESENCE_SYNC\"}"));
+        messageCaptor = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session2, times(1)).sendMessage(messageCaptor.capture());
+        assertTrue(messageCaptor.getValue().getPayload().contains("\"users\":[\"TestUser\"]"));
+        verify(session1, never()).sendMessage(any(TextMessage.class));
+        
+        // Closing the session removes the user with a new delta
+        clearInvocations(session1, session2);
+        chatMessageHandler.afterConnectionClosed(session1, CloseStatus.NORMAL);
+        messageCaptor = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session2, atLeastOnce()).sendMessage(messageCaptor.capture());
+        assertTrue(messageCaptor.getAllValues().stream()
+                .anyMatch(msg -> msg.getPayload().contains("\"version\":2")
+                        && msg.getPayload().contains("\"op\":\"REMOVE\"")));
+    }
+
+    @Test
+    void testTypingEventsAreCoalescedAndNotPersisted() throws Exception {
+        chatMessageHandler.afterConnectionEstablished(session1);
+        chatMessageHandler.afterConnectionEstablished(session2);
+        chatMessageHandler.handleTextMessage(session1, textMessage);
+        clearInvocations(session1, session2, chatMessageService, messageValidator);
+        
+        // Repeated typing events are neither persisted, sanitized nor broadcast individually
+        TextMessage typing = new TextMessage("{\"type\":\"TYPING\",\"typing\":true}");
+        for (int i = 0; i < 10; i++) {
+            chatMessageHandler.handleTextMessage(session1, typing);
+        }
+        verifyNoInteractions(chatMessageService, messageValidator);
+        verify(session2, never()).sendMessage(any(TextMessage.class));
+        
+        // The next tick broadcasts them as one frame
+        chatMessageHandler.flushTypingStates();
+        ArgumentCaptor<TextMessage> messageCaptor = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session2, times(1)).sendMessage(messageCaptor.capture());
+        assertEquals("{\"type\":\"TYPING_STATE\",\"typing\":[\"TestUser\"]}", messageCaptor.getValue().getPayload());
+        
+        // Nothing changed since, so the next tick sends nothing
+        clearInvocations(session2);
+        chatMessageHandler.flushTypingStates();
+        verify(session2, never()).sendMessage(any(TextMessage.class));
+        
+        // Sending a chat message ends typing
+        chatMessageHandler.handleTextMessage(session1, textMessage);
+        clearInvocations(session2);
+        chatMessageHandler.flushTypingStates();
+        verify(session2, times(1)).sendMessage(messageCaptor.capture());
+        assertEquals("{\"type\":\"TYPING_STATE\",\"stopped\":[\"TestUser\"]}", messageCaptor.getValue().getPayload());
+    }
+
+    @Test
+    void testTypingStopIsHonoredWhateverTheFieldOrder() throws Exception {
+        chatMessageHandler.afterConnectionEstablished(session1);
+        chatMessageHandler.afterConnectionEstablished(session2);
+        chatMessageHandler.handleTextMessage(session1, textMessage);
+        chatMessageHandler.handleTextMessage(session1, new TextMessage("{\"typing\":true,\"type\":\"TYPING\"}"));
+        chatMessageHandler.flushTypingStates();
+        clearInvocations(session1, session2);
+        
+        chatMessageHandler.handleTextMessage(session1, new TextMessage("{\"typing\":false,\"type\":\"TYPING\"}"));
+        chatMessageHandler.flushTypingStates();
+        
+        ArgumentCaptor<TextMessage> messageCaptor = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session2, times(1)).sendMessage(messageCaptor.capture());
+        assertEquals("{\"type\":\"TYPING_STATE\",\"stopped\":[\"TestUser\"]}", messageCaptor.getValue().getPayload());
+    }
+
+    @Test
+    void testTypingStateFromAClientIsRefused() throws Exception {
+        chatMessageHandler.afterConnectionEstablished(session1);
+        chatMessageHandler.afterConnectionEstablished(session2);
+        chatMessageHandler.handleTextMessage(session1, textMessage);
+        clearInvocations(session1, session2);
+        
+        chatMessageHandler.handleTextMessage(session1, new TextMessage("{\"type\":\"TYPING_STATE\",\"typing\":true}"));
+        chatMessageHandler.flushTypingStates();
+        
+        ArgumentCaptor<TextMessage> messageCaptor = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session1, times(1)).sendMessage(messageCaptor.capture());
+        assertTrue(messageCaptor.getValue().getPayload().contains("\"type\":\"ERROR\""), messageCaptor.getValue().getPayload());
+        verify(session2, never()).sendMessage(any(TextMessage.class));
+    }
+
+    @Test
+    void testTypingEventFromUnregisteredSessionIsIgnored() throws Exception {
+        chatMessageHandler.afterConnectionEstablished(session1);
+        chatMessageHandler.afterConnectionEstablished(session2);
+        clearInvocations(session1, session2);
+        
+        chatMessageHandler.handleTextMessage(session1, new TextMessage("{\"type\":\"TYPING\",\"typing\":true}"));
+        chatMessageHandler.flushTypingStates();
+        
+        verify(session2, never()).sendMessage(any(TextMessage.class));
+    }
+
+    @Test
+    void testErrorFramesUseTheSessionLocale() throws Exception {
+        chatMessageHandler.afterConnectionEstablished(session1);
+        chatMessageHandler.afterConnectionEstablished(session2);
+        when(messageValidator.validateAndSanitize(anyString())).thenReturn(null);
+        clearInvocations(session1, session2);
+        
+        TextMessage unsafe = new TextMessage("{\"name\":\"TestUser\",\"message\":\"<script>\",\"type\":\"CHAT\"}");
+        chatMessageHandler.handleTextMessage(session1, unsafe);
+        chatMessageHandler.handleTextMessage(session2, unsafe);
+        
+        ArgumentCaptor<TextMessage> messageCaptor = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session1, times(1)).sendMessage(messageCaptor.capture());
+        assertTrue(messageCaptor.getValue().getPayload().contains("Message contains potentially malicious content"));
+        verify(session2, times(1)).sendMessage(messageCaptor.capture());
+        assertTrue(messageCaptor.getValue().getPayload().contains("El missatge cont\u00e9 contingut potencialment malici\u00f3s"));
+        
+        // The same pre-rendered frame is reused for every error
+        chatMessageHandler.handleTextMessage(session1, unsafe);
+        verify(session1, times(2)).sendMessage(same(errorFrameCache.getFrame(Locale.ENGLISH, ErrorFrameCache.ERROR_XSS)));
+    }
+
+    @Test
+    void testDeadSessionsAreEvictedWithBatchedAnnouncements() throws Exception {
+        WebSocketSession session3 = mock(WebSocketSession.class);
+        when(session3.getId()).thenReturn("session3");
+        when(session3.isOpen()).thenReturn(true);
+        chatMessageHandler.afterConnectionEstablished(session1);
+        chatMessageHandler.afterConnectionEstablished(session2);
+        chatMessageHandler.afterConnectionEstablished(session3);
+        verify(heartbeatMonitor, times(3)).register(any(), any());
+        chatMessageHandler.handleTextMessage(session2, new TextMessage("{\"name\":\"Bob\",\"type\":\"JOIN\",\"message\":\"\"}"));
+        chatMessageHandler.handleTextMessage(session3, new TextMessage("{\"name\":\"Carol\",\"type\":\"JOIN\",\"message\":\"\"}"));
+        clearInvocations(session1, chatMessageService);
+        
+        when(heartbeatMonitor.tick()).thenReturn(List.of(session2, session3));
+        chatMessageHandler.checkHeartbeats();
+        
+        // Both departures are announced, followed by a single user count update
+        assertEquals(1, chatMessageHandler.getActiveSessionCount());
+        verify(chatMessageService, times(2)).saveMessage(argThat(message -> message.type() == ChatMessage.MessageType.LEAVE));
+        ArgumentCaptor<TextMessage> messageCaptor = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session1, atLeastOnce()).sendMessage(messageCaptor.capture());
+        assertEquals(1, messageCaptor.getAllValues().stream()
+                .filter(msg -> msg.getPayload().contains("USER_COUNT")).count());
+        verify(session2, timeout(1000)).close(CloseStatus.SESSION_NOT_RELIABLE);
+        verify(session3, timeout(1000)).close(CloseStatus.SESSION_NOT_RELIABLE);
+        
+        // The close callback of an evicted session announces nothing again
+        clearInvocations(chatMessageService);
+        chatMessageHandler.afterConnectionClosed(session2, CloseStatus.SESSION_NOT_RELIABLE);
+        verify(heartbeatMonitor).unregister("session2");
+        verifyNoInteractions(chatMessageService);
+    }
+
+    @Test
+    void testPrivateMessagesReachOnlyTheParticipants() throws Exception {
+        WebSocketSession session3 = mock(WebSocketSession.class);
+        when(session3.getId()).thenReturn("session3");
+        when(session3.isOpen()).thenReturn(true);
+        chatMessageHandler.afterConnectionEstablished(session1);
+        chatMessageHandler.afterConnectionEstablished(session2);
+        chatMessageHandler.afterConnectionEstablished(session3);
+        chatMessageHandler.handleTextMessage(session1, new TextMessage("{\"name\":\"Alice\",\"type\":\"JOIN\",\"message\":\"\"}"));
+        chatMessageHandler.handleTextMessage(session2, new TextMessage("{\"name\":\"Bob\",\"type\":\"JOIN\",\"message\":\"\"}"));
+        chatMessageHandler.handleTextMessage(session3, new TextMessage("{\"name\":\"Carol\",\"type\":\"JOIN\",\"message\":\"\"}"));
+        clearInvocations(session1, session2, session3, chatMessageService);
+        
+        // The name in the payload is ignored; the sender is who the session registered as
+        chatMessageHandler.handleTextMessage(session1, new TextMessage(
+                "{\"name\":\"Carol\",\"recipient\":\"Bob\",\"type\":\"PRIVATE\",\"message\":\"Psst\"}"));
+        
+        verify(privateMessageService).saveMessage(argThat(message -> "Alice".equals(message.name())
+                && "Bob".equals(message.recipient()) && "Psst".equals(message.message())));
+        verifyNoInteractions(chatMessageService);
+        ArgumentCaptor<TextMessage> toBob = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session2).sendMessage(toBob.capture());
+        // The mocked store assigns no id, so the frame has none
+        assertTrue(toBob.getValue().getPayload().startsWith("{\"type\":\"PRIVATE\",\"name\":\"Alice\",\"recipient\":\"Bob\""),
+                toBob.getValue().getPayload());
+        verify(session1).sendMessage(toBob.getValue());
+        verify(session3, never()).sendMessage(any());
+    }
+
+    @Test
+    void testPrivateMessageReachesTheSenderTabsWhenTheRecipientIsTooSlow() throws Exception {
+        WebSocketSession session3 = mock(WebSocketSession.class);
+        when(session3.getId()).thenReturn("session3");
+        when(session3.isOpen()).thenReturn(true);
+        chatMessageHandler.afterConnectionEstablished(session1);
+        chatMessageHandler.afterConnectionEstablished(session2);
+        chatMessageHandler.afterConnectionEstablished(session3);
+        chatMessageHandler.handleTextMessage(session1, new TextMessage("{\"name\":\"Alice\",\"type\":\"JOIN\",\"message\":\"\"}"));
+        chatMessageHandler.handleTextMessage(session2, new TextMessage("{\"name\":\"Bob\",\"type\":\"JOIN\",\"message\":\"\"}"));
+        chatMessageHandler.handleTextMessage(session3, new TextMessage("{\"name\":\"Alice\",\"type\":\"JOIN\",\"message\":\"\"}"));
+        clearInvocations(session1, session2, session3);
+        doThrow(new SessionLimitExceededException("Send time limit exceeded", CloseStatus.SESSION_NOT_RELIABLE))
+                .when(session2).sendMessage(any());
+        
+        chatMessageHandler.handleTextMessage(session1, new TextMessage(
+                "{\"recipient\":\"Bob\",\"type\":\"PRIVATE\",\"message\":\"Psst\"}"));
+        
+        // Both of Alice's tabs get the stored message, and no error
+        ArgumentCaptor<TextMessage> toAlice = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session1).sendMessage(toAlice.capture());
+        assertTrue(toAlice.getValue().getPayload().contains("\"message\":\"Psst\""), toAlice.getValue().getPayload());
+        verify(session3).sendMessage(toAlice.getValue());
+    }
+
+    @Test
+    void testPrivateMessageToAnOfflineUserIsRejected() throws Exception {
+        chatMessageHandler.afterConnectionEstablished(session1);
+        chatMessageHandler.handleTextMessage(session1, new TextMessage("{\"name\":\"Alice\",\"type\":\"JOIN\",\"message\":\"\"}"));
+        clearInvocations(session1);
+        
+        chatMessageHandler.handleTextMessage(session1, new TextMessage(
+                "{\"recipient\":\"Nobody\",\"type\":\"PRIVATE\",\"message\":\"Hello?\"}"));
+        
+        verifyNoInteractions(privateMessageService);
+        ArgumentCaptor<TextMessage> messageCaptor = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session1).sendMessage(messageCaptor.capture());
+        assertTrue(messageCaptor.getValue().getPayload().contains("not online"), messageCaptor.getValue().getPayload());
+    }
+
+    @Test
+    void testPrivateHistoryIsSentToTheRequestingParticipant() throws Exception {
+        chatMessageHandler.afterConnectionEstablished(session1);
+        chatMessageHandler.handleTextMessage(session1, new TextMessage("{\"name\":\"Alice\",\"type\":\"JOIN\",\"message\":\"\"}"));
+        when(privateMessageService.getConversation("Alice", "Bob"))
+            .thenReturn(List.of(new PrivateEvent(7L, ChatMessage.MessageType.PRIVATE, "Bob", "Alice", "Earlier", "2024-01-01T00:00:00Z")));
+        clearInvocations(session1);
+        
+        chatMessageHandler.handleTextMessage(session1, new TextMessage("{\"recipient\":\"Bob\",\"type\":\"PRIVATE_HISTORY\"}"));
+        
+        ArgumentCaptor<TextMessage> messageCaptor = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session1).sendMessage(messageCaptor.capture());
+        String payload = messageCaptor.getValue().getPayload();
+        assertTrue(payload.startsWith("{\"type\":\"PRIVATE_HISTORY\",\"recipient\":\"Bob\",\"messages\":[{"), payload);
+        assertTrue(payload.endsWith("\"messages\":[{\"id\":7,\"type\":\"PRIVATE\",\"name\":\"Bob\",\"recipient\":\"Alice\","
+                + "\"message\":\"Earlier\",\"timestamp\":\"2024-01-01T00:00:00Z\"}]}"), payload);
+    }
+
+    @Test
+    void testStatisticsFollowTheMessagePipeline() throws Exception {
+        chatMessageHandler.afterConnectionEstablished(session1);
+        chatMessageHandler.afterConnectionEstablished(session2);
+        chatMessageHandler.handleTextMessage(session1, new TextMessage("{\"name\":\"Alice\",\"type\":\"JOIN\",\"message\":\"\"}"));
+        chatMessageHandler.handleTextMessage(session2, new TextMessage("{\"name\":\"Bob\",\"type\":\"CHAT\",\"message\":\"Hi\"}"));
+        chatMessageHandler.handleTextMessage(session1, new TextMessage("{\"name\":\"Alice\",\"type\":\"CHAT\",\"message\":\"Hello\"}"));
+        chatMessageHandler.handleTextMessage(session1, new TextMessage(
+                "{\"recipient\":\"Bob\",\"type\":\"PRIVATE\",\"message\":\"Psst\"}"));
+        chatMessageHandler.afterConnectionClosed(session2, CloseStatus.NORMAL);
+        
+        ChatStatistics.Snapshot stats = chatStatistics.snapshot();
+        assertEquals(Map.of(ChatMessage.MessageType.JOIN, 2L, ChatMessage.MessageType.CHAT, 1L,
+                ChatMessage.MessageType.PRIVATE, 1L, ChatMessage.MessageType.LEAVE, 1L), stats.messagesByType());
+        assertEquals(2L, stats.messagesPerMinute().get(stats.messagesPerMinute().size() - 1));
+        assertEquals(1, stats.activeSenders());
+    }
+
+    @Test
+    void testChatMessagesAreSentUnderTheRegisteredName() throws Exception {
+        chatMessageHandler.afterConnectionEstablished(session1);
+        chatMessageHandler.handleTextMessage(session1, new TextMessage("{\"name\":\"Alice\",\"type\":\"JOIN\",\"message\":\"\"}"));
+        clearInvocations(chatMessageService);
+        
+        chatMessageHandler.handleTextMessage(session1, new TextMessage("{\"name\":\"Bob\",\"type\":\"CHAT\",\"message\":\"I am Bob\"}"));
+        chatMessageHandler.handleTextMessage(session1, new TextMessage("{\"name\":\"Carol\",\"type\":\"CHAT\",\"message\":\"I am Carol\"}"));
+        
+        verify(chatMessageService).saveMessage(argThat(event -> "Alice".equals(event.name()) && "I am Bob".equals(event.message())));
+        verify(chatMessageService).saveMessage(argThat(event -> "Alice".equals(event.name()) && "I am Carol".equals(event.message())));
+        assertEquals(1, chatStatistics.snapshot().activeSenders());
+    }
+
+    @Test
+    void testRepeatsWithoutATypeAreDroppedLikeChatMessages() throws Exception {
+        chatMessageHandler.afterConnectionEstablished(session1);
+        chatMessageHandler.handleTextMessage(session1, new TextMessage("{\"name\":\"Alice\",\"type\":\"JOIN\",\"message\":\"\"}"));
+        // A frame without a type is stored as a chat message, so it is checked as one
+        chatMessageHandler.handleTextMessage(session1, new TextMessage("{\"name\":\"Alice\",\"message\":\"Buy now\"}"));
+        verify(chatMessageService).saveMessage(argThat(message -> message.type() == ChatMessage.MessageType.CHAT
+                && "Buy now".equals(message.message())));
+        clearInvocations(session1, chatMessageService);
+        
+        chatMessageHandler.handleTextMessage(session1, new TextMessage("{\"name\":\"Alice\",\"message\":\"Buy now\"}"));
+        chatMessageHandler.handleTextMessage(session1, new TextMessage("{\"name\":\"Alice\",\"message\":\"  \"}"));
+        
+        verifyNoInteractions(chatMessageService);
+        ArgumentCaptor<TextMessage> messageCaptor = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session1).sendMessage(messageCaptor.capture());
+        assertTrue(messageCaptor.getValue().getPayload().contains("already sent"), messageCaptor.getValue().getPayload());
+    }
+
+    @Test
+    void testRepeatedMessagesAreDroppedBeforePersistence() throws Exception {
+        chatMessageHandler.afterConnectionEstablished(session1);
+        chatMessageHandler.afterConnectionEstablished(session2);
+        chatMessageHandler.handleTextMessage(session1, new TextMessage("{\"name\":\"Alice\",\"type\":\"JOIN\",\"message\":\"\"}"));
+        chatMessageHandler.handleTextMessage(session2, new TextMessage("{\"name\":\"Bob\",\"type\":\"JOIN\",\"message\":\"\"}"));
+        chatMessageHandler.handleTextMessage(session1, new TextMessage("{\"name\":\"Alice\",\"type\":\"CHAT\",\"message\":\"Buy now\"}"));
+        clearInvocations(session1, session2, chatMessageService, messageValidator);
+        
+        // Case, spacing and the payload name do not make a copy new
+        chatMessageHandler.handleTextMessage(session1, new TextMessage("{\"name\":\"Mallory\",\"type\":\"CHAT\",\"message\":\" buy   NOW \"}"));
+        
+        verifyNoInteractions(chatMessageService);
+        verify(messageValidator, never()).validateAndSanitize(anyString());
+        verify(session2, never()).sendMessage(any());
+        ArgumentCaptor<TextMessage> messageCaptor = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session1).sendMessage(messageCaptor.capture());
+        assertTrue(messageCaptor.getValue().getPayload().contains("already sent"), messageCaptor.getValue().getPayload());
+        
+        // The same text from another user, or privately, is not a repeat
+        chatMessageHandler.handleTextMessage(session2, new TextMessage("{\"name\":\"Bob\",\"type\":\"CHAT\",\"message\":\"Buy now\"}"));
+        chatMessageHandler.handleTextMessage(session1, new TextMessage(
+                "{\"recipient\":\"Bob\",\"type\":\"PRIVATE\",\"message\":\"Buy now\"}"));
+        verify(chatMessageService).saveMessage(argThat(message -> "Bob".equals(message.name())));
+        verify(privateMessageService).saveMessage(any(PrivateEvent.class));
+    }
+
+    @Test
+    void testUploadedFilesAreStreamedToDiskAndShared() throws Exception {
+        byte[] content = "Minutes of the meeting".getBytes(StandardCharsets.UTF_8);
+        String blobId = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        chatMessageHandler.afterConnectionEstablished(session1);
+        chatMessageHandler.afterConnectionEstablished(session2);
+        chatMessageHandler.handleTextMessage(session1, new TextMessage("{\"name\":\"Alice\",\"type\":\"JOIN\",\"message\":\"\"}"));
+        clearInvocations(session1, session2, chatMessageService);
+        
+        // Only the last path element of the name is kept; the file arrives as a partial message
+        chatMessageHandler.handleTextMessage(session1, new TextMessage(
+                "{\"type\":\"UPLOAD\",\"message\":\"C:\\\\docs\\\\minutes.txt\",\"size\":" + content.length + "}"));
+        chatMessageHandler.handleMessage(session1, new BinaryMessage(Arrays.copyOfRange(content, 0, 8), false));
+        verifyNoInteractions(chatMessageService);
+        chatMessageHandler.handleMessage(session1, new BinaryMessage(Arrays.copyOfRange(content, 8, content.length), true));
+        
+        verify(chatMessageService).saveMessage(argThat(message -> message.type() == ChatMessage.MessageType.CHAT
+                && "Alice".equals(message.name()) && "minutes.txt".equals(message.message())
+                && blobId.equals(message.blobId())));
+        ArgumentCaptor<TextMessage> messageCaptor = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session2).sendMessage(messageCaptor.capture());
+        assertTrue(messageCaptor.getValue().getPayload().contains("\"blobId\":\"" + blobId + "\""),
+                messageCaptor.getValue().getPayload());
+        
+        Path stored = blobStore.find(blobId);
+        assertNotNull(stored);
+        assertEquals("Minutes of the meeting", Files.readString(stored));
+    }
+
+    @Test
+    void testUnannouncedOversizedAndAbandonedUploadsAreRefused() throws Exception {
+        chatMessageHandler.afterConnectionEstablished(session1);
+        chatMessageHandler.handleTextMessage(session1, new TextMessage("{\"name\":\"Alice\",\"type\":\"JOIN\",\"message\":\"\"}"));
+        clearInvocations(session1);
+        ArgumentCaptor<TextMessage> messageCaptor = ArgumentCaptor.forClass(TextMessage.class);
+        
+        chatMessageHandler.handleMessage(session1, new BinaryMessage(new byte[16]));
+        verify(session1).sendMessage(messageCaptor.capture());
+        assertTrue(messageCaptor.getValue().getPayload().contains("could not be uploaded"), messageCaptor.getValue().getPayload());
+        
+        chatMessageHandler.handleTextMessage(session1, new TextMessage("{\"type\":\"UPLOAD\",\"message\":\"big.bin\",\"size\":2048}"));
+        verify(session1, times(2)).sendMessage(messageCaptor.capture());
+        assertTrue(messageCaptor.getValue().getPayload().contains("too large"), messageCaptor.getValue().getPayload());
+        
+        // A connection that ends in the middle of a file leaves nothing behind
+        chatMessageHandler.handleTextMessage(session1, new TextMessage("{\"type\":\"UPLOAD\",\"message\":\"a.bin\",\"size\":100}"));
+        chatMessageHandler.handleMessage(session1, new BinaryMessage(new byte[40], false));
+        try (var partial = Files.list(fileDirectory.resolve("uploads"))) {
+            assertEquals(1, partial.count());
+        }
+        chatMessageHandler.afterConnectionClosed(session1, CloseStatus.GOING_AWAY);
+        try (var partial = Files.list(fileDirectory.resolve("uploads"))) {
+            assertEquals(0, partial.count());
+        }
+        verify(chatMessageService, never()).saveMessage(argThat(message -> message.blobId() != null));
+    }
+
+    @Test
+    void testFragmentedTextMessagesAreJoinedUpToTheMaximumSize() throws Exception {
+        chatMessageHandler.afterConnectionEstablished(session1);
+        chatMessageHandler.handleTextMessage(session1, new TextMessage("{\"name\":\"Alice\",\"type\":\"JOIN\",\"message\":\"\"}"));
+        clearInvocations(session1, chatMessageService);
+        
+        // A short message may still arrive in several frames
+        chatMessageHandler.handleMessage(session1, new TextMessage("{\"name\":\"Alice\",\"type\":\"CH", false));
+        chatMessageHandler.handleMessage(session1, new TextMessage("AT\",\"message\":\"Hel", false));
+        verifyNoInteractions(chatMessageService);
+        chatMessageHandler.handleMessage(session1, new TextMessage("lo\"}", true));
+        
+        verify(chatMessageService).saveMessage(argThat(message -> "Hello".equals(message.message())));
+        verify(session1, never()).close(any(CloseStatus.class));
+        
+        // Parts adding up to more than the maximum end the session
+        chatMessageHandler.handleMessage(session1, new TextMessage("{\"message\":\"" + "a".repeat(8000), false));
+        chatMessageHandler.handleMessage(session1, new TextMessage("a".repeat(8000), false));
+        
+        verify(session1).close(CloseStatus.TOO_BIG_TO_PROCESS);
+    }
 }
@@ -56,27 +56,6 @@ class ChatMessageTest {
         assertEquals(ChatMessage.MessageType.LEAVE, message.getType());
     }
 
-    @Test
-    void testCreateErrorMessage() {
-        // Test static factory method for error messages
-        ChatMessage message = ChatMessage.createErrorMessage("Error message");
-        
-        assertEquals("System", message.getName());
-        assertEquals("Error message", message.getMessage());
-        assertEquals(ChatMessage.MessageType.ERROR, message.getType());
-    }
-    
-    @Test
-    void testCreateUserCountMessage() {
-        // Test static factory method for user count messages
-        ChatMessage message = ChatMessage.createUserCountMessage(5);
-        
-        assertEquals("System", message.getName());
-        assertEquals("", message.getMessage()); // Message is now empty
-        assertEquals(5, message.getCount()); // Check the count field instead
-        assertEquals(ChatMessage.MessageType.USER_COUNT, message.getType());
-    }
-
     @Test
     void testGettersAndSetters() {
         // Test getters and setters
@@ -0,0 +1,261 @@
+package com.example.springbootwebsocket;
+
+import ch.qos.logback.classic.Level;
+import com.example.springbootwebsocket.repository.BlobStore;
+import com.example.springbootwebsocket.security.DuplicateMessageFilter;
+import com.example.springbootwebsocket.security.MessageValidator;
+import com.example.springbootwebsocket.service.ChatMessageService;
+import com.example.springbootwebsocket.service.ChatStatistics;
+import com.example.springbootwebsocket.service.HeartbeatMonitor;
+import com.example.springbootwebsocket.service.PresenceRoster;
+import com.example.springbootwebsocket.service.PrivateMessageService;
+import com.example.springbootwebsocket.service.NameClaimService;
+import com.example.springbootwebsocket.service.StripedFanout;
+import com.example.springbootwebsocket.service.TypingCoalescer;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Cycles connects and disconnects through the handler and checks that nothing is left behind:
+ * every session and name map returns to its baseline, and the heap histogram after the soak
+ * retains nothing per cycle compared to the one before it. Run with {@code mvn test -Psoak};
+ * {@code -Dsoak.cycles} sets the number of measured cycles.
+ */
+@Tag("soak")
+class ConnectionChurnSoakTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionChurnSoakTest.class);
+
+    private static final int CYCLES = Integer.getInteger("soak.cycles", 200_000);
+    private static final int WARM_UP_CYCLES = 20_000;
+
+    // Heartbeats are checked this often, as the scheduler would
+    private static final int CYCLES_PER_TICK = 100;
+    private static final long HEARTBEAT_INTERVAL_MILLIS = 100;
+
+    private static final Pattern HISTOGRAM_LINE = Pattern.compile("^\\s*\\d+:\\s+(\\d+)\\s+(\\d+)\\s+(\\S+)");
+
+    private final PresenceRoster presenceRoster = new PresenceRoster();
+    private final TypingCoalescer typingCoalescer = new TypingCoalescer(5000);
+    private final HeartbeatMonitor heartbeatMonitor = new HeartbeatMonitor(HEARTBEAT_INTERVAL_MILLIS, 1, 5);
+    private final StripedFanout sessions = new StripedFanout(1, 256, 10000, 524288, 5, 200);
+
+    // Stub-only mocks do not record their invocations, which would otherwise grow with every cycle
+    private final ChatMessageHandler handler = new ChatMessageHandler(
+            mock(ErrorFrameCache.class, withSettings().stubOnly()),
+            mock(ChatMessageService.class, withSettings().stubOnly().defaultAnswer(invocation -> invocation.getArgument(0))),
+            new MessageValidator(), presenceRoster,
+            typingCoalescer, heartbeatMonitor, sessions, mock(PrivateMessageService.class, withSettings().stubOnly()),
+            new ChatStatistics(60), new DuplicateMessageFilter(30000, 100000, 0.0001),
+            // Nothing is uploaded, so the directory is never created
+            new BlobStore(System.getProperty("java.io.tmpdir") + "/soak-files", 1),
+            mock(NameClaimService.class, withSettings().stubOnly()
+                    .defaultAnswer(invocation -> new NameClaimService.Claim(true, null))),
+            8192);
+
+    /**
+     * One heap histogram row
+     */
+    private record ClassUsage(long instances, long bytes) {
+    }
+
+    @Test
+    void testConnectionChurnLeavesNoSessionsOrHeapBehind() throws Exception {
+        ch.qos.logback.classic.Logger appLogger =
+                (ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.example.springbootwebsocket");
+        Level level = appLogger.getLevel();
+        // Transport errors log a stack trace each; hundreds of thousands of them would dominate the run
+        appLogger.setLevel(Level.OFF);
+        try {
+            churn(0, WARM_UP_CYCLES);
+            quiesce();
+            assertBaseline();
+            // Taken while an earlier histogram is held, so both sides include one histogram's footprint
+            Map<String, ClassUsage> before = heapHistogram();
+            before = heapHistogram(before);
+
+            long start = System.nanoTime();
+            churn(WARM_UP_CYCLES, CYCLES);
+            long elapsed = System.nanoTime() - start;
+            quiesce();
+            assertBaseline();
+            Map<String, ClassUsage> after = heapHistogram();
+            appLogger.setLevel(level);
+
+            long retainedBytes = total(after).bytes() - total(before).bytes();
+            double bytesPerCycle = (double) retainedBytes / CYCLES;
+            String growth = growth(before, after);
+            logger.info("{} cycles in {} ms: {} bytes retained ({} per cycle); grown most: {}",
+                    CYCLES, TimeUnit.NANOSECONDS.toMillis(elapsed), retainedBytes, bytesPerCycle, growth);
+
+            // A leak of even one small object per cycle would retain at least 16 bytes per cycle
+            assertTrue(bytesPerCycle < 1, "Heap grew by " + bytesPerCycle + " bytes per cycle; grown most: " + growth);
+        } finally {
+            appLogger.setLevel(level);
+            sessions.shutdown();
+        }
+    }
+
+    /**
+     * Connects and disconnects one session per cycle, rotating through the ways a session ends
+     */
+    private void churn(int from, int cycles) throws Exception {
+        for (int i = from; i < from + cycles; i++) {
+            WebSocketSession session = session("soak-" + i);
+            handler.afterConnectionEstablished(session);
+            int kind = i % 5;
+            if (kind != 4) {
+                handler.handleTextMessage(session, new TextMessage(
+                        "{\"name\":\"user-" + i + "\",\"type\":\"JOIN\",\"message\":\"\"}"));
+            }
+            switch (kind) {
+                case 0 -> {
+                    handler.handleTextMessage(session, new TextMessage("{\"type\":\"TYPING\",\"typing\":true}"));
+                    handler.handleTextMessage(session, new TextMessage(
+                            "{\"name\":\"user-" + i + "\",\"type\":\"CHAT\",\"message\":\"Hello " + i + "\"}"));
+                    session.close(CloseStatus.NORMAL);
+                }
+                // Dropped without a close frame
+                case 1 -> session.close(CloseStatus.NO_CLOSE_FRAME);
+                case 2 -> handler.handleTransportError(session, new IOException("Connection reset by peer"));
+                // Half-open: the peer is gone but the server is never told; only the heartbeat finds it
+                case 3 -> ((SessionState) session.getAttributes().get(SessionState.ATTRIBUTE)).open.set(false);
+                // Never registered a name
+                default -> session.close(CloseStatus.GOING_AWAY);
+            }
+            if (i % CYCLES_PER_TICK == 0) {
+                handler.checkHeartbeats();
+                handler.flushTypingStates();
+            }
+        }
+    }
+
+    /**
+     * Lets the heartbeat evict the remaining half-open sessions and drop the cancelled timeouts,
+     * and flushes the typing changes, as the schedulers would
+     */
+    private void quiesce() throws InterruptedException {
+        for (int round = 0; round < 3; round++) {
+            Thread.sleep(2 * HEARTBEAT_INTERVAL_MILLIS);
+            handler.checkHeartbeats();
+        }
+        handler.flushTypingStates();
+        // Evicted sessions are closed on a virtual thread
+        Thread.sleep(100);
+    }
+
+    private void assertBaseline() {
+        assertEquals(0, handler.getActiveSessionCount());
+        assertEquals(0, sessions.snapshot().size());
+        assertEquals(0, presenceRoster.getRegisteredSessionCount());
+        assertEquals(0, presenceRoster.getOnlineUserCount());
+        assertEquals(0, heartbeatMonitor.getMonitoredSessionCount());
+        assertEquals(0, typingCoalescer.getTypingUserCount());
+    }
+
+    /**
+     * Open flag of a stub session, kept in its attributes
+     */
+    private record SessionState(AtomicBoolean open) {
+        private static final String ATTRIBUTE = "soak.state";
+    }
+
+    /**
+     * A session that accepts every send and, like the container, reports its closing to the handler
+     */
+    private WebSocketSession session(String id) {
+        Map<String, Object> attributes = new ConcurrentHashMap<>();
+        SessionState state = new SessionState(new AtomicBoolean(true));
+        attributes.put(SessionState.ATTRIBUTE, state);
+        return (WebSocketSession) Proxy.newProxyInstance(WebSocketSession.class.getClassLoader(),
+                new Class<?>[] {WebSocketSession.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "getId" -> id;
+                    case "isOpen" -> state.open.get();
+                    case "getAttributes" -> attributes;
+                    case "close" -> {
+                        if (state.open.getAndSet(false)) {
+                            handler.afterConnectionClosed((WebSocketSession) proxy,
+                                    args != null && args.length == 1 ? (CloseStatus) args[0] : CloseStatus.NORMAL);
+                        }
+                        yield null;
+                    }
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "SoakSession[" + id + "]";
+                    default -> null;
+                });
+    }
+
+    /**
+     * Takes a class histogram of the live objects, after a full GC, from the HotSpot diagnostic command
+     *
+     * @param retained Objects to keep reachable until the histogram is taken
+     */
+    private static Map<String, ClassUsage> heapHistogram(Object... retained) throws Exception {
+        String histogram = (String) ManagementFactory.getPlatformMBeanServer().invoke(
+                new ObjectName("com.sun.management:type=DiagnosticCommand"), "gcClassHistogram",
+                new Object[] {null}, new String[] {String[].class.getName()});
+        Map<String, ClassUsage> usage = new HashMap<>();
+        for (String line : histogram.split("\n")) {
+            Matcher matcher = HISTOGRAM_LINE.matcher(line);
+            if (matcher.find()) {
+                usage.merge(matcher.group(3),
+                        new ClassUsage(Long.parseLong(matcher.group(1)), Long.parseLong(matcher.group(2))),
+                        (a, b) -> new ClassUsage(a.instances() + b.instances(), a.bytes() + b.bytes()));
+            }
+        }
+        Reference.reachabilityFence(retained);
+        return usage;
+    }
+
+    private static ClassUsage total(Map<String, ClassUsage> histogram) {
+        long instances = 0;
+        long bytes = 0;
+        for (ClassUsage usage : histogram.values()) {
+            instances += usage.instances();
+            bytes += usage.bytes();
+        }
+        return new ClassUsage(instances, bytes);
+    }
+
+    /**
+     * Describes the classes whose live bytes grew the most
+     */
+    private static String growth(Map<String, ClassUsage> before, Map<String, ClassUsage> after) {
+        return after.entrySet().stream()
+                .map(entry -> {
+                    ClassUsage previous = before.getOrDefault(entry.getKey(), new ClassUsage(0, 0));
+                    return Map.entry(entry.getKey(), new ClassUsage(entry.getValue().instances() - previous.instances(),
+                            entry.getValue().bytes() - previous.bytes()));
+                })
+                .filter(entry -> entry.getValue().bytes() > 0)
+                .sorted((a, b) -> Long.compare(b.getValue().bytes(), a.getValue().bytes()))
+                .limit(5)
+                .map(entry -> entry.getKey() + " +" + entry.getValue().instances() + " (" + entry.getValue().bytes() + " bytes)")
+                .collect(Collectors.joining(", "));
+    }
+}
@@ -39,6 +39,7 @@ public class DirectHtmlIntegrationTest {
         
         // Verify JS files
         assertTrue(content.contains("src=\"js/i18n.js\""), "HTML should reference i18n.js");
+        assertTrue(content.contains("src=\"js/virtual-list.js\""), "HTML should reference virtual-list.js");
         assertTrue(content.contains("src=\"js/chat.js\""), "HTML should reference chat.js");
     }
 }
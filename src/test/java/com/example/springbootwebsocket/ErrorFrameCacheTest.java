@@ -0,0 +1,54 @@
+package com.example.springbootwebsocket;
+
+import com.example.springbootwebsocket.config.ReloadableMessageSource;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.web.socket.TextMessage;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ErrorFrameCacheTest {
+
+    @TempDir
+    Path bundleDir;
+
+    @Test
+    void testFramesAreRenderedOncePerLocaleUntilTheBundlesReload() throws Exception {
+        Path bundle = bundleDir.resolve("messages.properties");
+        Files.writeString(bundle, "chat.message.error.xss=Unsafe\n");
+        ReloadableMessageSource messageSource = new ReloadableMessageSource();
+        messageSource.setBasename(bundleDir.toUri() + "messages");
+        messageSource.setCacheSeconds(0);
+        ErrorFrameCache cache = new ErrorFrameCache(messageSource, new ObjectMapper(), List.of(Locale.ENGLISH));
+
+        TextMessage frame = cache.getFrame(Locale.ENGLISH, ErrorFrameCache.ERROR_XSS);
+        assertTrue(frame.getPayload().contains("\"message\":\"Unsafe\""));
+        assertTrue(frame.getPayload().contains("\"type\":\"ERROR\""));
+        assertFalse(frame.getPayload().contains("\"timestamp\":\""));
+        assertSame(frame, cache.getFrame(null, ErrorFrameCache.ERROR_XSS));
+
+        // Unchanged bundles keep the frames
+        cache.checkForReload();
+        assertSame(frame, cache.getFrame(Locale.ENGLISH, ErrorFrameCache.ERROR_XSS));
+
+        Files.writeString(bundle, "chat.message.error.xss=Unsafe content\n");
+        Files.setLastModifiedTime(bundle, FileTime.from(Instant.now().plusSeconds(60)));
+        cache.checkForReload();
+        TextMessage reloaded = cache.getFrame(Locale.ENGLISH, ErrorFrameCache.ERROR_XSS);
+        assertNotSame(frame, reloaded);
+        assertTrue(reloaded.getPayload().contains("\"message\":\"Unsafe content\""));
+        assertEquals(List.of(Locale.ENGLISH), cache.getSupportedLocales());
+    }
+}
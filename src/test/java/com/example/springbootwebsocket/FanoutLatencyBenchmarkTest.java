@@ -0,0 +1,105 @@
+package com.example.springbootwebsocket;
+
+import com.example.springbootwebsocket.service.StripedFanout;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Fan-out benchmark: time until the last recipient of a broadcast has been written to, serially
+ * versus across the stripes of {@link StripedFanout}. Each simulated send spins for
+ * {@code benchmark.fanout.send-nanos} to stand in for framing and the socket write.
+ * Excluded from the default build; run with {@code mvn test -Pbenchmark -Dtest=FanoutLatencyBenchmarkTest}.
+ */
+@Tag("benchmark")
+class FanoutLatencyBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(FanoutLatencyBenchmarkTest.class);
+
+    private static final long SEND_NANOS = Long.getLong("benchmark.fanout.send-nanos", 2_000);
+    private static final int STRIPES = Integer.getInteger("benchmark.fanout.stripes",
+            Runtime.getRuntime().availableProcessors());
+    private static final int RUNS = 7;
+
+    private final TextMessage frame = new TextMessage(
+            "{\"name\":\"Alice\",\"message\":\"Hello everyone\",\"timestamp\":\"2025-04-01T10:00:00\",\"type\":\"CHAT\"}");
+
+    @Test
+    void testLastRecipientLatency() {
+        long[] serialAt50k = null;
+        long[] stripedAt50k = null;
+        for (int audience : new int[] {1_000, 10_000, 50_000}) {
+            long[] serial = measure(new StripedFanout(1, Integer.MAX_VALUE, 10_000, 524_288, 0, 0), audience);
+            long[] striped = measure(new StripedFanout(STRIPES, 1, 10_000, 524_288, 0, 0), audience);
+            logger.info("{} sessions, last recipient after: serial {} ms, {} stripes {} ms (median of {}, p100 {} / {} ms)",
+                    audience, millis(serial[RUNS / 2]), STRIPES, millis(striped[RUNS / 2]), RUNS,
+                    millis(serial[RUNS - 1]), millis(striped[RUNS - 1]));
+            serialAt50k = serial;
+            stripedAt50k = striped;
+        }
+        if (Runtime.getRuntime().availableProcessors() > 1 && STRIPES > 1) {
+            assertTrue(stripedAt50k[RUNS / 2] < serialAt50k[RUNS / 2],
+                    "striped fan-out should reach the last of 50k sessions sooner");
+        } else {
+            logger.info("Single CPU: the stripes cannot run in parallel, so no speed-up is expected");
+        }
+    }
+
+    /**
+     * Broadcasts to the audience RUNS times after a warm-up
+     *
+     * @return The sorted last-recipient latencies in nanoseconds
+     */
+    private long[] measure(StripedFanout fanout, int audience) {
+        AtomicLong lastSend = new AtomicLong();
+        try {
+            for (int i = 0; i < audience; i++) {
+                fanout.add(session("session" + i, lastSend));
+            }
+            fanout.broadcast(frame);
+            long[] latencies = new long[RUNS];
+            for (int run = 0; run < RUNS; run++) {
+                long start = System.nanoTime();
+                fanout.broadcast(frame);
+                latencies[run] = lastSend.get() - start;
+            }
+            Arrays.sort(latencies);
+            return latencies;
+        } finally {
+            fanout.shutdown();
+        }
+    }
+
+    private static WebSocketSession session(String id, AtomicLong lastSend) {
+        return (WebSocketSession) Proxy.newProxyInstance(WebSocketSession.class.getClassLoader(),
+                new Class<?>[] {WebSocketSession.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "getId" -> id;
+                    case "isOpen" -> true;
+                    case "sendMessage" -> {
+                        long until = System.nanoTime() + SEND_NANOS;
+                        long now;
+                        do {
+                            now = System.nanoTime();
+                        } while (now < until);
+                        lastSend.accumulateAndGet(now, Math::max);
+                        yield null;
+                    }
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> null;
+                });
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 100_000.0) / 10.0;
+    }
+}
@@ -10,6 +10,7 @@ import java.util.List;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SpringBootTest
@@ -36,7 +37,7 @@ public class FlywayMigrationTest {
                 "SELECT COLUMN_NAME, DATA_TYPE FROM INFORMATION_SCHEMA.COLUMNS " +
                 "WHERE TABLE_NAME = 'CHAT_MESSAGES'");
         
-        assertEquals(6, columns.size(), "The chat_messages table should have 6 columns");
+        assertEquals(7, columns.size(), "The chat_messages table should have 7 columns");
         
         // Verify that the expected columns exist
         assertTrue(columns.stream().anyMatch(col -> "ID".equals(col.get("COLUMN_NAME"))),
@@ -51,6 +52,8 @@ public class FlywayMigrationTest {
                 "The MESSAGE_TYPE column should exist");
         assertTrue(columns.stream().anyMatch(col -> "COUNT".equals(col.get("COLUMN_NAME"))),
                 "The COUNT column should exist");
+        assertTrue(columns.stream().anyMatch(col -> "BLOB_ID".equals(col.get("COLUMN_NAME"))),
+                "The BLOB_ID column should exist");
     }
 
     @Test
@@ -69,4 +72,26 @@ public class FlywayMigrationTest {
         
         assertTrue(hasPrimaryKey, "The chat_messages table should have a primary key");
     }
+
+    @Test
+    public void testCompositeHistoryIndexesReplaceSingleColumnIndexes() {
+        List<String> indexNames = jdbcTemplate.queryForList(
+                "SELECT INDEX_NAME FROM INFORMATION_SCHEMA.INDEXES " +
+                "WHERE TABLE_NAME = 'CHAT_MESSAGES'", String.class);
+        
+        assertTrue(indexNames.contains("IDX_CHAT_MESSAGES_TYPE_TIMESTAMP"), "The (message_type, timestamp) index should exist");
+        assertTrue(indexNames.contains("IDX_CHAT_MESSAGES_NAME_TIMESTAMP"), "The (name, timestamp) index should exist");
+        assertTrue(indexNames.contains("IDX_CHAT_MESSAGES_TIMESTAMP"), "The timestamp index should be kept for the full history");
+        assertFalse(indexNames.contains("IDX_CHAT_MESSAGES_MESSAGE_TYPE"), "The single-column type index should be dropped");
+        assertFalse(indexNames.contains("IDX_CHAT_MESSAGES_NAME"), "The single-column name index should be dropped");
+    }
+
+    @Test
+    public void testPrivateMessagesTableHasConversationIndex() {
+        List<String> indexNames = jdbcTemplate.queryForList(
+                "SELECT INDEX_NAME FROM INFORMATION_SCHEMA.INDEXES " +
+                "WHERE TABLE_NAME = 'PRIVATE_MESSAGES'", String.class);
+        
+        assertTrue(indexNames.contains("IDX_PRIVATE_MESSAGES_CONVERSATION_ID"), "The (conversation_key, id) index should exist");
+    }
 }
@@ -0,0 +1,106 @@
+package com.example.springbootwebsocket;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Reconnect storm benchmark: peak reconnects per 100 ms after a shutdown, with the sockets
+ * dropped at once versus drained by {@link ShutdownDrainer}. The reconnect times follow the
+ * first attempt of chat.js: the close reason's retry-after hint plus up to 1 s of jitter.
+ * Excluded from the default build; run with {@code mvn test -Pbenchmark -Dtest=ReconnectStormBenchmarkTest}.
+ */
+@Tag("benchmark")
+class ReconnectStormBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReconnectStormBenchmarkTest.class);
+
+    private static final int CLIENTS = Integer.getInteger("benchmark.clients", 10_000);
+    private static final long CLIENT_JITTER_MS = 1000;
+    private static final long BUCKET_MS = 100;
+
+    private final Random clientRandom = new Random(7);
+
+    @Test
+    void testDrainFlattensTheReconnectPeak() {
+        // Without the drain every socket drops at the same moment and carries no hint
+        List<Long> dropped = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            dropped.add(reconnectAt(0, 0));
+        }
+
+        ChatMessageHandler chatMessageHandler = mock(ChatMessageHandler.class);
+        // Close time and retry-after hint of every drained session
+        Map<WebSocketSession, long[]> closes = new ConcurrentHashMap<>();
+        List<WebSocketSession> sessions = new ArrayList<>();
+        AtomicLong start = new AtomicLong();
+        for (int i = 0; i < CLIENTS; i++) {
+            WebSocketSession session = mock(WebSocketSession.class);
+            try {
+                doAnswer(invocation -> {
+                    long closedAtMs = (System.nanoTime() - start.get()) / 1_000_000;
+                    String reason = invocation.<CloseStatus>getArgument(0).getReason();
+                    closes.put(session, new long[] {closedAtMs, Long.parseLong(reason.replace("retry-after=", ""))});
+                    return null;
+                }).when(session).close(any());
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            sessions.add(session);
+        }
+        when(chatMessageHandler.detachForShutdown(any())).thenReturn(true);
+        when(chatMessageHandler.getSessionSnapshot()).thenReturn(sessions);
+
+        ShutdownDrainer drainer = new ShutdownDrainer(chatMessageHandler, Duration.ofSeconds(10), 10,
+                Duration.ofMillis(500), Duration.ofSeconds(10), new Random(42));
+        start.set(System.nanoTime());
+        drainer.stop();
+        long drainMs = (System.nanoTime() - start.get()) / 1_000_000;
+        assertEquals(CLIENTS, closes.size());
+
+        List<Long> drained = new ArrayList<>();
+        for (long[] close : closes.values()) {
+            drained.add(reconnectAt(close[0], close[1]));
+        }
+
+        int droppedPeak = peak(dropped);
+        int drainedPeak = peak(drained);
+        logger.info("{} clients, peak reconnects per {} ms: dropped {}, drained {} (drain took {} ms)", CLIENTS,
+                BUCKET_MS, droppedPeak, drainedPeak, drainMs);
+        assertTrue(drainedPeak * 5 < droppedPeak, "the drain should flatten the reconnect peak");
+    }
+
+    /**
+     * Time of the first reconnect attempt of a client, as scheduled by chat.js
+     */
+    private long reconnectAt(long closedAtMs, long retryAfterMs) {
+        return closedAtMs + retryAfterMs + (long) (clientRandom.nextDouble() * CLIENT_JITTER_MS);
+    }
+
+    private static int peak(List<Long> reconnectTimes) {
+        Map<Long, Integer> buckets = new HashMap<>();
+        for (long time : reconnectTimes) {
+            buckets.merge(time / BUCKET_MS, 1, Integer::sum);
+        }
+        return buckets.values().stream().mapToInt(Integer::intValue).max().orElse(0);
+    }
+}
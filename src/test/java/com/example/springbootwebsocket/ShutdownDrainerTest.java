@@ -0,0 +1,110 @@
+package com.example.springbootwebsocket;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ShutdownDrainerTest {
+
+    private final ChatMessageHandler chatMessageHandler = mock(ChatMessageHandler.class);
+    private final ShutdownDrainer drainer = new ShutdownDrainer(chatMessageHandler, Duration.ofSeconds(5), 3,
+            Duration.ofMillis(10), Duration.ofSeconds(10), new Random(42));
+
+    private List<WebSocketSession> connect(int count) {
+        List<WebSocketSession> sessions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            WebSocketSession session = mock(WebSocketSession.class);
+            when(session.getId()).thenReturn("session" + i);
+            when(chatMessageHandler.detachForShutdown(session)).thenReturn(true);
+            sessions.add(session);
+        }
+        when(chatMessageHandler.getSessionSnapshot()).thenReturn(new ArrayList<>(sessions));
+        return sessions;
+    }
+
+    private boolean handshake() {
+        return drainer.beforeHandshake(new ServletServerHttpRequest(new MockHttpServletRequest()),
+                new ServletServerHttpResponse(new MockHttpServletResponse()), chatMessageHandler, new HashMap<>());
+    }
+
+    @Test
+    void testClosesEverySessionWithARandomizedReconnectHint() throws Exception {
+        List<WebSocketSession> sessions = connect(7);
+        drainer.start();
+        assertTrue(handshake());
+
+        CountDownLatch stopped = new CountDownLatch(1);
+        drainer.stop(stopped::countDown);
+        assertTrue(stopped.await(5, TimeUnit.SECONDS));
+        assertFalse(drainer.isRunning());
+        assertTrue(drainer.isDraining());
+
+        for (WebSocketSession session : sessions) {
+            ArgumentCaptor<CloseStatus> status = ArgumentCaptor.forClass(CloseStatus.class);
+            verify(session).close(status.capture());
+            assertEquals(ShutdownDrainer.RESTART_CLOSE_CODE, status.getValue().getCode());
+            long retryAfter = Long.parseLong(status.getValue().getReason().replace("retry-after=", ""));
+            assertTrue(retryAfter >= 0 && retryAfter <= 10_000, "hint within the spread: " + retryAfter);
+        }
+        // Pending typing states go out before the first session is closed
+        InOrder order = inOrder(chatMessageHandler);
+        order.verify(chatMessageHandler).flushTypingStates();
+        order.verify(chatMessageHandler, times(7)).detachForShutdown(any());
+    }
+
+    @Test
+    void testRefusesNewSessionsWhileDraining() {
+        connect(0);
+        drainer.start();
+        drainer.stop();
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        ServletServerHttpResponse serverResponse = new ServletServerHttpResponse(response);
+        assertFalse(drainer.beforeHandshake(new ServletServerHttpRequest(new MockHttpServletRequest()),
+                serverResponse, chatMessageHandler, new HashMap<>()));
+        serverResponse.close();
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE.value(), response.getStatus());
+        assertEquals("10", response.getHeader("Retry-After"));
+
+        drainer.start();
+        assertTrue(handshake());
+    }
+
+    @Test
+    void testSkipsSessionsThatAreAlreadyGone() throws Exception {
+        List<WebSocketSession> sessions = connect(2);
+        when(chatMessageHandler.detachForShutdown(sessions.get(0))).thenReturn(false);
+
+        drainer.stop();
+
+        verify(sessions.get(0), never()).close(any());
+        verify(sessions.get(1), timeout(1000)).close(any());
+    }
+}
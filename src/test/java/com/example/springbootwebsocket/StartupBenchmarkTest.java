@@ -0,0 +1,173 @@
+package com.example.springbootwebsocket;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Startup benchmark: time from launching the JVM until the first WebSocket handshake is accepted.
+ *
+ * Runs the packaged jar the way the Docker image does (extracted application jar plus libraries),
+ * first as is and then with the CDS archive from a training run and, when the jar was built with
+ * {@code -Pfast-startup}, the AOT-generated initializers. Excluded from the default build:
+ * {@code mvn package -Pfast-startup -DskipTests && mvn test -Pbenchmark -Dtest=StartupBenchmarkTest}
+ */
+@Tag("benchmark")
+class StartupBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(StartupBenchmarkTest.class);
+
+    private static final int RUNS = Integer.getInteger("benchmark.startup.runs", 3);
+    private static final Duration STARTUP_TIMEOUT = Duration.ofMinutes(2);
+    private static final String AOT_INITIALIZER =
+            "BOOT-INF/classes/com/example/springbootwebsocket/SpringBootWebSocketApplication__ApplicationContextInitializer.class";
+
+    @TempDir
+    Path workDir;
+
+    @Test
+    void testTimeToFirstAcceptedWebSocket() throws Exception {
+        Path jar = findPackagedJar();
+        assumeTrue(jar != null, "No packaged jar in target/; run mvn package first");
+        boolean aot;
+        try (JarFile jarFile = new JarFile(jar.toFile())) {
+            aot = jarFile.getEntry(AOT_INITIALIZER) != null;
+        }
+
+        Path app = extract(jar);
+        long baseline = median(app, List.of());
+
+        List<String> fastStartup = new ArrayList<>();
+        if (aot) {
+            fastStartup.add("-Dspring.aot.enabled=true");
+        }
+        Path archive = workDir.resolve("app.jsa");
+        List<String> training = new ArrayList<>(fastStartup);
+        training.addAll(List.of("-XX:ArchiveClassesAtExit=" + archive, "-Xlog:cds=off", "-Xlog:cds+dynamic=off",
+                "-Dspring.context.exit=onRefresh"));
+        Process trainingRun = run(app, training, 0);
+        assertTrue(trainingRun.waitFor(STARTUP_TIMEOUT.toSeconds(), TimeUnit.SECONDS), "training run did not finish");
+        assertEquals(0, trainingRun.exitValue(), "training run failed");
+        fastStartup.add("-XX:SharedArchiveFile=" + archive);
+        long optimized = median(app, fastStartup);
+
+        logger.info("Time to first accepted WebSocket (median of {}): plain {} ms, CDS{} {} ms", RUNS, baseline,
+                aot ? " + AOT" : "", optimized);
+    }
+
+    private static Path findPackagedJar() throws IOException {
+        Path target = Path.of("target");
+        if (!Files.isDirectory(target)) {
+            return null;
+        }
+        try (Stream<Path> files = Files.list(target)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".jar")).findFirst().orElse(null);
+        }
+    }
+
+    /**
+     * Extracts the jar into an application jar plus libraries, as in the Docker image
+     */
+    private Path extract(Path jar) throws Exception {
+        Path destination = workDir.resolve("app");
+        Process process = new ProcessBuilder(java(), "-Djarmode=tools", "-jar", jar.toAbsolutePath().toString(),
+                "extract", "--destination", destination.toString())
+                .redirectErrorStream(true)
+                .redirectOutput(workDir.resolve("extract.out").toFile())
+                .start();
+        assertEquals(0, process.waitFor(), "extracting the jar failed");
+        Path app = destination.resolve("app.jar");
+        Files.move(destination.resolve(jar.getFileName()), app);
+        return app;
+    }
+
+    private long median(Path app, List<String> jvmArgs) throws Exception {
+        List<Long> timings = new ArrayList<>();
+        for (int i = 0; i < RUNS; i++) {
+            long elapsed = timeToFirstWebSocket(app, jvmArgs);
+            logger.info("{} run {}: {} ms", jvmArgs.isEmpty() ? "plain" : jvmArgs, i + 1, elapsed);
+            timings.add(elapsed);
+        }
+        timings.sort(null);
+        return timings.get(timings.size() / 2);
+    }
+
+    private long timeToFirstWebSocket(Path app, List<String> jvmArgs) throws Exception {
+        int port = freePort();
+        HttpClient client = HttpClient.newHttpClient();
+        URI uri = URI.create("ws://localhost:" + port + "/ws/chat");
+        long start = System.nanoTime();
+        Process process = run(app, jvmArgs, port);
+        try {
+            while (System.nanoTime() - start < STARTUP_TIMEOUT.toNanos()) {
+                if (!process.isAlive()) {
+                    fail("application exited with " + process.exitValue() + " before accepting a WebSocket");
+                }
+                try {
+                    WebSocket webSocket = client.newWebSocketBuilder()
+                            .buildAsync(uri, new WebSocket.Listener() { })
+                            .get(1, TimeUnit.SECONDS);
+                    long elapsed = (System.nanoTime() - start) / 1_000_000;
+                    webSocket.abort();
+                    return elapsed;
+                } catch (Exception notYetListening) {
+                    Thread.sleep(10);
+                }
+            }
+            return fail("no WebSocket accepted within " + STARTUP_TIMEOUT);
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    private Process run(Path app, List<String> jvmArgs, int port) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(java());
+        command.addAll(jvmArgs);
+        command.addAll(List.of("-jar", app.getFileName().toString(),
+                "--spring.profiles.active=docker",
+                "--spring.datasource.url=jdbc:h2:mem:benchmark",
+                "--chat.search.index-dir=",
+                "--logging.level.root=WARN",
+                "--server.port=" + port));
+        return new ProcessBuilder(command)
+                .directory(app.getParent().toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.appendTo(workDir.resolve("app.out").toFile()))
+                .start();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static String java() {
+        return Path.of(System.getProperty("java.home"), "bin", "java").toString();
+    }
+}
@@ -7,6 +7,11 @@ import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistration;
 import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
 
+import com.example.springbootwebsocket.config.LocaleHandshakeInterceptor;
+
+import java.util.List;
+import java.util.Locale;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.*;
 
@@ -22,10 +27,13 @@ class WebSocketConfigTest {
         
         // Configure mocks
         when(registry.addHandler(any(), anyString())).thenReturn(registration);
+        when(registration.addInterceptors(any(), any())).thenReturn(registration);
         when(registration.setAllowedOrigins(any(String.class))).thenReturn(registration);
         
         // Create the config with the mocked handler
-        WebSocketConfig config = new WebSocketConfig(chatMessageHandler);
+        LocaleHandshakeInterceptor localeHandshakeInterceptor = new LocaleHandshakeInterceptor(List.of(Locale.ENGLISH));
+        ShutdownDrainer shutdownDrainer = mock(ShutdownDrainer.class);
+        WebSocketConfig config = new WebSocketConfig(chatMessageHandler, localeHandshakeInterceptor, shutdownDrainer);
         
         // Set the externalized properties using reflection
         ReflectionTestUtils.setField(config, "endpoint", "/ws/chat");
@@ -38,6 +46,7 @@ class WebSocketConfigTest {
         ArgumentCaptor<String> pathCaptor = ArgumentCaptor.forClass(String.class);
         verify(registry).addHandler(eq(chatMessageHandler), pathCaptor.capture());
         assertEquals("/ws/chat", pathCaptor.getValue());
+        verify(registration).addInterceptors(shutdownDrainer, localeHandshakeInterceptor);
         
         // Verify CORS was configured with the correct origins
         ArgumentCaptor<String> originsCaptor = ArgumentCaptor.forClass(String.class);
@@ -0,0 +1,180 @@
+package com.example.springbootwebsocket.config;
+
+import com.example.springbootwebsocket.ChatMessage;
+import com.example.springbootwebsocket.PrivateEvent;
+import com.example.springbootwebsocket.repository.MessageStore;
+import com.example.springbootwebsocket.service.PrivateMessageService;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "chat.datasource.write.maximum-pool-size=2",
+        "chat.datasource.read.maximum-pool-size=2",
+        "chat.datasource.read.connection-timeout-ms=30000",
+        "spring.jpa.show-sql=false"
+})
+@ActiveProfiles("test")
+class DataSourceConfigTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(DataSourceConfigTest.class);
+
+    private static final String SENDER = "pool-test";
+    private static final int SEEDED_MESSAGES = 5000;
+    private static final int READERS = 8;
+    private static final int INSERTS = 200;
+
+    @Autowired
+    private MessageStore messageStore;
+
+    @Autowired
+    private PrivateMessageService privateMessageService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    @Qualifier("writeDataSource")
+    private HikariDataSource writeDataSource;
+
+    @Autowired
+    @Qualifier("readDataSource")
+    private HikariDataSource readDataSource;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @AfterEach
+    void deleteMessages() {
+        jdbcTemplate.update("DELETE FROM chat_messages WHERE name = ?", SENDER);
+        jdbcTemplate.update("DELETE FROM private_messages WHERE sender = ?", SENDER);
+    }
+
+    @Test
+    void testReadOnlyTransactionsUseTheReadPool() {
+        long writesBefore = acquisitions(DataSourceConfig.WRITE_POOL_NAME);
+        long readsBefore = acquisitions(DataSourceConfig.READ_POOL_NAME);
+
+        messageStore.save(ChatMessage.createChatMessage(SENDER, "hello"));
+        assertEquals(writesBefore + 1, acquisitions(DataSourceConfig.WRITE_POOL_NAME));
+        assertEquals(readsBefore, acquisitions(DataSourceConfig.READ_POOL_NAME));
+
+        messageStore.findNewest(10);
+        assertEquals(writesBefore + 1, acquisitions(DataSourceConfig.WRITE_POOL_NAME));
+        assertEquals(readsBefore + 1, acquisitions(DataSourceConfig.READ_POOL_NAME));
+        assertTrue(readDataSource.isReadOnly());
+    }
+
+    @Test
+    void testPrivateConversationsAreReadFromTheReadPool() {
+        privateMessageService.saveMessage(PrivateEvent.of(SENDER, "pool-peer", "hello"));
+        long writesBefore = acquisitions(DataSourceConfig.WRITE_POOL_NAME);
+        long readsBefore = acquisitions(DataSourceConfig.READ_POOL_NAME);
+
+        assertEquals(1, privateMessageService.getConversation("pool-peer", SENDER).size());
+        assertEquals(writesBefore, acquisitions(DataSourceConfig.WRITE_POOL_NAME));
+        assertEquals(readsBefore + 1, acquisitions(DataSourceConfig.READ_POOL_NAME));
+    }
+
+    @Test
+    void testInsertsDoNotTimeOutUnderAHistoryReadFlood() throws Exception {
+        Flood flood = insertUnderAHistoryReadFlood();
+
+        assertTrue(flood.mostWaitingReaders() > 0, "The read pool should have been saturated");
+        assertEquals(0, meterRegistry.get("hikaricp.connections.timeout")
+                .tag("pool", DataSourceConfig.WRITE_POOL_NAME).counter().count());
+    }
+
+    /**
+     * Wall-clock latency depends on the machine, so it is only checked with {@code mvn test -Pbenchmark}
+     */
+    @Test
+    @Tag("benchmark")
+    void testInsertLatencyUnderAHistoryReadFlood() throws Exception {
+        Flood flood = insertUnderAHistoryReadFlood();
+
+        long[] latencies = flood.latencies();
+        Arrays.sort(latencies);
+        long p99Millis = TimeUnit.NANOSECONDS.toMillis(latencies[INSERTS * 99 / 100 - 1]);
+        logger.info("Insert p99 {} ms under {} history reads, up to {} readers waiting for a connection",
+                p99Millis, flood.reads(), flood.mostWaitingReaders());
+
+        assertTrue(flood.mostWaitingReaders() > 0, "The read pool should have been saturated");
+        assertTrue(p99Millis < 250, "Insert p99 was " + p99Millis + " ms");
+    }
+
+    private record Flood(long[] latencies, int reads, int mostWaitingReaders) {
+    }
+
+    /**
+     * Times {@link #INSERTS} inserts while history reads keep the read pool saturated
+     */
+    private Flood insertUnderAHistoryReadFlood() throws Exception {
+        jdbcTemplate.update("INSERT INTO chat_messages (name, message, timestamp, message_type) "
+                + "SELECT ?, 'message ' || X, '2024-01-01T00:00:00', 'CHAT' FROM SYSTEM_RANGE(1, ?)",
+                SENDER, SEEDED_MESSAGES);
+
+        // Four times as many readers as read connections, so most of them queue on the read pool
+        AtomicBoolean flooding = new AtomicBoolean(true);
+        AtomicInteger reads = new AtomicInteger();
+        ExecutorService readers = Executors.newFixedThreadPool(READERS);
+        List<Future<?>> flood = new ArrayList<>();
+        for (int i = 0; i < READERS; i++) {
+            flood.add(readers.submit(() -> {
+                while (flooding.get()) {
+                    messageStore.findAllNewestFirst();
+                    reads.incrementAndGet();
+                }
+            }));
+        }
+
+        long[] latencies = new long[INSERTS];
+        int mostWaitingReaders = 0;
+        try {
+            while (readDataSource.getHikariPoolMXBean().getThreadsAwaitingConnection() == 0) {
+                Thread.onSpinWait();
+            }
+            for (int i = 0; i < INSERTS; i++) {
+                mostWaitingReaders = Math.max(mostWaitingReaders,
+                        readDataSource.getHikariPoolMXBean().getThreadsAwaitingConnection());
+                long start = System.nanoTime();
+                messageStore.save(ChatMessage.createChatMessage(SENDER, "insert " + i));
+                latencies[i] = System.nanoTime() - start;
+            }
+        } finally {
+            flooding.set(false);
+            readers.shutdown();
+        }
+        assertTrue(readers.awaitTermination(30, TimeUnit.SECONDS));
+        for (Future<?> reader : flood) {
+            reader.get();
+        }
+        return new Flood(latencies, reads.get(), mostWaitingReaders);
+    }
+
+    private long acquisitions(String pool) {
+        return meterRegistry.get("hikaricp.connections.acquire").tag("pool", pool).timer().count();
+    }
+}
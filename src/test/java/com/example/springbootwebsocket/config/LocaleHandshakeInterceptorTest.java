@@ -0,0 +1,41 @@
+package com.example.springbootwebsocket.config;
+
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LocaleHandshakeInterceptorTest {
+
+    private static final Locale CATALAN = Locale.forLanguageTag("ca");
+
+    private final LocaleHandshakeInterceptor interceptor = new LocaleHandshakeInterceptor(List.of(Locale.ENGLISH, CATALAN));
+
+    @Test
+    void testCookieTakesPrecedenceOverAcceptLanguage() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(new Cookie("lang", "ca"));
+        request.addHeader("Accept-Language", "en-US,en;q=0.9");
+
+        assertEquals(CATALAN, interceptor.resolveLocale(new ServletServerHttpRequest(request)));
+    }
+
+    @Test
+    void testFallsBackToAcceptLanguageAndThenTheDefault() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(new Cookie("lang", "de"));
+        request.addHeader("Accept-Language", "fr-FR,ca;q=0.8,en;q=0.5");
+        assertEquals(CATALAN, interceptor.resolveLocale(new ServletServerHttpRequest(request)));
+
+        MockHttpServletRequest unsupported = new MockHttpServletRequest();
+        unsupported.addHeader("Accept-Language", "de-DE");
+        assertEquals(Locale.ENGLISH, interceptor.resolveLocale(new ServletServerHttpRequest(unsupported)));
+
+        assertEquals(Locale.ENGLISH, interceptor.resolveLocale(new ServletServerHttpRequest(new MockHttpServletRequest())));
+    }
+}
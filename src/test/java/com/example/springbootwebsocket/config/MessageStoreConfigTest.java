@@ -0,0 +1,50 @@
+package com.example.springbootwebsocket.config;
+
+import com.example.springbootwebsocket.ChatMessage;
+import com.example.springbootwebsocket.repository.ChatMessageRepository;
+import com.example.springbootwebsocket.repository.JpaMessageStore;
+import com.example.springbootwebsocket.repository.MessageStore;
+import com.example.springbootwebsocket.repository.SegmentLogMessageStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.Mockito.mock;
+
+class MessageStoreConfigTest {
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withUserConfiguration(MessageStoreConfig.class)
+            .withBean(ChatMessageRepository.class, () -> mock(ChatMessageRepository.class));
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void testJpaStoreIsTheDefault() {
+        contextRunner.run(context -> assertInstanceOf(JpaMessageStore.class, context.getBean(MessageStore.class)));
+    }
+
+    @Test
+    void testStoreTypeIsReadWhenTheContextStarts() {
+        contextRunner.withPropertyValues("chat.store.type=segment-log", "chat.store.segment-log.dir=" + directory,
+                        "chat.store.segment-log.segment-size=4096")
+                .run(context -> {
+                    MessageStore store = context.getBean(MessageStore.class);
+                    assertInstanceOf(SegmentLogMessageStore.class, store);
+                    // The store's lifecycle methods still run, so it is open
+                    assertEquals(1L, store.save(ChatMessage.createChatMessage("Alice", "Hi")).getId());
+                });
+    }
+
+    @Test
+    void testUnknownStoreTypeFailsTheStartup() {
+        contextRunner.withPropertyValues("chat.store.type=redis")
+                .run(context -> assertNotNull(context.getStartupFailure()));
+    }
+}
@@ -1,7 +1,13 @@
 package com.example.springbootwebsocket.controller;
 
 import com.example.springbootwebsocket.ChatMessage;
+import com.example.springbootwebsocket.repository.ChatMessageView;
+import com.example.springbootwebsocket.repository.HistoryWatermark;
+import com.example.springbootwebsocket.repository.MessageStore;
+import com.example.springbootwebsocket.service.ChatHistoryCache;
 import com.example.springbootwebsocket.service.ChatMessageService;
+import com.example.springbootwebsocket.service.ChatSearchService;
+import com.example.springbootwebsocket.service.ChatStatistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,11 +19,19 @@ import org.springframework.test.web.servlet.MockMvc;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Stream;
 
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -32,10 +46,30 @@ public class ChatMessageControllerTest {
     @Autowired
     private ChatMessageService chatMessageService;
 
-    private List<ChatMessage> mockMessages;
+    @Autowired
+    private ChatSearchService chatSearchService;
+
+    @Autowired
+    private MessageStore messageStore;
+
+    @Autowired
+    private ChatHistoryCache chatHistoryCache;
+
+    @Autowired
+    private ChatStatistics chatStatistics;
+
+    private List<ChatMessageView> mockMessages;
 
     @BeforeEach
     public void setup() {
+        // Start every test with empty watermarks and bodies
+        reset(chatMessageService, messageStore);
+        chatHistoryCache.clear();
+        when(messageStore.findWatermark()).thenReturn(new HistoryWatermark(3, 3));
+        when(messageStore.findWatermarkByType(ChatMessage.MessageType.CHAT)).thenReturn(new HistoryWatermark(2, 2));
+        when(messageStore.findWatermarkByType(ChatMessage.MessageType.JOIN)).thenReturn(new HistoryWatermark(3, 1));
+        when(messageStore.findWatermarkBySender("User1")).thenReturn(new HistoryWatermark(1, 1));
+
         // Create test messages
         ChatMessage message1 = new ChatMessage();
         message1.setId(1L);
@@ -58,7 +92,7 @@ public class ChatMessageControllerTest {
         message3.setTimestamp("2025-04-01T09:10:00");
         message3.setType(ChatMessage.MessageType.JOIN);
 
-        mockMessages = Arrays.asList(message1, message2, message3);
+        mockMessages = Stream.of(message1, message2, message3).map(ChatMessageView::of).toList();
     }
 
     @Test
@@ -71,12 +105,13 @@ public class ChatMessageControllerTest {
                 .andExpect(jsonPath("$", hasSize(3)))
                 .andExpect(jsonPath("$[0].name", is("User1")))
                 .andExpect(jsonPath("$[1].name", is("User2")))
-                .andExpect(jsonPath("$[2].name", is("User3")));
+                .andExpect(jsonPath("$[2].name", is("User3")))
+                .andExpect(jsonPath("$[0].count").doesNotExist());
     }
 
     @Test
     public void testGetChatMessages() throws Exception {
-        List<ChatMessage> chatMessages = Arrays.asList(mockMessages.get(0), mockMessages.get(1));
+        List<ChatMessageView> chatMessages = Arrays.asList(mockMessages.get(0), mockMessages.get(1));
         when(chatMessageService.getChatMessages()).thenReturn(chatMessages);
 
         mockMvc.perform(get("/api/chat/messages/chat")
@@ -89,7 +124,7 @@ public class ChatMessageControllerTest {
 
     @Test
     public void testGetMessagesByType() throws Exception {
-        List<ChatMessage> joinMessages = Arrays.asList(mockMessages.get(2));
+        List<ChatMessageView> joinMessages = Arrays.asList(mockMessages.get(2));
         when(chatMessageService.getMessagesByType(ChatMessage.MessageType.JOIN)).thenReturn(joinMessages);
 
         mockMvc.perform(get("/api/chat/messages/type/JOIN")
@@ -102,7 +137,7 @@ public class ChatMessageControllerTest {
 
     @Test
     public void testGetMessagesBySender() throws Exception {
-        List<ChatMessage> user1Messages = Arrays.asList(mockMessages.get(0));
+        List<ChatMessageView> user1Messages = Arrays.asList(mockMessages.get(0));
         when(chatMessageService.getMessagesBySender("User1")).thenReturn(user1Messages);
 
         mockMvc.perform(get("/api/chat/messages/sender/User1")
@@ -111,4 +146,83 @@ public class ChatMessageControllerTest {
                 .andExpect(jsonPath("$", hasSize(1)))
                 .andExpect(jsonPath("$[0].name", is("User1")));
     }
+
+    @Test
+    public void testHistoryResponseCarriesEtagAndCacheControl() throws Exception {
+        when(chatMessageService.getChatMessages()).thenReturn(Arrays.asList(mockMessages.get(0), mockMessages.get(1)));
+
+        mockMvc.perform(get("/api/chat/messages/chat"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"2-2\""))
+                .andExpect(header().string("Cache-Control", "no-cache, private"));
+    }
+
+    @Test
+    public void testUnchangedHistoryReturnsNotModifiedWithoutQuery() throws Exception {
+        mockMvc.perform(get("/api/chat/messages")
+                .header("If-None-Match", "\"3-3\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"3-3\""))
+                .andExpect(content().string(""));
+
+        verify(chatMessageService, never()).getAllMessages();
+    }
+
+    @Test
+    public void testSerializedBodyIsReusedUntilMessageSaved() throws Exception {
+        when(chatMessageService.getAllMessages()).thenReturn(mockMessages);
+
+        mockMvc.perform(get("/api/chat/messages")).andExpect(status().isOk());
+        mockMvc.perform(get("/api/chat/messages")).andExpect(status().isOk());
+        verify(chatMessageService, times(1)).getAllMessages();
+
+        // Saving a message advances the watermark and invalidates the cached body
+        ChatMessage saved = new ChatMessage("User4", "Message 4", ChatMessage.MessageType.CHAT);
+        saved.setId(4L);
+        chatHistoryCache.recordSaved(saved);
+
+        mockMvc.perform(get("/api/chat/messages")
+                .header("If-None-Match", "\"3-3\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"4-4\""));
+        verify(chatMessageService, times(2)).getAllMessages();
+    }
+
+    @Test
+    public void testSearchMessages() throws Exception {
+        ChatSearchService.SearchPage searchPage = new ChatSearchService.SearchPage("hello", 0, 20, 1,
+                List.of(new ChatSearchService.SearchHit(1L, "User1", "hello world", "2025-04-01T09:00:00",
+                        "<mark>hello</mark> world")));
+        when(chatSearchService.search("hello", 0, 20)).thenReturn(searchPage);
+
+        mockMvc.perform(get("/api/chat/search").param("q", "hello")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total", is(1)))
+                .andExpect(jsonPath("$.results", hasSize(1)))
+                .andExpect(jsonPath("$.results[0].highlight", is("<mark>hello</mark> world")));
+    }
+
+    @Test
+    public void testSearchRejectsBlankQuery() throws Exception {
+        mockMvc.perform(get("/api/chat/search").param("q", " ")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testStatisticsAreServedWithoutTouchingTheStore() throws Exception {
+        chatStatistics.record(ChatMessage.MessageType.CHAT, "User1");
+        chatStatistics.record(ChatMessage.MessageType.JOIN, "User2");
+
+        mockMvc.perform(get("/api/chat/stats"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", "no-store"))
+                .andExpect(jsonPath("$.windowMinutes", is(60)))
+                .andExpect(jsonPath("$.messagesPerMinute", hasSize(60)))
+                .andExpect(jsonPath("$.messagesByType.CHAT", is(1)))
+                .andExpect(jsonPath("$.messagesByType.JOIN", is(1)))
+                .andExpect(jsonPath("$.activeSenders", is(1)));
+        verifyNoInteractions(messageStore, chatMessageService);
+    }
 }
@@ -1,6 +1,11 @@
 package com.example.springbootwebsocket.controller;
 
+import com.example.springbootwebsocket.repository.MessageStore;
+import com.example.springbootwebsocket.service.ChatHistoryCache;
 import com.example.springbootwebsocket.service.ChatMessageService;
+import com.example.springbootwebsocket.service.ChatSearchService;
+import com.example.springbootwebsocket.service.ChatStatistics;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.context.annotation.Bean;
 
@@ -17,4 +22,24 @@ public class ChatMessageControllerTestConfig {
     public ChatMessageService chatMessageService() {
         return mock(ChatMessageService.class);
     }
+
+    @Bean
+    public ChatSearchService chatSearchService() {
+        return mock(ChatSearchService.class);
+    }
+
+    @Bean
+    public MessageStore messageStore() {
+        return mock(MessageStore.class);
+    }
+
+    @Bean
+    public ChatHistoryCache chatHistoryCache(MessageStore messageStore, ObjectMapper objectMapper) {
+        return new ChatHistoryCache(messageStore, objectMapper);
+    }
+
+    @Bean
+    public ChatStatistics chatStatistics() {
+        return new ChatStatistics(60);
+    }
 }
@@ -0,0 +1,106 @@
+package com.example.springbootwebsocket.controller;
+
+import com.example.springbootwebsocket.repository.BlobStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class FileControllerTest {
+
+    @TempDir
+    Path directory;
+
+    private MockMvc mockMvc;
+    private String blobId;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        BlobStore blobStore = new BlobStore(directory.toString(), 1024);
+        byte[] content = "hello world".getBytes(StandardCharsets.UTF_8);
+        BlobStore.Upload upload = blobStore.begin(content.length);
+        upload.write(ByteBuffer.wrap(content));
+        blobId = upload.finish();
+        mockMvc = MockMvcBuilders.standaloneSetup(new FileController(blobStore)).build();
+    }
+
+    @Test
+    void testWholeFileIsServedWithImmutableCaching() throws Exception {
+        mockMvc.perform(get("/api/chat/files/{id}", blobId).param("name", "notes.txt"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("hello world"))
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "text/plain"))
+                .andExpect(header().string(HttpHeaders.CONTENT_LENGTH, "11"))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + blobId + "\""))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=31536000, private, immutable"))
+                .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"notes.txt\""))
+                .andExpect(header().string("X-Content-Type-Options", "nosniff"));
+
+        // Only plain images are shown inline; markup never is
+        mockMvc.perform(get("/api/chat/files/{id}", blobId).param("name", "photo.png"))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"photo.png\""));
+        mockMvc.perform(get("/api/chat/files/{id}", blobId).param("name", "page.html"))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"page.html\""));
+
+        mockMvc.perform(get("/api/chat/files/{id}", blobId).header(HttpHeaders.IF_NONE_MATCH, "\"" + blobId + "\""))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/api/chat/files/{id}", "0".repeat(64)))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testSingleRangesAreServedPartially() throws Exception {
+        mockMvc.perform(get("/api/chat/files/{id}", blobId).header(HttpHeaders.RANGE, "bytes=6-"))
+                .andExpect(status().isPartialContent())
+                .andExpect(content().string("world"))
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 6-10/11"))
+                .andExpect(header().string(HttpHeaders.CONTENT_LENGTH, "5"));
+
+        mockMvc.perform(get("/api/chat/files/{id}", blobId).header(HttpHeaders.RANGE, "bytes=-5"))
+                .andExpect(status().isPartialContent())
+                .andExpect(content().string("world"));
+
+        mockMvc.perform(get("/api/chat/files/{id}", blobId).header(HttpHeaders.RANGE, "bytes=20-30"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */11"));
+
+        // A range of another version, or several ranges, get the whole file
+        mockMvc.perform(get("/api/chat/files/{id}", blobId).header(HttpHeaders.RANGE, "bytes=0-4")
+                        .header(HttpHeaders.IF_RANGE, "\"something-else\""))
+                .andExpect(status().isOk())
+                .andExpect(content().string("hello world"));
+        mockMvc.perform(get("/api/chat/files/{id}", blobId).header(HttpHeaders.RANGE, "bytes=0-1,4-5"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("hello world"));
+    }
+
+    @Test
+    void testBodyIsHandedToSendfileWhenTheContainerSupportsIt() throws Exception {
+        MockHttpServletRequest request = mockMvc.perform(get("/api/chat/files/{id}", blobId)
+                        .header(HttpHeaders.RANGE, "bytes=0-4")
+                        .requestAttr(FileController.SENDFILE_SUPPORTED, Boolean.TRUE))
+                .andExpect(status().isPartialContent())
+                .andExpect(content().string(""))
+                .andExpect(header().string(HttpHeaders.CONTENT_LENGTH, "5"))
+                .andReturn().getRequest();
+
+        assertEquals(directory.resolve(blobId.substring(0, 2)).resolve(blobId).toAbsolutePath().toString(),
+                request.getAttribute(FileController.SENDFILE_FILENAME));
+        assertEquals(0L, request.getAttribute(FileController.SENDFILE_START));
+        assertEquals(5L, request.getAttribute(FileController.SENDFILE_END));
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.springbootwebsocket.controller;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.core.io.Resource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FlightRecordingEndpointTest {
+
+    private final FlightRecordingEndpoint endpoint = new FlightRecordingEndpoint(60, 120, 10_485_760);
+
+    @AfterEach
+    void tearDown() throws Exception {
+        endpoint.discard();
+    }
+
+    @Test
+    void testRecordingIsStartedOnceAndBounded() throws Exception {
+        WebEndpointResponse<FlightRecordingEndpoint.RecordingStatus> started = endpoint.control("start", 3600, 0);
+
+        assertEquals(200, started.getStatus());
+        assertEquals("RUNNING", started.getBody().state());
+        assertEquals(120, started.getBody().durationSeconds());
+        assertEquals(10_485_760, started.getBody().maxSizeBytes());
+
+        assertEquals(409, endpoint.control("start", null, null).getStatus());
+    }
+
+    @Test
+    void testStoppedRecordingIsReturnedAsJfrFile() throws Exception {
+        assertEquals(60, endpoint.control("start", null, null).getBody().durationSeconds());
+
+        // Downloading does not stop the recording
+        assertEquals(409, endpoint.download().getStatus());
+        assertEquals("CLOSED", endpoint.control("stop", null, null).getBody().state());
+        WebEndpointResponse<Resource> response = endpoint.download();
+
+        assertEquals(200, response.getStatus());
+        Path file = response.getBody().getFile().toPath();
+        assertTrue(Files.size(file) > 0);
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        assertFalse(events.isEmpty());
+        // The environment, system properties and JVM arguments may hold credentials
+        assertTrue(events.stream().noneMatch(
+                event -> FlightRecordingEndpoint.SENSITIVE_EVENTS.contains(event.getEventType().getName())));
+
+        // The next recording replaces the file of the last one
+        endpoint.control("start", 1, null);
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    void testNothingToReturnBeforeARecordingWasStarted() throws Exception {
+        assertEquals(404, endpoint.download().getStatus());
+        assertEquals(404, endpoint.control("stop", null, null).getStatus());
+        assertEquals(400, endpoint.control("restart", null, null).getStatus());
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.springbootwebsocket.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(HomeController.class)
+@ActiveProfiles("test")
+class HomeControllerTest {
+
+    private static final String IMMUTABLE = "max-age=31536000, public, immutable";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void testIndexReferencesHashedAssets() throws Exception {
+        String html = mockMvc.perform(get("/"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache"))
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andReturn().getResponse().getContentAsString();
+
+        assertTrue(html.matches("(?s).*src=\"js/chat-[0-9a-f]{32}\\.js\".*"), html);
+        assertTrue(html.matches("(?s).*href=\"css/styles-[0-9a-f]{32}\\.css\".*"), html);
+        assertTrue(html.matches("(?s).*data-messages-ca=\"i18n/messages_ca-[0-9a-f]{32}\\.json\".*"), html);
+        assertFalse(html.contains("\"js/chat.js\""), html);
+
+        String etag = mockMvc.perform(get("/index.html")).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        mockMvc.perform(get("/").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void testHashedAssetsAreImmutableAndPrecompressed() throws Exception {
+        String script = hashedPath("src=\"(js/chat-[0-9a-f]{32}\\.js)\"");
+
+        byte[] plain = mockMvc.perform(get("/" + script))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, IMMUTABLE))
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        byte[] gzipped = mockMvc.perform(get("/" + script).header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, IMMUTABLE))
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(header().string(HttpHeaders.VARY, "Accept-Encoding"))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        assertTrue(gzipped.length < plain.length);
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped))) {
+            assertEquals(new String(plain, StandardCharsets.UTF_8), new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void testPlainAndStaleAssetPathsAreRevalidated() throws Exception {
+        mockMvc.perform(get("/js/chat.js"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache"));
+
+        // A hash of another build must not be cached for good, whether or not it is found
+        mockMvc.perform(get("/js/chat-0123456789abcdef0123456789abcdef.js"))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache"));
+    }
+
+    private String hashedPath(String regex) throws Exception {
+        String html = mockMvc.perform(get("/")).andReturn().getResponse().getContentAsString();
+        Matcher matcher = Pattern.compile(regex).matcher(html);
+        assertTrue(matcher.find(), html);
+        return matcher.group(1);
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.springbootwebsocket.logging;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class LazyPayloadTest {
+
+    @Test
+    void testEscapesLineBreaks() {
+        assertEquals("line one\\nFAKE log line\\r", LazyPayload.of("line one\nFAKE log line\r").toString());
+        assertEquals("null", LazyPayload.of(null).toString());
+    }
+
+    @Test
+    void testAbbreviatesLongPayloads() {
+        String formatted = new LazyPayload("x".repeat(50), 10).toString();
+
+        assertEquals("xxxxxxxxxx... (50 chars)", formatted);
+    }
+
+    @Test
+    void testNotFormattedWhenLevelIsOff() {
+        Logger logger = LoggerFactory.getLogger(LazyPayloadTest.class);
+        assertFalse(logger.isTraceEnabled(), "test expects TRACE to be off");
+
+        CountingPayload payload = new CountingPayload("{\"message\":\"hello\"}");
+        logger.trace("Received {}", new LazyPayload(payload, 100));
+
+        assertEquals(0, payload.reads);
+    }
+
+    /**
+     * Counts how often the payload is read
+     */
+    private static final class CountingPayload implements CharSequence {
+
+        private final String value;
+        private int reads;
+
+        private CountingPayload(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public int length() {
+            reads++;
+            return value.length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            reads++;
+            return value.charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return value.subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            reads++;
+            return value;
+        }
+    }
+}
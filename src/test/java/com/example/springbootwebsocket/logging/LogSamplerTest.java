@@ -0,0 +1,32 @@
+package com.example.springbootwebsocket.logging;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogSamplerTest {
+
+    @Test
+    void testLimitsEventsPerWindowAndCountsSuppressed() {
+        AtomicLong now = new AtomicLong();
+        LogSampler sampler = new LogSampler(3, Duration.ofSeconds(1), now::get);
+
+        assertTrue(sampler.shouldLog());
+        assertTrue(sampler.shouldLog());
+        assertTrue(sampler.shouldLog());
+        assertFalse(sampler.shouldLog());
+        assertFalse(sampler.shouldLog());
+        assertEquals(2, sampler.takeSuppressed());
+        assertEquals(0, sampler.takeSuppressed());
+
+        // A new window lets events through again
+        now.addAndGet(Duration.ofSeconds(1).toNanos());
+        assertTrue(sampler.shouldLog());
+        assertFalse(new LogSampler(0, Duration.ofSeconds(1), now::get).shouldLog());
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.springbootwebsocket.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BlobStoreTest {
+
+    // SHA-256 of "hello world"
+    private static final String HELLO_WORLD = "b94d27b9934d3e08a52e52d7da7dabfac484efe37a5380ee9088f7ace2efcde9";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testChunksAreStoredUnderTheirContentHash() throws IOException {
+        BlobStore store = new BlobStore(directory.toString(), 1024);
+
+        String blobId = upload(store, "hello ", "world");
+
+        assertEquals(HELLO_WORLD, blobId);
+        Path stored = store.find(blobId);
+        assertNotNull(stored);
+        assertEquals(directory.resolve("b9").resolve(HELLO_WORLD), stored);
+        assertEquals("hello world", Files.readString(stored));
+    }
+
+    @Test
+    void testSameContentIsStoredOnce() throws IOException {
+        BlobStore store = new BlobStore(directory.toString(), 1024);
+
+        assertEquals(upload(store, "hello world"), upload(store, "hel", "lo wor", "ld"));
+
+        try (Stream<Path> files = Files.walk(directory)) {
+            assertEquals(1, files.filter(Files::isRegularFile).count());
+        }
+    }
+
+    @Test
+    void testSizesAreEnforced() throws IOException {
+        BlobStore store = new BlobStore(directory.toString(), 8);
+
+        assertThrows(IllegalArgumentException.class, () -> store.begin(9));
+        assertThrows(IllegalArgumentException.class, () -> store.begin(0));
+
+        BlobStore.Upload upload = store.begin(4);
+        assertThrows(IllegalStateException.class, upload::finish);
+        assertThrows(IllegalStateException.class, () -> upload.write(bytes("12345")));
+        upload.abort();
+    }
+
+    @Test
+    void testAbortedAndLeftoverUploadsAreDeleted() throws IOException {
+        BlobStore store = new BlobStore(directory.toString(), 1024);
+        BlobStore.Upload aborted = store.begin(100);
+        aborted.write(bytes("partial"));
+        aborted.abort();
+        store.begin(100).write(bytes("interrupted by a restart"));
+        assertEquals(1, count(directory.resolve("uploads")));
+
+        new BlobStore(directory.toString(), 1024).open();
+
+        assertEquals(0, count(directory.resolve("uploads")));
+    }
+
+    @Test
+    void testOnlyWellFormedIdsAreLookedUp() throws IOException {
+        BlobStore store = new BlobStore(directory.toString(), 1024);
+        upload(store, "hello world");
+
+        assertNull(store.find(HELLO_WORLD.replace('b', 'c')));
+        assertNull(store.find("../" + HELLO_WORLD.substring(3)));
+        assertNull(store.find(HELLO_WORLD.toUpperCase()));
+        assertNull(store.find(null));
+        assertNotNull(store.find(HELLO_WORLD));
+    }
+
+    private static String upload(BlobStore store, String... chunks) throws IOException {
+        BlobStore.Upload upload = store.begin(String.join("", chunks).getBytes(StandardCharsets.UTF_8).length);
+        for (String chunk : chunks) {
+            assertFalse(upload.isComplete());
+            upload.write(bytes(chunk));
+        }
+        assertTrue(upload.isComplete());
+        return upload.finish();
+    }
+
+    private static ByteBuffer bytes(String value) {
+        return ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long count(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.springbootwebsocket.repository;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Hibernate statement inspector that records the SQL generated for repository calls
+ */
+public class CapturingStatementInspector implements StatementInspector {
+
+    private static final List<String> statements = new CopyOnWriteArrayList<>();
+
+    @Override
+    public String inspect(String sql) {
+        statements.add(sql);
+        return sql;
+    }
+
+    /**
+     * Runs an action and returns the last SQL statement it generated
+     */
+    public static String capture(Runnable action) {
+        statements.clear();
+        action.run();
+        if (statements.isEmpty()) {
+            throw new IllegalStateException("No SQL statement was generated");
+        }
+        return statements.get(statements.size() - 1);
+    }
+}
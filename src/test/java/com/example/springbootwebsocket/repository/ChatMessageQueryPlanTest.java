@@ -0,0 +1,129 @@
+package com.example.springbootwebsocket.repository;
+
+import com.example.springbootwebsocket.ChatMessage;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+
+import static com.example.springbootwebsocket.repository.CapturingStatementInspector.capture;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Query plan regression tests for the repository queries.
+ * Each test captures the SQL Hibernate generates, runs EXPLAIN on it against the Flyway schema
+ * and fails if H2 falls back to a table scan or has to sort the rows after the lookup.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "com.example.springbootwebsocket.repository.CapturingStatementInspector")
+@ActiveProfiles("test")
+public class ChatMessageQueryPlanTest {
+
+    @Autowired
+    private ChatMessageRepository chatMessageRepository;
+
+    @Autowired
+    private PrivateMessageRepository privateMessageRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    public void testFindAllByOrderByTimestampDescIsIndexSorted() {
+        String plan = explain(capture(chatMessageRepository::findAllByOrderByTimestampDesc));
+
+        assertNoTableScan(plan);
+        assertIndexSorted(plan);
+    }
+
+    @Test
+    public void testFindByTypeOrderByTimestampDescIsIndexSorted() {
+        String plan = explain(capture(() -> chatMessageRepository.findByTypeOrderByTimestampDesc(ChatMessage.MessageType.CHAT)),
+                "CHAT");
+
+        assertNoTableScan(plan);
+        assertTrue(plan.contains("IDX_CHAT_MESSAGES_TYPE_TIMESTAMP"), plan);
+        assertIndexSorted(plan);
+    }
+
+    @Test
+    public void testFindByNameOrderByTimestampDescIsIndexSorted() {
+        String plan = explain(capture(() -> chatMessageRepository.findByNameOrderByTimestampDesc("Alice")), "Alice");
+
+        assertNoTableScan(plan);
+        assertTrue(plan.contains("IDX_CHAT_MESSAGES_NAME_TIMESTAMP"), plan);
+        assertIndexSorted(plan);
+    }
+
+    @Test
+    public void testFindByIdGreaterThanIsIndexSorted() {
+        String plan = explain(capture(() -> chatMessageRepository.findByIdGreaterThanOrderByIdAsc(0L, PageRequest.of(0, 10))),
+                0L, 10);
+
+        assertNoTableScan(plan);
+        assertIndexSorted(plan);
+    }
+
+    @Test
+    public void testFindAllByOrderByIdDescIsIndexSorted() {
+        String plan = explain(capture(() -> chatMessageRepository.findAllByOrderByIdDesc(PageRequest.of(0, 10))), 10);
+
+        assertNoTableScan(plan);
+        assertIndexSorted(plan);
+    }
+
+    @Test
+    public void testFindByIdBetweenIsIndexSorted() {
+        String plan = explain(capture(() -> chatMessageRepository.findByIdBetweenOrderByIdAsc(1L, 10L)), 1L, 10L);
+
+        assertNoTableScan(plan);
+        assertIndexSorted(plan);
+    }
+
+    @Test
+    public void testFindMaxIdIsDirectLookup() {
+        String plan = explain(capture(chatMessageRepository::findMaxId));
+
+        assertTrue(plan.contains("direct lookup"), plan);
+    }
+
+    @Test
+    public void testFindWatermarksUseIndexes() {
+        assertTrue(explain(capture(chatMessageRepository::findWatermark)).contains("direct lookup"));
+
+        String byType = explain(capture(() -> chatMessageRepository.findWatermarkByType(ChatMessage.MessageType.CHAT)), "CHAT");
+        assertNoTableScan(byType);
+        assertTrue(byType.contains("IDX_CHAT_MESSAGES_TYPE_TIMESTAMP"), byType);
+
+        String byName = explain(capture(() -> chatMessageRepository.findWatermarkByName("Alice")), "Alice");
+        assertNoTableScan(byName);
+        assertTrue(byName.contains("IDX_CHAT_MESSAGES_NAME_TIMESTAMP"), byName);
+    }
+
+    @Test
+    public void testFindConversationNewestFirstIsIndexSorted() {
+        String plan = explain(capture(() -> privateMessageRepository.findConversationNewestFirst("5:AliceBob",
+                PageRequest.of(0, 10))), "5:AliceBob", 10);
+
+        assertNoTableScan(plan);
+        assertTrue(plan.contains("IDX_PRIVATE_MESSAGES_CONVERSATION_ID"), plan);
+        assertIndexSorted(plan);
+    }
+
+    private String explain(String sql, Object... args) {
+        return String.join("\n", new JdbcTemplate(dataSource).queryForList("EXPLAIN " + sql, String.class, args));
+    }
+
+    private static void assertNoTableScan(String plan) {
+        assertFalse(plan.contains("tableScan"), () -> "Query falls back to a table scan:\n" + plan);
+    }
+
+    private static void assertIndexSorted(String plan) {
+        assertTrue(plan.contains("/* index sorted */"), () -> "Query sorts after the index lookup:\n" + plan);
+    }
+}
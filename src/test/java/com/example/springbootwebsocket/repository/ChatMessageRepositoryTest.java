@@ -59,13 +59,13 @@ public class ChatMessageRepositoryTest {
         chatMessageRepository.save(joinMessage);
 
         // Find messages by type
-        List<ChatMessage> chatMessages = chatMessageRepository.findByTypeOrderByTimestampDesc(ChatMessage.MessageType.CHAT);
+        List<ChatMessageView> chatMessages = chatMessageRepository.findByTypeOrderByTimestampDesc(ChatMessage.MessageType.CHAT);
         assertEquals(1, chatMessages.size());
-        assertEquals("User1", chatMessages.get(0).getName());
+        assertEquals("User1", chatMessages.get(0).name());
 
-        List<ChatMessage> joinMessages = chatMessageRepository.findByTypeOrderByTimestampDesc(ChatMessage.MessageType.JOIN);
+        List<ChatMessageView> joinMessages = chatMessageRepository.findByTypeOrderByTimestampDesc(ChatMessage.MessageType.JOIN);
         assertEquals(1, joinMessages.size());
-        assertEquals("User2", joinMessages.get(0).getName());
+        assertEquals("User2", joinMessages.get(0).name());
     }
 
     @Test
@@ -93,12 +93,12 @@ public class ChatMessageRepositoryTest {
         chatMessageRepository.save(message3);
 
         // Find messages by name
-        List<ChatMessage> aliceMessages = chatMessageRepository.findByNameOrderByTimestampDesc("Alice");
+        List<ChatMessageView> aliceMessages = chatMessageRepository.findByNameOrderByTimestampDesc("Alice");
         assertEquals(2, aliceMessages.size());
 
-        List<ChatMessage> bobMessages = chatMessageRepository.findByNameOrderByTimestampDesc("Bob");
+        List<ChatMessageView> bobMessages = chatMessageRepository.findByNameOrderByTimestampDesc("Bob");
         assertEquals(1, bobMessages.size());
-        assertEquals("Bob's message", bobMessages.get(0).getMessage());
+        assertEquals("Bob's message", bobMessages.get(0).message());
     }
 
     @Test
@@ -126,12 +126,30 @@ public class ChatMessageRepositoryTest {
         chatMessageRepository.save(message3);
 
         // Find all messages ordered by timestamp
-        List<ChatMessage> allMessages = chatMessageRepository.findAllByOrderByTimestampDesc();
+        List<ChatMessageView> allMessages = chatMessageRepository.findAllByOrderByTimestampDesc();
         assertEquals(3, allMessages.size());
         
         // Verify they are correctly ordered (most recent first)
-        assertEquals("Most recent message", allMessages.get(0).getMessage());
-        assertEquals("Middle message", allMessages.get(1).getMessage());
-        assertEquals("Oldest message", allMessages.get(2).getMessage());
+        assertEquals("Most recent message", allMessages.get(0).message());
+        assertEquals("Middle message", allMessages.get(1).message());
+        assertEquals("Oldest message", allMessages.get(2).message());
+    }
+
+    @Test
+    public void testFindWatermarks() {
+        assertEquals(HistoryWatermark.EMPTY, chatMessageRepository.findWatermark());
+
+        ChatMessage message1 = new ChatMessage("Alice", "First", ChatMessage.MessageType.CHAT);
+        ChatMessage message2 = new ChatMessage("Bob", "has joined the chat", ChatMessage.MessageType.JOIN);
+        ChatMessage message3 = new ChatMessage("Alice", "Second", ChatMessage.MessageType.CHAT);
+        chatMessageRepository.save(message1);
+        chatMessageRepository.save(message2);
+        chatMessageRepository.save(message3);
+
+        assertEquals(new HistoryWatermark(message3.getId(), 3), chatMessageRepository.findWatermark());
+        assertEquals(new HistoryWatermark(message3.getId(), 2),
+                chatMessageRepository.findWatermarkByType(ChatMessage.MessageType.CHAT));
+        assertEquals(new HistoryWatermark(message2.getId(), 1), chatMessageRepository.findWatermarkByName("Bob"));
+        assertEquals(HistoryWatermark.EMPTY, chatMessageRepository.findWatermarkByName("Nobody"));
     }
 }
@@ -0,0 +1,118 @@
+package com.example.springbootwebsocket.repository;
+
+import com.example.springbootwebsocket.ChatMessage;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Allocation benchmark for the history reads: managed entities versus read-only projections.
+ * Excluded from the default build; run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+@DataJpaTest
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class HistoryProjectionBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(HistoryProjectionBenchmarkTest.class);
+
+    private static final int ROWS = Integer.getInteger("benchmark.rows", 1_000_000);
+    private static final int RUNS = 3;
+
+    @Autowired
+    private ChatMessageRepository chatMessageRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    public void populate() {
+        jdbcTemplate.update("DELETE FROM chat_messages");
+        List<Object[]> batch = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            batch.add(new Object[] {"User" + (i % 500), "Benchmark message number " + i,
+                    Instant.ofEpochSecond(1_743_500_000L + i).toString(),
+                    i % 10 == 0 ? "JOIN" : "CHAT"});
+            if (batch.size() == 10_000) {
+                insert(batch);
+            }
+        }
+        insert(batch);
+    }
+
+    private void insert(List<Object[]> batch) {
+        jdbcTemplate.batchUpdate("INSERT INTO chat_messages (name, message, timestamp, count, message_type) "
+                + "VALUES (?, ?, ?, 0, ?)", batch);
+        batch.clear();
+    }
+
+    @Test
+    public void testProjectionAllocatesLessThanEntities() {
+        TransactionTemplate readWrite = new TransactionTemplate(transactionManager);
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        // What getAllMessages did before: managed entities in a read-write transaction
+        IntSupplier entities = () -> readWrite.execute(status -> entityManager
+                .createQuery("select m from ChatMessage m order by m.timestamp desc", ChatMessage.class)
+                .getResultList()
+                .size());
+        IntSupplier projections = () -> readOnly.execute(status -> chatMessageRepository
+                .findAllByOrderByTimestampDesc()
+                .size());
+
+        long entityBytes = measure("entities", entities);
+        long projectionBytes = measure("projections", projections);
+
+        logger.info("History read of {} rows: entities {} MB/run, projections {} MB/run ({}% less)", ROWS,
+                entityBytes >> 20, projectionBytes >> 20, 100 - projectionBytes * 100 / entityBytes);
+        assertTrue(projectionBytes < entityBytes, "projections should allocate less than entities");
+    }
+
+    /**
+     * Runs the read once to warm up, then returns the average bytes allocated by this thread per run
+     */
+    private long measure(String label, IntSupplier read) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assertEquals(ROWS, read.getAsInt());
+        long total = 0;
+        for (int run = 0; run < RUNS; run++) {
+            System.gc();
+            long before = threads.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            read.getAsInt();
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+            long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+            logger.info("{} run {}: {} MB allocated, {} ms", label, run + 1, allocated >> 20, elapsedMs);
+            total += allocated;
+        }
+        return total / RUNS;
+    }
+}
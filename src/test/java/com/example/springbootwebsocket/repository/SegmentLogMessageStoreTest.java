@@ -0,0 +1,200 @@
+package com.example.springbootwebsocket.repository;
+
+import com.example.springbootwebsocket.ChatMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SegmentLogMessageStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private SegmentLogMessageStore store;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    @Test
+    void testSaveAssignsConsecutiveIdsAndReadsNewestFirst() throws IOException {
+        store = open(1 << 20, SegmentLogMessageStore.FsyncPolicy.ALWAYS);
+
+        ChatMessage first = store.save(ChatMessage.createChatMessage("Alice", "Hello"));
+        store.save(ChatMessage.createJoinMessage("Bob", "Bob joined the chat"));
+        ChatMessage third = store.save(ChatMessage.createChatMessage("Bob", "Hi Alice, ünïcødé"));
+
+        assertEquals(1L, first.getId());
+        assertEquals(3L, third.getId());
+        assertEquals(3L, store.findMaxId());
+
+        List<ChatMessageView> newest = store.findNewest(2);
+        assertEquals(List.of(3L, 2L), ids(newest));
+        assertEquals("Hi Alice, ünïcødé", newest.get(0).message());
+        assertEquals(third.getTimestamp(), newest.get(0).timestamp());
+        assertEquals(ChatMessage.MessageType.JOIN, newest.get(1).type());
+
+        assertEquals(List.of(3L, 2L, 1L), ids(store.findAllNewestFirst()));
+        assertEquals(List.of(3L, 1L), ids(store.findByTypeNewestFirst(ChatMessage.MessageType.CHAT)));
+        assertEquals(List.of(3L, 2L), ids(store.findBySenderNewestFirst("Bob")));
+        assertEquals(new HistoryWatermark(3, 3), store.findWatermark());
+        assertEquals(new HistoryWatermark(3, 2), store.findWatermarkByType(ChatMessage.MessageType.CHAT));
+        assertEquals(new HistoryWatermark(1, 1), store.findWatermarkBySender("Alice"));
+        assertEquals(HistoryWatermark.EMPTY, store.findWatermarkBySender("Nobody"));
+    }
+
+    @Test
+    void testRangeReadsAcrossRolledSegments() throws IOException {
+        store = open(512, SegmentLogMessageStore.FsyncPolicy.NEVER);
+        for (int i = 1; i <= 100; i++) {
+            store.save(ChatMessage.createChatMessage("User" + (i % 3), "message number " + i));
+        }
+
+        assertTrue(segmentFiles().size() > 5, "expected the log to roll");
+        assertEquals(List.of(40L, 41L, 42L, 43L, 44L, 45L), ids(store.findByIdRange(40, 45)));
+        assertEquals("message number 42", store.findByIdRange(42, 42).get(0).message());
+        assertEquals(List.of(98L, 99L, 100L), ids(store.findAfter(97, 10)));
+        assertEquals(List.of(100L, 99L, 98L), ids(store.findNewest(3)));
+        assertEquals(100, store.findNewest(1000).size());
+        assertEquals(100, store.findAllNewestFirst().size());
+        assertTrue(store.findByIdRange(101, 200).isEmpty());
+    }
+
+    @Test
+    void testReopenRecoversLogAndContinuesIds() throws IOException {
+        store = open(512, SegmentLogMessageStore.FsyncPolicy.INTERVAL);
+        for (int i = 1; i <= 30; i++) {
+            store.save(ChatMessage.createChatMessage("Alice", "before restart " + i));
+        }
+        store.scheduledSync();
+        store.close();
+
+        store = open(512, SegmentLogMessageStore.FsyncPolicy.INTERVAL);
+        assertEquals(30L, store.findMaxId());
+        assertEquals(31L, store.save(ChatMessage.createChatMessage("Alice", "after restart")).getId());
+        assertEquals(List.of(31L, 30L), ids(store.findNewest(2)));
+    }
+
+    @Test
+    void testTornWriteIsDroppedOnRecovery() throws IOException {
+        store = open(1 << 16, SegmentLogMessageStore.FsyncPolicy.ALWAYS);
+        store.save(ChatMessage.createChatMessage("Alice", "intact"));
+        store.save(ChatMessage.createChatMessage("Alice", "torn"));
+        store.close();
+
+        // Damage the last record's payload, as if the write had been cut short
+        Path segment = segmentFiles().get(0);
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            int secondRecord = LogSegment.HEADER_SIZE + SegmentLogMessageStore.encode(
+                    ChatMessage.createChatMessage("Alice", "intact")).length;
+            file.seek(secondRecord + LogSegment.HEADER_SIZE + 10);
+            file.write(new byte[] {1, 2, 3, 4});
+        }
+
+        store = open(1 << 16, SegmentLogMessageStore.FsyncPolicy.ALWAYS);
+        assertEquals(1L, store.findMaxId());
+        assertEquals("intact", store.findNewest(10).get(0).message());
+
+        // The id of the dropped record is reused and the old bytes do not come back
+        ChatMessage replacement = store.save(ChatMessage.createChatMessage("Bob", "x"));
+        assertEquals(2L, replacement.getId());
+        store.close();
+        store = open(1 << 16, SegmentLogMessageStore.FsyncPolicy.ALWAYS);
+        assertEquals(List.of(2L, 1L), ids(store.findAllNewestFirst()));
+        assertEquals("x", store.findNewest(1).get(0).message());
+    }
+
+    @Test
+    void testSegmentsAfterDamageAreMovedAside() throws IOException {
+        store = open(512, SegmentLogMessageStore.FsyncPolicy.NEVER);
+        for (int i = 1; i <= 40; i++) {
+            store.save(ChatMessage.createChatMessage("Alice", "message number " + i));
+        }
+        store.close();
+
+        List<Path> files = segmentFiles();
+        try (RandomAccessFile file = new RandomAccessFile(files.get(0).toFile(), "rw")) {
+            file.seek(LogSegment.HEADER_SIZE + 4);
+            file.write(new byte[] {9, 9, 9, 9});
+        }
+
+        store = open(512, SegmentLogMessageStore.FsyncPolicy.NEVER);
+        assertEquals(0L, store.findMaxId());
+        assertEquals(1, segmentFiles().size());
+        assertEquals(1L, store.save(ChatMessage.createChatMessage("Alice", "fresh start")).getId());
+        try (Stream<Path> listing = Files.list(directory)) {
+            assertEquals(files.size() - 1, listing.filter(path -> path.toString().endsWith(".corrupt")).count());
+        }
+    }
+
+    @Test
+    void testNullFieldsRoundTrip() throws IOException {
+        store = open(1 << 16, SegmentLogMessageStore.FsyncPolicy.NEVER);
+        ChatMessage message = new ChatMessage();
+        message.setTimestamp(null);
+        store.save(message);
+
+        ChatMessageView read = store.findNewest(1).get(0);
+        assertNull(read.name());
+        assertNull(read.message());
+        assertNull(read.timestamp());
+        assertNull(read.type());
+        assertNull(read.blobId());
+    }
+
+    @Test
+    void testBlobIdsRoundTripAndOlderRecordsHaveNone() throws IOException {
+        store = open(1 << 16, SegmentLogMessageStore.FsyncPolicy.NEVER);
+        ChatMessage file = ChatMessage.createChatMessage("Alice", "notes.txt");
+        file.setBlobId("ab".repeat(32));
+        store.save(file);
+        assertEquals("ab".repeat(32), store.findNewest(1).get(0).blobId());
+
+        // Records written before blob ids existed end after the message
+        byte[] payload = SegmentLogMessageStore.encode(ChatMessage.createChatMessage("Bob", "Hi"));
+        ChatMessageView older = SegmentLogMessageStore.decode(2, ByteBuffer.wrap(payload, 0, payload.length - Integer.BYTES).slice());
+        assertEquals("Hi", older.message());
+        assertNull(older.blobId());
+    }
+
+    @Test
+    void testRejectsMessageLargerThanSegment() throws IOException {
+        store = open(128, SegmentLogMessageStore.FsyncPolicy.NEVER);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> store.save(ChatMessage.createChatMessage("Alice", "x".repeat(200))));
+    }
+
+    private SegmentLogMessageStore open(int segmentSize, SegmentLogMessageStore.FsyncPolicy fsyncPolicy)
+            throws IOException {
+        SegmentLogMessageStore opened = new SegmentLogMessageStore(directory.toString(), segmentSize, 64, fsyncPolicy);
+        opened.open();
+        return opened;
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> listing = Files.list(directory)) {
+            return listing.filter(path -> path.toString().endsWith(LogSegment.SUFFIX)).sorted().toList();
+        }
+    }
+
+    private static List<Long> ids(List<ChatMessageView> messages) {
+        return messages.stream().map(ChatMessageView::id).toList();
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.springbootwebsocket.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DuplicateMessageFilterTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final DuplicateMessageFilter filter = new DuplicateMessageFilter(Duration.ofSeconds(30), 10_000, 0.0001,
+            now::get);
+
+    @Test
+    void testRepeatsAreRecognizedAfterNormalization() {
+        assertFalse(filter.isRepeat("Alice", null, "Hello there"));
+        assertTrue(filter.isRepeat("Alice", null, "  hello\tTHERE "));
+
+        assertFalse(filter.isRepeat("Bob", null, "Hello there"));
+        assertFalse(filter.isRepeat("Alice", "Bob", "Hello there"));
+        assertTrue(filter.isRepeat("Alice", "Bob", "Hello there"));
+        assertFalse(filter.isRepeat("Alice", null, "Hello there!"));
+    }
+
+    @Test
+    void testRepeatsAreForgottenAfterTwoWindows() {
+        assertFalse(filter.isRepeat("Alice", null, "ping"));
+
+        // Still remembered through the previous window's filter
+        now.addAndGet(Duration.ofSeconds(35).toMillis());
+        assertTrue(filter.isRepeat("Alice", null, "ping"));
+
+        now.addAndGet(Duration.ofSeconds(60).toMillis());
+        assertFalse(filter.isRepeat("Alice", null, "ping"));
+    }
+
+    @Test
+    void testMemoryIsFixedAndFalsePositivesStayRare() {
+        // About 19 bits and 13 hashes per expected message for a 0.01% rate
+        assertEquals(191_702, filter.getBitCount());
+        assertEquals(13, filter.getHashCount());
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.isRepeat("sender-" + (i % 500), null, "message " + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives <= 10, falsePositives + " new messages taken for repeats");
+        assertEquals(191_702, filter.getBitCount());
+    }
+}
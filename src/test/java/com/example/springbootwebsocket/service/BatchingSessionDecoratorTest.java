@@ -0,0 +1,150 @@
+package com.example.springbootwebsocket.service;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BatchingSessionDecoratorTest {
+
+    private final WebSocketSession delegate = mock(WebSocketSession.class);
+    private final ScheduledExecutorService timer = mock(ScheduledExecutorService.class);
+    private final Executor sender = mock(Executor.class);
+    private final AtomicLong clock = new AtomicLong();
+
+    // 100 frames per second is 10 frames per rate interval
+    private final BatchingSessionDecorator session = new BatchingSessionDecorator(delegate, timer, sender, 5, 100, clock::get);
+
+    BatchingSessionDecoratorTest() {
+        when(delegate.isOpen()).thenReturn(true);
+    }
+
+    @Test
+    void testFramesBelowTheRateAreSentAsTheyCome() throws IOException {
+        for (int i = 0; i < 9; i++) {
+            session.sendMessage(frame(i));
+        }
+
+        verify(delegate, times(9)).sendMessage(any());
+        verify(timer, never()).schedule(any(Runnable.class), anyLong(), any());
+        assertFalse(session.isBatching());
+    }
+
+    @Test
+    void testFramesOverTheRateArePackedIntoOneArrayFrame() throws IOException {
+        for (int i = 0; i < 9; i++) {
+            session.sendMessage(frame(i));
+        }
+        session.sendMessage(frame(9));
+        session.sendMessage(frame(10));
+        session.sendMessage(frame(11));
+
+        assertTrue(session.isBatching());
+        verify(delegate, times(9)).sendMessage(any());
+        verify(timer).schedule(any(Runnable.class), eq(TimeUnit.MILLISECONDS.toNanos(5)), eq(TimeUnit.NANOSECONDS));
+
+        session.flush();
+
+        assertEquals("[{\"n\":9},{\"n\":10},{\"n\":11}]", lastSent().getPayload());
+    }
+
+    @Test
+    void testBatchIsSentOnTheSenderWhenItsWindowEnds() throws IOException {
+        for (int i = 0; i < 11; i++) {
+            session.sendMessage(frame(i));
+        }
+        ArgumentCaptor<Runnable> windowEnd = ArgumentCaptor.forClass(Runnable.class);
+        verify(timer).schedule(windowEnd.capture(), anyLong(), any());
+        
+        // The timer thread only hands the batch over; a slow peer cannot hold it up
+        windowEnd.getValue().run();
+        verify(delegate, times(9)).sendMessage(any());
+        ArgumentCaptor<Runnable> flush = ArgumentCaptor.forClass(Runnable.class);
+        verify(sender).execute(flush.capture());
+        
+        flush.getValue().run();
+        assertEquals("[{\"n\":9},{\"n\":10}]", lastSent().getPayload());
+    }
+
+    @Test
+    void testBatchingStopsAfterAQuietInterval() throws IOException {
+        for (int i = 0; i < 10; i++) {
+            session.sendMessage(frame(i));
+        }
+        session.flush();
+
+        // A busy interval keeps batching on for the next one
+        clock.addAndGet(BatchingSessionDecorator.RATE_INTERVAL_NANOS);
+        session.sendMessage(frame(10));
+        assertTrue(session.isBatching());
+        session.flush();
+        assertEquals("{\"n\":10}", lastSent().getPayload());
+
+        clock.addAndGet(BatchingSessionDecorator.RATE_INTERVAL_NANOS);
+        session.sendMessage(frame(11));
+
+        assertFalse(session.isBatching());
+        assertEquals("{\"n\":11}", lastSent().getPayload());
+    }
+
+    @Test
+    void testFullBatchIsSentWithoutWaitingForTheWindow() throws IOException {
+        for (int i = 0; i < 9 + BatchingSessionDecorator.MAX_BATCH; i++) {
+            session.sendMessage(frame(i));
+        }
+
+        String batch = lastSent().getPayload();
+        assertTrue(batch.startsWith("[{\"n\":9},"), batch);
+        assertTrue(batch.endsWith(",{\"n\":" + (8 + BatchingSessionDecorator.MAX_BATCH) + "}]"), batch);
+    }
+
+    @Test
+    void testPingsAreNotHeldBackAndPendingFramesAreSentBeforeClosing() throws IOException {
+        for (int i = 0; i < 11; i++) {
+            session.sendMessage(frame(i));
+        }
+        PingMessage ping = new PingMessage();
+        session.sendMessage(ping);
+        verify(delegate).sendMessage(ping);
+
+        session.close(CloseStatus.GOING_AWAY);
+
+        assertEquals("[{\"n\":9},{\"n\":10}]", lastSent().getPayload());
+        verify(delegate).close(CloseStatus.GOING_AWAY);
+    }
+
+    private static TextMessage frame(int n) {
+        return new TextMessage("{\"n\":" + n + "}");
+    }
+
+    private TextMessage lastSent() throws IOException {
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<WebSocketMessage<?>> sent = ArgumentCaptor.forClass(WebSocketMessage.class);
+        verify(delegate, atLeastOnce()).sendMessage(sent.capture());
+        List<WebSocketMessage<?>> all = sent.getAllValues();
+        return (TextMessage) all.get(all.size() - 1);
+    }
+}
@@ -0,0 +1,239 @@
+package com.example.springbootwebsocket.service;
+
+import com.example.springbootwebsocket.ChatMessage;
+import com.example.springbootwebsocket.repository.ChatMessageView;
+import com.example.springbootwebsocket.repository.MessageStore;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ChatSearchServiceTest {
+
+    private MessageStore messageStore;
+    private ChatSearchService chatSearchService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        messageStore = mock(MessageStore.class);
+        when(messageStore.findAfter(anyLong(), anyInt()))
+                .thenReturn(List.of());
+        chatSearchService = new ChatSearchService(messageStore, "", 500);
+        chatSearchService.open();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        chatSearchService.close();
+    }
+
+    @Test
+    void testSearchFindsIndexedChatMessages() {
+        chatSearchService.index(message(1L, "Alice", "Hello world", ChatMessage.MessageType.CHAT));
+        chatSearchService.index(message(2L, "Bob", "Goodbye world", ChatMessage.MessageType.CHAT));
+        chatSearchService.index(message(3L, "Carol", "hello from a join", ChatMessage.MessageType.JOIN));
+
+        ChatSearchService.SearchPage result = chatSearchService.search("hello", 0, 10);
+
+        // Only regular chat messages are indexed
+        assertEquals(1, result.total());
+        assertEquals(1L, result.results().get(0).id());
+        assertEquals("Alice", result.results().get(0).name());
+        assertEquals("<mark>Hello</mark> world", result.results().get(0).highlight());
+
+        assertEquals(2, chatSearchService.search("world", 0, 10).total());
+        assertEquals(0, chatSearchService.search("world -hello -goodbye", 0, 10).total());
+    }
+
+    @Test
+    void testHighlightEscapesStoredHtml() {
+        chatSearchService.index(message(1L, "Alice", "<b>bold</b> statement", ChatMessage.MessageType.CHAT));
+
+        String highlight = chatSearchService.search("statement", 0, 10).results().get(0).highlight();
+
+        assertTrue(highlight.contains("&lt;b&gt;"), highlight);
+        assertTrue(highlight.contains("<mark>statement</mark>"), highlight);
+    }
+
+    @Test
+    void testPaging() {
+        for (long id = 1; id <= 25; id++) {
+            chatSearchService.index(message(id, "User", "paging message " + id, ChatMessage.MessageType.CHAT));
+        }
+
+        ChatSearchService.SearchPage first = chatSearchService.search("paging", 0, 10);
+        ChatSearchService.SearchPage last = chatSearchService.search("paging", 2, 10);
+
+        assertEquals(25, first.total());
+        assertEquals(10, first.results().size());
+        assertEquals(5, last.results().size());
+        assertEquals(ChatSearchService.MAX_PAGE_SIZE, chatSearchService.search("paging", 0, 1000).size());
+    }
+
+    @Test
+    void testPagesPastTheEndAreEmpty() {
+        for (long id = 1; id <= 5; id++) {
+            chatSearchService.index(message(id, "User", "paging message " + id, ChatMessage.MessageType.CHAT));
+        }
+
+        // Page times size overflows an int
+        ChatSearchService.SearchPage farAway = chatSearchService.search("paging", Integer.MAX_VALUE, 100);
+
+        assertEquals(5, farAway.total());
+        assertTrue(farAway.results().isEmpty());
+        assertTrue(chatSearchService.search("paging", 1, 5).results().isEmpty());
+    }
+
+    @Test
+    void testQueryWithoutSearchableTerms() {
+        ChatSearchService.SearchPage result = chatSearchService.search("!!!", 0, 10);
+
+        assertEquals(0, result.total());
+        assertTrue(result.results().isEmpty());
+    }
+
+    @Test
+    void testStartupIndexesOnlyMessagesAfterLastCommit(@TempDir Path indexDir) throws Exception {
+        MessageStore store = mock(MessageStore.class);
+        when(store.findAfter(eq(0L), anyInt()))
+                .thenReturn(List.of(view(1L, "Alice", "first message", ChatMessage.MessageType.CHAT),
+                        view(2L, "Bob", "second message", ChatMessage.MessageType.CHAT)));
+        when(store.findMaxId()).thenReturn(2L);
+
+        ChatSearchService firstRun = new ChatSearchService(store, indexDir.toString(), 500);
+        firstRun.open();
+        assertEquals(2, firstRun.search("message", 0, 10).total());
+        firstRun.close();
+
+        // Another message was stored while the application was down
+        when(store.findAfter(eq(2L), anyInt()))
+                .thenReturn(List.of(view(3L, "Carol", "third message", ChatMessage.MessageType.CHAT)));
+        when(store.findMaxId()).thenReturn(3L);
+
+        ChatSearchService secondRun = new ChatSearchService(store, indexDir.toString(), 500);
+        secondRun.open();
+        assertEquals(3, secondRun.search("message", 0, 10).total());
+        verify(store).findAfter(eq(2L), anyInt());
+        secondRun.close();
+    }
+
+    @Test
+    void testStartupRebuildsIndexWhenStoreWasReset(@TempDir Path indexDir) throws Exception {
+        MessageStore store = mock(MessageStore.class);
+        when(store.findAfter(eq(0L), anyInt()))
+                .thenReturn(List.of(view(1L, "Alice", "stale message", ChatMessage.MessageType.CHAT),
+                        view(2L, "Bob", "stale message", ChatMessage.MessageType.CHAT)));
+        when(store.findMaxId()).thenReturn(2L);
+
+        ChatSearchService firstRun = new ChatSearchService(store, indexDir.toString(), 500);
+        firstRun.open();
+        firstRun.close();
+
+        // The message store now starts over from scratch
+        when(store.findAfter(eq(0L), anyInt()))
+                .thenReturn(List.of(view(1L, "Dave", "fresh message", ChatMessage.MessageType.CHAT)));
+        when(store.findMaxId()).thenReturn(1L);
+
+        ChatSearchService secondRun = new ChatSearchService(store, indexDir.toString(), 500);
+        secondRun.open();
+        assertEquals(0, secondRun.search("stale", 0, 10).total());
+        assertEquals(1, secondRun.search("fresh", 0, 10).total());
+        secondRun.close();
+    }
+
+    @Test
+    void testMessageThatFailedToIndexIsIndexedOnTheNextCommit() throws Exception {
+        AtomicBoolean failing = new AtomicBoolean();
+        ChatSearchService service = new ChatSearchService(messageStore, "", 500, failingAnalyzer(failing));
+        service.open();
+
+        failing.set(true);
+        service.index(message(1L, "Alice", "unlucky message", ChatMessage.MessageType.CHAT));
+        failing.set(false);
+        service.index(message(2L, "Bob", "lucky message", ChatMessage.MessageType.CHAT));
+        assertEquals(0, service.search("unlucky", 0, 10).total());
+
+        service.commit();
+        assertEquals(1, service.search("unlucky", 0, 10).total());
+        service.close();
+    }
+
+    @Test
+    void testStartupIndexesAMessageThatStillFailedToIndexAgain(@TempDir Path indexDir) throws Exception {
+        MessageStore store = mock(MessageStore.class);
+        when(store.findAfter(anyLong(), anyInt())).thenReturn(List.of());
+        AtomicBoolean failing = new AtomicBoolean();
+        ChatSearchService firstRun = new ChatSearchService(store, indexDir.toString(), 500, failingAnalyzer(failing));
+        firstRun.open();
+
+        // A later message is indexed, but the committed id stays below the one that failed
+        failing.set(true);
+        firstRun.index(message(1L, "Alice", "unlucky message", ChatMessage.MessageType.CHAT));
+        failing.set(false);
+        firstRun.index(message(2L, "Bob", "lucky message", ChatMessage.MessageType.CHAT));
+        failing.set(true);
+        firstRun.close();
+
+        when(store.findAfter(eq(0L), anyInt()))
+                .thenReturn(List.of(view(1L, "Alice", "unlucky message", ChatMessage.MessageType.CHAT),
+                        view(2L, "Bob", "lucky message", ChatMessage.MessageType.CHAT)));
+        when(store.findMaxId()).thenReturn(2L);
+
+        ChatSearchService secondRun = new ChatSearchService(store, indexDir.toString(), 500);
+        secondRun.open();
+        assertEquals(1, secondRun.search("unlucky", 0, 10).total());
+        assertEquals(2, secondRun.search("message", 0, 10).total());
+        secondRun.close();
+    }
+
+    /**
+     * A standard analyzer that fails while the flag is set, like an index that cannot be written
+     */
+    private static Analyzer failingAnalyzer(AtomicBoolean failing) {
+        return new Analyzer() {
+            @Override
+            protected TokenStreamComponents createComponents(String fieldName) {
+                StandardTokenizer tokenizer = new StandardTokenizer();
+                TokenStream stream = new TokenFilter(new LowerCaseFilter(tokenizer)) {
+                    @Override
+                    public boolean incrementToken() throws IOException {
+                        if (failing.get()) {
+                            throw new IOException("Index unavailable");
+                        }
+                        return input.incrementToken();
+                    }
+                };
+                return new TokenStreamComponents(tokenizer, stream);
+            }
+        };
+    }
+
+    private static ChatMessageView view(Long id, String name, String text, ChatMessage.MessageType type) {
+        return ChatMessageView.of(message(id, name, text, type));
+    }
+
+    private static ChatMessage message(Long id, String name, String text, ChatMessage.MessageType type) {
+        ChatMessage message = new ChatMessage(name, text, type);
+        message.setId(id);
+        return message;
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.springbootwebsocket.service;
+
+import com.example.springbootwebsocket.ChatMessage;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ChatStatisticsTest {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    private final AtomicLong now = new AtomicLong(1_000 * MINUTE);
+    private final ChatStatistics statistics = new ChatStatistics(3, now::get);
+
+    @Test
+    void testMessagesAreCountedPerMinuteAndType() {
+        statistics.record(ChatMessage.MessageType.JOIN, "Alice");
+        statistics.record(ChatMessage.MessageType.CHAT, "Alice");
+        statistics.record(ChatMessage.MessageType.CHAT, "Alice");
+        now.addAndGet(MINUTE);
+        statistics.record(ChatMessage.MessageType.PRIVATE, "Bob");
+
+        ChatStatistics.Snapshot snapshot = statistics.snapshot();
+        assertEquals(3, snapshot.windowMinutes());
+        assertEquals(List.of(0L, 2L, 1L), snapshot.messagesPerMinute());
+        assertEquals(Map.of(ChatMessage.MessageType.JOIN, 1L, ChatMessage.MessageType.CHAT, 2L,
+                ChatMessage.MessageType.PRIVATE, 1L), snapshot.messagesByType());
+        assertEquals(2, snapshot.activeSenders());
+    }
+
+    @Test
+    void testMinutesLeaveTheWindowAndTheirBucketsAreReused() {
+        statistics.record(ChatMessage.MessageType.CHAT, "Alice");
+        now.addAndGet(2 * MINUTE);
+        statistics.record(ChatMessage.MessageType.CHAT, "Bob");
+        assertEquals(List.of(1L, 0L, 1L), statistics.snapshot().messagesPerMinute());
+
+        // Alice's minute has left the window, but her bucket is not reused yet
+        now.addAndGet(MINUTE);
+        ChatStatistics.Snapshot snapshot = statistics.snapshot();
+        assertEquals(List.of(0L, 1L, 0L), snapshot.messagesPerMinute());
+        assertEquals(1, snapshot.activeSenders());
+
+        statistics.record(ChatMessage.MessageType.LEAVE, "Bob");
+        snapshot = statistics.snapshot();
+        assertEquals(List.of(0L, 1L, 0L), snapshot.messagesPerMinute());
+        assertEquals(Map.of(ChatMessage.MessageType.CHAT, 1L, ChatMessage.MessageType.LEAVE, 1L),
+                snapshot.messagesByType());
+        assertEquals(1, snapshot.activeSenders());
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.springbootwebsocket.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HashedTimingWheelTest {
+
+    @Test
+    void testItemsComeDueAfterTheirDelayAcrossRounds() {
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(4);
+        wheel.schedule("a", 1);
+        wheel.schedule("b", 3);
+        wheel.schedule("c", 3);
+        wheel.schedule("d", 9);
+
+        assertEquals(List.of("a"), wheel.advance());
+        assertTrue(wheel.advance().isEmpty());
+        assertEquals(List.of("b", "c"), wheel.advance());
+        for (int tick = 4; tick < 9; tick++) {
+            assertTrue(wheel.advance().isEmpty(), "Nothing due at tick " + tick);
+        }
+        assertEquals(List.of("d"), wheel.advance());
+        assertEquals(9, wheel.getTick());
+    }
+
+    @Test
+    void testCancelledItemsNeverComeDue() {
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(8);
+        HashedTimingWheel.Timeout<String> cancelled = wheel.schedule("a", 2);
+        wheel.schedule("b", 2);
+        cancelled.cancel();
+
+        wheel.advance();
+        assertEquals(List.of("b"), wheel.advance());
+        assertTrue(cancelled.isCancelled());
+    }
+
+    @Test
+    void testRejectsAnEmptyWheel() {
+        assertThrows(IllegalArgumentException.class, () -> new HashedTimingWheel<String>(0));
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.springbootwebsocket.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class HeartbeatMonitorTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final HeartbeatMonitor monitor = new HeartbeatMonitor(Duration.ofSeconds(20), 2,
+            Duration.ofSeconds(1), now::get);
+
+    private static WebSocketSession session(String id) {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(id);
+        when(session.isOpen()).thenReturn(true);
+        return session;
+    }
+
+    private List<WebSocketSession> advance(Duration duration) {
+        now.addAndGet(duration.toNanos());
+        return monitor.tick();
+    }
+
+    @Test
+    void testPingsOncePerIntervalAndKeepsAnsweringPeers() throws Exception {
+        WebSocketSession session = session("s1");
+        monitor.register(session, Runnable::run);
+
+        assertTrue(advance(Duration.ofSeconds(19)).isEmpty());
+        verify(session, never()).sendMessage(any());
+        assertTrue(advance(Duration.ofSeconds(1)).isEmpty());
+        verify(session).sendMessage(any(PingMessage.class));
+
+        for (int round = 0; round < 5; round++) {
+            monitor.pongReceived("s1");
+            assertTrue(advance(Duration.ofSeconds(20)).isEmpty());
+        }
+        verify(session, times(6)).sendMessage(any(PingMessage.class));
+        assertEquals(1, monitor.getMonitoredSessionCount());
+    }
+
+    @Test
+    void testEvictsPeersAfterTooManyMissedPongs() throws Exception {
+        WebSocketSession silent = session("silent");
+        WebSocketSession answering = session("answering");
+        monitor.register(silent, Runnable::run);
+        monitor.register(answering, Runnable::run);
+
+        advance(Duration.ofSeconds(20));
+        monitor.pongReceived("answering");
+        assertTrue(advance(Duration.ofSeconds(20)).isEmpty());
+        monitor.pongReceived("answering");
+
+        // A delayed scheduler catches up on the missed ticks in one call
+        assertEquals(List.of(silent), advance(Duration.ofSeconds(20)));
+        assertEquals(1, monitor.getMonitoredSessionCount());
+        verify(silent, times(2)).sendMessage(any(PingMessage.class));
+    }
+
+    @Test
+    void testEvictsClosedAndUnwritableSessionsAndForgetsUnregisteredOnes() throws Exception {
+        WebSocketSession closed = session("closed");
+        when(closed.isOpen()).thenReturn(false);
+        WebSocketSession broken = session("broken");
+        doThrow(new IOException("Broken pipe")).when(broken).sendMessage(any());
+        WebSocketSession gone = session("gone");
+        monitor.register(closed, Runnable::run);
+        monitor.register(broken, Runnable::run);
+        monitor.register(gone, Runnable::run);
+        monitor.unregister("gone");
+
+        List<WebSocketSession> dead = advance(Duration.ofSeconds(20));
+        assertEquals(2, dead.size());
+        assertTrue(dead.containsAll(List.of(closed, broken)));
+        verify(gone, never()).sendMessage(any());
+        assertEquals(0, monitor.getMonitoredSessionCount());
+    }
+
+    @Test
+    void testPingsAreSentOnTheSessionSenderAndFailuresCountNextRound() throws Exception {
+        WebSocketSession broken = session("broken");
+        doThrow(new IOException("Broken pipe")).when(broken).sendMessage(any());
+        List<Runnable> queued = new ArrayList<>();
+        monitor.register(broken, queued::add);
+
+        // The ticking thread only hands the ping over
+        assertTrue(advance(Duration.ofSeconds(20)).isEmpty());
+        verify(broken, never()).sendMessage(any());
+        assertEquals(1, queued.size());
+
+        queued.get(0).run();
+        monitor.pongReceived("broken");
+        assertEquals(List.of(broken), advance(Duration.ofSeconds(20)));
+    }
+}
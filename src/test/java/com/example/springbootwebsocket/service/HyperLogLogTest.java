@@ -0,0 +1,42 @@
+package com.example.springbootwebsocket.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HyperLogLogTest {
+
+    @Test
+    void testEstimatesStayWithinTheStandardErrorBounds() {
+        for (int distinct : new int[] {10, 1_000, 100_000}) {
+            HyperLogLog sketch = new HyperLogLog(10);
+            for (int repeat = 0; repeat < 3; repeat++) {
+                for (int i = 0; i < distinct; i++) {
+                    sketch.add("user-" + i);
+                }
+            }
+            // Four standard errors of 3.25%, plus one for tiny counts
+            double error = Math.abs(sketch.estimate() - distinct);
+            assertTrue(error <= distinct * 0.13 + 1, distinct + " distinct values estimated as " + sketch.estimate());
+        }
+    }
+
+    @Test
+    void testMergeEstimatesTheUnion() {
+        HyperLogLog first = new HyperLogLog(12);
+        HyperLogLog second = new HyperLogLog(12);
+        for (int i = 0; i < 6_000; i++) {
+            first.add("user-" + i);
+            second.add("user-" + (i + 4_000));
+        }
+        first.merge(second);
+        long estimate = first.estimate();
+        assertTrue(Math.abs(estimate - 10_000) <= 700, "Union estimated as " + estimate);
+
+        first.clear();
+        assertEquals(0, first.estimate());
+        assertThrows(IllegalArgumentException.class, () -> first.merge(new HyperLogLog(10)));
+    }
+}
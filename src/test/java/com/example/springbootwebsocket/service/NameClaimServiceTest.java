@@ -0,0 +1,108 @@
+package com.example.springbootwebsocket.service;
+
+import com.example.springbootwebsocket.repository.NameClaimRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest
+@ActiveProfiles("test")
+// Claims are inserted in their own transactions, as in the application
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class NameClaimServiceTest {
+
+    private static final long GRACE_PERIOD_MILLIS = TimeUnit.MINUTES.toMillis(60);
+
+    @Autowired
+    private NameClaimRepository nameClaimRepository;
+
+    private final PresenceRoster presenceRoster = new PresenceRoster();
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+
+    @Test
+    void testFirstClaimIssuesTheTokenLaterClaimsNeed() {
+        nameClaimRepository.deleteAll();
+        NameClaimService service = new NameClaimService(nameClaimRepository, presenceRoster, 60, clock::get);
+
+        NameClaimService.Claim first = service.claim("Alice", null);
+        assertTrue(first.granted());
+        assertNotNull(first.issuedToken());
+
+        // Another tab or a reconnect of the same client
+        NameClaimService.Claim again = service.claim("Alice", first.issuedToken());
+        assertTrue(again.granted());
+        assertNull(again.issuedToken());
+
+        assertFalse(service.claim("Alice", null).granted());
+        assertFalse(service.claim("Alice", "guess").granted());
+
+        // Only the hash of the token is stored
+        assertNotEquals(first.issuedToken(), nameClaimRepository.findById("Alice").orElseThrow().getTokenHash());
+        assertEquals(64, nameClaimRepository.findById("Alice").orElseThrow().getTokenHash().length());
+
+        NameClaimService.Claim other = service.claim("Bob", first.issuedToken());
+        assertTrue(other.granted());
+        assertNotEquals(first.issuedToken(), other.issuedToken());
+    }
+
+    @Test
+    void testClaimLastsWhileTheNameIsUsedPlusTheGracePeriod() {
+        nameClaimRepository.deleteAll();
+        NameClaimService service = new NameClaimService(nameClaimRepository, presenceRoster, 60, clock::get);
+        String token = service.claim("Alice", null).issuedToken();
+        presenceRoster.register("session1", "Alice");
+
+        // Held however long the session stays
+        clock.addAndGet(2 * GRACE_PERIOD_MILLIS);
+        service.releaseUnusedClaims();
+        assertNull(nameClaimRepository.findById("Alice").orElseThrow().getExpiresAt());
+        assertFalse(service.claim("Alice", null).granted());
+
+        presenceRoster.unregister("session1");
+        service.releaseUnusedClaims();
+        assertEquals(clock.get() + GRACE_PERIOD_MILLIS, nameClaimRepository.findById("Alice").orElseThrow().getExpiresAt());
+        clock.addAndGet(GRACE_PERIOD_MILLIS - 1);
+        assertFalse(service.claim("Alice", null).granted());
+
+        // Its owner coming back during the grace period holds the claim again
+        assertTrue(service.claim("Alice", token).granted());
+        assertNull(nameClaimRepository.findById("Alice").orElseThrow().getExpiresAt());
+        service.releaseUnusedClaims();
+
+        // After the grace period anyone may take the name, and the old token no longer works
+        clock.addAndGet(GRACE_PERIOD_MILLIS);
+        NameClaimService.Claim taken = service.claim("Alice", null);
+        assertTrue(taken.granted());
+        assertNotNull(taken.issuedToken());
+        assertFalse(service.claim("Alice", token).granted());
+    }
+
+    @Test
+    void testExpiredClaimsAreDeleted() {
+        nameClaimRepository.deleteAll();
+        NameClaimService service = new NameClaimService(nameClaimRepository, presenceRoster, 60, clock::get);
+        service.claim("Alice", null);
+        service.claim("Bob", null);
+        presenceRoster.register("session1", "Bob");
+
+        service.releaseUnusedClaims();
+        clock.addAndGet(GRACE_PERIOD_MILLIS);
+        service.releaseUnusedClaims();
+
+        assertTrue(nameClaimRepository.findById("Alice").isEmpty());
+        assertTrue(nameClaimRepository.findById("Bob").isPresent());
+    }
+}
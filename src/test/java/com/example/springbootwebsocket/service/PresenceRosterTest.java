@@ -0,0 +1,167 @@
+package com.example.springbootwebsocket.service;
+
+import com.example.springbootwebsocket.PresenceMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PresenceRosterTest {
+
+    private PresenceRoster presenceRoster;
+
+    @BeforeEach
+    void setUp() {
+        presenceRoster = new PresenceRoster();
+    }
+
+    @Test
+    void testRegisterProducesVersionedDelta() {
+        PresenceRoster.Registration registration = presenceRoster.register("s1", "Alice");
+
+        assertNotNull(registration);
+        assertEquals("Alice", registration.name());
+        assertEquals(PresenceMessage.Operation.ADD, registration.delta().getOp());
+        assertEquals(1, registration.delta().getVersion());
+        assertEquals("Alice", presenceRoster.getName("s1"));
+
+        PresenceMessage roster = presenceRoster.getRoster();
+        assertEquals(1, roster.getVersion());
+        assertEquals(List.of("Alice"), roster.getUsers());
+    }
+
+    @Test
+    void testRegisterIsIdempotentPerSession() {
+        assertNotNull(presenceRoster.register("s1", "Alice"));
+        assertNull(presenceRoster.register("s1", "Bob"));
+
+        assertEquals("Alice", presenceRoster.getName("s1"));
+        assertEquals(1, presenceRoster.getVersion());
+    }
+
+    @Test
+    void testMultipleSessionsShareOneRosterEntry() {
+        presenceRoster.register("s1", "Alice");
+        PresenceRoster.Registration secondTab = presenceRoster.register("s2", "Alice");
+
+        // The second tab does not change the set of online names
+        assertNull(secondTab.delta());
+        assertEquals(1, presenceRoster.getOnlineUserCount());
+        assertEquals(2, presenceRoster.getRegisteredSessionCount());
+
+        // Closing one tab keeps the user online
+        assertNull(presenceRoster.unregister("s1").delta());
+
+        PresenceRoster.Registration lastTab = presenceRoster.unregister("s2");
+        assertEquals(PresenceMessage.Operation.REMOVE, lastTab.delta().getOp());
+        assertEquals(2, lastTab.delta().getVersion());
+        assertEquals(0, presenceRoster.getOnlineUserCount());
+    }
+
+    @Test
+    void testUnregisterUnknownSession() {
+        assertNull(presenceRoster.unregister("unknown"));
+        assertEquals(0, presenceRoster.getVersion());
+    }
+
+    @Test
+    void testRosterIsCachedUntilVersionChanges() {
+        presenceRoster.register("s1", "Alice");
+        PresenceMessage first = presenceRoster.getRoster();
+        assertTrue(first == presenceRoster.getRoster());
+
+        presenceRoster.register("s2", "Bob");
+        PresenceMessage second = presenceRoster.getRoster();
+        assertEquals(2, second.getVersion());
+        assertEquals(2, second.getUsers().size());
+    }
+
+    @Test
+    void testConcurrentRegistrationOfSameSession() throws Exception {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger registered = new AtomicInteger();
+
+        for (int i = 0; i < threads; i++) {
+            String name = "User" + i;
+            executor.submit(() -> {
+                start.await();
+                if (presenceRoster.register("shared", name) != null) {
+                    registered.incrementAndGet();
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        // Exactly one registration wins and exactly one roster entry exists
+        assertEquals(1, registered.get());
+        assertEquals(1, presenceRoster.getOnlineUserCount());
+        assertEquals(1, presenceRoster.getVersion());
+    }
+
+    @Test
+    void testRosterMatchesTheDeltasUpToItsVersion() throws Exception {
+        int writers = 4;
+        Map<Long, PresenceMessage> deltas = new ConcurrentHashMap<>();
+        List<PresenceMessage> rosters = new CopyOnWriteArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(writers + 1);
+        CountDownLatch done = new CountDownLatch(writers);
+
+        for (int w = 0; w < writers; w++) {
+            int writer = w;
+            executor.submit(() -> {
+                for (int i = 0; i < 50000; i++) {
+                    String sessionId = writer + "-" + i;
+                    PresenceRoster.Registration added = presenceRoster.register(sessionId, "User" + writer + "-" + (i % 3));
+                    deltas.put(added.delta().getVersion(), added.delta());
+                    PresenceRoster.Registration removed = presenceRoster.unregister(sessionId);
+                    deltas.put(removed.delta().getVersion(), removed.delta());
+                }
+                done.countDown();
+            });
+        }
+        executor.submit(() -> {
+            while (done.getCount() > 0) {
+                PresenceMessage roster = presenceRoster.getRoster();
+                if (rosters.isEmpty() || rosters.get(rosters.size() - 1) != roster) {
+                    rosters.add(roster);
+                }
+            }
+        });
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        // A client that starts from any roster and applies the later deltas ends up with the right names
+        for (PresenceMessage roster : rosters) {
+            Set<String> expected = new HashSet<>();
+            for (long version = 1; version <= roster.getVersion(); version++) {
+                PresenceMessage delta = deltas.get(version);
+                if (delta.getOp() == PresenceMessage.Operation.ADD) {
+                    expected.add(delta.getName());
+                } else {
+                    expected.remove(delta.getName());
+                }
+            }
+            assertEquals(expected, new HashSet<>(roster.getUsers()), "roster version " + roster.getVersion());
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.springbootwebsocket.service;
+
+import com.example.springbootwebsocket.PrivateEvent;
+import com.example.springbootwebsocket.PrivateMessage;
+import com.example.springbootwebsocket.repository.PrivateMessageRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+@DataJpaTest
+@ActiveProfiles("test")
+class PrivateMessageServiceTest {
+
+    @Autowired
+    private PrivateMessageRepository privateMessageRepository;
+
+    @Test
+    void testConversationHoldsBothDirectionsOldestFirstUpToTheLimit() {
+        PrivateMessageService service = new PrivateMessageService(privateMessageRepository, 3);
+        service.saveMessage(PrivateEvent.of("Alice", "Bob", "one"));
+        service.saveMessage(PrivateEvent.of("Bob", "Alice", "two"));
+        service.saveMessage(PrivateEvent.of("Alice", "Carol", "elsewhere"));
+        service.saveMessage(PrivateEvent.of("Alice", "Bob", "three"));
+        PrivateEvent last = service.saveMessage(PrivateEvent.of("Bob", "Alice", "four"));
+        assertNotNull(last.id());
+
+        List<PrivateEvent> conversation = service.getConversation("Bob", "Alice");
+        assertEquals(List.of("two", "three", "four"), conversation.stream().map(PrivateEvent::message).toList());
+        assertEquals(last, conversation.get(2));
+        assertEquals(conversation, service.getConversation("Alice", "Bob"));
+        assertEquals(List.of("elsewhere"),
+                service.getConversation("Carol", "Alice").stream().map(PrivateEvent::message).toList());
+    }
+
+    @Test
+    void testConversationBetweenTwoNamesOfTheMaximumLengthIsStored() {
+        PrivateMessageService service = new PrivateMessageService(privateMessageRepository, 3);
+        String first = "a".repeat(255);
+        String second = "b".repeat(255);
+
+        service.saveMessage(PrivateEvent.of(first, second, "hello"));
+        privateMessageRepository.flush();
+
+        assertEquals(List.of("hello"),
+                service.getConversation(second, first).stream().map(PrivateEvent::message).toList());
+    }
+
+    @Test
+    void testConversationKeysDoNotCollide() {
+        assertEquals(PrivateMessage.conversationKey("Alice", "Bob"), PrivateMessage.conversationKey("Bob", "Alice"));
+        assertNotEquals(PrivateMessage.conversationKey("ab", "c"), PrivateMessage.conversationKey("a", "bc"));
+    }
+}
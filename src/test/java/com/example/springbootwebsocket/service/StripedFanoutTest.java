@@ -0,0 +1,109 @@
+package com.example.springbootwebsocket.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StripedFanoutTest {
+
+    private final StripedFanout fanout = new StripedFanout(4, 64, 10000, 524288, 0, 0);
+
+    @AfterEach
+    void tearDown() {
+        fanout.shutdown();
+    }
+
+    private WebSocketSession connect(String id, boolean open) {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(id);
+        when(session.isOpen()).thenReturn(open);
+        return session;
+    }
+
+    @Test
+    void testKeepsDecoratedSessionsAcrossStripes() {
+        WebSocketSession session = connect("s1", true);
+        WebSocketSession decorated = fanout.add(session);
+
+        assertInstanceOf(ConcurrentWebSocketSessionDecorator.class, decorated);
+        assertSame(decorated, fanout.get("s1"));
+        assertEquals(1, fanout.size());
+        assertEquals(List.of(decorated), fanout.snapshot());
+
+        assertSame(decorated, fanout.remove("s1"));
+        assertNull(fanout.remove("s1"));
+        assertNull(fanout.get("s1"));
+        assertEquals(0, fanout.size());
+        assertEquals(4, fanout.getStripeCount());
+    }
+
+    @Test
+    void testSessionsAreBatchedWhenABatchWindowIsConfigured() {
+        StripedFanout batching = new StripedFanout(1, 64, 10000, 524288, 5, 200);
+        try {
+            assertInstanceOf(BatchingSessionDecorator.class, batching.add(connect("s1", true)));
+        } finally {
+            batching.shutdown();
+        }
+    }
+
+    @Test
+    void testLargeBroadcastReachesEveryOpenSessionOfEveryStripe() throws Exception {
+        List<WebSocketSession> open = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            WebSocketSession session = connect("open" + i, true);
+            fanout.add(session);
+            open.add(session);
+        }
+        WebSocketSession closed = connect("closed", false);
+        fanout.add(closed);
+        TextMessage frame = new TextMessage("{\"type\":\"CHAT\"}");
+
+        // Returns only once the last recipient has been written to
+        fanout.broadcast(frame);
+
+        for (WebSocketSession session : open) {
+            verify(session).sendMessage(frame);
+        }
+        verify(closed, never()).sendMessage(any());
+    }
+
+    @Test
+    void testThresholdFollowsWhetherParallelBroadcastsPayOff() {
+        assertEquals(64, fanout.getThreshold());
+
+        // The hand-off cost more than sending serially would have
+        fanout.adapt(100, 2_000_000, 1_000_000);
+        assertEquals(200, fanout.getThreshold());
+
+        // Well under half of the serial time
+        fanout.adapt(300, 1_000_000, 4_000_000);
+        assertEquals(175, fanout.getThreshold());
+
+        // A modest gain leaves it alone
+        fanout.adapt(300, 1_500_000, 2_000_000);
+        assertEquals(175, fanout.getThreshold());
+
+        for (int i = 0; i < 100; i++) {
+            fanout.adapt(300, 1, 1_000_000);
+        }
+        assertTrue(fanout.getThreshold() >= StripedFanout.MIN_THRESHOLD);
+        assertEquals(StripedFanout.MIN_THRESHOLD, fanout.getThreshold());
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.springbootwebsocket.service;
+
+import com.example.springbootwebsocket.TypingMessage;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class TypingCoalescerTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final TypingCoalescer coalescer = new TypingCoalescer(Duration.ofSeconds(5), now::get);
+
+    @Test
+    void testKeepsOnlyTheLatestStatePerUser() {
+        coalescer.record("alice", true);
+        coalescer.record("alice", true);
+        coalescer.record("bob", true);
+        coalescer.record("bob", false);
+        coalescer.record("carol", false);
+
+        TypingMessage frame = coalescer.drain();
+        assertEquals(List.of("alice"), frame.getTyping());
+        assertEquals(List.of("bob"), frame.getStopped());
+        assertEquals(1, coalescer.getTypingUserCount());
+
+        // Already reported and unchanged
+        coalescer.record("alice", true);
+        assertNull(coalescer.drain());
+    }
+
+    @Test
+    void testExpiresUsersWhoStoppedSendingEvents() {
+        coalescer.record("alice", true);
+        coalescer.drain();
+
+        now.addAndGet(Duration.ofSeconds(4).toNanos());
+        coalescer.record("alice", true);
+        assertNull(coalescer.drain());
+
+        now.addAndGet(Duration.ofSeconds(5).toNanos());
+        TypingMessage frame = coalescer.drain();
+        assertEquals(List.of("alice"), frame.getStopped());
+        assertEquals(0, coalescer.getTypingUserCount());
+    }
+}
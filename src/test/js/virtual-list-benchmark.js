@@ -0,0 +1,209 @@
+/**
+ * Render benchmark for the virtualized message list: node src/test/js/virtual-list-benchmark.js [messages]
+ *
+ * Runs without a browser on a minimal DOM stand-in. The stand-in counts forced layouts: reading a
+ * layout property (scrollHeight, offsetHeight, ...) after the tree changed costs a pass over every
+ * element in it, as a synchronous reflow does in a browser. The previous rendering (one element and
+ * one scroll-to-bottom per message) is compared with VirtualList, which batches appends per frame
+ * and keeps only the visible rows. Exits with a non-zero status if the virtualized list keeps more
+ * than a viewport's worth of rows in the DOM.
+ */
+"use strict";
+
+const assert = require("assert");
+const path = require("path");
+
+const MESSAGES = parseInt(process.argv[2] || "50000", 10);
+const VIEWPORT_HEIGHT = 300;
+const ROW_HEIGHT = 62;
+
+class FakeDocument {
+    constructor() {
+        this.elementCount = 0;
+        this.dirty = false;
+        this.layouts = 0;
+        this.layoutWork = 0;
+    }
+
+    createElement(tagName) {
+        return new FakeElement(this, tagName);
+    }
+
+    createDocumentFragment() {
+        return new FakeElement(this, "#fragment");
+    }
+
+    // Called on every layout read; recomputes the layout if the tree changed since the last one
+    layout() {
+        if (this.dirty) {
+            this.dirty = false;
+            this.layouts++;
+            this.layoutWork += this.elementCount;
+        }
+    }
+}
+
+class FakeElement {
+    constructor(document, tagName) {
+        this.document = document;
+        this.tagName = tagName;
+        this.children = [];
+        this.parent = null;
+        this.style = {};
+        this.className = "";
+        this.textContent = "";
+        this.classList = { add: name => { this.className += " " + name; } };
+        this.scrollTopValue = 0;
+        this.clientHeight = VIEWPORT_HEIGHT;
+    }
+
+    appendChild(child) {
+        if (child.tagName === "#fragment") {
+            child.children.forEach(grandChild => this.appendChild(grandChild));
+            child.children = [];
+            return child;
+        }
+        child.parent = this;
+        this.children.push(child);
+        if (this.isConnected()) {
+            this.document.elementCount += child.subtreeSize();
+            this.document.dirty = true;
+        }
+        return child;
+    }
+
+    remove() {
+        if (!this.parent) return;
+        const connected = this.isConnected();
+        this.parent.children.splice(this.parent.children.indexOf(this), 1);
+        this.parent = null;
+        if (connected) {
+            this.document.elementCount -= this.subtreeSize();
+            this.document.dirty = true;
+        }
+    }
+
+    isConnected() {
+        let node = this;
+        while (node.parent) node = node.parent;
+        return node.isRoot === true;
+    }
+
+    subtreeSize() {
+        return 1 + this.children.reduce((sum, child) => sum + child.subtreeSize(), 0);
+    }
+
+    addEventListener() {
+    }
+
+    // Layout properties; messages and rows have a fixed height, the container is as tall as its content
+    get offsetHeight() {
+        this.document.layout();
+        return this.style.height ? parseInt(this.style.height, 10) : ROW_HEIGHT;
+    }
+
+    get offsetTop() {
+        this.document.layout();
+        return 0;
+    }
+
+    get scrollHeight() {
+        this.document.layout();
+        const first = this.children[0];
+        return first && first.style.height ? first.offsetHeight : this.children.length * ROW_HEIGHT;
+    }
+
+    get scrollTop() {
+        this.document.layout();
+        return this.scrollTopValue;
+    }
+
+    set scrollTop(value) {
+        this.scrollTopValue = Math.max(0, Math.min(value, this.scrollHeight - this.clientHeight));
+    }
+}
+
+function createMessages(count) {
+    const messages = [];
+    for (let i = 0; i < count; i++) {
+        messages.push({ name: "user" + (i % 50), message: "message " + i, type: "CHAT", timestamp: "2024-01-01T00:00:00" });
+    }
+    return messages;
+}
+
+// Same structure as createMessageElement in chat.js
+function createMessageElement(document, data) {
+    const element = document.createElement("div");
+    element.className = "message chat";
+    const header = document.createElement("div");
+    const sender = document.createElement("span");
+    sender.textContent = data.name;
+    header.appendChild(sender);
+    const time = document.createElement("span");
+    time.textContent = data.timestamp;
+    header.appendChild(time);
+    element.appendChild(header);
+    const content = document.createElement("div");
+    content.textContent = data.message;
+    element.appendChild(content);
+    return element;
+}
+
+function createContainer(document) {
+    const container = document.createElement("div");
+    container.isRoot = true;
+    return container;
+}
+
+function report(name, document, elapsedMs) {
+    console.log(`${name.padEnd(12)} ${elapsedMs.toFixed(1).padStart(9)} ms  ${String(document.layouts).padStart(7)} layouts`
+        + `  ${String(document.layoutWork).padStart(12)} elements laid out  ${String(document.elementCount).padStart(7)} elements in DOM`);
+}
+
+// Previous rendering: every message is appended directly and scrolled into view
+function naive(messages) {
+    const document = new FakeDocument();
+    const container = createContainer(document);
+    const start = process.hrtime.bigint();
+    for (const message of messages) {
+        container.appendChild(createMessageElement(document, message));
+        container.scrollTop = container.scrollHeight;
+    }
+    report("naive", document, Number(process.hrtime.bigint() - start) / 1e6);
+}
+
+// Messages arrive one by one as over the WebSocket; frames run as the browser would schedule them
+function virtualized(messages) {
+    const document = new FakeDocument();
+    global.document = document;
+    const VirtualList = require(path.join(__dirname, "../../main/resources/static/js/virtual-list.js"));
+    const container = createContainer(document);
+    let frame = null;
+    const list = new VirtualList(container, data => createMessageElement(document, data), {
+        requestFrame: callback => { frame = callback; }
+    });
+
+    const start = process.hrtime.bigint();
+    const perFrame = 100;
+    for (let i = 0; i < messages.length; i++) {
+        list.append(messages[i]);
+        if ((i + 1) % perFrame === 0 || i === messages.length - 1) {
+            while (frame) {
+                const callback = frame;
+                frame = null;
+                callback();
+            }
+        }
+    }
+    report("virtualized", document, Number(process.hrtime.bigint() - start) / 1e6);
+
+    assert.strictEqual(list.size(), messages.length);
+    const maxRows = Math.ceil(VIEWPORT_HEIGHT / list.estimatedHeight) + 2 * list.overscan + 2;
+    assert.ok(list.rows.size <= maxRows, `${list.rows.size} rows in the DOM, expected at most ${maxRows}`);
+    assert.strictEqual(container.scrollTop, container.scrollHeight - container.clientHeight, "list should stay scrolled to the bottom");
+}
+
+const messages = createMessages(MESSAGES);
+console.log(`Rendering ${MESSAGES} messages into a ${VIEWPORT_HEIGHT}px viewport`);
+virtualized(messages);
+naive(messages);